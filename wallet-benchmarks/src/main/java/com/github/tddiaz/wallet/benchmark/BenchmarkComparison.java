@@ -0,0 +1,83 @@
+package com.github.tddiaz.wallet.benchmark;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Compares two JMH JSON result files, a baseline and a current run, benchmark by benchmark.
+ * A change is flagged when the scores differ by more than their combined errors.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.github.tddiaz.wallet.benchmark.BenchmarkComparison baseline.json current.json}
+ */
+public class BenchmarkComparison {
+
+    private static final String ALLOCATION_METRIC = "·gc.alloc.rate.norm";
+
+    public static void main(String[] args) throws IOException {
+        if (args.length != 2) {
+            System.err.println("usage: BenchmarkComparison <baseline.json> <current.json>");
+            System.exit(2);
+        }
+
+        var baseline = read(Path.of(args[0]));
+        var current = read(Path.of(args[1]));
+
+        System.out.printf("%-70s %14s %14s %9s  %s%n", "Benchmark", "Baseline", "Current", "Change", "Unit");
+        for (var entry : current.entrySet()) {
+            var result = entry.getValue();
+            var baselineResult = baseline.get(entry.getKey());
+            if (baselineResult == null) {
+                System.out.printf("%-70s %14s %14.3f %9s  %s%n", entry.getKey(), "-", result.score(), "new", result.unit());
+                continue;
+            }
+
+            var change = (result.score() - baselineResult.score()) / baselineResult.score() * 100;
+            var significant = Math.abs(result.score() - baselineResult.score()) > result.error() + baselineResult.error();
+            System.out.printf("%-70s %14.3f %14.3f %+8.1f%%  %s%s%n", entry.getKey(), baselineResult.score(), result.score(), change,
+                result.unit(), significant ? "  *" : "");
+        }
+        for (var name : baseline.keySet()) {
+            if (!current.containsKey(name)) {
+                System.out.printf("%-70s %14.3f %14s %9s%n", name, baseline.get(name).score(), "-", "removed");
+            }
+        }
+    }
+
+    /**
+     * The primary score of each benchmark and, when run with the gc profiler, its allocation per operation, keyed by name and params.
+     */
+    private static Map<String, Score> read(Path file) throws IOException {
+        var results = new LinkedHashMap<String, Score>();
+        for (var result : new ObjectMapper().readTree(file.toFile())) {
+            var name = nameOf(result);
+            results.put(name, Score.of(result.get("primaryMetric")));
+
+            var allocation = result.path("secondaryMetrics").get(ALLOCATION_METRIC);
+            if (allocation != null) {
+                results.put(name + ":alloc", Score.of(allocation));
+            }
+        }
+        return results;
+    }
+
+    private static String nameOf(JsonNode result) {
+        var name = result.get("benchmark").asText().replace(BenchmarkComparison.class.getPackageName() + ".", "");
+        var params = new TreeMap<String, String>();
+        result.path("params").fields().forEachRemaining(param -> params.put(param.getKey(), param.getValue().asText()));
+        return params.isEmpty() ? name : name + params;
+    }
+
+    private record Score(double score, double error, String unit) {
+
+        static Score of(JsonNode metric) {
+            var error = metric.path("scoreError").asDouble(0);
+            return new Score(metric.get("score").asDouble(), Double.isNaN(error) ? 0 : error, metric.get("scoreUnit").asText());
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.tddiaz.wallet.benchmark;
+
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.config.ArchiveConfiguration.TransactionArchiving;
+import com.github.tddiaz.wallet.controller.dto.GetTransactionsRequestDto;
+import com.github.tddiaz.wallet.controller.dto.GetTransactionsResponseDto;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.ArchiveSegmentRepository;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import com.github.tddiaz.wallet.service.GetTransactionsUseCase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link GetTransactionsUseCase} against an in-memory page of transactions, mostly the mapping of the page to its DTOs.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GetTransactionsBenchmark {
+
+    private static final Long CUSTOMER_ID = 123L;
+
+    @Param({"10", "100"})
+    private int pageSize;
+
+    private GetTransactionsUseCase getTransactionsUseCase;
+
+    private GetTransactionsRequestDto request;
+
+    @Setup
+    public void setUp() {
+        var wallet = Wallet.initialize(CUSTOMER_ID, "GBP");
+
+        var transactions = new ArrayList<Transaction>(pageSize);
+        for (int i = 0; i < pageSize; i++) {
+            var transaction = Transaction.createDepositRequest(wallet.getId(), Money.create("GBP", new BigDecimal("10.2500")), "REF" + i);
+            transaction.success();
+            transactions.add(transaction);
+        }
+
+        var walletRepository = StandIns.repository(WalletRepository.class, Map.of(
+            "findByIdAndCustomerId", args -> Optional.of(wallet)
+        ));
+        var transactionRepository = StandIns.repository(TransactionRepository.class, Map.of(
+            "findAllByWalletId", args -> new PageImpl<>(transactions, (Pageable) args[1], 10_000L)
+        ));
+        var archiveSegmentRepository = StandIns.repository(ArchiveSegmentRepository.class, Map.of(
+            "existsByWalletId", args -> false
+        ));
+
+        var transactionArchiving = new TransactionArchiving();
+        getTransactionsUseCase = new GetTransactionsUseCase(walletRepository, transactionRepository,
+            new TransactionArchive(transactionArchiving, archiveSegmentRepository, IdGenerator.DEFAULT), archiveSegmentRepository, transactionArchiving,
+            new WalletMetrics(new SimpleMeterRegistry()));
+        request = new GetTransactionsRequestDto(wallet.getId(), CUSTOMER_ID, 0, pageSize);
+    }
+
+    @Benchmark
+    public GetTransactionsResponseDto getTransactions() {
+        return getTransactionsUseCase.execute(request);
+    }
+}
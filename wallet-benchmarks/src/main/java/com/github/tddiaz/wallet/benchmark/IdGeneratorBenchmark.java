@@ -0,0 +1,45 @@
+package com.github.tddiaz.wallet.benchmark;
+
+import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link IdGenerator} with the static {@code TsidCreator.getTsid()} it replaced, from one thread and from eight.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IdGeneratorBenchmark {
+
+    private final IdGenerator idGenerator = new IdGenerator(1, IdGenerator.DEFAULT_NODE_BITS);
+
+    @Benchmark
+    @Threads(1)
+    public long idGenerator() {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(1)
+    public long tsidCreator() {
+        return TsidCreator.getTsid().toLong();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long idGeneratorContended() {
+        return idGenerator.nextId();
+    }
+
+    @Benchmark
+    @Threads(8)
+    public long tsidCreatorContended() {
+        return TsidCreator.getTsid().toLong();
+    }
+}
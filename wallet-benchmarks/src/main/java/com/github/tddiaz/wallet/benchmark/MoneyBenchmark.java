@@ -0,0 +1,94 @@
+package com.github.tddiaz.wallet.benchmark;
+
+import com.github.tddiaz.wallet.model.Money;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the arithmetic of a withdrawal on {@link Money} with the same steps on the BigDecimal based money it replaced.
+ * Run with the gc profiler, {@code -prof gc}, to see the allocation per operation.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MoneyBenchmark {
+
+    private Money balance;
+    private Money balanceOnHold;
+    private Money withdrawal;
+
+    private DecimalMoney decimalBalance;
+    private DecimalMoney decimalBalanceOnHold;
+    private DecimalMoney decimalWithdrawal;
+
+    @Setup
+    public void setUp() {
+        balance = Money.create("GBP", new BigDecimal("1000000.0000"));
+        balanceOnHold = Money.create("GBP", new BigDecimal("250.5000"));
+        withdrawal = Money.create("GBP", new BigDecimal("10.2500"));
+
+        decimalBalance = new DecimalMoney("GBP", new BigDecimal("1000000.0000"));
+        decimalBalanceOnHold = new DecimalMoney("GBP", new BigDecimal("250.5000"));
+        decimalWithdrawal = new DecimalMoney("GBP", new BigDecimal("10.2500"));
+    }
+
+    @Benchmark
+    public void withdrawMinorUnits(Blackhole blackhole) {
+        if (withdrawal.isZero() || withdrawal.isNegative() || withdrawal.isGreaterThan(balance)) {
+            throw new IllegalStateException();
+        }
+        blackhole.consume(balance.subtract(withdrawal));
+        blackhole.consume(balanceOnHold.add(withdrawal));
+    }
+
+    @Benchmark
+    public void withdrawBigDecimal(Blackhole blackhole) {
+        if (decimalWithdrawal.isZero() || decimalWithdrawal.isNegative() || decimalWithdrawal.isGreaterThan(decimalBalance)) {
+            throw new IllegalStateException();
+        }
+        blackhole.consume(decimalBalance.subtract(decimalWithdrawal));
+        blackhole.consume(decimalBalanceOnHold.add(decimalWithdrawal));
+    }
+
+    /**
+     * The previous {@link Money}: a currency and a {@link BigDecimal}, with a new BigDecimal for every result.
+     */
+    private record DecimalMoney(String currency, BigDecimal amount) {
+
+        DecimalMoney add(DecimalMoney money) {
+            if (!Objects.equals(currency, money.currency)) {
+                throw new IllegalArgumentException();
+            }
+            return new DecimalMoney(currency, amount.add(money.amount));
+        }
+
+        DecimalMoney subtract(DecimalMoney money) {
+            if (!Objects.equals(currency, money.currency)) {
+                throw new IllegalArgumentException();
+            }
+            return new DecimalMoney(currency, amount.subtract(money.amount));
+        }
+
+        boolean isNegative() {
+            return amount.compareTo(BigDecimal.ZERO) < 0;
+        }
+
+        boolean isZero() {
+            return amount.compareTo(BigDecimal.ZERO) == 0;
+        }
+
+        boolean isGreaterThan(DecimalMoney money) {
+            if (!Objects.equals(currency, money.currency)) {
+                throw new IllegalArgumentException();
+            }
+            return amount.compareTo(money.amount) > 0;
+        }
+    }
+}
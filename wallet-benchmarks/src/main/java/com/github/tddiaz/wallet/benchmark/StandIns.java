@@ -0,0 +1,63 @@
+package com.github.tddiaz.wallet.benchmark;
+
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.AbstractPlatformTransactionManager;
+import org.springframework.transaction.support.DefaultTransactionStatus;
+
+import java.lang.reflect.Proxy;
+import java.util.Map;
+import java.util.function.Function;
+
+/**
+ * In-memory stand-ins for the DB side of the use cases. The use case benchmarks measure the work of the service layer,
+ * validation, locking, domain model and mapping, without the database round trips that would dwarf it.
+ */
+final class StandIns {
+
+    private StandIns() {
+    }
+
+    /**
+     * A repository answering the named methods with the given functions of the call arguments, any other call fails.
+     */
+    @SuppressWarnings("unchecked")
+    static <T> T repository(Class<T> repositoryType, Map<String, Function<Object[], Object>> answers) {
+        return (T) Proxy.newProxyInstance(repositoryType.getClassLoader(), new Class<?>[]{repositoryType}, (proxy, method, args) -> {
+            var answer = answers.get(method.getName());
+            if (answer != null) {
+                return answer.apply(args);
+            }
+            if (method.getDeclaringClass() == Object.class) {
+                return switch (method.getName()) {
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "equals" -> proxy == args[0];
+                    default -> repositoryType.getSimpleName() + " stand-in";
+                };
+            }
+            throw new UnsupportedOperationException(repositoryType.getSimpleName() + "." + method.getName() + " has no stand-in answer");
+        });
+    }
+
+    /**
+     * Runs transaction templates and their synchronizations without a resource behind them.
+     */
+    static class NoOpTransactionManager extends AbstractPlatformTransactionManager {
+
+        @Override
+        protected Object doGetTransaction() {
+            return new Object();
+        }
+
+        @Override
+        protected void doBegin(Object transaction, TransactionDefinition definition) {
+        }
+
+        @Override
+        protected void doCommit(DefaultTransactionStatus status) {
+        }
+
+        @Override
+        protected void doRollback(DefaultTransactionStatus status) {
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package com.github.tddiaz.wallet.benchmark;
+
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.benchmark.StandIns.NoOpTransactionManager;
+import com.github.tddiaz.wallet.cache.ReferenceIdFilter;
+import com.github.tddiaz.wallet.cache.WalletDetailsCache;
+import com.github.tddiaz.wallet.concurrency.WalletCommandEngine;
+import com.github.tddiaz.wallet.concurrency.WalletLockManager;
+import com.github.tddiaz.wallet.concurrency.WalletTransactionExecutor;
+import com.github.tddiaz.wallet.config.ArchiveConfiguration.TransactionArchiving;
+import com.github.tddiaz.wallet.config.CacheConfiguration.ReferenceIdFiltering;
+import com.github.tddiaz.wallet.config.CacheConfiguration.WalletDetailsCaching;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.BalanceBuckets;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.CommandEngine;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.StripedLock;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WithdrawExecution;
+import com.github.tddiaz.wallet.config.SupportedCurrencyConfiguration.SupportedCurrencies;
+import com.github.tddiaz.wallet.config.TransactionLimitsConfiguration.DepositLimit;
+import com.github.tddiaz.wallet.config.TransactionLimitsConfiguration.WithdrawalLimit;
+import com.github.tddiaz.wallet.controller.dto.DepositRequestDto;
+import com.github.tddiaz.wallet.controller.dto.DepositResponseDto;
+import com.github.tddiaz.wallet.controller.dto.GetWalletDetailsResponseDto;
+import com.github.tddiaz.wallet.controller.dto.MoneyDto;
+import com.github.tddiaz.wallet.controller.dto.WithdrawRequestDto;
+import com.github.tddiaz.wallet.controller.dto.WithdrawResponseDto;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.ArchiveSegmentRepository;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletBalanceView;
+import com.github.tddiaz.wallet.repository.WalletHoldRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import com.github.tddiaz.wallet.service.CreateDepositOrderUseCase;
+import com.github.tddiaz.wallet.service.CreateWithdrawOrderUseCase;
+import com.github.tddiaz.wallet.service.GetWalletDetailsUseCase;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * The use cases end to end, from request DTO to response DTO, against in-memory repositories, see {@link StandIns}.
+ * Transactions go through a transaction manager without a resource, so synchronizations such as cache eviction still run.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class UseCaseBenchmark {
+
+    private static final Long CUSTOMER_ID = 123L;
+
+    private Wallet wallet;
+
+    private CreateDepositOrderUseCase createDepositOrderUseCase;
+
+    private CreateWithdrawOrderUseCase createWithdrawOrderUseCase;
+
+    private GetWalletDetailsUseCase cachedGetWalletDetailsUseCase;
+
+    private GetWalletDetailsUseCase uncachedGetWalletDetailsUseCase;
+
+    private DepositRequestDto depositRequest;
+
+    private WithdrawRequestDto withdrawRequest;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        var idGenerator = new IdGenerator(1, IdGenerator.DEFAULT_NODE_BITS);
+        var meterRegistry = new SimpleMeterRegistry();
+        var transactionManager = new NoOpTransactionManager();
+
+        wallet = Wallet.initialize(CUSTOMER_ID, "GBP");
+        wallet.deposit(Money.create("GBP", new BigDecimal("10000000000000.0000")));
+
+        var walletRepository = StandIns.repository(WalletRepository.class, Map.of(
+            "findByIdAndCustomerId", args -> Optional.of(wallet),
+            "findByIdAndCustomerIdWithExclusiveLock", args -> Optional.of(wallet),
+            "findBalanceByIdAndCustomerId", args -> Optional.of(walletBalance(wallet)),
+            "save", args -> args[0]
+        ));
+        var transactionRepository = StandIns.repository(TransactionRepository.class, Map.of(
+            "findByReferenceId", args -> Optional.empty(),
+            "streamAllReferenceIds", args -> Stream.empty(),
+            "save", args -> args[0]
+        ));
+        var walletHoldRepository = StandIns.repository(WalletHoldRepository.class, Map.of(
+            "save", args -> args[0]
+        ));
+
+        var supportedCurrencies = new SupportedCurrencies(Set.of("GBP"));
+        var walletLocking = new WalletLocking();
+        var balanceBuckets = new BalanceBuckets();
+        var walletDetailsCache = new WalletDetailsCache(new WalletDetailsCaching(), meterRegistry);
+        var walletMetrics = new WalletMetrics(meterRegistry);
+        var referenceIdFilter = new ReferenceIdFilter(new ReferenceIdFiltering(), transactionRepository, transactionManager, meterRegistry);
+        referenceIdFilter.rebuild().join();
+        var transactionArchive = new TransactionArchive(new TransactionArchiving(), StandIns.repository(ArchiveSegmentRepository.class, Map.of()), idGenerator);
+
+        createDepositOrderUseCase = new CreateDepositOrderUseCase(
+            walletRepository,
+            transactionRepository,
+            new DepositLimit(BigDecimal.valueOf(10_000L), BigDecimal.TEN),
+            supportedCurrencies,
+            idGenerator,
+            transactionManager,
+            walletMetrics,
+            referenceIdFilter,
+            transactionArchive
+        );
+        createWithdrawOrderUseCase = new CreateWithdrawOrderUseCase(
+            walletRepository,
+            transactionRepository,
+            walletHoldRepository,
+            new WithdrawalLimit(BigDecimal.valueOf(10_000L), BigDecimal.TEN),
+            supportedCurrencies,
+            new WithdrawExecution(),
+            walletLocking,
+            balanceBuckets,
+            new WalletTransactionExecutor(transactionManager, walletLocking),
+            new WalletLockManager(new StripedLock(), meterRegistry),
+            new WalletCommandEngine(new CommandEngine(), transactionManager, walletRepository, meterRegistry),
+            walletDetailsCache,
+            idGenerator,
+            walletMetrics,
+            referenceIdFilter,
+            transactionArchive
+        );
+        cachedGetWalletDetailsUseCase = new GetWalletDetailsUseCase(walletRepository, walletDetailsCache, walletMetrics);
+        uncachedGetWalletDetailsUseCase = new GetWalletDetailsUseCase(walletRepository,
+            new WalletDetailsCache(new WalletDetailsCaching(false, 0, Duration.ofSeconds(30)), meterRegistry), walletMetrics);
+
+        var amount = new MoneyDto("GBP", BigDecimal.TEN);
+        depositRequest = new DepositRequestDto("REF-DEPOSIT", wallet.getId(), CUSTOMER_ID, amount);
+        withdrawRequest = new WithdrawRequestDto("REF-WITHDRAW", wallet.getId(), CUSTOMER_ID, amount);
+    }
+
+    @Benchmark
+    public DepositResponseDto createDepositOrder() {
+        return createDepositOrderUseCase.execute(depositRequest);
+    }
+
+    @Benchmark
+    public WithdrawResponseDto createWithdrawOrder() {
+        return createWithdrawOrderUseCase.execute(withdrawRequest);
+    }
+
+    @Benchmark
+    public GetWalletDetailsResponseDto getWalletDetailsCached() {
+        return cachedGetWalletDetailsUseCase.execute(wallet.getId(), CUSTOMER_ID);
+    }
+
+    @Benchmark
+    public GetWalletDetailsResponseDto getWalletDetailsUncached() {
+        return uncachedGetWalletDetailsUseCase.execute(wallet.getId(), CUSTOMER_ID);
+    }
+
+    private static WalletBalanceView walletBalance(Wallet wallet) {
+        return new WalletBalanceView() {
+            @Override
+            public Long getWalletId() {
+                return wallet.getId();
+            }
+
+            @Override
+            public Long getCustomerId() {
+                return wallet.getCustomerId();
+            }
+
+            @Override
+            public String getCurrency() {
+                return wallet.getCurrency();
+            }
+
+            @Override
+            public BigDecimal getBalanceAmount() {
+                return wallet.getBalance().getAmount();
+            }
+
+            @Override
+            public BigDecimal getBucketsAmount() {
+                return BigDecimal.ZERO;
+            }
+
+            @Override
+            public BigDecimal getHeldAmount() {
+                return BigDecimal.TEN;
+            }
+        };
+    }
+}
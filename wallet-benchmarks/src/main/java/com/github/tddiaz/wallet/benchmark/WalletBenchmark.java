@@ -0,0 +1,50 @@
+package com.github.tddiaz.wallet.benchmark;
+
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Wallet;
+import org.openjdk.jmh.annotations.*;
+
+import java.math.BigDecimal;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * {@link Wallet#deposit(Money)} and {@link Wallet#withdraw(Money)}, the balance checks and updates of the domain model.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class WalletBenchmark {
+
+    private Wallet wallet;
+
+    private Money amount;
+
+    @Setup(Level.Iteration)
+    public void setUp() {
+        wallet = Wallet.initialize(123L, "GBP");
+        wallet.deposit(Money.create("GBP", new BigDecimal("10000000000000.0000")));
+        amount = Money.create("GBP", new BigDecimal("10.2500"));
+    }
+
+    @Benchmark
+    public Money deposit() {
+        wallet.deposit(amount);
+        return wallet.getBalance();
+    }
+
+    @Benchmark
+    public Money withdraw() {
+        wallet.withdraw(amount);
+        return wallet.getBalance();
+    }
+
+    @Benchmark
+    public Money withdrawAndSettle() {
+        wallet.withdraw(amount);
+        wallet.deposit(amount);
+        return wallet.getBalance();
+    }
+}
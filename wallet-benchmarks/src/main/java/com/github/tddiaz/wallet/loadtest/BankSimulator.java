@@ -0,0 +1,90 @@
+package com.github.tddiaz.wallet.loadtest;
+
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto.BankingStatus;
+import com.github.tddiaz.wallet.loadtest.LoadTestSettings.Bank;
+
+import java.time.Duration;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * The custody bank, notifying the status of each accepted transfer on {@code /notify-transfer-status} after a random delay.
+ * Some transfers fail and some are notified twice, as the real bank retries callbacks it did not see acknowledged.
+ */
+final class BankSimulator implements AutoCloseable {
+
+    static final String CALLBACK_PATH = "/api/v1/external/banking/notify-transfer-status";
+
+    private final Bank bank;
+
+    private final WalletClient client;
+
+    private final EndpointStats callbackStats;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "bank-simulator");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final AtomicInteger pendingCallbacks = new AtomicInteger();
+
+    BankSimulator(Bank bank, WalletClient client, EndpointStats callbackStats) {
+        this.bank = bank;
+        this.client = client;
+        this.callbackStats = callbackStats;
+    }
+
+    void transferRequested(String referenceId) {
+        var random = ThreadLocalRandom.current();
+        var status = random.nextDouble() < bank.getFailureRatio() ? BankingStatus.FAILED : BankingStatus.SUCCESS;
+
+        scheduleCallback(referenceId, status);
+        if (random.nextDouble() < bank.getDuplicateRatio()) {
+            scheduleCallback(referenceId, status);
+        }
+    }
+
+    /**
+     * Waits for the scheduled callbacks to be sent and answered.
+     *
+     * @return false when some were still pending after the timeout
+     */
+    boolean awaitDrained(Duration timeout) throws InterruptedException {
+        var deadline = System.nanoTime() + timeout.toNanos();
+        while (pendingCallbacks.get() > 0) {
+            if (System.nanoTime() > deadline) {
+                return false;
+            }
+            Thread.sleep(50);
+        }
+        return true;
+    }
+
+    int getPendingCallbacks() {
+        return pendingCallbacks.get();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    private void scheduleCallback(String referenceId, BankingStatus status) {
+        var delay = exponentialDelayNanos();
+        var scheduledAt = System.nanoTime() + delay;
+        var json = String.format("{\"referenceId\":\"%s\",\"status\":\"%s\"}", referenceId, status);
+
+        pendingCallbacks.incrementAndGet();
+        scheduler.schedule(() -> client.post(callbackStats, CALLBACK_PATH, json, scheduledAt)
+            .whenComplete((responseStatus, error) -> pendingCallbacks.decrementAndGet()), delay, TimeUnit.NANOSECONDS);
+    }
+
+    private long exponentialDelayNanos() {
+        var mean = bank.getLatency().toNanos();
+        return (long) (-mean * Math.log(1 - ThreadLocalRandom.current().nextDouble()));
+    }
+}
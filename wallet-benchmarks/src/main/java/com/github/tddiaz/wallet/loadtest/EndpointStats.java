@@ -0,0 +1,82 @@
+package com.github.tddiaz.wallet.loadtest;
+
+import org.HdrHistogram.ConcurrentHistogram;
+import org.HdrHistogram.Histogram;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Latencies and response statuses of the requests to one endpoint. Latencies are measured from the time a request
+ * was scheduled to be sent, so a slow server delaying the following requests shows in them too.
+ */
+final class EndpointStats {
+
+    private static final long MAX_LATENCY_MICROS = TimeUnit.MINUTES.toMicros(1);
+
+    private final String name;
+
+    private final Histogram latencies = new ConcurrentHistogram(MAX_LATENCY_MICROS, 3);
+
+    private final LongAdder successes = new LongAdder();
+
+    private final LongAdder clientErrors = new LongAdder();
+
+    private final LongAdder serverErrors = new LongAdder();
+
+    private final LongAdder failures = new LongAdder();
+
+    private final AtomicLong lastCompletedAt = new AtomicLong();
+
+    EndpointStats(String name) {
+        this.name = name;
+    }
+
+    /**
+     * @param status the HTTP status, or -1 when no response was received
+     */
+    void record(long scheduledAt, int status) {
+        var now = System.nanoTime();
+        latencies.recordValue(Math.min(TimeUnit.NANOSECONDS.toMicros(now - scheduledAt), MAX_LATENCY_MICROS));
+        lastCompletedAt.accumulateAndGet(now, Math::max);
+
+        if (status < 0) {
+            failures.increment();
+        } else if (status >= 500) {
+            serverErrors.increment();
+        } else if (status >= 400) {
+            clientErrors.increment();
+        } else {
+            successes.increment();
+        }
+    }
+
+    void reset() {
+        latencies.reset();
+        successes.reset();
+        clientErrors.reset();
+        serverErrors.reset();
+        failures.reset();
+        lastCompletedAt.set(0);
+    }
+
+    String format(long measurementStartedAt) {
+        var count = latencies.getTotalCount();
+        var elapsedSeconds = (lastCompletedAt.get() - measurementStartedAt) / 1e9;
+        var throughput = count == 0 || elapsedSeconds <= 0 ? 0 : count / elapsedSeconds;
+
+        return String.format("%-30s %9d %9d %7d %7d %7d %9.1f %9.2f %9.2f %9.2f %9.2f", name, count,
+            successes.sum(), clientErrors.sum(), serverErrors.sum(), failures.sum(), throughput,
+            millisAt(50), millisAt(99), millisAt(99.9), latencies.getMaxValue() / 1000d);
+    }
+
+    static String header() {
+        return String.format("%-30s %9s %9s %7s %7s %7s %9s %9s %9s %9s %9s", "Endpoint", "Requests",
+            "2xx", "4xx", "5xx", "Errors", "Req/s", "p50 ms", "p99 ms", "p99.9 ms", "Max ms");
+    }
+
+    private double millisAt(double percentile) {
+        return latencies.getValueAtPercentile(percentile) / 1000d;
+    }
+}
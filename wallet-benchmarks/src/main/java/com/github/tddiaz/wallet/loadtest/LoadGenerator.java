@@ -0,0 +1,146 @@
+package com.github.tddiaz.wallet.loadtest;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Open-loop generator of wallet API requests: they are sent at a fixed rate whatever the response times, the way independent
+ * customers would send them. Wallets are picked by popularity, accepted deposit and withdraw orders are handed to the bank.
+ */
+final class LoadGenerator {
+
+    private static final String DEPOSIT_PATH = "/api/v1/wallet/deposit";
+
+    private static final String WITHDRAW_PATH = "/api/v1/wallet/withdraw";
+
+    private final LoadTestSettings settings;
+
+    private final List<Target> wallets;
+
+    private final ZipfDistribution popularity;
+
+    private final WalletClient client;
+
+    private final BankSimulator bank;
+
+    private final EndpointStats depositStats;
+
+    private final EndpointStats withdrawStats;
+
+    private final EndpointStats detailsStats;
+
+    private final Semaphore inFlight;
+
+    private final LongAdder shed = new LongAdder();
+
+    private final AtomicLong sequence = new AtomicLong();
+
+    private final String runId = Long.toString(System.currentTimeMillis(), Character.MAX_RADIX);
+
+    LoadGenerator(LoadTestSettings settings, List<Target> wallets, WalletClient client, BankSimulator bank,
+                  EndpointStats depositStats, EndpointStats withdrawStats, EndpointStats detailsStats) {
+        this.settings = settings;
+        this.wallets = wallets;
+        this.popularity = new ZipfDistribution(wallets.size(), settings.getSkew());
+        this.client = client;
+        this.bank = bank;
+        this.depositStats = depositStats;
+        this.withdrawStats = withdrawStats;
+        this.detailsStats = detailsStats;
+        this.inFlight = new Semaphore(settings.getMaxInFlight());
+    }
+
+    /**
+     * Sends requests at the configured rate for the given duration, from the calling thread.
+     */
+    void run(Duration duration) {
+        var interval = TimeUnit.SECONDS.toNanos(1) / settings.getRate();
+        var start = System.nanoTime();
+        var end = start + duration.toNanos();
+
+        for (var scheduledAt = start; scheduledAt < end; scheduledAt += interval) {
+            long wait;
+            while ((wait = scheduledAt - System.nanoTime()) > 0) {
+                LockSupport.parkNanos(wait);
+            }
+
+            if (!inFlight.tryAcquire()) {
+                shed.increment();
+                continue;
+            }
+            send(scheduledAt).whenComplete((status, error) -> inFlight.release());
+        }
+    }
+
+    /**
+     * Waits for the responses of the requests sent.
+     *
+     * @return false when some were still in flight after the timeout
+     */
+    boolean awaitResponses(Duration timeout) throws InterruptedException {
+        var permits = settings.getMaxInFlight();
+        if (!inFlight.tryAcquire(permits, timeout.toNanos(), TimeUnit.NANOSECONDS)) {
+            return false;
+        }
+        inFlight.release(permits);
+        return true;
+    }
+
+    long getShed() {
+        return shed.sum();
+    }
+
+    void resetShed() {
+        shed.reset();
+    }
+
+    double getMostPopularWalletShare() {
+        return popularity.probabilityOf(0);
+    }
+
+    private CompletableFuture<Integer> send(long scheduledAt) {
+        var random = ThreadLocalRandom.current();
+        var wallet = wallets.get(popularity.sample(random));
+        var draw = random.nextDouble();
+
+        if (draw < settings.getWithdrawRatio()) {
+            return order(withdrawStats, WITHDRAW_PATH, wallet, amount(1, 50), scheduledAt);
+        }
+        if (draw < settings.getWithdrawRatio() + settings.getDetailsRatio()) {
+            var path = String.format("/api/v1/wallet/%d/customer/%d", wallet.walletId(), wallet.customerId());
+            return client.get(detailsStats, path, scheduledAt);
+        }
+        return order(depositStats, DEPOSIT_PATH, wallet, amount(10, 100), scheduledAt);
+    }
+
+    private CompletableFuture<Integer> order(EndpointStats stats, String path, Target wallet, BigDecimal amount, long scheduledAt) {
+        var referenceId = "LT-" + runId + "-" + sequence.incrementAndGet();
+        var json = String.format("{\"referenceId\":\"%s\",\"walletId\":%d,\"customerId\":%d,\"amount\":{\"currency\":\"%s\",\"value\":%s}}",
+            referenceId, wallet.walletId(), wallet.customerId(), settings.getCurrency(), amount.toPlainString());
+
+        return client.post(stats, path, json, scheduledAt).thenApply(status -> {
+            if (status == 200) {
+                bank.transferRequested(referenceId);
+            }
+            return status;
+        });
+    }
+
+    private static BigDecimal amount(int min, int max) {
+        return BigDecimal.valueOf(ThreadLocalRandom.current().nextLong(min * 100L, max * 100L + 1), 2);
+    }
+
+    /**
+     * A wallet of the test data, ranked by popularity.
+     */
+    record Target(long walletId, long customerId) {
+    }
+}
@@ -0,0 +1,182 @@
+package com.github.tddiaz.wallet.loadtest;
+
+import com.github.tddiaz.wallet.MainApplication;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.loadtest.LoadGenerator.Target;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.CommandLinePropertySource;
+import org.springframework.core.env.MapPropertySource;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End to end load test of the wallet service. Starts the service on a random port, against an embedded Postgres unless
+ * {@code --load.db-url} is given, creates the test wallets, then sends deposit, withdraw and wallet details requests at a fixed
+ * rate while {@link BankSimulator} notifies the status of the accepted orders. Prints the throughput and latency percentiles
+ * of each endpoint and the lock waits, of the in-JVM wallet lock and of the DB, measured after the warmup.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.github.tddiaz.wallet.loadtest.LoadTest --load.rate=200 --load.skew=1.2},
+ * see {@link LoadTestSettings} for the {@code --load.*} arguments. Other arguments configure the service.
+ */
+public class LoadTest {
+
+    private static final String EMBEDDED_USER = "postgres";
+
+    private static final int SEED_BATCH_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        var settings = LoadTestSettings.bind(args);
+
+        try (var embeddedPostgres = settings.getDbUrl() == null ? startEmbeddedPostgres(settings) : null) {
+            try (var context = startService(settings, args)) {
+                run(settings, context);
+            }
+        }
+    }
+
+    static EmbeddedPostgres startEmbeddedPostgres(LoadTestSettings settings) throws Exception {
+        var postgres = EmbeddedPostgres.builder()
+            .setServerConfig("max_connections", "200")
+            .start();
+        settings.setDbUrl(postgres.getJdbcUrl(EMBEDDED_USER, EMBEDDED_USER));
+        settings.setDbUsername(EMBEDDED_USER);
+        settings.setDbPassword(EMBEDDED_USER);
+        System.out.printf("started embedded Postgres on port %d%n", postgres.getPort());
+        return postgres;
+    }
+
+    private static ConfigurableApplicationContext startService(LoadTestSettings settings, String[] args) {
+        return startService(settings, Map.of(), args);
+    }
+
+    /**
+     * Starts the service against the database of the settings, the given properties are overridden by the command line arguments.
+     */
+    static ConfigurableApplicationContext startService(LoadTestSettings settings, Map<String, Object> serviceProperties, String[] args) {
+        Map<String, Object> properties = new HashMap<>(serviceProperties);
+        properties.put("spring.datasource.url", settings.getDbUrl());
+        properties.put("spring.datasource.username", settings.getDbUsername());
+        properties.put("spring.datasource.password", settings.getDbPassword());
+        properties.put("server.port", "0");
+
+        return new SpringApplicationBuilder(MainApplication.class)
+            .initializers(context -> {
+                // above application.yml, below the command line arguments
+                var sources = context.getEnvironment().getPropertySources();
+                var source = new MapPropertySource("loadTest", properties);
+                if (sources.contains(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME)) {
+                    sources.addAfter(CommandLinePropertySource.COMMAND_LINE_PROPERTY_SOURCE_NAME, source);
+                } else {
+                    sources.addFirst(source);
+                }
+            })
+            .run(args);
+    }
+
+    private static void run(LoadTestSettings settings, ConfigurableApplicationContext context) throws Exception {
+        var port = ((WebServerApplicationContext) context).getWebServer().getPort();
+        var wallets = seedWallets(settings, context.getBean(WalletRepository.class), context.getBean(IdGenerator.class));
+
+        var depositStats = new EndpointStats("POST /wallet/deposit");
+        var withdrawStats = new EndpointStats("POST /wallet/withdraw");
+        var detailsStats = new EndpointStats("GET /wallet/{id}/customer/{id}");
+        var callbackStats = new EndpointStats("POST /notify-transfer-status");
+        var allStats = List.of(depositStats, withdrawStats, detailsStats, callbackStats);
+
+        var client = new WalletClient("http://localhost:" + port);
+        try (var bank = new BankSimulator(settings.getBank(), client, callbackStats);
+             var dbLockWaits = new LockWaitSampler(settings.getDbUrl(), settings.getDbUsername(), settings.getDbPassword())) {
+
+            var generator = new LoadGenerator(settings, wallets, client, bank, depositStats, withdrawStats, detailsStats);
+            System.out.printf("%d wallets, the most popular one gets %.1f%% of the requests%n", wallets.size(),
+                generator.getMostPopularWalletShare() * 100);
+
+            System.out.printf("warming up for %s at %d req/s%n", settings.getWarmup(), settings.getRate());
+            generator.run(settings.getWarmup());
+
+            allStats.forEach(EndpointStats::reset);
+            generator.resetShed();
+            dbLockWaits.reset();
+            var jvmLockWaits = JvmLockWaits.snapshot(context.getBean(MeterRegistry.class));
+            var measurementStartedAt = System.nanoTime();
+
+            System.out.printf("measuring for %s at %d req/s%n", settings.getDuration(), settings.getRate());
+            generator.run(settings.getDuration());
+
+            var drainTimeout = settings.getBank().getDrainTimeout();
+            if (!generator.awaitResponses(drainTimeout)) {
+                System.out.println("some requests were still in flight after " + drainTimeout);
+            }
+            if (!bank.awaitDrained(drainTimeout)) {
+                System.out.printf("%d callbacks were still pending after %s%n", bank.getPendingCallbacks(), drainTimeout);
+            }
+
+            System.out.println();
+            System.out.println(EndpointStats.header());
+            allStats.forEach(stats -> System.out.println(stats.format(measurementStartedAt)));
+            System.out.println();
+            System.out.printf("Requests shed, over %d in flight: %d%n", settings.getMaxInFlight(), generator.getShed());
+            System.out.println(jvmLockWaits.format(context.getBean(MeterRegistry.class)));
+            System.out.println(dbLockWaits.format());
+        }
+    }
+
+    private static List<Target> seedWallets(LoadTestSettings settings, WalletRepository walletRepository, IdGenerator idGenerator) {
+        var targets = new ArrayList<Target>(settings.getWallets());
+        var initialBalance = Money.create(settings.getCurrency(), settings.getInitialBalance());
+
+        var batch = new ArrayList<Wallet>(SEED_BATCH_SIZE);
+        for (int i = 0; i < settings.getWallets(); i++) {
+            var wallet = Wallet.initialize(idGenerator.nextId(), idGenerator.nextId(), settings.getCurrency());
+            wallet.deposit(initialBalance);
+            batch.add(wallet);
+            targets.add(new Target(wallet.getId(), wallet.getCustomerId()));
+
+            if (batch.size() == SEED_BATCH_SIZE || i == settings.getWallets() - 1) {
+                walletRepository.saveAll(batch);
+                batch.clear();
+            }
+        }
+        return targets;
+    }
+
+    /**
+     * The waits on the in-JVM wallet lock, recorded by the service when {@code concurrency.striped-lock.enabled} is set.
+     */
+    private record JvmLockWaits(long count, double totalMillis) {
+
+        static JvmLockWaits snapshot(MeterRegistry meterRegistry) {
+            var timers = meterRegistry.find("wallet.lock.wait").timers();
+            return new JvmLockWaits(
+                timers.stream().mapToLong(Timer::count).sum(),
+                timers.stream().mapToDouble(timer -> timer.totalTime(TimeUnit.MILLISECONDS)).sum()
+            );
+        }
+
+        String format(MeterRegistry meterRegistry) {
+            var now = snapshot(meterRegistry);
+            var count = now.count - count();
+            if (count == 0) {
+                return "In-JVM wallet lock waits: none recorded, see concurrency.striped-lock.enabled";
+            }
+            var maxMillis = meterRegistry.find("wallet.lock.wait").timers().stream()
+                .mapToDouble(timer -> timer.max(TimeUnit.MILLISECONDS))
+                .max()
+                .orElse(0);
+            return String.format("In-JVM wallet lock waits: %d, mean %.3f ms, recent max %.3f ms", count,
+                (now.totalMillis - totalMillis()) / count, maxMillis);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.tddiaz.wallet.loadtest;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+
+/**
+ * Settings of a load test run, bound from the {@code --load.*} command line arguments.
+ * The other arguments configure the wallet service under test, ex: {@code --concurrency.striped-lock.enabled=true}.
+ */
+@Data
+public class LoadTestSettings {
+
+    /**
+     * Requests per second sent to the wallet API, at fixed intervals whatever the response times.
+     */
+    private int rate = 100;
+
+    private Duration warmup = Duration.ofSeconds(10);
+
+    private Duration duration = Duration.ofSeconds(60);
+
+    /**
+     * Requests not completed yet above which new ones are not sent but counted as shed.
+     */
+    private int maxInFlight = 1000;
+
+    private int wallets = 1000;
+
+    private String currency = "GBP";
+
+    private BigDecimal initialBalance = new BigDecimal("1000000");
+
+    /**
+     * Zipf exponent of the wallet popularity. 0 spreads requests evenly, 1 sends about a sixth of them
+     * to the most popular wallet of 1000, higher values concentrate them further.
+     */
+    private double skew = 1.0;
+
+    private double withdrawRatio = 0.3;
+
+    /**
+     * Share of wallet details reads, the rest of the requests after withdraw orders and reads are deposit orders.
+     */
+    private double detailsRatio = 0.1;
+
+    /**
+     * JDBC url of an existing database, an embedded Postgres is started when not set.
+     */
+    private String dbUrl;
+
+    private String dbUsername = "hubpay";
+
+    private String dbPassword = "hubpay";
+
+    private Bank bank = new Bank();
+
+    @Data
+    public static class Bank {
+
+        /**
+         * Mean delay between an accepted order and its callback, delays are exponentially distributed.
+         */
+        private Duration latency = Duration.ofMillis(200);
+
+        /**
+         * Share of transfers notified twice, each notification after a delay of its own.
+         */
+        private double duplicateRatio = 0.05;
+
+        /**
+         * Share of transfers notified as FAILED.
+         */
+        private double failureRatio = 0.02;
+
+        /**
+         * How long to wait for the callbacks still scheduled when the last order has been sent.
+         */
+        private Duration drainTimeout = Duration.ofSeconds(30);
+    }
+
+    public static LoadTestSettings bind(String[] args) {
+        var binder = new Binder(ConfigurationPropertySources.from(new SimpleCommandLinePropertySource(args)));
+        var settings = binder.bind("load", LoadTestSettings.class).orElseGet(LoadTestSettings::new);
+
+        if (settings.withdrawRatio < 0 || settings.detailsRatio < 0 || settings.withdrawRatio + settings.detailsRatio > 1) {
+            throw new IllegalArgumentException("load.withdraw-ratio and load.details-ratio must be positive and add up to 1 at most");
+        }
+        if (settings.rate <= 0 || settings.wallets <= 0 || settings.maxInFlight <= 0) {
+            throw new IllegalArgumentException("load.rate, load.wallets and load.max-in-flight must be positive");
+        }
+        return settings;
+    }
+
+    public double getDepositRatio() {
+        return 1 - withdrawRatio - detailsRatio;
+    }
+}
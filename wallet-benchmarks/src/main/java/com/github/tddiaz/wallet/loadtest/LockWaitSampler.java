@@ -0,0 +1,91 @@
+package com.github.tddiaz.wallet.loadtest;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Samples the sessions of the database waiting on a lock, ex: on the row lock of a hot wallet, and counts deadlocks.
+ * Uses a connection of its own, outside of the pool of the service.
+ */
+final class LockWaitSampler implements AutoCloseable {
+
+    private static final long SAMPLE_INTERVAL_MILLIS = 100;
+
+    private static final String LOCK_WAITERS_QUERY =
+        "SELECT count(*) FROM pg_stat_activity WHERE wait_event_type = 'Lock' AND datname = current_database()";
+
+    private static final String DEADLOCKS_QUERY = "SELECT deadlocks FROM pg_stat_database WHERE datname = current_database()";
+
+    private final Connection connection;
+
+    private final ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        var thread = new Thread(runnable, "lock-wait-sampler");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private long samples;
+
+    private long samplesWithWaiters;
+
+    private long waitersTotal;
+
+    private long waitersMax;
+
+    private long deadlocksAtReset;
+
+    LockWaitSampler(String url, String username, String password) throws SQLException {
+        connection = DriverManager.getConnection(url, username, password);
+        reset();
+        scheduler.scheduleWithFixedDelay(this::sample, SAMPLE_INTERVAL_MILLIS, SAMPLE_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+    }
+
+    synchronized void reset() throws SQLException {
+        samples = 0;
+        samplesWithWaiters = 0;
+        waitersTotal = 0;
+        waitersMax = 0;
+        deadlocksAtReset = queryLong(DEADLOCKS_QUERY);
+    }
+
+    synchronized String format() throws SQLException {
+        var deadlocks = queryLong(DEADLOCKS_QUERY) - deadlocksAtReset;
+        if (samples == 0) {
+            return "DB lock waits: no samples";
+        }
+        return String.format("DB lock waits: sessions waiting in %.1f%% of %d samples, mean %.2f, max %d waiting, %d deadlocks",
+            samplesWithWaiters * 100d / samples, samples, (double) waitersTotal / samples, waitersMax, deadlocks);
+    }
+
+    @Override
+    public void close() throws SQLException {
+        scheduler.shutdownNow();
+        synchronized (this) {
+            connection.close();
+        }
+    }
+
+    private synchronized void sample() {
+        try {
+            var waiters = queryLong(LOCK_WAITERS_QUERY);
+            samples++;
+            waitersTotal += waiters;
+            waitersMax = Math.max(waitersMax, waiters);
+            if (waiters > 0) {
+                samplesWithWaiters++;
+            }
+        } catch (SQLException e) {
+            System.err.println("lock wait sample failed: " + e.getMessage());
+        }
+    }
+
+    private long queryLong(String sql) throws SQLException {
+        try (var statement = connection.createStatement(); var resultSet = statement.executeQuery(sql)) {
+            return resultSet.next() ? resultSet.getLong(1) : 0;
+        }
+    }
+}
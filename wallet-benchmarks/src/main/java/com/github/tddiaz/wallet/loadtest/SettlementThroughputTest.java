@@ -0,0 +1,207 @@
+package com.github.tddiaz.wallet.loadtest;
+
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.BalanceBuckets;
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import com.github.tddiaz.wallet.service.GetWalletDetailsUseCase;
+import com.github.tddiaz.wallet.service.SettleTransactionUseCase;
+import lombok.Data;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.ConfigurationPropertySources;
+import org.springframework.context.ConfigurableApplicationContext;
+import org.springframework.core.env.SimpleCommandLinePropertySource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Settlement throughput of a single hot wallet as its balance is spread over more buckets, see {@code concurrency.balance-buckets}.
+ * For each bucket count, 0 being the wallet row alone, creates a wallet with pending deposits, settles them all as SUCCESS
+ * from concurrent threads calling {@link SettleTransactionUseCase} in process, then checks the balance of the wallet.
+ * <p>
+ * Usage: {@code java -cp target/benchmarks.jar com.github.tddiaz.wallet.loadtest.SettlementThroughputTest --throughput.buckets=0,4,16},
+ * see {@link Settings} for the {@code --throughput.*} arguments. The {@code --load.db-*} arguments and the service arguments
+ * are the ones of {@link LoadTest}.
+ */
+public class SettlementThroughputTest {
+
+    private static final int INSERT_BATCH_SIZE = 500;
+
+    public static void main(String[] args) throws Exception {
+        var loadTestSettings = LoadTestSettings.bind(args);
+        var settings = Settings.bind(args);
+
+        try (var embeddedPostgres = loadTestSettings.getDbUrl() == null ? LoadTest.startEmbeddedPostgres(loadTestSettings) : null) {
+            // one connection per settling thread, so the threads wait on the rows rather than on the pool
+            var serviceProperties = Map.<String, Object>of("spring.datasource.hikari.maximum-pool-size", settings.getThreads() + 2);
+            try (var context = LoadTest.startService(loadTestSettings, serviceProperties, args);
+                 var dbLockWaits = new LockWaitSampler(loadTestSettings.getDbUrl(), loadTestSettings.getDbUsername(), loadTestSettings.getDbPassword())) {
+
+                var runner = new Runner(settings, context);
+                System.out.printf("warming up with %d settlements%n", settings.getWarmupSettlements());
+                runner.run(settings.getBuckets().get(settings.getBuckets().size() - 1), settings.getWarmupSettlements());
+
+                System.out.printf("%d settlements of one wallet per run, from %d threads%n%n", settings.getSettlements(), settings.getThreads());
+                System.out.printf("%-8s %12s %14s%n", "Buckets", "Seconds", "Settlements/s");
+                for (var buckets : settings.getBuckets()) {
+                    dbLockWaits.reset();
+                    var seconds = runner.run(buckets, settings.getSettlements());
+                    System.out.printf("%-8d %12.2f %14.1f   %s%n", buckets, seconds, settings.getSettlements() / seconds, dbLockWaits.format());
+                }
+            }
+        }
+    }
+
+    private static final class Runner {
+
+        private final Settings settings;
+
+        private final WalletRepository walletRepository;
+
+        private final TransactionRepository transactionRepository;
+
+        private final SettleTransactionUseCase settleTransactionUseCase;
+
+        private final GetWalletDetailsUseCase getWalletDetailsUseCase;
+
+        private final BalanceBuckets balanceBuckets;
+
+        private final IdGenerator idGenerator;
+
+        private final TransactionTemplate transactionTemplate;
+
+        private Runner(Settings settings, ConfigurableApplicationContext context) {
+            this.settings = settings;
+            this.walletRepository = context.getBean(WalletRepository.class);
+            this.transactionRepository = context.getBean(TransactionRepository.class);
+            this.settleTransactionUseCase = context.getBean(SettleTransactionUseCase.class);
+            this.getWalletDetailsUseCase = context.getBean(GetWalletDetailsUseCase.class);
+            this.balanceBuckets = context.getBean(BalanceBuckets.class);
+            this.idGenerator = context.getBean(IdGenerator.class);
+            this.transactionTemplate = new TransactionTemplate(context.getBean(PlatformTransactionManager.class));
+        }
+
+        /**
+         * Settles the given number of pending deposits of a new wallet and returns the elapsed seconds.
+         */
+        double run(int buckets, int settlements) throws Exception {
+            var wallet = walletRepository.save(Wallet.initialize(idGenerator.nextId(), idGenerator.nextId(), settings.getCurrency()));
+            balanceBuckets.setBuckets(buckets);
+            balanceBuckets.setWalletIds(buckets > 0 ? Set.of(wallet.getId()) : Set.of());
+
+            var referenceIds = new ConcurrentLinkedQueue<>(insertPendingDeposits(wallet, settlements));
+            var failures = new AtomicInteger();
+            var start = new CountDownLatch(1);
+
+            var executor = Executors.newFixedThreadPool(settings.getThreads());
+            try {
+                var workers = new ArrayList<Future<?>>();
+                for (int i = 0; i < settings.getThreads(); i++) {
+                    workers.add(executor.submit(() -> {
+                        start.await();
+                        String referenceId;
+                        while ((referenceId = referenceIds.poll()) != null) {
+                            try {
+                                settleTransactionUseCase.execute(new BankTransactionStatusRequestDto(referenceId, "SUCCESS"));
+                            } catch (RuntimeException e) {
+                                failures.incrementAndGet();
+                            }
+                        }
+                        return null;
+                    }));
+                }
+
+                var startedAt = System.nanoTime();
+                start.countDown();
+                for (var worker : workers) {
+                    worker.get();
+                }
+                var seconds = (System.nanoTime() - startedAt) / 1_000_000_000d;
+
+                verifyBalance(wallet, settlements - failures.get());
+                if (failures.get() > 0) {
+                    System.out.printf("%d settlements failed%n", failures.get());
+                }
+                return seconds;
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+
+        private List<String> insertPendingDeposits(Wallet wallet, int count) {
+            var amount = Money.create(settings.getCurrency(), settings.getAmount());
+            var referenceIds = new ArrayList<String>(count);
+
+            var batch = new ArrayList<Transaction>(INSERT_BATCH_SIZE);
+            for (int i = 0; i < count; i++) {
+                var transaction = Transaction.createDepositRequest(idGenerator.nextId(), wallet.getId(), amount, "SETTLE-" + idGenerator.nextId());
+                batch.add(transaction);
+                referenceIds.add(transaction.getReferenceId());
+
+                if (batch.size() == INSERT_BATCH_SIZE || i == count - 1) {
+                    transactionTemplate.executeWithoutResult(status -> transactionRepository.saveAll(batch));
+                    batch.clear();
+                }
+            }
+            return referenceIds;
+        }
+
+        private void verifyBalance(Wallet wallet, int settled) {
+            var expected = settings.getAmount().multiply(BigDecimal.valueOf(settled));
+            var balance = getWalletDetailsUseCase.execute(wallet.getId(), wallet.getCustomerId()).totalBalance().value();
+            if (balance.compareTo(expected) != 0) {
+                throw new IllegalStateException(String.format("balance of wallet %d is %s, expected %s", wallet.getId(), balance, expected));
+            }
+        }
+    }
+
+    /**
+     * Settings of a run, bound from the {@code --throughput.*} command line arguments.
+     */
+    @Data
+    public static class Settings {
+
+        /**
+         * Bucket counts to measure, in order. 0 settles on the wallet row alone.
+         */
+        private List<Integer> buckets = List.of(0, 1, 2, 4, 8, 16);
+
+        private int settlements = 5000;
+
+        private int warmupSettlements = 2000;
+
+        private int threads = 32;
+
+        private String currency = "GBP";
+
+        private BigDecimal amount = new BigDecimal("10.00");
+
+        static Settings bind(String[] args) {
+            var binder = new Binder(ConfigurationPropertySources.from(new SimpleCommandLinePropertySource(args)));
+            var settings = binder.bind("throughput", Settings.class).orElseGet(Settings::new);
+
+            if (settings.buckets.isEmpty() || settings.buckets.stream().anyMatch(buckets -> buckets < 0)) {
+                throw new IllegalArgumentException("throughput.buckets must list bucket counts of 0 or more");
+            }
+            if (settings.settlements <= 0 || settings.threads <= 0) {
+                throw new IllegalArgumentException("throughput.settlements and throughput.threads must be positive");
+            }
+            return settings;
+        }
+    }
+}
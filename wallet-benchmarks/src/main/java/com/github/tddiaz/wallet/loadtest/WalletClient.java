@@ -0,0 +1,57 @@
+package com.github.tddiaz.wallet.loadtest;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Non-blocking HTTP client of the wallet service, recording each response in the stats of its endpoint.
+ */
+final class WalletClient {
+
+    private static final Duration REQUEST_TIMEOUT = Duration.ofSeconds(30);
+
+    private final HttpClient httpClient = HttpClient.newBuilder()
+        .version(HttpClient.Version.HTTP_1_1)
+        .connectTimeout(Duration.ofSeconds(5))
+        .build();
+
+    private final String baseUrl;
+
+    WalletClient(String baseUrl) {
+        this.baseUrl = baseUrl;
+    }
+
+    /**
+     * @return the HTTP status of the response, -1 when none was received
+     */
+    CompletableFuture<Integer> post(EndpointStats stats, String path, String json, long scheduledAt) {
+        return send(stats, request(path)
+            .header("Content-Type", "application/json")
+            .POST(HttpRequest.BodyPublishers.ofString(json))
+            .build(), scheduledAt);
+    }
+
+    /**
+     * @return the HTTP status of the response, -1 when none was received
+     */
+    CompletableFuture<Integer> get(EndpointStats stats, String path, long scheduledAt) {
+        return send(stats, request(path).GET().build(), scheduledAt);
+    }
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(REQUEST_TIMEOUT);
+    }
+
+    private CompletableFuture<Integer> send(EndpointStats stats, HttpRequest request, long scheduledAt) {
+        return httpClient.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+            .handle((response, error) -> {
+                var status = error == null ? response.statusCode() : -1;
+                stats.record(scheduledAt, status);
+                return status;
+            });
+    }
+}
@@ -0,0 +1,35 @@
+package com.github.tddiaz.wallet.loadtest;
+
+import java.util.Arrays;
+import java.util.random.RandomGenerator;
+
+/**
+ * Ranks from 0 to size - 1, rank k drawn with a probability proportional to 1 / (k + 1)^exponent.
+ */
+final class ZipfDistribution {
+
+    private final double[] cumulativeProbabilities;
+
+    ZipfDistribution(int size, double exponent) {
+        cumulativeProbabilities = new double[size];
+
+        var total = 0d;
+        for (int rank = 0; rank < size; rank++) {
+            total += 1 / Math.pow(rank + 1, exponent);
+            cumulativeProbabilities[rank] = total;
+        }
+        for (int rank = 0; rank < size; rank++) {
+            cumulativeProbabilities[rank] /= total;
+        }
+    }
+
+    int sample(RandomGenerator random) {
+        var index = Arrays.binarySearch(cumulativeProbabilities, random.nextDouble());
+        var rank = index >= 0 ? index : -index - 1;
+        return Math.min(rank, cumulativeProbabilities.length - 1);
+    }
+
+    double probabilityOf(int rank) {
+        return rank == 0 ? cumulativeProbabilities[0] : cumulativeProbabilities[rank] - cumulativeProbabilities[rank - 1];
+    }
+}
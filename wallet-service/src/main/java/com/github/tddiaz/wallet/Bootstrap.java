@@ -1,6 +1,6 @@
 package com.github.tddiaz.wallet;
 
-import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.tddiaz.wallet.id.IdGenerator;
 import com.github.tddiaz.wallet.model.Wallet;
 import com.github.tddiaz.wallet.repository.WalletRepository;
 import lombok.RequiredArgsConstructor;
@@ -16,11 +16,13 @@ public class Bootstrap {
 
     private final WalletRepository walletRepository;
 
+    private final IdGenerator idGenerator;
+
     @EventListener(ApplicationReadyEvent.class)
     public void initializeData() {
         log.info("saving wallet test data on DB");
 
-        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        var wallet = Wallet.initialize(idGenerator.nextId(), idGenerator.nextId(), "GBP");
         walletRepository.save(wallet);
 
         log.info("TEST DATA: wallet id - {}, customer id - {}", wallet.getId(), wallet.getCustomerId());
@@ -0,0 +1,161 @@
+package com.github.tddiaz.wallet.archive;
+
+import com.github.tddiaz.wallet.config.ArchiveConfiguration.TransactionArchiving;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.model.ArchiveSegment;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.repository.ArchiveSegmentRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Settled transactions moved out of the DB into segment files. Only segments registered in the DB are read, and only
+ * the ones registered for the wallet read. They are opened once and stay mapped.
+ */
+@Component
+@Slf4j
+public class TransactionArchive {
+
+    private final ArchiveSegmentRepository archiveSegmentRepository;
+
+    private final Path directory;
+
+    private final IdGenerator idGenerator;
+
+    private final Map<String, TransactionSegment> openSegments = new ConcurrentHashMap<>();
+
+    public TransactionArchive(TransactionArchiving transactionArchiving, ArchiveSegmentRepository archiveSegmentRepository, IdGenerator idGenerator) {
+        this.archiveSegmentRepository = archiveSegmentRepository;
+        this.directory = Path.of(transactionArchiving.getDirectory());
+        this.idGenerator = idGenerator;
+    }
+
+    /**
+     * Writes the transactions to a new segment file and returns its registration, to be saved with the deletion of the rows.
+     */
+    public ArchiveSegment write(List<Transaction> transactions) {
+        var segment = ArchiveSegment.create(idGenerator.nextId(), transactions.stream()
+            .collect(Collectors.groupingBy(Transaction::getWalletId, Collectors.summingInt(transaction -> 1))));
+        try {
+            Files.createDirectories(directory);
+            TransactionSegment.write(fileOf(segment), transactions);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to write transaction segment " + segment.getFileName(), e);
+        }
+        return segment;
+    }
+
+    /**
+     * Removes the file of a segment whose registration was rolled back.
+     */
+    public void discard(ArchiveSegment segment) {
+        try {
+            Files.deleteIfExists(fileOf(segment));
+        } catch (IOException e) {
+            log.warn("failed to delete unregistered transaction segment {}", segment.getFileName(), e);
+        }
+    }
+
+    /**
+     * Registers the wallets of the segments registered before their wallets were, see {@link ArchiveSegment#getRowCountByWalletId()}.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void indexSegments() {
+        for (var segment : archiveSegmentRepository.findAllNotIndexed()) {
+            try {
+                archiveSegmentRepository.save(segment.setRowCountByWalletId(open(segment.getFileName()).countByWalletId()));
+                log.info("indexed the wallets of transaction segment {}", segment.getFileName());
+            } catch (IOException | RuntimeException e) {
+                // another instance may be indexing it too, the ones left are indexed on the next start
+                log.error("failed to index the wallets of transaction segment {}", segment.getFileName(), e);
+            }
+        }
+    }
+
+    public boolean containsWallet(Long walletId) {
+        return archiveSegmentRepository.existsByWalletId(walletId);
+    }
+
+    /**
+     * Returns the newest {@code limit} archived transactions of the wallet, newest first.
+     */
+    public List<Transaction> findAllByWalletId(Long walletId, int limit) {
+        var transactions = new ArrayList<Transaction>();
+        try {
+            for (var segment : segmentsOf(walletId)) {
+                transactions.addAll(segment.findAllByWalletId(walletId, limit));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archived transactions of wallet " + walletId, e);
+        }
+
+        transactions.sort(TransactionSegment.NEWEST_FIRST);
+        return transactions.subList(0, Math.min(limit, transactions.size()));
+    }
+
+    /**
+     * Returns the {@code limit} archived transactions of the wallet coming after the given one, newest first.
+     */
+    public List<Transaction> findAllByWalletIdAfter(Long walletId, LocalDateTime createdAt, Long id, int limit) {
+        var transactions = new ArrayList<Transaction>();
+        try {
+            for (var segment : segmentsOf(walletId)) {
+                transactions.addAll(segment.findAllByWalletIdAfter(walletId, createdAt, id, limit));
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archived transactions of wallet " + walletId, e);
+        }
+
+        transactions.sort(TransactionSegment.NEWEST_FIRST);
+        return transactions.subList(0, Math.min(limit, transactions.size()));
+    }
+
+    public Optional<Transaction> findByReferenceId(Long walletId, String referenceId) {
+        try {
+            for (var segment : segmentsOf(walletId)) {
+                var transaction = segment.findByReferenceId(walletId, referenceId);
+                if (transaction.isPresent()) {
+                    return transaction;
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read archived transactions of wallet " + walletId, e);
+        }
+        return Optional.empty();
+    }
+
+    private List<TransactionSegment> segmentsOf(Long walletId) throws IOException {
+        var segments = new ArrayList<TransactionSegment>();
+        for (var fileName : archiveSegmentRepository.findAllFileNamesByWalletId(walletId)) {
+            segments.add(open(fileName));
+        }
+        return segments;
+    }
+
+    private TransactionSegment open(String fileName) throws IOException {
+        var segment = openSegments.get(fileName);
+        if (segment == null) {
+            segment = TransactionSegment.open(directory.resolve(fileName));
+            openSegments.put(fileName, segment);
+        }
+        return segment;
+    }
+
+    private Path fileOf(ArchiveSegment segment) {
+        return directory.resolve(segment.getFileName());
+    }
+}
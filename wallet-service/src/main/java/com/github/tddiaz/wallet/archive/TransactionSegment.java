@@ -0,0 +1,350 @@
+package com.github.tddiaz.wallet.archive;
+
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.TransactionEntry;
+import com.github.tddiaz.wallet.model.TransactionStatus;
+import com.github.tddiaz.wallet.model.TransactionType;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Immutable file of archived transactions. Rows are grouped in one block per wallet, newest first, and each block stores
+ * its rows column by column and is deflated on its own. A footer index of (wallet id, block offset, length, row count),
+ * sorted by wallet id, locates the block of a wallet without reading the others. Read through a memory mapping of the file.
+ * <pre>
+ * magic(int) version(short)
+ * block*   : rawLength(int) deflate(rowCount ids createdAt amounts currencyDictionary currencies statuses types entries referenceIds)
+ * index*   : walletId(long) offset(long) length(int) rowCount(int)
+ * footer   : indexOffset(long) walletCount(int) magic(int)
+ * </pre>
+ */
+public class TransactionSegment {
+
+    private static final int MAGIC = 0x57545853;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = Integer.BYTES + Short.BYTES;
+    private static final int INDEX_ENTRY_SIZE = Long.BYTES + Long.BYTES + Integer.BYTES + Integer.BYTES;
+    private static final int FOOTER_SIZE = Long.BYTES + Integer.BYTES + Integer.BYTES;
+
+    public static final Comparator<Transaction> NEWEST_FIRST = Comparator.comparing(Transaction::getCreatedAt)
+        .thenComparing(Transaction::getId)
+        .reversed();
+
+    private final Path file;
+    private final ByteBuffer buffer;
+    private final long indexOffset;
+    private final int walletCount;
+
+    private TransactionSegment(Path file, ByteBuffer buffer) throws IOException {
+        this.file = file;
+        this.buffer = buffer;
+
+        var footerOffset = buffer.capacity() - FOOTER_SIZE;
+        if (buffer.capacity() < HEADER_SIZE + FOOTER_SIZE || buffer.getInt(0) != MAGIC || buffer.getInt(footerOffset + Long.BYTES + Integer.BYTES) != MAGIC) {
+            throw new IOException("Not a transaction segment: " + file);
+        }
+        if (buffer.getShort(Integer.BYTES) != VERSION) {
+            throw new IOException("Unsupported transaction segment version " + buffer.getShort(Integer.BYTES) + ": " + file);
+        }
+
+        this.indexOffset = buffer.getLong(footerOffset);
+        this.walletCount = buffer.getInt(footerOffset + Long.BYTES);
+    }
+
+    public static TransactionSegment open(Path file) throws IOException {
+        try (var channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            // the mapping outlives the channel, pages are read on demand and shared through the page cache
+            return new TransactionSegment(file, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Writes the transactions to a new segment. The file is written under a temporary name and moved in place once synced,
+     * so a segment file is either complete or absent.
+     */
+    public static void write(Path file, List<Transaction> transactions) throws IOException {
+        var transactionsByWallet = transactions.stream()
+            .collect(Collectors.groupingBy(Transaction::getWalletId, TreeMap::new, Collectors.toList()));
+
+        var temporaryFile = file.resolveSibling(file.getFileName() + ".tmp");
+        try (var output = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporaryFile)))) {
+            output.writeInt(MAGIC);
+            output.writeShort(VERSION);
+
+            long offset = HEADER_SIZE;
+            var index = new ByteArrayOutputStream(transactionsByWallet.size() * INDEX_ENTRY_SIZE);
+            var indexOutput = new DataOutputStream(index);
+            for (var walletTransactions : transactionsByWallet.entrySet()) {
+                var rows = walletTransactions.getValue().stream().sorted(NEWEST_FIRST).toList();
+                var block = compress(encode(rows));
+                output.write(block);
+
+                indexOutput.writeLong(walletTransactions.getKey());
+                indexOutput.writeLong(offset);
+                indexOutput.writeInt(block.length);
+                indexOutput.writeInt(rows.size());
+                offset += block.length;
+            }
+
+            index.writeTo(output);
+            output.writeLong(offset);
+            output.writeInt(transactionsByWallet.size());
+            output.writeInt(MAGIC);
+        }
+
+        try (var channel = FileChannel.open(temporaryFile, StandardOpenOption.WRITE)) {
+            channel.force(true);
+        }
+        Files.move(temporaryFile, file, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public Path getFile() {
+        return file;
+    }
+
+    public int countByWalletId(Long walletId) {
+        var entry = indexEntryOf(walletId);
+        return entry < 0 ? 0 : buffer.getInt(entry + Long.BYTES + Long.BYTES + Integer.BYTES);
+    }
+
+    /**
+     * Returns the number of archived transactions of each wallet of the segment, read from the index alone.
+     */
+    public Map<Long, Integer> countByWalletId() {
+        var counts = new TreeMap<Long, Integer>();
+        for (int i = 0; i < walletCount; i++) {
+            var entry = (int) indexOffset + i * INDEX_ENTRY_SIZE;
+            counts.put(buffer.getLong(entry), buffer.getInt(entry + Long.BYTES + Long.BYTES + Integer.BYTES));
+        }
+        return counts;
+    }
+
+    /**
+     * Returns the newest {@code limit} archived transactions of the wallet, newest first.
+     */
+    public List<Transaction> findAllByWalletId(Long walletId, int limit) throws IOException {
+        return findAllByWalletId(walletId, null, limit);
+    }
+
+    /**
+     * Returns the {@code limit} archived transactions of the wallet coming after the given one in the newest first order,
+     * newest first. The given transaction does not have to be in the segment.
+     */
+    public List<Transaction> findAllByWalletIdAfter(Long walletId, LocalDateTime createdAt, Long id, int limit) throws IOException {
+        return findAllByWalletId(walletId, new Position(toEpochMicros(createdAt), id), limit);
+    }
+
+    public Optional<Transaction> findByReferenceId(Long walletId, String referenceId) throws IOException {
+        return findAllByWalletId(walletId, null, Integer.MAX_VALUE).stream()
+            .filter(transaction -> transaction.getReferenceId().equals(referenceId))
+            .findFirst();
+    }
+
+    private List<Transaction> findAllByWalletId(Long walletId, Position after, int limit) throws IOException {
+        var entry = indexEntryOf(walletId);
+        if (entry < 0) {
+            return List.of();
+        }
+
+        var offset = (int) buffer.getLong(entry + Long.BYTES);
+        var length = buffer.getInt(entry + Long.BYTES + Long.BYTES);
+
+        return decode(walletId, decompress(buffer.slice(offset, length)), after, limit);
+    }
+
+    private int indexEntryOf(Long walletId) {
+        int low = 0;
+        int high = walletCount - 1;
+        while (low <= high) {
+            var middle = (low + high) >>> 1;
+            var entry = (int) indexOffset + middle * INDEX_ENTRY_SIZE;
+            var entryWalletId = buffer.getLong(entry);
+            if (entryWalletId < walletId) {
+                low = middle + 1;
+            } else if (entryWalletId > walletId) {
+                high = middle - 1;
+            } else {
+                return entry;
+            }
+        }
+        return -1;
+    }
+
+    private static byte[] encode(List<Transaction> rows) throws IOException {
+        var block = new ByteArrayOutputStream();
+        var output = new DataOutputStream(block);
+
+        output.writeInt(rows.size());
+        for (var row : rows) {
+            output.writeLong(row.getId());
+        }
+        for (var row : rows) {
+            output.writeLong(toEpochMicros(row.getCreatedAt()));
+        }
+        for (var row : rows) {
+            output.writeLong(row.getAmount().getMinorUnits());
+        }
+
+        var currencies = rows.stream().map(row -> row.getAmount().getCurrency()).distinct().toList();
+        output.writeByte(currencies.size());
+        for (var currency : currencies) {
+            output.writeUTF(currency);
+        }
+        for (var row : rows) {
+            output.writeByte(currencies.indexOf(row.getAmount().getCurrency()));
+        }
+
+        for (var row : rows) {
+            output.writeByte(row.getStatus().ordinal());
+        }
+        for (var row : rows) {
+            output.writeByte(row.getType().ordinal());
+        }
+        for (var row : rows) {
+            output.writeByte(row.getEntry().ordinal());
+        }
+        for (var row : rows) {
+            output.writeUTF(row.getReferenceId());
+        }
+
+        return block.toByteArray();
+    }
+
+    private static List<Transaction> decode(Long walletId, byte[] block, Position after, int limit) throws IOException {
+        var input = new DataInputStream(new ByteArrayInputStream(block));
+
+        var rowCount = input.readInt();
+        var ids = readLongs(input, rowCount);
+        var createdAt = readLongs(input, rowCount);
+        var amounts = readLongs(input, rowCount);
+
+        var currencies = new String[input.readUnsignedByte()];
+        for (int i = 0; i < currencies.length; i++) {
+            currencies[i] = input.readUTF();
+        }
+        var currencyIndexes = input.readNBytes(rowCount);
+        var statuses = input.readNBytes(rowCount);
+        var types = input.readNBytes(rowCount);
+        var entries = input.readNBytes(rowCount);
+
+        var from = after == null ? 0 : firstRowAfter(after, createdAt, ids);
+        for (int i = 0; i < from; i++) {
+            // reference ids are the only column of variable length, the ones before the first row are skipped one by one
+            input.skipNBytes(input.readUnsignedShort());
+        }
+
+        var to = (int) Math.min(rowCount, (long) from + limit);
+        var transactions = new ArrayList<Transaction>(to - from);
+        for (int i = from; i < to; i++) {
+            transactions.add(new Transaction()
+                .setId(ids[i])
+                .setReferenceId(input.readUTF())
+                .setWalletId(walletId)
+                .setAmount(Money.ofMinorUnits(currencies[currencyIndexes[i]], amounts[i]))
+                .setStatus(TransactionStatus.values()[statuses[i]])
+                .setType(TransactionType.values()[types[i]])
+                .setEntry(TransactionEntry.values()[entries[i]])
+                .setCreatedAt(fromEpochMicros(createdAt[i])));
+        }
+        return transactions;
+    }
+
+    /**
+     * Binary search of the first row coming after the position, the rows being sorted newest first.
+     */
+    private static int firstRowAfter(Position after, long[] createdAt, long[] ids) {
+        int low = 0;
+        int high = createdAt.length;
+        while (low < high) {
+            var middle = (low + high) >>> 1;
+            if (createdAt[middle] < after.epochMicros() || (createdAt[middle] == after.epochMicros() && ids[middle] < after.id())) {
+                high = middle;
+            } else {
+                low = middle + 1;
+            }
+        }
+        return low;
+    }
+
+    private static long[] readLongs(DataInputStream input, int count) throws IOException {
+        var values = new long[count];
+        for (int i = 0; i < count; i++) {
+            values[i] = input.readLong();
+        }
+        return values;
+    }
+
+    private static byte[] compress(byte[] block) {
+        var deflater = new Deflater();
+        try {
+            deflater.setInput(block);
+            deflater.finish();
+
+            var compressed = new ByteArrayOutputStream(block.length / 2 + Integer.BYTES);
+            compressed.writeBytes(ByteBuffer.allocate(Integer.BYTES).putInt(block.length).array());
+            var chunk = new byte[8192];
+            while (!deflater.finished()) {
+                compressed.write(chunk, 0, deflater.deflate(chunk));
+            }
+            return compressed.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(ByteBuffer compressed) throws IOException {
+        var block = new byte[compressed.getInt(0)];
+        var inflater = new Inflater();
+        try {
+            inflater.setInput(compressed.slice(Integer.BYTES, compressed.capacity() - Integer.BYTES));
+            var length = 0;
+            while (length < block.length) {
+                var inflated = inflater.inflate(block, length, block.length - length);
+                if (inflated == 0 && (inflater.finished() || inflater.needsInput())) {
+                    throw new IOException("Truncated transaction segment block");
+                }
+                length += inflated;
+            }
+            return block;
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted transaction segment block", e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static long toEpochMicros(LocalDateTime dateTime) {
+        return dateTime.toEpochSecond(ZoneOffset.UTC) * 1_000_000 + dateTime.getNano() / 1_000;
+    }
+
+    private static LocalDateTime fromEpochMicros(long epochMicros) {
+        return LocalDateTime.ofEpochSecond(Math.floorDiv(epochMicros, 1_000_000), (int) Math.floorMod(epochMicros, 1_000_000) * 1_000, ZoneOffset.UTC);
+    }
+
+    private record Position(long epochMicros, long id) {
+    }
+}
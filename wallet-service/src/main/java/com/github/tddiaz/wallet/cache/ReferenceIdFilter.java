@@ -0,0 +1,248 @@
+package com.github.tddiaz.wallet.cache;
+
+import com.github.tddiaz.wallet.config.CacheConfiguration.ReferenceIdFiltering;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.hibernate.exception.ConstraintViolationException;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.function.Supplier;
+
+/**
+ * In-memory filter of the reference ids of the transactions, so an order with a new reference id, most of them, skips the
+ * idempotency lookup. Seeded from {@code transaction_reference} when the application is ready, answering "maybe" until then,
+ * and fed with every reference id this instance inserts. The ones inserted by other instances are not, so the unique
+ * constraint on the reference id stays the final check: an order failing on it is run again, and replays the earlier one.
+ */
+@Component
+@Slf4j
+public class ReferenceIdFilter {
+
+    static final String REFERENCE_ID_CONSTRAINT = "uq_transaction_reference_id";
+
+    private final ReferenceIdFiltering referenceIdFiltering;
+
+    private final TransactionRepository transactionRepository;
+
+    private final TransactionTemplate readOnlyTransaction;
+
+    private final ExecutorService rebuilder = Executors.newSingleThreadExecutor(runnable -> {
+        var thread = new Thread(runnable, "reference-id-filter");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final Counter skippedLookups;
+
+    private final Counter foundLookups;
+
+    private final Counter falsePositives;
+
+    private final Counter unfilteredLookups;
+
+    private final Counter duplicateInserts;
+
+    /**
+     * Null until the first build is done, every reference id might exist meanwhile.
+     */
+    private volatile ScalableBloomFilter filter;
+
+    /**
+     * The filter being built, fed with the reference ids inserted during the build as well.
+     */
+    private volatile ScalableBloomFilter building;
+
+    private CompletableFuture<Long> rebuild;
+
+    public ReferenceIdFilter(ReferenceIdFiltering referenceIdFiltering, TransactionRepository transactionRepository,
+                             PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.referenceIdFiltering = referenceIdFiltering;
+        this.transactionRepository = transactionRepository;
+        this.readOnlyTransaction = new TransactionTemplate(transactionManager);
+        this.readOnlyTransaction.setReadOnly(true);
+
+        this.skippedLookups = lookupCounter("skipped", meterRegistry);
+        this.foundLookups = lookupCounter("found", meterRegistry);
+        this.falsePositives = lookupCounter("false.positive", meterRegistry);
+        this.unfilteredLookups = lookupCounter("unfiltered", meterRegistry);
+        this.duplicateInserts = Counter.builder("wallet.reference.filter.duplicates")
+            .description("Orders failing on the unique reference id after the filter missed it, run again as replays")
+            .register(meterRegistry);
+
+        Gauge.builder("wallet.reference.filter.expected.fpp", this, referenceIdFilter -> referenceIdFilter.getExpectedFalsePositiveRate().orElse(1d))
+            .description("False positive rate expected from the reference ids in the filter, 1 until it is built")
+            .register(meterRegistry);
+        Gauge.builder("wallet.reference.filter.insertions", this, ReferenceIdFilter::getInsertions)
+            .description("Reference ids added to the filter")
+            .register(meterRegistry);
+        Gauge.builder("wallet.reference.filter.size", this, ReferenceIdFilter::getSizeInBytes)
+            .description("Memory used by the bits of the filter")
+            .baseUnit("bytes")
+            .register(meterRegistry);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (referenceIdFiltering.isEnabled()) {
+            rebuild();
+        }
+    }
+
+    /**
+     * Looks up the transaction of a reference id, unless the filter knows it does not exist.
+     */
+    public <T> Optional<T> findByReferenceId(String referenceId, Supplier<Optional<T>> lookup) {
+        var filter = referenceIdFiltering.isEnabled() ? this.filter : null;
+        if (filter == null) {
+            // the filter did not answer, so the lookup tells nothing about its false positive rate
+            unfilteredLookups.increment();
+            return lookup.get();
+        }
+
+        if (!filter.mightContain(referenceId)) {
+            skippedLookups.increment();
+            return Optional.empty();
+        }
+
+        var found = lookup.get();
+        (found.isPresent() ? foundLookups : falsePositives).increment();
+        return found;
+    }
+
+    /**
+     * Adds the reference id of a transaction about to be inserted. Added before the insert is committed, so a concurrent
+     * order with the same reference id looks it up; an insert rolled back only leaves a false positive behind.
+     */
+    public void add(String referenceId) {
+        var building = this.building;
+        if (building != null) {
+            building.add(referenceId);
+        }
+
+        var filter = this.filter;
+        if (filter != null) {
+            filter.add(referenceId);
+        }
+    }
+
+    /**
+     * Places an order, and places it again when it fails on the unique reference id. The second run finds the transaction
+     * inserted meanwhile, by another instance or a concurrent duplicate, and replays it. A second run failing on it as well
+     * finds no transaction because it was archived, the reference id stays taken, so the archived order is replayed instead.
+     */
+    public <T> T placeOrder(String referenceId, Supplier<T> order, Supplier<T> archivedOrder) {
+        try {
+            return order.get();
+        } catch (DataIntegrityViolationException e) {
+            if (!isDuplicateReferenceId(e)) {
+                throw e;
+            }
+
+            log.info("order with reference id {} was inserted concurrently, replaying it", referenceId);
+            duplicateInserts.increment();
+            add(referenceId);
+        }
+
+        try {
+            return order.get();
+        } catch (DataIntegrityViolationException e) {
+            if (!isDuplicateReferenceId(e)) {
+                throw e;
+            }
+
+            log.info("transaction with reference id {} is archived, replaying it from the archive", referenceId);
+            return archivedOrder.get();
+        }
+    }
+
+    /**
+     * Builds a new filter from the reference ids in the DB, the current one keeps answering until it is done.
+     *
+     * @return the number of reference ids read, or the running build
+     */
+    public synchronized CompletableFuture<Long> rebuild() {
+        if (rebuild != null && !rebuild.isDone()) {
+            return rebuild;
+        }
+
+        building = new ScalableBloomFilter(referenceIdFiltering.getInitialCapacity(), referenceIdFiltering.getFalsePositiveRate());
+        rebuild = CompletableFuture.supplyAsync(this::build, rebuilder);
+        return rebuild;
+    }
+
+    public boolean isReady() {
+        return filter != null;
+    }
+
+    public Optional<Double> getExpectedFalsePositiveRate() {
+        return Optional.ofNullable(filter).map(ScalableBloomFilter::expectedFalsePositiveRate);
+    }
+
+    public long getInsertions() {
+        return Optional.ofNullable(filter).map(ScalableBloomFilter::insertions).orElse(0L);
+    }
+
+    public long getSizeInBytes() {
+        return Optional.ofNullable(filter).map(ScalableBloomFilter::sizeInBytes).orElse(0L);
+    }
+
+    @PreDestroy
+    public void stop() {
+        rebuilder.shutdownNow();
+    }
+
+    private long build() {
+        var started = System.nanoTime();
+        try {
+            var target = building;
+            var count = readOnlyTransaction.execute(status -> {
+                try (var referenceIds = transactionRepository.streamAllReferenceIds()) {
+                    return referenceIds.mapToLong(referenceId -> {
+                        target.add(referenceId);
+                        return 1;
+                    }).sum();
+                }
+            });
+
+            filter = target;
+            log.info("built reference id filter of {} reference ids in {} ms, {} bytes", count,
+                (System.nanoTime() - started) / 1_000_000, target.sizeInBytes());
+            return count;
+        } catch (RuntimeException e) {
+            log.error("failed to build reference id filter, orders keep looking up their reference id", e);
+            throw e;
+        } finally {
+            building = null;
+        }
+    }
+
+    private static Counter lookupCounter(String result, MeterRegistry meterRegistry) {
+        return Counter.builder("wallet.reference.filter.lookups")
+            .description("Idempotency lookups of the orders by result: skipped on a filter miss, found, a false positive of the filter, "
+                + "or unfiltered while the filter is disabled or not built")
+            .tag("result", result)
+            .register(meterRegistry);
+    }
+
+    static boolean isDuplicateReferenceId(Throwable error) {
+        for (var cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof ConstraintViolationException violation && REFERENCE_ID_CONSTRAINT.equalsIgnoreCase(violation.getConstraintName())) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
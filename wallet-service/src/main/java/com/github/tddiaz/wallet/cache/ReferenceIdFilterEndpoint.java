@@ -0,0 +1,41 @@
+package com.github.tddiaz.wallet.cache;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+import org.springframework.boot.actuate.endpoint.annotation.WriteOperation;
+import org.springframework.stereotype.Component;
+
+/**
+ * {@code /actuator/referenceIdFilter}: state of the {@link ReferenceIdFilter}, and a POST rebuilding it from the DB,
+ * ex: once many orders were rolled back and left false positives behind, or after the limits of the filter were changed.
+ */
+@Component
+@Endpoint(id = "referenceIdFilter")
+@RequiredArgsConstructor
+public class ReferenceIdFilterEndpoint {
+
+    private final ReferenceIdFilter referenceIdFilter;
+
+    @ReadOperation
+    public ReferenceIdFilterState state() {
+        return new ReferenceIdFilterState(
+            referenceIdFilter.isReady(),
+            referenceIdFilter.getInsertions(),
+            referenceIdFilter.getSizeInBytes(),
+            referenceIdFilter.getExpectedFalsePositiveRate().orElse(null)
+        );
+    }
+
+    /**
+     * Starts a rebuild in the background, the current filter keeps answering until it is done.
+     */
+    @WriteOperation
+    public ReferenceIdFilterState rebuild() {
+        referenceIdFilter.rebuild();
+        return state();
+    }
+
+    public record ReferenceIdFilterState(boolean ready, long insertions, long sizeInBytes, Double expectedFalsePositiveRate) {
+    }
+}
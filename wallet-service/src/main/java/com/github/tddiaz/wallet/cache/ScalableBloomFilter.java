@@ -0,0 +1,159 @@
+package com.github.tddiaz.wallet.cache;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Thread-safe scalable Bloom filter of strings: a series of Bloom filters, each twice the capacity of the previous one
+ * with half its false positive rate, so the compound rate stays under the target whatever the number of keys.
+ * A key that was added is always found, a key that was not is found with a probability bounded by the target.
+ */
+final class ScalableBloomFilter {
+
+    private static final int GROWTH_FACTOR = 2;
+
+    private static final double TIGHTENING_RATIO = 0.5;
+
+    private volatile Slice[] slices;
+
+    ScalableBloomFilter(long initialCapacity, double falsePositiveRate) {
+        // the rates of the slices are a geometric series, p0 / (1 - r) is the bound of their sum
+        this.slices = new Slice[]{new Slice(initialCapacity, falsePositiveRate * (1 - TIGHTENING_RATIO))};
+    }
+
+    boolean mightContain(String key) {
+        var h1 = hash(key);
+        var h2 = secondHash(h1);
+
+        for (var slice : slices) {
+            if (slice.mightContain(h1, h2)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    void add(String key) {
+        var h1 = hash(key);
+        var h2 = secondHash(h1);
+
+        var current = slices;
+        var last = current[current.length - 1];
+        if (last.insertions.get() >= last.capacity) {
+            last = grow(last);
+        }
+        last.put(h1, h2);
+    }
+
+    long insertions() {
+        return Arrays.stream(slices).mapToLong(slice -> slice.insertions.get()).sum();
+    }
+
+    long sizeInBytes() {
+        return Arrays.stream(slices).mapToLong(slice -> slice.bits.length() * (long) Long.BYTES).sum();
+    }
+
+    int numberOfSlices() {
+        return slices.length;
+    }
+
+    /**
+     * False positive rate expected from the keys added so far, the chance that any of the slices answers a miss with a hit.
+     */
+    double expectedFalsePositiveRate() {
+        var missedByAll = 1d;
+        for (var slice : slices) {
+            missedByAll *= 1 - slice.expectedFalsePositiveRate();
+        }
+        return 1 - missedByAll;
+    }
+
+    private synchronized Slice grow(Slice full) {
+        var current = slices;
+        var last = current[current.length - 1];
+        if (last != full) {
+            return last;
+        }
+
+        var next = new Slice(full.capacity * GROWTH_FACTOR, full.falsePositiveRate * TIGHTENING_RATIO);
+        var grown = Arrays.copyOf(current, current.length + 1);
+        grown[current.length] = next;
+        slices = grown;
+        return next;
+    }
+
+    private static long hash(String key) {
+        var hash = 0xCBF29CE484222325L;
+        for (int i = 0; i < key.length(); i++) {
+            hash = (hash ^ key.charAt(i)) * 0x100000001B3L;
+        }
+        return mix(hash);
+    }
+
+    private static long secondHash(long hash) {
+        // odd, so the probes of a key never collapse on one bit
+        return mix(hash ^ 0x9E3779B97F4A7C15L) | 1;
+    }
+
+    private static long mix(long hash) {
+        hash ^= hash >>> 33;
+        hash *= 0xFF51AFD7ED558CCDL;
+        hash ^= hash >>> 33;
+        hash *= 0xC4CEB9FE1A85EC53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    private static final class Slice {
+
+        private final long capacity;
+
+        private final double falsePositiveRate;
+
+        private final AtomicLongArray bits;
+
+        private final long numberOfBits;
+
+        private final int numberOfHashes;
+
+        private final AtomicLong insertions = new AtomicLong();
+
+        private Slice(long capacity, double falsePositiveRate) {
+            this.capacity = Math.max(1, capacity);
+            this.falsePositiveRate = falsePositiveRate;
+
+            var optimalBits = (long) Math.ceil(-this.capacity * Math.log(falsePositiveRate) / (Math.log(2) * Math.log(2)));
+            var words = Math.toIntExact(Math.max(1, (optimalBits + Long.SIZE - 1) / Long.SIZE));
+            this.bits = new AtomicLongArray(words);
+            this.numberOfBits = (long) words * Long.SIZE;
+            this.numberOfHashes = Math.max(1, (int) Math.round((double) numberOfBits / this.capacity * Math.log(2)));
+        }
+
+        private boolean mightContain(long h1, long h2) {
+            for (int i = 0; i < numberOfHashes; i++) {
+                var bit = Math.floorMod(h1 + i * h2, numberOfBits);
+                if ((bits.get((int) (bit >>> 6)) & (1L << bit)) == 0) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private void put(long h1, long h2) {
+            for (int i = 0; i < numberOfHashes; i++) {
+                var bit = Math.floorMod(h1 + i * h2, numberOfBits);
+                var word = (int) (bit >>> 6);
+                var mask = 1L << bit;
+                if ((bits.get(word) & mask) == 0) {
+                    bits.accumulateAndGet(word, mask, (value, set) -> value | set);
+                }
+            }
+            insertions.incrementAndGet();
+        }
+
+        private double expectedFalsePositiveRate() {
+            return Math.pow(1 - Math.exp(-numberOfHashes * (double) insertions.get() / numberOfBits), numberOfHashes);
+        }
+    }
+}
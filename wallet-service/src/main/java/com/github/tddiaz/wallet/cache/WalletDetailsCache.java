@@ -0,0 +1,109 @@
+package com.github.tddiaz.wallet.cache;
+
+import com.github.benmanes.caffeine.cache.AsyncCache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.tddiaz.wallet.config.CacheConfiguration.WalletDetailsCaching;
+import com.github.tddiaz.wallet.controller.dto.GetWalletDetailsResponseDto;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.cache.CaffeineCacheMetrics;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Objects;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CompletableFuture;
+import java.util.function.Supplier;
+
+/**
+ * Read-through cache of wallet details. Every balance change evicts the wallet once its DB transaction is committed,
+ * so a read on this instance never returns a balance older than its last commit.
+ */
+@Component
+public class WalletDetailsCache {
+
+    private final WalletDetailsCaching walletDetailsCaching;
+
+    private final AsyncCache<Long, GetWalletDetailsResponseDto> cache;
+
+    public WalletDetailsCache(WalletDetailsCaching walletDetailsCaching, MeterRegistry meterRegistry) {
+        this.walletDetailsCaching = walletDetailsCaching;
+        this.cache = Caffeine.newBuilder()
+            .maximumSize(walletDetailsCaching.getMaxSize())
+            .expireAfterWrite(walletDetailsCaching.getTtl())
+            .recordStats()
+            .buildAsync();
+
+        CaffeineCacheMetrics.monitor(meterRegistry, cache.synchronous(), "walletDetails");
+    }
+
+    public GetWalletDetailsResponseDto get(Long walletId, Long customerId, Supplier<GetWalletDetailsResponseDto> loader) {
+        if (!walletDetailsCaching.isEnabled()) {
+            return loader.get();
+        }
+
+        var walletDetails = getOrLoad(walletId, loader);
+        if (!Objects.equals(walletDetails.customerId(), customerId)) {
+            // the wallet belongs to another customer, let the loader answer as it would without the cache
+            return loader.get();
+        }
+
+        return walletDetails;
+    }
+
+    /**
+     * Evicts the wallet after the current DB transaction is committed, or right away outside of a transaction.
+     */
+    public void evictAfterCommit(Long walletId) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            cache.synchronous().invalidate(walletId);
+            return;
+        }
+
+        TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+            @Override
+            public void afterCommit() {
+                cache.synchronous().invalidate(walletId);
+            }
+        });
+    }
+
+    /**
+     * Loads a missing entry on the calling thread, outside of the lock of its key. The loader borrows a DB connection, and
+     * committing transactions evict keys while still holding theirs, so loading under the lock could exhaust the pool.
+     * Concurrent reads of the key wait for the same load. An eviction racing with it removes the pending entry, so the loaded
+     * value is returned to the waiting reads but not kept.
+     */
+    private GetWalletDetailsResponseDto getOrLoad(Long walletId, Supplier<GetWalletDetailsResponseDto> loader) {
+        var cached = cache.getIfPresent(walletId);
+        if (cached != null) {
+            return join(cached, loader);
+        }
+
+        var load = new CompletableFuture<GetWalletDetailsResponseDto>();
+        var pending = cache.asMap().putIfAbsent(walletId, load);
+        if (pending != null) {
+            return join(pending, loader);
+        }
+
+        try {
+            var walletDetails = loader.get();
+            load.complete(walletDetails);
+            return walletDetails;
+        } catch (RuntimeException e) {
+            // cancelled rather than failed, which the cache would log as an error, ex: for every unknown wallet
+            load.cancel(false);
+            throw e;
+        }
+    }
+
+    private static GetWalletDetailsResponseDto join(CompletableFuture<GetWalletDetailsResponseDto> walletDetails,
+                                                    Supplier<GetWalletDetailsResponseDto> loader) {
+        try {
+            return walletDetails.join();
+        } catch (CancellationException e) {
+            // the load of another read failed, load again to fail the way the loader does
+            return loader.get();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.DepositCoalescing;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Groups the successful deposit settlements of a wallet arriving close together, so they are applied in one DB transaction.
+ * The first settlement of a group leads it: it waits for the others up to the max delay, or until the group is full,
+ * then applies the whole group on its own thread, and the callers of the group are released once it is committed.
+ * When a group fails, its settlements are applied again one by one, so a bad settlement only fails itself.
+ */
+@Component
+@Slf4j
+public class DepositSettlementCoalescer {
+
+    private final DepositCoalescing depositCoalescing;
+
+    private final DistributionSummary batchSize;
+
+    private final ConcurrentHashMap<Long, Group> groups = new ConcurrentHashMap<>();
+
+    public DepositSettlementCoalescer(DepositCoalescing depositCoalescing, MeterRegistry meterRegistry) {
+        this.depositCoalescing = depositCoalescing;
+        this.batchSize = DistributionSummary.builder("wallet.deposit.coalescing.batch.size")
+            .description("Number of deposit settlements of a wallet applied in one DB transaction")
+            .register(meterRegistry);
+    }
+
+    public boolean isEnabled() {
+        return depositCoalescing.isEnabled();
+    }
+
+    /**
+     * Adds the settlement to the group of the wallet and waits until the group has been applied. The group is applied
+     * by the function of the settlement leading it, given the reference ids of the group in the order they joined.
+     */
+    public void settle(Long walletId, String referenceId, Consumer<List<String>> settleGroup) {
+        var settlement = new PendingSettlement(referenceId);
+
+        while (true) {
+            var group = groups.computeIfAbsent(walletId, Group::new);
+            var position = group.add(settlement);
+            if (position < 0) {
+                // the group was closed meanwhile, the next one is started or joined
+                continue;
+            }
+
+            if (position == 0) {
+                lead(group, settleGroup);
+            }
+            join(settlement.future);
+            return;
+        }
+    }
+
+    int pendingGroups() {
+        return groups.size();
+    }
+
+    private void lead(Group group, Consumer<List<String>> settleGroup) {
+        var interrupted = group.awaitFull(depositCoalescing.getMaxDelay().toNanos());
+
+        var settlements = group.close();
+        try {
+            batchSize.record(settlements.size());
+            apply(settlements, settleGroup);
+        } finally {
+            // no caller of the group is left waiting, whatever was thrown
+            settlements.forEach(settlement -> settlement.future.completeExceptionally(
+                new IllegalStateException("Deposit settlement group was not applied")));
+
+            if (interrupted) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    private void apply(List<PendingSettlement> settlements, Consumer<List<String>> settleGroup) {
+        try {
+            settleGroup.accept(settlements.stream().map(PendingSettlement::referenceId).toList());
+        } catch (RuntimeException e) {
+            if (settlements.size() == 1) {
+                settlements.get(0).future.completeExceptionally(e);
+                return;
+            }
+
+            log.warn("group of {} deposit settlements failed to commit, replaying them one by one", settlements.size(), e);
+            settlements.forEach(settlement -> apply(List.of(settlement), settleGroup));
+            return;
+        }
+
+        settlements.forEach(settlement -> settlement.future.complete(null));
+    }
+
+    private void join(CompletableFuture<Void> future) {
+        try {
+            future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private final class Group {
+
+        private final Long walletId;
+
+        private final List<PendingSettlement> settlements = new ArrayList<>();
+
+        private final CountDownLatch full = new CountDownLatch(1);
+
+        private boolean closed;
+
+        Group(Long walletId) {
+            this.walletId = walletId;
+        }
+
+        /**
+         * Returns the position of the settlement in the group, or -1 when the group no longer takes settlements.
+         */
+        synchronized int add(PendingSettlement settlement) {
+            if (closed) {
+                return -1;
+            }
+
+            settlements.add(settlement);
+            if (settlements.size() >= depositCoalescing.getMaxBatchSize()) {
+                // the next settlements of the wallet start a new group instead of waiting for this one to be applied
+                close();
+                full.countDown();
+            }
+            return settlements.size() - 1;
+        }
+
+        synchronized List<PendingSettlement> close() {
+            closed = true;
+            groups.remove(walletId, this);
+            return List.copyOf(settlements);
+        }
+
+        /**
+         * Returns whether the wait was interrupted.
+         */
+        boolean awaitFull(long timeoutNanos) {
+            try {
+                full.await(timeoutNanos, TimeUnit.NANOSECONDS);
+                return false;
+            } catch (InterruptedException e) {
+                return true;
+            }
+        }
+    }
+
+    private record PendingSettlement(String referenceId, CompletableFuture<Void> future) {
+
+        PendingSettlement(String referenceId) {
+            this(referenceId, new CompletableFuture<>());
+        }
+    }
+}
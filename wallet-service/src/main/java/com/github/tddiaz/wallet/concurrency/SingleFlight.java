@@ -0,0 +1,57 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+
+/**
+ * Runs one call per key at a time. A call made with the key of a running one waits for it and gets its result, or its error,
+ * instead of doing the same work again. A call made once it is done runs again.
+ */
+public class SingleFlight<T> {
+
+    private final ConcurrentHashMap<String, CompletableFuture<T>> inFlight = new ConcurrentHashMap<>();
+
+    /**
+     * @param onJoined run when the call joins a running one and gets its result, not when it gets its error
+     */
+    public T execute(String key, Supplier<T> call, Runnable onJoined) {
+        var flight = new CompletableFuture<T>();
+        var running = inFlight.putIfAbsent(key, flight);
+        if (running != null) {
+            var result = join(running);
+            onJoined.run();
+            return result;
+        }
+
+        try {
+            var result = call.get();
+            flight.complete(result);
+            return result;
+        } catch (Throwable e) {
+            flight.completeExceptionally(e);
+            throw e;
+        } finally {
+            inFlight.remove(key, flight);
+        }
+    }
+
+    int inFlight() {
+        return inFlight.size();
+    }
+
+    private T join(CompletableFuture<T> running) {
+        try {
+            return running.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+}
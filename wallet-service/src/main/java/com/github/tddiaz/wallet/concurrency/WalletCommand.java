@@ -0,0 +1,14 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import com.github.tddiaz.wallet.model.Wallet;
+
+/**
+ * A wallet mutation run by {@link WalletCommandEngine} on the partition thread owning the wallet.
+ * Business rejections must be raised as {@link com.github.tddiaz.wallet.exception.AppException} before anything is mutated,
+ * so the other commands committed in the same group are not affected.
+ */
+@FunctionalInterface
+public interface WalletCommand<T> {
+
+    T apply(Wallet wallet);
+}
@@ -0,0 +1,311 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.CommandEngine;
+import com.github.tddiaz.wallet.exception.AppException;
+import com.github.tddiaz.wallet.exception.ConcurrentUpdateException;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.exception.WalletBusyException;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Single writer per wallet. Wallets are routed by id to a fixed number of partitions, each drained by one thread,
+ * so commands on the same wallet never contend for its row lock. The commands queued on a partition are applied
+ * together and committed in one DB transaction (group commit), and their callers are released once it is committed.
+ * When a group fails to commit, its commands are replayed one transaction each, so a bad command only fails itself.
+ * An unexpected failure of a partition fails its group without stopping the partition, and a partition thread that died
+ * anyway is replaced on the next submit.
+ */
+@Component
+@Slf4j
+public class WalletCommandEngine {
+
+    private final CommandEngine commandEngine;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final WalletRepository walletRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private volatile Partition[] partitions;
+
+    private volatile boolean stopped;
+
+    public WalletCommandEngine(CommandEngine commandEngine, PlatformTransactionManager transactionManager,
+                               WalletRepository walletRepository, MeterRegistry meterRegistry) {
+        this.commandEngine = commandEngine;
+        this.transactionManager = transactionManager;
+        this.walletRepository = walletRepository;
+        this.meterRegistry = meterRegistry;
+    }
+
+    public boolean isEnabled() {
+        return commandEngine.isEnabled();
+    }
+
+    /**
+     * Runs the command on the partition owning the wallet and waits until its group has been committed, up to the command timeout.
+     * A command still queued when the timeout expires is dropped. One already being committed may still be committed after it.
+     */
+    public <T> T execute(Long walletId, WalletCommand<T> command) {
+        var partition = partitionOf(walletId);
+        var pendingCommand = partition.enqueue(new PendingCommand<>(walletId, command));
+
+        try {
+            return pendingCommand.future.get(commandEngine.getCommandTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            partition.queue.remove(pendingCommand);
+            throw new WalletBusyException("Wallet is busy processing other requests, please try again");
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            partition.queue.remove(pendingCommand);
+            throw new WalletBusyException("Wallet is busy processing other requests, please try again");
+        }
+    }
+
+    public <T> CompletableFuture<T> submit(Long walletId, WalletCommand<T> command) {
+        return partitionOf(walletId).enqueue(new PendingCommand<>(walletId, command)).future;
+    }
+
+    @PreDestroy
+    public void stop() {
+        stopped = true;
+        var partitions = this.partitions;
+        if (partitions == null) {
+            return;
+        }
+
+        for (var partition : partitions) {
+            partition.thread.interrupt();
+        }
+    }
+
+    static int partitionOf(Long walletId, int numberOfPartitions) {
+        // spread the bits since ids are time ordered and consecutive ids share their upper bits
+        var hash = walletId * 0x9E3779B97F4A7C15L;
+        return (int) ((hash >>> 32) % numberOfPartitions);
+    }
+
+    private Partition partitionOf(Long walletId) {
+        var partitions = partitions();
+        return partitions[partitionOf(walletId, partitions.length)];
+    }
+
+    private Partition[] partitions() {
+        var partitions = this.partitions;
+        if (partitions != null) {
+            return partitions;
+        }
+
+        synchronized (this) {
+            if (this.partitions == null) {
+                this.partitions = startPartitions();
+            }
+            return this.partitions;
+        }
+    }
+
+    private Partition[] startPartitions() {
+        var partitions = new Partition[Math.max(1, commandEngine.getPartitions())];
+        var batchSize = DistributionSummary.builder("wallet.engine.batch.size")
+            .description("Number of wallet commands committed in one DB transaction")
+            .register(meterRegistry);
+
+        for (int index = 0; index < partitions.length; index++) {
+            var partition = new Partition(index, batchSize);
+            Gauge.builder("wallet.engine.queue.depth", partition.queue, BlockingQueue::size)
+                .description("Number of wallet commands waiting on a partition")
+                .tag("partition", String.valueOf(index))
+                .register(meterRegistry);
+
+            partitions[index] = partition;
+            partition.start();
+        }
+
+        log.info("started wallet command engine with {} partitions", partitions.length);
+        return partitions;
+    }
+
+    private class Partition implements Runnable {
+
+        private final BlockingQueue<PendingCommand<?>> queue = new ArrayBlockingQueue<>(commandEngine.getQueueCapacity());
+
+        private final int index;
+
+        private final DistributionSummary batchSize;
+
+        private volatile Thread thread;
+
+        Partition(int index, DistributionSummary batchSize) {
+            this.index = index;
+            this.batchSize = batchSize;
+        }
+
+        synchronized void start() {
+            thread = new Thread(this, "wallet-engine-" + index);
+            thread.setDaemon(true);
+            thread.start();
+        }
+
+        <T> PendingCommand<T> enqueue(PendingCommand<T> pendingCommand) {
+            if (!thread.isAlive()) {
+                restart();
+            }
+            if (!queue.offer(pendingCommand)) {
+                throw new WalletBusyException("Wallet is busy processing other requests, please try again");
+            }
+            return pendingCommand;
+        }
+
+        private synchronized void restart() {
+            if (stopped || thread.isAlive()) {
+                return;
+            }
+
+            log.error("wallet command engine partition {} thread died, starting a new one", index);
+            start();
+        }
+
+        @Override
+        public void run() {
+            var batch = new ArrayList<PendingCommand<?>>();
+
+            while (!Thread.currentThread().isInterrupted()) {
+                try {
+                    batch.add(queue.take());
+                } catch (InterruptedException e) {
+                    break;
+                }
+
+                try {
+                    queue.drainTo(batch, Math.max(0, commandEngine.getMaxBatchSize() - 1));
+
+                    batchSize.record(batch.size());
+                    commitGroup(batch);
+                } catch (Throwable e) {
+                    // e.g. an Error thrown by a command, its callers must not wait for a group that will never commit
+                    log.error("group of {} wallet commands failed on partition {}", batch.size(), index, e);
+                    batch.forEach(pendingCommand -> pendingCommand.future.completeExceptionally(e));
+                }
+                batch.clear();
+            }
+
+            queue.drainTo(batch);
+            batch.forEach(pendingCommand -> pendingCommand.future.completeExceptionally(
+                new WalletBusyException("Wallet command engine is shutting down, please try again")));
+        }
+
+        private void commitGroup(List<PendingCommand<?>> batch) {
+            try {
+                applyInTransaction(batch);
+            } catch (RuntimeException e) {
+                if (batch.size() == 1) {
+                    batch.get(0).future.completeExceptionally(translate(e));
+                    return;
+                }
+
+                log.warn("group of {} wallet commands failed to commit, replaying them one by one", batch.size(), e);
+                batch.forEach(pendingCommand -> commitGroup(List.of(pendingCommand)));
+                return;
+            }
+
+            batch.forEach(PendingCommand::complete);
+        }
+
+        private void applyInTransaction(List<PendingCommand<?>> batch) {
+            new TransactionTemplate(transactionManager).executeWithoutResult(status -> {
+                var walletIds = batch.stream().map(PendingCommand::walletId).collect(Collectors.toSet());
+                var wallets = walletRepository.findAllById(walletIds).stream()
+                    .collect(Collectors.toMap(Wallet::getId, Function.identity()));
+
+                // commands on the same wallet see each other's changes, in the order they were queued
+                batch.forEach(pendingCommand -> pendingCommand.apply(wallets.get(pendingCommand.walletId)));
+            });
+        }
+
+        private RuntimeException translate(RuntimeException e) {
+            if (e instanceof OptimisticLockingFailureException) {
+                // the wallet was updated outside of the engine, e.g. by another instance
+                return new ConcurrentUpdateException("Wallet was concurrently updated, please try again", e);
+            }
+            return e;
+        }
+    }
+
+    private static final class PendingCommand<T> {
+
+        private final Long walletId;
+
+        private final WalletCommand<T> command;
+
+        private final CompletableFuture<T> future = new CompletableFuture<>();
+
+        private T result;
+
+        private AppException rejection;
+
+        private PendingCommand(Long walletId, WalletCommand<T> command) {
+            this.walletId = walletId;
+            this.command = command;
+        }
+
+        private Long walletId() {
+            return walletId;
+        }
+
+        private void apply(Wallet wallet) {
+            result = null;
+            rejection = null;
+
+            if (wallet == null) {
+                rejection = new NotFoundException("Wallet not found");
+                return;
+            }
+
+            try {
+                result = command.apply(wallet);
+            } catch (AppException e) {
+                // a business rejection leaves the wallet untouched, the rest of the group goes on
+                rejection = e;
+            }
+        }
+
+        private void complete() {
+            if (rejection != null) {
+                future.completeExceptionally(rejection);
+            } else {
+                future.complete(result);
+            }
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.StripedLock;
+import com.github.tddiaz.wallet.exception.WalletBusyException;
+import com.github.tddiaz.wallet.metrics.WalletLockAcquiredEvent;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Supplier;
+
+/**
+ * Striped in-JVM lock keyed by wallet id. Taken before a DB transaction is opened, so requests queued
+ * on a hot wallet wait here instead of holding a pooled connection while parked on the wallet row lock.
+ * The DB row lock stays in place, this only serializes the requests of this instance.
+ */
+@Component
+public class WalletLockManager {
+
+    private final StripedLock stripedLock;
+
+    private final ReentrantLock[] locks;
+
+    private final Timer[] waitTimers;
+
+    public WalletLockManager(StripedLock stripedLock, MeterRegistry meterRegistry) {
+        this.stripedLock = stripedLock;
+
+        var stripes = stripedLock.getStripes() <= 1 ? 1 : Integer.highestOneBit(stripedLock.getStripes() - 1) << 1;
+        this.locks = new ReentrantLock[stripes];
+        this.waitTimers = new Timer[stripes];
+
+        for (int stripe = 0; stripe < stripes; stripe++) {
+            var lock = new ReentrantLock(true);
+            var stripeTag = String.valueOf(stripe);
+
+            locks[stripe] = lock;
+            waitTimers[stripe] = Timer.builder("wallet.lock.wait")
+                .description("Time spent waiting for the in-JVM wallet lock")
+                .tag("stripe", stripeTag)
+                .register(meterRegistry);
+            Gauge.builder("wallet.lock.queue.depth", lock, ReentrantLock::getQueueLength)
+                .description("Number of threads waiting for the in-JVM wallet lock")
+                .tag("stripe", stripeTag)
+                .register(meterRegistry);
+        }
+    }
+
+    public boolean isEnabled() {
+        return stripedLock.isEnabled();
+    }
+
+    public <T> T executeWithLock(Long walletId, Supplier<T> action) {
+        if (!isEnabled()) {
+            return action.get();
+        }
+
+        var stripe = stripeOf(walletId);
+        var lock = locks[stripe];
+
+        var event = WalletLockAcquiredEvent.begin(walletId, WalletLockAcquiredEvent.JVM_LOCK);
+        var start = System.nanoTime();
+        var acquired = tryLock(lock);
+        waitTimers[stripe].record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+        event.acquired(acquired);
+
+        if (!acquired) {
+            throw new WalletBusyException("Wallet is busy processing other requests, please try again");
+        }
+
+        try {
+            return action.get();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public void runWithLock(Long walletId, Runnable action) {
+        executeWithLock(walletId, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    int stripeOf(Long walletId) {
+        // spread the bits since ids are time ordered and consecutive ids share their upper bits
+        var hash = walletId * 0x9E3779B97F4A7C15L;
+        return (int) (hash >>> 32) & (locks.length - 1);
+    }
+
+    private boolean tryLock(ReentrantLock lock) {
+        try {
+            return lock.tryLock(stripedLock.getAcquireTimeout().toNanos(), TimeUnit.NANOSECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,74 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLockMode;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
+import com.github.tddiaz.wallet.exception.ConcurrentUpdateException;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Supplier;
+
+/**
+ * Runs a wallet mutation in a DB transaction. In {@link WalletLockMode#OPTIMISTIC} mode the whole transaction
+ * is retried with a jittered exponential backoff when the wallet version check fails.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class WalletTransactionExecutor {
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final WalletLocking walletLocking;
+
+    public <T> T execute(Supplier<T> action) {
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+
+        if (walletLocking.getMode() == WalletLockMode.PESSIMISTIC) {
+            return transactionTemplate.execute(status -> action.get());
+        }
+
+        // a retry can only help when the conflicting unit of work is ours to roll back and start over
+        var retryable = !TransactionSynchronizationManager.isActualTransactionActive();
+        var maxAttempts = retryable ? walletLocking.getRetry().getMaxAttempts() : 1;
+
+        for (int attempt = 1; ; attempt++) {
+            try {
+                return transactionTemplate.execute(status -> action.get());
+            } catch (OptimisticLockingFailureException e) {
+                if (attempt >= maxAttempts) {
+                    throw new ConcurrentUpdateException("Wallet was concurrently updated, please try again", e);
+                }
+
+                log.debug("wallet version conflict on attempt {} of {}, retrying", attempt, maxAttempts);
+                backoff(attempt, e);
+            }
+        }
+    }
+
+    public void executeWithoutResult(Runnable action) {
+        execute(() -> {
+            action.run();
+            return null;
+        });
+    }
+
+    private void backoff(int attempt, OptimisticLockingFailureException cause) {
+        var retry = walletLocking.getRetry();
+        var ceiling = Math.min(retry.getMaxBackoff().toMillis(), retry.getInitialBackoff().toMillis() << Math.min(attempt - 1, 20));
+
+        try {
+            // full jitter, so retries of the conflicting requests spread out instead of colliding again
+            Thread.sleep(ThreadLocalRandom.current().nextLong(ceiling + 1));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new ConcurrentUpdateException("Interrupted while waiting to retry wallet update", cause);
+        }
+    }
+}
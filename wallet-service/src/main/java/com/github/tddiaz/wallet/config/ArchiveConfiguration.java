@@ -0,0 +1,47 @@
+package com.github.tddiaz.wallet.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class ArchiveConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "archive.transactions")
+    public TransactionArchiving transactionArchiving() {
+        return new TransactionArchiving();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class TransactionArchiving {
+        /**
+         * Turns the archival job on. Archived transactions are read whatever the value, so it can be turned off again safely.
+         */
+        private boolean enabled = false;
+
+        /**
+         * Directory of the segment files, must be shared by every instance reading the history.
+         */
+        private String directory = "archive";
+
+        private Duration settledOlderThan = Duration.ofDays(90);
+
+        private int batchSize = 10_000;
+
+        private String cron = "0 30 3 * * *";
+
+        /**
+         * Rows read at a time from the DB and from the archive when merging them into an offset page of a wallet with
+         * archived transactions. Deeper pages read more chunks, never bigger ones.
+         */
+        private int pageReadSize = 1_000;
+    }
+}
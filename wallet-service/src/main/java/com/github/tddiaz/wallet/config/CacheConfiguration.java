@@ -0,0 +1,57 @@
+package com.github.tddiaz.wallet.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class CacheConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "cache.wallet-details")
+    public WalletDetailsCaching walletDetailsCaching() {
+        return new WalletDetailsCaching();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "cache.reference-ids")
+    public ReferenceIdFiltering referenceIdFiltering() {
+        return new ReferenceIdFiltering();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class WalletDetailsCaching {
+        private boolean enabled = true;
+
+        private long maxSize = 10_000;
+
+        /**
+         * Bounds how long a change committed by another instance can go unseen, local changes evict the entry right away.
+         */
+        private Duration ttl = Duration.ofSeconds(30);
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class ReferenceIdFiltering {
+        private boolean enabled = true;
+
+        /**
+         * Reference ids held by the first Bloom filter, each one added when full holds twice as many as the previous one.
+         */
+        private long initialCapacity = 1_000_000;
+
+        /**
+         * Bound of the share of new reference ids still looked up, whatever the number of reference ids.
+         */
+        private double falsePositiveRate = 0.01;
+    }
+}
@@ -0,0 +1,188 @@
+package com.github.tddiaz.wallet.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ThreadLocalRandom;
+
+@Configuration
+public class ConcurrencyConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "concurrency.withdraw")
+    public WithdrawExecution withdrawExecution() {
+        return new WithdrawExecution();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "concurrency.wallet-lock")
+    public WalletLocking walletLocking() {
+        return new WalletLocking();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "concurrency.striped-lock")
+    public StripedLock stripedLock() {
+        return new StripedLock();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "concurrency.command-engine")
+    public CommandEngine commandEngine() {
+        return new CommandEngine();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "concurrency.deposit-coalescing")
+    public DepositCoalescing depositCoalescing() {
+        return new DepositCoalescing();
+    }
+
+    @Bean
+    @ConfigurationProperties(prefix = "concurrency.balance-buckets")
+    public BalanceBuckets balanceBuckets() {
+        return new BalanceBuckets();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class WithdrawExecution {
+        private WithdrawExecutionMode mode = WithdrawExecutionMode.LOCKING;
+    }
+
+    public enum WithdrawExecutionMode {
+        /**
+         * Loads the wallet with a row lock, debits it through the domain model then inserts the transaction.
+         */
+        LOCKING,
+
+        /**
+         * Debits the wallet and inserts the transaction in a single statement guarded by the balance check,
+         * so the wallet row lock is only held for the duration of that statement.
+         */
+        CONDITIONAL_UPDATE
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class WalletLocking {
+        private WalletLockMode mode = WalletLockMode.PESSIMISTIC;
+
+        private OptimisticRetry retry = new OptimisticRetry();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class OptimisticRetry {
+        private int maxAttempts = 5;
+
+        private Duration initialBackoff = Duration.ofMillis(10);
+
+        private Duration maxBackoff = Duration.ofMillis(200);
+    }
+
+    public enum WalletLockMode {
+        /**
+         * Wallets are read with a row lock (SELECT ... FOR UPDATE) before being updated.
+         */
+        PESSIMISTIC,
+
+        /**
+         * Wallets are read without a lock and updated with a version check, the whole unit of work is retried on conflict.
+         */
+        OPTIMISTIC
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class StripedLock {
+        private boolean enabled = false;
+
+        /**
+         * Number of locks the wallet ids are spread over, rounded up to a power of two.
+         */
+        private int stripes = 64;
+
+        private Duration acquireTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class CommandEngine {
+        private boolean enabled = false;
+
+        /**
+         * Number of single-threaded partitions, each one owning the wallets routed to it.
+         */
+        private int partitions = 8;
+
+        /**
+         * Maximum number of commands committed together in one DB transaction.
+         */
+        private int maxBatchSize = 64;
+
+        private int queueCapacity = 10_000;
+
+        /**
+         * How long a caller waits for its command to be committed before giving up with a busy error.
+         */
+        private Duration commandTimeout = Duration.ofSeconds(5);
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class DepositCoalescing {
+        private boolean enabled = false;
+
+        /**
+         * How long the first successful deposit settlement of a wallet waits for others to join its group.
+         */
+        private Duration maxDelay = Duration.ofMillis(5);
+
+        /**
+         * Maximum number of deposit settlements applied together, a full group is applied without waiting further.
+         */
+        private int maxBatchSize = 64;
+    }
+
+    /**
+     * Wallets with part of their balance spread over bucket rows, so the settlements crediting them do not all wait on the wallet row.
+     * Their balance is the one of the wallet row plus the ones of its buckets.
+     */
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class BalanceBuckets {
+        /**
+         * Number of buckets the credits of a listed wallet are spread over.
+         */
+        private int buckets = 8;
+
+        /**
+         * Wallets whose credits go to buckets. The funds in the buckets of a wallet count in its balance whether or not it is listed,
+         * so instances listing different wallets, or a wallet unlisted with funds left in its buckets, lose nothing.
+         */
+        private Set<Long> walletIds = new HashSet<>();
+
+        public boolean isSharded(Long walletId) {
+            return walletIds.contains(walletId);
+        }
+
+        public int randomBucket() {
+            return ThreadLocalRandom.current().nextInt(Math.max(1, buckets));
+        }
+    }
+}
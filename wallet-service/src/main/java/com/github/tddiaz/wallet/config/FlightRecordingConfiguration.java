@@ -0,0 +1,47 @@
+package com.github.tddiaz.wallet.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+@Configuration
+public class FlightRecordingConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "jfr.recording")
+    public FlightRecording flightRecording() {
+        return new FlightRecording();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class FlightRecording {
+        /**
+         * Starts a continuous recording with the service, dumped by the jfr actuator endpoint.
+         */
+        private boolean enabled = true;
+
+        /**
+         * JFR settings of the JDK events, default or profile.
+         */
+        private String settings = "default";
+
+        private Duration maxAge = Duration.ofMinutes(15);
+
+        private DataSize maxSize = DataSize.ofMegabytes(100);
+
+        /**
+         * Shortest wallet lock wait recorded, the uncontended acquisitions are skipped.
+         */
+        private Duration lockWaitThreshold = Duration.ofMillis(1);
+
+        private Duration settlementThreshold = Duration.ZERO;
+    }
+}
@@ -0,0 +1,20 @@
+package com.github.tddiaz.wallet.config;
+
+import org.springframework.boot.autoconfigure.flyway.FlywayConfigurationCustomizer;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.util.Map;
+
+@Configuration
+public class FlywayConfiguration {
+
+    /**
+     * Flyway takes its migration lock inside an open transaction by default. CREATE INDEX CONCURRENTLY waits for every open
+     * transaction to end, so it would wait for that one forever. A session level lock does not hold a transaction open.
+     */
+    @Bean
+    public FlywayConfigurationCustomizer sessionLevelMigrationLock() {
+        return configuration -> configuration.configuration(Map.of("flyway.postgresql.transactional.lock", "false"));
+    }
+}
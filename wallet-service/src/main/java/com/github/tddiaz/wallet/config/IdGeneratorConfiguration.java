@@ -0,0 +1,45 @@
+package com.github.tddiaz.wallet.config;
+
+import com.github.tddiaz.wallet.id.IdGenerator;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@Slf4j
+public class IdGeneratorConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "id-generator")
+    public IdGeneration idGeneration() {
+        return new IdGeneration();
+    }
+
+    @Bean
+    public IdGenerator idGenerator(IdGeneration idGeneration) {
+        if (idGeneration.getNodeId() == null) {
+            var idGenerator = IdGenerator.withRandomNode(idGeneration.getNodeBits());
+            log.warn("id-generator.node-id is not set, using random node id {}. Instances may generate the same ids", idGenerator.getNodeId());
+            return idGenerator;
+        }
+
+        log.info("generating ids as node {}", idGeneration.getNodeId());
+        return new IdGenerator(idGeneration.getNodeId(), idGeneration.getNodeBits());
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class IdGeneration {
+        /**
+         * Unique per running instance, from 0 to 2^nodeBits - 1. Random when not set.
+         */
+        private Integer nodeId;
+
+        private int nodeBits = IdGenerator.DEFAULT_NODE_BITS;
+    }
+}
@@ -0,0 +1,33 @@
+package com.github.tddiaz.wallet.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.scheduling.annotation.EnableScheduling;
+
+@Configuration
+@EnableScheduling
+public class PartitioningConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "partitioning.transaction")
+    public TransactionPartitioning transactionPartitioning() {
+        return new TransactionPartitioning();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class TransactionPartitioning {
+        /**
+         * Number of months after the current one that must already have a partition. Inserts fail for a month without one,
+         * so this leaves room for the job to fail a few times before it matters.
+         */
+        private int monthsAhead = 2;
+
+        private String cron = "0 0 3 * * *";
+    }
+}
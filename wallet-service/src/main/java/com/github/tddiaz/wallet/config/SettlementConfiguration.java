@@ -0,0 +1,65 @@
+package com.github.tddiaz.wallet.config;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+import java.time.Duration;
+
+@Configuration
+public class SettlementConfiguration {
+
+    @Bean
+    @ConfigurationProperties(prefix = "settlement.inbox")
+    public SettlementInbox settlementInbox() {
+        return new SettlementInbox();
+    }
+
+    @Data
+    @AllArgsConstructor
+    @NoArgsConstructor
+    public static class SettlementInbox {
+        private SettlementMode mode = SettlementMode.SYNC;
+
+        /**
+         * Number of workers draining the inbox, each one owning the wallets whose id modulo this number matches its partition.
+         */
+        private int workers = 4;
+
+        private int batchSize = 500;
+
+        private Duration pollInterval = Duration.ofMillis(200);
+
+        /**
+         * Number of times an entry may fail to settle before it is set aside as FAILED, so it stops failing the batches of its partition.
+         */
+        private int maxAttempts = 5;
+
+        /**
+         * How long processed entries are kept for the status endpoint before they are deleted.
+         */
+        private Duration retention = Duration.ofDays(7);
+
+        private String pruneCron = "0 45 3 * * *";
+
+        /**
+         * How often the number and age of the waiting entries are read for their gauges, in ASYNC mode only.
+         */
+        private Duration gaugeInterval = Duration.ofSeconds(10);
+    }
+
+    public enum SettlementMode {
+        /**
+         * The bank callback is settled before it is answered.
+         */
+        SYNC,
+
+        /**
+         * The bank callback is written to the settlement inbox and answered with 202, workers settle it in the background.
+         */
+        ASYNC
+    }
+}
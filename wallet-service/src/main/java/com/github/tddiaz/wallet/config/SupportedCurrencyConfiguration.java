@@ -1,8 +1,13 @@
 package com.github.tddiaz.wallet.config;
 
-import lombok.AllArgsConstructor;
+import com.github.tddiaz.wallet.model.CurrencyRegistry;
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
 import lombok.NoArgsConstructor;
+import lombok.Setter;
+import lombok.ToString;
 import org.springframework.boot.context.properties.ConfigurationProperties;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
@@ -18,14 +23,46 @@ public class SupportedCurrencyConfiguration {
         return new SupportedCurrencies();
     }
 
+    /**
+     * Keeps the configured currencies as a flag per {@link CurrencyRegistry} id, so a check is an array read.
+     * Rebinding the properties, or calling {@link #reload(Set)}, swaps the flags in one write.
+     */
     @Data
-    @AllArgsConstructor
     @NoArgsConstructor
     public static class SupportedCurrencies {
-        private Set<String> values;
+        private Set<String> values = Set.of();
 
-        public Boolean isSupported(String currency) {
-            return values.contains(currency);
+        @Getter(AccessLevel.NONE)
+        @Setter(AccessLevel.NONE)
+        @ToString.Exclude
+        @EqualsAndHashCode.Exclude
+        private volatile boolean[] supported = new boolean[CurrencyRegistry.size()];
+
+        public SupportedCurrencies(Set<String> values) {
+            reload(values);
+        }
+
+        public void setValues(Set<String> values) {
+            reload(values);
+        }
+
+        public synchronized void reload(Set<String> values) {
+            var supported = new boolean[CurrencyRegistry.size()];
+            for (var currency : values) {
+                var id = CurrencyRegistry.idOf(currency);
+                if (id == CurrencyRegistry.UNKNOWN_ID) {
+                    throw new IllegalArgumentException("Supported currency " + currency + " is not an ISO 4217 currency code");
+                }
+                supported[id] = true;
+            }
+
+            this.values = Set.copyOf(values);
+            this.supported = supported;
+        }
+
+        public boolean isSupported(String currency) {
+            var id = CurrencyRegistry.idOf(currency);
+            return id != CurrencyRegistry.UNKNOWN_ID && supported[id];
         }
     }
 }
@@ -1,11 +1,21 @@
 package com.github.tddiaz.wallet.controller;
 
+import com.github.tddiaz.wallet.config.SettlementConfiguration.SettlementInbox;
+import com.github.tddiaz.wallet.config.SettlementConfiguration.SettlementMode;
 import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto;
+import com.github.tddiaz.wallet.controller.dto.SettlementStatusResponseDto;
+import com.github.tddiaz.wallet.service.EnqueueSettlementUseCase;
+import com.github.tddiaz.wallet.service.GetSettlementStatusUseCase;
 import com.github.tddiaz.wallet.service.SettleTransactionUseCase;
+import com.github.tddiaz.wallet.service.SettleTransactionsBatchUseCase;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.GetMapping;
+import org.springframework.web.bind.annotation.PathVariable;
 import org.springframework.web.bind.annotation.PostMapping;
 import org.springframework.web.bind.annotation.RequestBody;
 import org.springframework.web.bind.annotation.RequestMapping;
@@ -18,10 +28,33 @@ public class BankCallbackController {
 
     private final SettleTransactionUseCase settleTransactionUseCase;
 
+    private final SettleTransactionsBatchUseCase settleTransactionsBatchUseCase;
+
+    private final EnqueueSettlementUseCase enqueueSettlementUseCase;
+
+    private final GetSettlementStatusUseCase getSettlementStatusUseCase;
+
+    private final SettlementInbox settlementInbox;
+
     @PostMapping("/notify-transfer-status")
     public ResponseEntity<Void> notifyTransferStatus(@RequestBody @Valid BankTransactionStatusRequestDto request) {
+        if (settlementInbox.getMode() == SettlementMode.ASYNC) {
+            enqueueSettlementUseCase.execute(request);
+            return new ResponseEntity<>(HttpStatus.ACCEPTED);
+        }
+
         settleTransactionUseCase.execute(request);
         return new ResponseEntity<>(HttpStatus.OK);
     }
 
+    @PostMapping("/notify-transfer-status/batch")
+    public ResponseEntity<BatchBankTransactionStatusResponseDto> notifyTransferStatusBatch(@RequestBody @Valid BatchBankTransactionStatusRequestDto request) {
+        return ResponseEntity.ok(settleTransactionsBatchUseCase.execute(request));
+    }
+
+    @GetMapping("/notify-transfer-status/{referenceId}")
+    public ResponseEntity<SettlementStatusResponseDto> getTransferStatusNotification(@PathVariable("referenceId") String referenceId) {
+        return ResponseEntity.ok(getSettlementStatusUseCase.execute(referenceId));
+    }
+
 }
@@ -1,27 +1,62 @@
 package com.github.tddiaz.wallet.controller;
 
+import com.github.tddiaz.wallet.controller.dto.ExportTransactionsRequestDto;
+import com.github.tddiaz.wallet.controller.dto.ExportTransactionsRequestDto.ExportFormat;
+import com.github.tddiaz.wallet.controller.dto.GetTransactionsByCursorRequestDto;
+import com.github.tddiaz.wallet.controller.dto.GetTransactionsByCursorResponseDto;
 import com.github.tddiaz.wallet.controller.dto.GetTransactionsRequestDto;
 import com.github.tddiaz.wallet.controller.dto.GetTransactionsResponseDto;
 import com.github.tddiaz.wallet.controller.dto.constraints.ValidEnum;
+import com.github.tddiaz.wallet.service.ExportTransactionsUseCase;
+import com.github.tddiaz.wallet.service.GetTransactionsByCursorUseCase;
 import com.github.tddiaz.wallet.service.GetTransactionsUseCase;
 import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
+import org.springframework.http.ContentDisposition;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.GetMapping;
 import org.springframework.web.bind.annotation.ModelAttribute;
 import org.springframework.web.bind.annotation.RequestMapping;
 import org.springframework.web.bind.annotation.RestController;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 @RestController
 @RequestMapping("/api/v1/transactions")
 @RequiredArgsConstructor
 public class TransactionController {
 
+    private static final MediaType TEXT_CSV = MediaType.parseMediaType("text/csv");
+    private static final MediaType APPLICATION_NDJSON = MediaType.parseMediaType("application/x-ndjson");
+
     private final GetTransactionsUseCase getTransactionsUseCase;
 
+    private final GetTransactionsByCursorUseCase getTransactionsByCursorUseCase;
+
+    private final ExportTransactionsUseCase exportTransactionsUseCase;
+
     @GetMapping("/all")
     public ResponseEntity<GetTransactionsResponseDto> getTransactions(@ModelAttribute @Valid GetTransactionsRequestDto request) {
         return ResponseEntity.ok(getTransactionsUseCase.execute(request));
     }
 
+    @GetMapping("/seek")
+    public ResponseEntity<GetTransactionsByCursorResponseDto> getTransactionsByCursor(@ModelAttribute @Valid GetTransactionsByCursorRequestDto request) {
+        return ResponseEntity.ok(getTransactionsByCursorUseCase.execute(request));
+    }
+
+    @GetMapping("/export")
+    public ResponseEntity<StreamingResponseBody> exportTransactions(@ModelAttribute @Valid ExportTransactionsRequestDto request) {
+        var format = request.getFormatEnum();
+        var body = exportTransactionsUseCase.execute(request);
+
+        return ResponseEntity.ok()
+            .contentType(format == ExportFormat.CSV ? TEXT_CSV : APPLICATION_NDJSON)
+            .header(HttpHeaders.CONTENT_DISPOSITION, ContentDisposition.attachment()
+                .filename("transactions-" + request.walletId() + "." + format.name().toLowerCase())
+                .build()
+                .toString())
+            .body(body);
+    }
 }
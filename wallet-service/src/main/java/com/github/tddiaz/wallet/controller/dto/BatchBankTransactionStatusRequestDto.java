@@ -0,0 +1,15 @@
+package com.github.tddiaz.wallet.controller.dto;
+
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+
+import java.util.List;
+
+public record BatchBankTransactionStatusRequestDto(
+    @NotEmpty
+    @Size(max = 5000)
+    List<@Valid @NotNull BankTransactionStatusRequestDto> items
+) {
+}
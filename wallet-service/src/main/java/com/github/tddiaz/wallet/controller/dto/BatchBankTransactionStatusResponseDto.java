@@ -0,0 +1,21 @@
+package com.github.tddiaz.wallet.controller.dto;
+
+import java.util.List;
+
+public record BatchBankTransactionStatusResponseDto(
+    List<ItemResult> results
+) {
+
+    public record ItemResult(
+        String referenceId,
+
+        SettlementResult result
+    ) {
+    }
+
+    public enum SettlementResult {
+        SETTLED,
+        IGNORED,
+        NOT_FOUND
+    }
+}
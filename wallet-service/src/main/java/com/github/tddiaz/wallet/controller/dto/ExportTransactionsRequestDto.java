@@ -0,0 +1,27 @@
+package com.github.tddiaz.wallet.controller.dto;
+
+import com.github.tddiaz.wallet.controller.dto.constraints.ValidEnum;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Objects;
+
+public record ExportTransactionsRequestDto(
+    @NotNull
+    Long walletId,
+
+    @NotNull
+    Long customerId,
+
+    @ValidEnum(enumClass = ExportFormat.class)
+    String format
+) {
+
+    public ExportFormat getFormatEnum() {
+        return Objects.nonNull(format) ? ExportFormat.valueOf(format) : ExportFormat.NDJSON;
+    }
+
+    public enum ExportFormat {
+        NDJSON,
+        CSV
+    }
+}
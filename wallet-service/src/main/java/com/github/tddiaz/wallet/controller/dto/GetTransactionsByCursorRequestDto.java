@@ -0,0 +1,26 @@
+package com.github.tddiaz.wallet.controller.dto;
+
+import jakarta.validation.constraints.Max;
+import jakarta.validation.constraints.Min;
+import jakarta.validation.constraints.NotNull;
+
+import java.util.Objects;
+
+public record GetTransactionsByCursorRequestDto(
+    @NotNull
+    Long walletId,
+
+    @NotNull
+    Long customerId,
+
+    String cursor,
+
+    @Min(1)
+    @Max(100)
+    Integer size
+) {
+
+    public int getSize() {
+        return Objects.nonNull(size) ? size : 10;
+    }
+}
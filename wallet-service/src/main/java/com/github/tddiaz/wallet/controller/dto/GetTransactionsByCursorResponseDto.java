@@ -0,0 +1,12 @@
+package com.github.tddiaz.wallet.controller.dto;
+
+import java.util.List;
+
+public record GetTransactionsByCursorResponseDto(
+    int numberOfElements,
+
+    String nextCursor,
+
+    List<TransactionDto> data
+) {
+}
@@ -1,6 +1,7 @@
 package com.github.tddiaz.wallet.controller.dto;
 
 import com.github.tddiaz.wallet.controller.dto.constraints.ValidCurrency;
+import jakarta.validation.constraints.Digits;
 import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.NotNull;
 
@@ -11,7 +12,9 @@ public record MoneyDto(
     @ValidCurrency
     String currency,
 
+    // the amount columns are DECIMAL(19,4), Money rejects more decimal places
     @NotNull
+    @Digits(integer = 15, fraction = 4)
     BigDecimal value
 ) {
 }
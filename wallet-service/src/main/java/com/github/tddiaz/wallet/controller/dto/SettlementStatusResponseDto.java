@@ -0,0 +1,12 @@
+package com.github.tddiaz.wallet.controller.dto;
+
+import java.time.LocalDateTime;
+
+public record SettlementStatusResponseDto(
+    String referenceId,
+    String bankingStatus,
+    String state,
+    LocalDateTime receivedAt,
+    LocalDateTime processedAt
+) {
+}
@@ -1,12 +1,10 @@
 package com.github.tddiaz.wallet.controller.dto.constraints;
 
+import com.github.tddiaz.wallet.model.CurrencyRegistry;
 import jakarta.validation.ConstraintValidator;
 import jakarta.validation.ConstraintValidatorContext;
 import org.apache.commons.lang3.StringUtils;
 
-import java.util.Currency;
-import java.util.stream.Collectors;
-
 public class ValidCurrencyValidator implements ConstraintValidator<ValidCurrency, String> {
     @Override
     public boolean isValid(String value, ConstraintValidatorContext context) {
@@ -14,8 +12,6 @@ public class ValidCurrencyValidator implements ConstraintValidator<ValidCurrency
             return true;
         }
 
-        var currencies = Currency.getAvailableCurrencies().stream().map(Currency::getCurrencyCode).collect(Collectors.toSet());
-
-        return currencies.contains(value);
+        return CurrencyRegistry.isIsoCode(value);
     }
 }
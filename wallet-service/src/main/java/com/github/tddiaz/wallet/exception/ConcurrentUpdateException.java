@@ -0,0 +1,13 @@
+package com.github.tddiaz.wallet.exception;
+
+import io.github.wimdeblauwe.errorhandlingspringbootstarter.ResponseErrorCode;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+@ResponseErrorCode("CONCURRENT_UPDATE")
+public class ConcurrentUpdateException extends AppException {
+    public ConcurrentUpdateException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
@@ -0,0 +1,13 @@
+package com.github.tddiaz.wallet.exception;
+
+import io.github.wimdeblauwe.errorhandlingspringbootstarter.ResponseErrorCode;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.CONFLICT)
+@ResponseErrorCode("DUPLICATE_REFERENCE_ID")
+public class DuplicateReferenceIdException extends AppException {
+    public DuplicateReferenceIdException(String message) {
+        super(message, null);
+    }
+}
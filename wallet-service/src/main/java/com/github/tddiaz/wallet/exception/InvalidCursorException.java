@@ -0,0 +1,13 @@
+package com.github.tddiaz.wallet.exception;
+
+import io.github.wimdeblauwe.errorhandlingspringbootstarter.ResponseErrorCode;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.BAD_REQUEST)
+@ResponseErrorCode("INVALID_CURSOR")
+public class InvalidCursorException extends AppException {
+    public InvalidCursorException(String message, Throwable cause) {
+        super(message, cause);
+    }
+}
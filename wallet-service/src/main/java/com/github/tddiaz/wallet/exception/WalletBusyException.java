@@ -0,0 +1,13 @@
+package com.github.tddiaz.wallet.exception;
+
+import io.github.wimdeblauwe.errorhandlingspringbootstarter.ResponseErrorCode;
+import org.springframework.http.HttpStatus;
+import org.springframework.web.bind.annotation.ResponseStatus;
+
+@ResponseStatus(HttpStatus.SERVICE_UNAVAILABLE)
+@ResponseErrorCode("WALLET_BUSY")
+public class WalletBusyException extends AppException {
+    public WalletBusyException(String message) {
+        super(message, null);
+    }
+}
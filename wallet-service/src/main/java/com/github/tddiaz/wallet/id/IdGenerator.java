@@ -0,0 +1,85 @@
+package com.github.tddiaz.wallet.id;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongSupplier;
+
+/**
+ * Generates TSIDs, in the layout of tsid-creator so they sort with the ids generated before it:
+ * 42 bits of milliseconds since 2020-01-01, then the node id, then a counter in the remaining bits.
+ * <p>
+ * The last id is kept in one {@link AtomicLong} and the next one is claimed with a compare-and-set, so threads never block each other
+ * and ids of a node are strictly increasing, across threads and when the clock moves backwards. When the counter of a millisecond
+ * runs out the ids move on to the next millisecond, ahead of the clock until it catches up.
+ */
+public class IdGenerator {
+
+    public static final long TSID_EPOCH = 1577836800000L;
+
+    public static final int RANDOM_BITS = 22;
+
+    public static final int DEFAULT_NODE_BITS = 10;
+
+    /**
+     * For code outside the application context, tools and tests. Like {@code TsidCreator.getTsid()} its node id is random.
+     */
+    public static final IdGenerator DEFAULT = withRandomNode(DEFAULT_NODE_BITS);
+
+    private final int nodeId;
+
+    private final long nodePart;
+
+    private final long counterMask;
+
+    private final LongSupplier currentTimeMillis;
+
+    private final AtomicLong lastId = new AtomicLong();
+
+    public IdGenerator(int nodeId, int nodeBits) {
+        this(nodeId, nodeBits, System::currentTimeMillis);
+    }
+
+    public IdGenerator(int nodeId, int nodeBits, LongSupplier currentTimeMillis) {
+        if (nodeBits < 0 || nodeBits > 20) {
+            throw new IllegalArgumentException("Node bits must be between 0 and 20, was " + nodeBits);
+        }
+        if (nodeId < 0 || nodeId >= 1 << nodeBits) {
+            throw new IllegalArgumentException("Node id must be between 0 and " + ((1 << nodeBits) - 1) + ", was " + nodeId);
+        }
+
+        var counterBits = RANDOM_BITS - nodeBits;
+        this.nodeId = nodeId;
+        this.nodePart = (long) nodeId << counterBits;
+        this.counterMask = (1L << counterBits) - 1;
+        this.currentTimeMillis = currentTimeMillis;
+    }
+
+    public static IdGenerator withRandomNode(int nodeBits) {
+        return new IdGenerator(ThreadLocalRandom.current().nextInt(1 << nodeBits), nodeBits);
+    }
+
+    public int getNodeId() {
+        return nodeId;
+    }
+
+    public long nextId() {
+        while (true) {
+            var last = lastId.get();
+            var lastTime = last >>> RANDOM_BITS;
+            var now = currentTimeMillis.getAsLong() - TSID_EPOCH;
+
+            long next;
+            if (now > lastTime) {
+                next = now << RANDOM_BITS | nodePart;
+            } else if ((last & counterMask) < counterMask) {
+                next = last + 1;
+            } else {
+                next = (lastTime + 1) << RANDOM_BITS | nodePart;
+            }
+
+            if (lastId.compareAndSet(last, next)) {
+                return next;
+            }
+        }
+    }
+}
@@ -0,0 +1,27 @@
+package com.github.tddiaz.wallet.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * A request answered with the outcome of an earlier request with the same reference id.
+ */
+@Name("com.github.tddiaz.wallet.IdempotentReplay")
+@Label("Idempotent Replay")
+@Category("Wallet")
+@Description("Request answered with the outcome of an earlier request with the same reference id")
+@Threshold("0 ms")
+@StackTrace(false)
+public class IdempotentReplayEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Reference Id")
+    String referenceId;
+}
@@ -0,0 +1,33 @@
+package com.github.tddiaz.wallet.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * An order rejected for an amount outside of the limits.
+ */
+@Name("com.github.tddiaz.wallet.LimitRejection")
+@Label("Limit Rejection")
+@Category("Wallet")
+@Description("Order rejected for an amount outside of the limits")
+@Threshold("0 ms")
+@StackTrace(false)
+public class LimitRejectionEvent extends Event {
+
+    @Label("Operation")
+    String operation;
+
+    @Label("Wallet Id")
+    long walletId;
+
+    @Label("Currency")
+    String currency;
+
+    @Label("Amount")
+    String amount;
+}
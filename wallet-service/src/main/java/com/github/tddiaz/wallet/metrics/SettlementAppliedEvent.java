@@ -0,0 +1,33 @@
+package com.github.tddiaz.wallet.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The update of a pending transaction and its wallet with the status notified by the bank, single or in a batch.
+ */
+@Name("com.github.tddiaz.wallet.SettlementApplied")
+@Label("Settlement Applied")
+@Category("Wallet")
+@Description("Status of a pending transaction applied to it and its wallet")
+@Threshold("0 ms")
+@StackTrace(false)
+public class SettlementAppliedEvent extends Event {
+
+    @Label("Wallet Id")
+    long walletId;
+
+    @Label("Reference Id")
+    String referenceId;
+
+    @Label("Entry")
+    String entry;
+
+    @Label("Status")
+    String status;
+}
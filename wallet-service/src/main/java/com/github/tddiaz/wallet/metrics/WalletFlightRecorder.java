@@ -0,0 +1,53 @@
+package com.github.tddiaz.wallet.metrics;
+
+import com.github.tddiaz.wallet.config.FlightRecordingConfiguration.FlightRecording;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.Configuration;
+import jdk.jfr.Recording;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.text.ParseException;
+
+/**
+ * Continuous JFR recording of the JDK events and the wallet events, kept on disk for {@code jfr.recording.max-age}.
+ * Dumped on demand by {@link FlightRecordingEndpoint}, so a latency spike can be looked at with the GC pauses,
+ * socket reads and wallet lock waits of the same minutes.
+ */
+@Component
+@Slf4j
+public class WalletFlightRecorder {
+
+    private static final String RECORDING_NAME = "wallet";
+
+    private final Recording recording;
+
+    public WalletFlightRecorder(FlightRecording flightRecording) throws IOException, ParseException {
+        if (!flightRecording.isEnabled()) {
+            this.recording = null;
+            return;
+        }
+
+        recording = new Recording(Configuration.getConfiguration(flightRecording.getSettings()));
+        recording.setName(RECORDING_NAME);
+        recording.setToDisk(true);
+        recording.setMaxAge(flightRecording.getMaxAge());
+        recording.setMaxSize(flightRecording.getMaxSize().toBytes());
+
+        recording.enable(WalletLockAcquiredEvent.class).withThreshold(flightRecording.getLockWaitThreshold());
+        recording.enable(SettlementAppliedEvent.class).withThreshold(flightRecording.getSettlementThreshold());
+        recording.enable(IdempotentReplayEvent.class);
+        recording.enable(LimitRejectionEvent.class);
+
+        recording.start();
+        log.info("started {} flight recording, keeping the last {}", flightRecording.getSettings(), flightRecording.getMaxAge());
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (recording != null) {
+            recording.close();
+        }
+    }
+}
@@ -0,0 +1,51 @@
+package com.github.tddiaz.wallet.metrics;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import jdk.jfr.Threshold;
+
+/**
+ * The wait for the lock of a wallet, the in-JVM striped lock or the row lock taken by a query. Only waits over
+ * the threshold are recorded, so the uncontended acquisitions cost the check of the event duration.
+ */
+@Name("com.github.tddiaz.wallet.WalletLockAcquired")
+@Label("Wallet Lock Acquired")
+@Category("Wallet")
+@Description("Wait for the lock of a wallet")
+@Threshold("1 ms")
+@StackTrace(false)
+public class WalletLockAcquiredEvent extends Event {
+
+    public static final String JVM_LOCK = "jvm";
+
+    @Label("Wallet Id")
+    long walletId;
+
+    @Label("Lock")
+    @Description("jvm for the striped lock, otherwise the repository query taking the row lock")
+    String lock;
+
+    @Label("Acquired")
+    @Description("false when the wait timed out")
+    boolean acquired;
+
+    public static WalletLockAcquiredEvent begin(Long walletId, String lock) {
+        var event = new WalletLockAcquiredEvent();
+        event.begin();
+        event.walletId = walletId;
+        event.lock = lock;
+        return event;
+    }
+
+    public void acquired(boolean acquired) {
+        end();
+        if (shouldCommit()) {
+            this.acquired = acquired;
+            commit();
+        }
+    }
+}
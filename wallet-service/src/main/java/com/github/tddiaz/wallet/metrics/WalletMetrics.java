@@ -0,0 +1,243 @@
+package com.github.tddiaz.wallet.metrics;
+
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+/**
+ * Timings and outcomes of the wallet use cases. The percentile histograms are configured with
+ * {@code management.metrics.distribution}, for every meter named {@code wallet.*}.
+ * The lock waits, settlements, replays and rejections are also recorded as JFR events, one per wallet or reference id,
+ * see {@link WalletLockAcquiredEvent}.
+ * <ul>
+ *     <li>{@code wallet.use.case}: each use case from start to commit, tagged with its outcome, the exception thrown if any</li>
+ *     <li>{@code wallet.lock.query}: each query taking row locks, mostly the wait for the lock when a wallet is contended</li>
+ *     <li>{@code wallet.idempotent.replays}: requests answered with the outcome of an earlier one with the same reference id</li>
+ *     <li>{@code wallet.insufficient.funds} and {@code wallet.limit.rejections}: orders rejected on the balance or the amount</li>
+ * </ul>
+ */
+@Component
+public class WalletMetrics {
+
+    private static final String SUCCESS = "success";
+
+    private final MeterRegistry meterRegistry;
+
+    private final Map<UseCase, Timer> useCaseTimers = new EnumMap<>(UseCase.class);
+
+    private final Map<LockQuery, Timer> lockQueryTimers = new EnumMap<>(LockQuery.class);
+
+    private final Map<Operation, Counter> idempotentReplays = new EnumMap<>(Operation.class);
+
+    private final Map<Operation, Counter> limitRejections = new EnumMap<>(Operation.class);
+
+    private final Counter insufficientFunds;
+
+    public WalletMetrics(MeterRegistry meterRegistry) {
+        this.meterRegistry = meterRegistry;
+
+        for (var useCase : UseCase.values()) {
+            useCaseTimers.put(useCase, useCaseTimer(useCase, SUCCESS));
+        }
+        for (var lockQuery : LockQuery.values()) {
+            lockQueryTimers.put(lockQuery, Timer.builder("wallet.lock.query")
+                .description("Time of the queries taking row locks, including the wait for the locks")
+                .tag("query", lockQuery.tag)
+                .register(meterRegistry));
+        }
+        for (var operation : Operation.values()) {
+            idempotentReplays.put(operation, Counter.builder("wallet.idempotent.replays")
+                .description("Requests answered with the outcome of an earlier request with the same reference id")
+                .tag("operation", operation.tag)
+                .register(meterRegistry));
+        }
+        for (var operation : List.of(Operation.DEPOSIT, Operation.WITHDRAW)) {
+            limitRejections.put(operation, Counter.builder("wallet.limit.rejections")
+                .description("Orders rejected for an amount outside of the limits")
+                .tag("operation", operation.tag)
+                .register(meterRegistry));
+        }
+        this.insufficientFunds = Counter.builder("wallet.insufficient.funds")
+            .description("Withdraw orders rejected for an insufficient balance")
+            .register(meterRegistry);
+    }
+
+    public <T> T timeUseCase(UseCase useCase, Supplier<T> action) {
+        var start = System.nanoTime();
+        try {
+            var result = action.get();
+            useCaseTimers.get(useCase).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            return result;
+        } catch (RuntimeException e) {
+            // registered on first use, the registry returns the same timer afterwards
+            useCaseTimer(useCase, e.getClass().getSimpleName()).record(System.nanoTime() - start, TimeUnit.NANOSECONDS);
+            throw e;
+        }
+    }
+
+    public void timeUseCaseWithoutResult(UseCase useCase, Runnable action) {
+        timeUseCase(useCase, () -> {
+            action.run();
+            return null;
+        });
+    }
+
+    public <T> T timeLockQuery(LockQuery lockQuery, Supplier<T> query) {
+        return lockQueryTimers.get(lockQuery).record(query);
+    }
+
+    /**
+     * Times a query locking the row of one wallet, also recording a {@link WalletLockAcquiredEvent} for it.
+     */
+    public <T> T timeLockQuery(LockQuery lockQuery, Long walletId, Supplier<T> query) {
+        var event = WalletLockAcquiredEvent.begin(walletId, lockQuery.tag);
+        var acquired = false;
+        try {
+            var result = timeLockQuery(lockQuery, query);
+            acquired = true;
+            return result;
+        } finally {
+            event.acquired(acquired);
+        }
+    }
+
+    public void recordSettlement(Transaction transaction, String status, Runnable settlement) {
+        var event = new SettlementAppliedEvent();
+        event.begin();
+        settlement.run();
+        event.end();
+
+        if (event.shouldCommit()) {
+            event.walletId = transaction.getWalletId();
+            event.referenceId = transaction.getReferenceId();
+            event.entry = transaction.getEntry().name();
+            event.status = status;
+            event.commit();
+        }
+    }
+
+    /**
+     * Records the settlements applied together, each one lasting the whole settlement. Only the transactions returned by
+     * the settlement are recorded, the reference ids settled earlier are left out.
+     */
+    public void recordSettlements(Collection<String> referenceIds, String status, Supplier<List<Transaction>> settlement) {
+        var events = new HashMap<String, SettlementAppliedEvent>();
+        referenceIds.forEach(referenceId -> {
+            var event = new SettlementAppliedEvent();
+            event.begin();
+            events.put(referenceId, event);
+        });
+
+        var transactions = settlement.get();
+
+        for (var transaction : transactions) {
+            var event = events.get(transaction.getReferenceId());
+            event.end();
+
+            if (event.shouldCommit()) {
+                event.walletId = transaction.getWalletId();
+                event.referenceId = transaction.getReferenceId();
+                event.entry = transaction.getEntry().name();
+                event.status = status;
+                event.commit();
+            }
+        }
+    }
+
+    public void idempotentReplay(Operation operation, String referenceId) {
+        idempotentReplays.get(operation).increment();
+        replayEvent(operation, referenceId);
+    }
+
+    public void idempotentReplays(Operation operation, Collection<String> referenceIds) {
+        idempotentReplays.get(operation).increment(referenceIds.size());
+        referenceIds.forEach(referenceId -> replayEvent(operation, referenceId));
+    }
+
+    public void limitRejected(Operation operation, Long walletId, Money amount) {
+        limitRejections.get(operation).increment();
+
+        var event = new LimitRejectionEvent();
+        if (event.isEnabled()) {
+            event.operation = operation.tag;
+            event.walletId = walletId;
+            event.currency = amount.getCurrency();
+            event.amount = amount.getAmount().toPlainString();
+            event.commit();
+        }
+    }
+
+    public void insufficientFunds() {
+        insufficientFunds.increment();
+    }
+
+    private void replayEvent(Operation operation, String referenceId) {
+        var event = new IdempotentReplayEvent();
+        if (event.isEnabled()) {
+            event.operation = operation.tag;
+            event.referenceId = referenceId;
+            event.commit();
+        }
+    }
+
+    private Timer useCaseTimer(UseCase useCase, String outcome) {
+        return Timer.builder("wallet.use.case")
+            .description("Time of the use cases, from start to commit")
+            .tag("use.case", useCase.tag)
+            .tag("outcome", outcome)
+            .register(meterRegistry);
+    }
+
+    public enum UseCase {
+        CREATE_DEPOSIT_ORDER("CreateDepositOrder"),
+        CREATE_WITHDRAW_ORDER("CreateWithdrawOrder"),
+        SETTLE_TRANSACTION("SettleTransaction"),
+        GET_TRANSACTIONS("GetTransactions"),
+        GET_WALLET_DETAILS("GetWalletDetails");
+
+        private final String tag;
+
+        UseCase(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    /**
+     * The {@code *WithExclusiveLock} repository queries.
+     */
+    public enum LockQuery {
+        WALLET_BY_ID("findByIdWithExclusiveLock"),
+        WALLET_BY_ID_AND_CUSTOMER_ID("findByIdAndCustomerIdWithExclusiveLock"),
+        WALLETS_BY_IDS("findAllByIdInWithExclusiveLock"),
+        TRANSACTIONS_BY_REFERENCE_IDS("findAllByReferenceIdInWithExclusiveLock");
+
+        private final String tag;
+
+        LockQuery(String tag) {
+            this.tag = tag;
+        }
+    }
+
+    public enum Operation {
+        DEPOSIT("deposit"),
+        WITHDRAW("withdraw"),
+        SETTLEMENT("settlement");
+
+        private final String tag;
+
+        Operation(String tag) {
+            this.tag = tag;
+        }
+    }
+}
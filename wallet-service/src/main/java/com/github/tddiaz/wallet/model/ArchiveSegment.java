@@ -0,0 +1,53 @@
+package com.github.tddiaz.wallet.model;
+
+import com.github.f4b6a3.tsid.Tsid;
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.EqualsAndHashCode;
+import lombok.ToString;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * A segment file of archived transactions. Registered in the same DB transaction that deletes its rows,
+ * so a segment file without a registration is never read.
+ */
+@Data
+@Entity
+@Accessors(chain = true)
+@Table(name = "archive_segment")
+public class ArchiveSegment {
+    @Id
+    private Long id;
+
+    @Column(unique = true, nullable = false)
+    private String fileName;
+
+    @Column(nullable = false)
+    private Integer rowCount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    /**
+     * Number of transactions of each wallet in the segment, the index of the segments of a wallet.
+     */
+    @ElementCollection
+    @CollectionTable(name = "archive_segment_wallet", joinColumns = @JoinColumn(name = "segment_id"))
+    @MapKeyColumn(name = "wallet_id")
+    @Column(name = "row_count")
+    @ToString.Exclude
+    @EqualsAndHashCode.Exclude
+    private Map<Long, Integer> rowCountByWalletId;
+
+    public static ArchiveSegment create(long id, Map<Long, Integer> rowCountByWalletId) {
+        return new ArchiveSegment()
+            .setId(id)
+            .setFileName("transactions-" + Tsid.from(id) + ".seg")
+            .setRowCount(rowCountByWalletId.values().stream().mapToInt(Integer::intValue).sum())
+            .setRowCountByWalletId(rowCountByWalletId)
+            .setCreatedAt(LocalDateTime.now());
+    }
+}
@@ -0,0 +1,21 @@
+package com.github.tddiaz.wallet.model;
+
+import jakarta.persistence.AttributeConverter;
+import jakarta.persistence.Converter;
+
+/**
+ * Replaces the currency codes read from the DB with their canonical instances, see {@link CurrencyRegistry}.
+ */
+@Converter
+public class CurrencyCodeConverter implements AttributeConverter<String, String> {
+
+    @Override
+    public String convertToDatabaseColumn(String currency) {
+        return currency;
+    }
+
+    @Override
+    public String convertToEntityAttribute(String currency) {
+        return CurrencyRegistry.canonical(currency);
+    }
+}
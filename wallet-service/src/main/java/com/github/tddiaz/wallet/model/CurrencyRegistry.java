@@ -0,0 +1,64 @@
+package com.github.tddiaz.wallet.model;
+
+import java.util.Currency;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The ISO 4217 currency codes known to the JVM, read once when the class loads. Each code has one canonical
+ * {@link String} instance and a small id, its position in code order, so currencies of {@link Money} can be compared by reference
+ * and sets of currencies kept as arrays indexed by id.
+ */
+public final class CurrencyRegistry {
+
+    public static final int UNKNOWN_ID = -1;
+
+    private static final String[] CODES = Currency.getAvailableCurrencies().stream()
+        .map(Currency::getCurrencyCode)
+        .sorted()
+        .toArray(String[]::new);
+
+    private static final Map<String, Integer> IDS = new HashMap<>(CODES.length * 2);
+
+    static {
+        for (int id = 0; id < CODES.length; id++) {
+            IDS.put(CODES[id], id);
+        }
+    }
+
+    private CurrencyRegistry() {
+    }
+
+    public static int size() {
+        return CODES.length;
+    }
+
+    public static boolean isIsoCode(String code) {
+        return code != null && IDS.containsKey(code);
+    }
+
+    /**
+     * The id of the code, or {@value #UNKNOWN_ID} when it is not an ISO 4217 code.
+     */
+    public static int idOf(String code) {
+        var id = code == null ? null : IDS.get(code);
+        return id == null ? UNKNOWN_ID : id;
+    }
+
+    public static String codeOf(int id) {
+        return CODES[id];
+    }
+
+    /**
+     * The canonical instance of the code. Codes that are not ISO 4217 codes are interned by the JVM instead,
+     * so two equal codes are always the same instance.
+     */
+    public static String canonical(String code) {
+        if (code == null) {
+            return null;
+        }
+
+        var id = IDS.get(code);
+        return id == null ? code.intern() : CODES[id];
+    }
+}
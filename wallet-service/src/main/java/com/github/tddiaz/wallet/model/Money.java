@@ -1,65 +1,117 @@
 package com.github.tddiaz.wallet.model;
 
 import com.github.tddiaz.wallet.exception.CurrencyMismatchException;
+import com.github.tddiaz.wallet.exception.InvalidAmountException;
+import jakarta.persistence.Convert;
 import jakarta.persistence.Embeddable;
 import jakarta.persistence.Transient;
 import lombok.*;
 
 import java.math.BigDecimal;
-import java.util.Objects;
 
+/**
+ * An amount kept as a {@code long} count of minor units of {@value #SCALE} decimal places, 10.5 GBP is 105000.
+ * Arithmetic and comparisons work on the long and on the canonical currency instance, and fail with {@link InvalidAmountException} on overflow.
+ * {@link BigDecimal} is only created at the edges, in {@link #getAmount()} and when reading or writing the DECIMAL(19, 4) columns.
+ */
 @Data
 @Embeddable
 @NoArgsConstructor
-@AllArgsConstructor
 @Setter(AccessLevel.NONE)
 public class Money {
+    public static final int SCALE = 4;
+
+    /**
+     * Always the canonical instance of the code, see {@link CurrencyRegistry}, so currencies are compared by reference.
+     */
+    @Convert(converter = CurrencyCodeConverter.class)
     private String currency;
 
-    private BigDecimal amount;
+    @Convert(converter = MinorUnitsConverter.class)
+    private long minorUnits;
+
+    private Money(String currency, long minorUnits) {
+        this.currency = currency;
+        this.minorUnits = minorUnits;
+    }
 
     public static Money create(String currency, BigDecimal amount) {
-        return new Money(currency, amount);
+        return new Money(CurrencyRegistry.canonical(currency), toMinorUnits(amount));
+    }
+
+    public static Money ofMinorUnits(String currency, long minorUnits) {
+        return new Money(CurrencyRegistry.canonical(currency), minorUnits);
+    }
+
+    public static Money zero(String currency) {
+        return new Money(CurrencyRegistry.canonical(currency), 0L);
     }
 
     public Money add(Money money) {
-        if (!Objects.equals(this.currency, money.getCurrency())) {
+        if (this.currency != money.currency) {
             throw new CurrencyMismatchException("Cannot add money with different currency");
         }
 
-        return Money.create(this.currency, this.amount.add(money.amount));
+        try {
+            return new Money(this.currency, Math.addExact(this.minorUnits, money.minorUnits));
+        } catch (ArithmeticException e) {
+            throw new InvalidAmountException("Amount is out of range. Cannot add " + money.toFormattedString() + " to " + this.toFormattedString());
+        }
     }
 
     public Money subtract(Money money) {
-        if (!Objects.equals(this.currency, money.getCurrency())) {
+        if (this.currency != money.currency) {
             throw new CurrencyMismatchException("Cannot subtract money with different currency");
         }
 
-        return Money.create(this.currency, this.amount.subtract(money.amount));
+        try {
+            return new Money(this.currency, Math.subtractExact(this.minorUnits, money.minorUnits));
+        } catch (ArithmeticException e) {
+            throw new InvalidAmountException("Amount is out of range. Cannot subtract " + money.toFormattedString() + " from " + this.toFormattedString());
+        }
+    }
+
+    @Transient
+    public BigDecimal getAmount() {
+        return BigDecimal.valueOf(this.minorUnits, SCALE);
     }
 
     @Transient
     public boolean isNegative() {
-        return this.amount.compareTo(BigDecimal.ZERO) < 0;
+        return this.minorUnits < 0;
     }
 
     @Transient
     public boolean isZero() {
-        return this.amount.compareTo(BigDecimal.ZERO) == 0;
+        return this.minorUnits == 0;
     }
 
     @Transient
     public boolean isGreaterThan(Money money) {
-        if (!Objects.equals(this.currency, money.getCurrency())) {
+        if (this.currency != money.currency) {
             throw new CurrencyMismatchException("Cannot compare money with different currency");
         }
 
-        return this.amount.compareTo(money.getAmount()) > 0;
+        return this.minorUnits > money.minorUnits;
     }
 
     @Transient
     public String toFormattedString() {
-        return String.format("%s %s", this.currency, this.amount.toPlainString());
+        return String.format("%s %s", this.currency, this.getAmount().stripTrailingZeros().toPlainString());
     }
 
+    /**
+     * Amounts with more than {@value #SCALE} decimal places are rejected rather than rounded, the columns could not hold them.
+     */
+    static long toMinorUnits(BigDecimal amount) {
+        if (amount.scale() > SCALE && amount.stripTrailingZeros().scale() > SCALE) {
+            throw new InvalidAmountException("Amount cannot have more than " + SCALE + " decimal places. Amount is " + amount.toPlainString());
+        }
+
+        try {
+            return amount.movePointRight(SCALE).longValueExact();
+        } catch (ArithmeticException e) {
+            throw new InvalidAmountException("Amount is out of range. Amount is " + amount.toPlainString());
+        }
+    }
 }
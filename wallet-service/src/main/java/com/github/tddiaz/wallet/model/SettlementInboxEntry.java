@@ -0,0 +1,69 @@
+package com.github.tddiaz.wallet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+/**
+ * A bank notification waiting in the settlement inbox. Its wallet is resolved when it is received,
+ * it stays empty when the reference is unknown.
+ */
+@Data
+@Entity
+@Accessors(chain = true)
+@Table(name = "settlement_inbox")
+public class SettlementInboxEntry {
+    @Id
+    private Long id;
+
+    @Column(nullable = false)
+    private String referenceId;
+
+    private Long walletId;
+
+    @Column(nullable = false)
+    private String bankingStatus;
+
+    @Enumerated(value = EnumType.STRING)
+    @Column(nullable = false)
+    private SettlementState state;
+
+    @Column(nullable = false)
+    private LocalDateTime receivedAt;
+
+    private LocalDateTime processedAt;
+
+    @Column(nullable = false)
+    private Integer attempts;
+
+    public static SettlementInboxEntry receive(long id, String referenceId, String bankingStatus) {
+        return new SettlementInboxEntry()
+            .setId(id)
+            .setReferenceId(referenceId)
+            .setBankingStatus(bankingStatus)
+            .setState(SettlementState.RECEIVED)
+            .setReceivedAt(LocalDateTime.now())
+            .setAttempts(0);
+    }
+
+    public void processed(SettlementState state) {
+        this.state = state;
+        this.processedAt = LocalDateTime.now();
+    }
+
+    /**
+     * Counts a failed attempt to settle the entry, and sets it aside as {@link SettlementState#FAILED} once it failed
+     * {@code maxAttempts} times. Returns whether it was set aside.
+     */
+    public boolean failed(int maxAttempts) {
+        this.attempts++;
+        if (attempts < maxAttempts) {
+            return false;
+        }
+
+        processed(SettlementState.FAILED);
+        return true;
+    }
+}
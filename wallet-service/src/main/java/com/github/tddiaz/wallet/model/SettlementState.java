@@ -0,0 +1,12 @@
+package com.github.tddiaz.wallet.model;
+
+public enum SettlementState {
+    RECEIVED,
+    SETTLED,
+    IGNORED,
+    NOT_FOUND,
+    /**
+     * Set aside after failing to settle max-attempts times, see {@link SettlementInboxEntry#failed(int)}.
+     */
+    FAILED
+}
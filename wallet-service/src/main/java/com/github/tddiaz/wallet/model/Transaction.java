@@ -1,15 +1,17 @@
 package com.github.tddiaz.wallet.model;
 
-import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.tddiaz.wallet.id.IdGenerator;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 
 @Data
 @Entity
 @Accessors(chain = true)
+@IdClass(TransactionId.class)
 public class Transaction {
     @Id
     private Long id;
@@ -23,7 +25,7 @@ public class Transaction {
     @Embedded
     @AttributeOverrides({
         @AttributeOverride(name = "currency", column = @Column(name = "transaction_currency", nullable = false)),
-        @AttributeOverride(name = "amount", column = @Column(name = "transaction_amount", nullable = false))
+        @AttributeOverride(name = "minorUnits", column = @Column(name = "transaction_amount", nullable = false))
     })
     private Money amount;
 
@@ -39,31 +41,47 @@ public class Transaction {
     @Column(nullable = false)
     private TransactionEntry entry;
 
+    @Id
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
     public static Transaction createDepositRequest(Long walletId, Money transactionAmount, String referenceId) {
+        return createDepositRequest(IdGenerator.DEFAULT.nextId(), walletId, transactionAmount, referenceId);
+    }
+
+    public static Transaction createDepositRequest(long id, Long walletId, Money transactionAmount, String referenceId) {
         return new Transaction()
-            .setId(TsidCreator.getTsid().toLong())
+            .setId(id)
             .setReferenceId(referenceId)
             .setWalletId(walletId)
             .setAmount(transactionAmount)
             .setStatus(TransactionStatus.PENDING)
             .setType(TransactionType.BANK_TRANSFER)
             .setEntry(TransactionEntry.DEPOSIT)
-            .setCreatedAt(LocalDateTime.now());
+            .setCreatedAt(now());
     }
 
     public static Transaction createWithdrawalRequest(Long walletId, Money transactionAmount, String referenceId) {
+        return createWithdrawalRequest(IdGenerator.DEFAULT.nextId(), walletId, transactionAmount, referenceId);
+    }
+
+    public static Transaction createWithdrawalRequest(long id, Long walletId, Money transactionAmount, String referenceId) {
         return new Transaction()
-            .setId(TsidCreator.getTsid().toLong())
+            .setId(id)
             .setReferenceId(referenceId)
             .setWalletId(walletId)
             .setAmount(transactionAmount)
             .setStatus(TransactionStatus.PENDING)
             .setType(TransactionType.BANK_TRANSFER)
             .setEntry(TransactionEntry.WITHDRAW)
-            .setCreatedAt(LocalDateTime.now());
+            .setCreatedAt(now());
+    }
+
+    /**
+     * The precision of the created_at column, so the key of a transaction created here matches its row.
+     */
+    private static LocalDateTime now() {
+        return LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
     }
 
     public void success() {
@@ -0,0 +1,22 @@
+package com.github.tddiaz.wallet.model;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.io.Serializable;
+import java.time.LocalDateTime;
+
+/**
+ * Primary key of {@link Transaction}. The table is partitioned by created_at, so the statements Hibernate issues by key,
+ * the select of a merge and the update of a dirty transaction, read a single partition.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class TransactionId implements Serializable {
+
+    private Long id;
+
+    private LocalDateTime createdAt;
+}
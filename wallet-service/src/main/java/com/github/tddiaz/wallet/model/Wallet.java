@@ -1,15 +1,13 @@
 package com.github.tddiaz.wallet.model;
 
-import com.github.f4b6a3.tsid.TsidCreator;
 import com.github.tddiaz.wallet.exception.InsufficientFundsException;
 import com.github.tddiaz.wallet.exception.InvalidAmountException;
+import com.github.tddiaz.wallet.id.IdGenerator;
 import jakarta.persistence.*;
 import lombok.Data;
 import lombok.experimental.Accessors;
 
-import java.math.BigDecimal;
 import java.time.LocalDateTime;
-import java.util.Objects;
 
 @Data
 @Entity
@@ -23,27 +21,26 @@ public class Wallet {
 
     @AttributeOverrides({
         @AttributeOverride(name = "currency", column = @Column(name = "balance_currency", nullable = false)),
-        @AttributeOverride(name = "amount", column = @Column(name = "balance_amount", nullable = false))
+        @AttributeOverride(name = "minorUnits", column = @Column(name = "balance_amount", nullable = false))
     })
     @Embedded
     private Money balance;
 
-    @AttributeOverrides({
-        @AttributeOverride(name = "currency", column = @Column(name = "balance_held_currency", nullable = false)),
-        @AttributeOverride(name = "amount", column = @Column(name = "balance_held_amount", nullable = false))
-    })
-    @Embedded
-    private Money balanceOnHold;
-
     @Column(nullable = false)
     private LocalDateTime createdAt;
 
+    @Version
+    private Long version;
+
     public static Wallet initialize(Long customerId, String currency) {
+        return initialize(IdGenerator.DEFAULT.nextId(), customerId, currency);
+    }
+
+    public static Wallet initialize(long id, Long customerId, String currency) {
         return new Wallet()
-            .setId(TsidCreator.getTsid().toLong())
+            .setId(id)
             .setCustomerId(customerId)
-            .setBalance(Money.create(currency, BigDecimal.ZERO))
-            .setBalanceOnHold(Money.create(currency, BigDecimal.ZERO))
+            .setBalance(Money.zero(currency))
             .setCreatedAt(LocalDateTime.now());
     }
 
@@ -55,6 +52,9 @@ public class Wallet {
         this.balance = this.balance.add(fundsToDeposit);
     }
 
+    /**
+     * Debits the balance. The withdrawn funds are held by a {@link WalletHold} of the withdraw transaction until it settles.
+     */
     public void withdraw(Money fundsToWithdraw) {
         if (fundsToWithdraw.isZero() || fundsToWithdraw.isNegative()) {
             throw new InvalidAmountException("Withdraw funds cannot be zero or negative. Amount is " + fundsToWithdraw.toFormattedString());
@@ -65,16 +65,11 @@ public class Wallet {
         }
 
         this.balance = this.balance.subtract(fundsToWithdraw);
-        this.balanceOnHold = this.balanceOnHold.add(fundsToWithdraw);
-    }
-
-    public void resetBalanceOnHold() {
-        this.balanceOnHold = Money.create(this.balance.getCurrency(), BigDecimal.ZERO);
     }
 
     @Transient
     public boolean isCurrencyMatched(String currency) {
-        return Objects.equals(this.getCurrency(), currency);
+        return this.getCurrency() == CurrencyRegistry.canonical(currency);
     }
 
     @Transient
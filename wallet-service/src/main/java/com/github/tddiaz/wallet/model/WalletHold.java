@@ -0,0 +1,41 @@
+package com.github.tddiaz.wallet.model;
+
+import jakarta.persistence.*;
+import lombok.Data;
+import lombok.experimental.Accessors;
+
+import java.time.LocalDateTime;
+
+/**
+ * Funds of a wallet held by a pending withdraw transaction, released when the withdrawal settles.
+ * The on-hold balance of a wallet is the sum of its holds.
+ */
+@Data
+@Entity
+@Accessors(chain = true)
+@Table(name = "wallet_hold")
+public class WalletHold {
+    @Id
+    private Long transactionId;
+
+    @Column(nullable = false)
+    private Long walletId;
+
+    @AttributeOverrides({
+        @AttributeOverride(name = "currency", column = @Column(name = "hold_currency", nullable = false)),
+        @AttributeOverride(name = "minorUnits", column = @Column(name = "hold_amount", nullable = false))
+    })
+    @Embedded
+    private Money amount;
+
+    @Column(nullable = false)
+    private LocalDateTime createdAt;
+
+    public static WalletHold of(Transaction withdrawTransaction) {
+        return new WalletHold()
+            .setTransactionId(withdrawTransaction.getId())
+            .setWalletId(withdrawTransaction.getWalletId())
+            .setAmount(withdrawTransaction.getAmount())
+            .setCreatedAt(withdrawTransaction.getCreatedAt());
+    }
+}
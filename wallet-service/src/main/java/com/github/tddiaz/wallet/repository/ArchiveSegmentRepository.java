@@ -0,0 +1,43 @@
+package com.github.tddiaz.wallet.repository;
+
+import com.github.tddiaz.wallet.model.ArchiveSegment;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.List;
+
+public interface ArchiveSegmentRepository extends JpaRepository<ArchiveSegment, Long> {
+
+    @Query(nativeQuery = true, value = """
+        SELECT s.file_name FROM archive_segment s
+        JOIN archive_segment_wallet w ON w.segment_id = s.id
+        WHERE w.wallet_id = :walletId
+        """)
+    List<String> findAllFileNamesByWalletId(@Param("walletId") Long walletId);
+
+    @Query(nativeQuery = true, value = "SELECT EXISTS (SELECT 1 FROM archive_segment_wallet WHERE wallet_id = :walletId)")
+    boolean existsByWalletId(@Param("walletId") Long walletId);
+
+    /**
+     * Counts the transactions of the wallet in the DB and in the archive in one statement, so a batch archived meanwhile
+     * is counted once.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT (SELECT count(*) FROM transaction WHERE wallet_id = :walletId)
+             + (SELECT coalesce(sum(row_count), 0) FROM archive_segment_wallet WHERE wallet_id = :walletId)
+        """)
+    long countTransactionsByWalletId(@Param("walletId") Long walletId);
+
+    /**
+     * Segments registered before their wallets were, see {@link ArchiveSegment#getRowCountByWalletId()}.
+     */
+    @Query("SELECT s FROM ArchiveSegment s WHERE s.rowCountByWalletId IS EMPTY")
+    List<ArchiveSegment> findAllNotIndexed();
+
+    /**
+     * Takes the transaction scoped archival lock, so a single instance archives at a time.
+     */
+    @Query(nativeQuery = true, value = "SELECT pg_try_advisory_xact_lock(:lockId)")
+    boolean tryLockArchival(@Param("lockId") long lockId);
+}
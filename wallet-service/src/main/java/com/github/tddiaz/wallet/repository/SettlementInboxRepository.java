@@ -0,0 +1,79 @@
+package com.github.tddiaz.wallet.repository;
+
+import com.github.tddiaz.wallet.model.SettlementInboxEntry;
+import com.github.tddiaz.wallet.model.SettlementState;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+public interface SettlementInboxRepository extends JpaRepository<SettlementInboxEntry, Long> {
+
+    /**
+     * Inserts the entry with the wallet of its transaction, looked up in the same statement.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO settlement_inbox (id, reference_id, wallet_id, banking_status, state, received_at)
+        SELECT :#{#entry.id},
+               :#{#entry.referenceId},
+               (SELECT t.wallet_id
+                FROM transaction_reference r
+                JOIN transaction t ON t.id = r.transaction_id AND t.created_at = r.created_at
+                WHERE r.reference_id = :#{#entry.referenceId}),
+               :#{#entry.bankingStatus},
+               :#{#entry.state.name()},
+               :#{#entry.receivedAt}
+        """)
+    int enqueue(@Param("entry") SettlementInboxEntry entry);
+
+    /**
+     * Takes the transaction scoped lock of a worker partition, so a single instance drains it at a time and keeps the wallet order.
+     */
+    @Query(nativeQuery = true, value = "SELECT pg_try_advisory_xact_lock(:lockSpace, :partition)")
+    boolean tryLockPartition(@Param("lockSpace") int lockSpace, @Param("partition") int partition);
+
+    /**
+     * Claims the oldest received entries of a partition. Unknown references have no wallet and go to partition 0.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT * FROM settlement_inbox
+        WHERE state = 'RECEIVED'
+          AND COALESCE(wallet_id, 0) % :partitions = :partition
+        ORDER BY id
+        LIMIT :batchSize
+        FOR UPDATE SKIP LOCKED
+        """)
+    List<SettlementInboxEntry> claimReceived(@Param("partitions") int partitions, @Param("partition") int partition, @Param("batchSize") int batchSize);
+
+    /**
+     * Claims a single entry, when it is still received.
+     */
+    @Query(nativeQuery = true, value = "SELECT * FROM settlement_inbox WHERE id = :id AND state = 'RECEIVED' FOR UPDATE SKIP LOCKED")
+    Optional<SettlementInboxEntry> claimReceivedById(@Param("id") Long id);
+
+    Optional<SettlementInboxEntry> findFirstByReferenceIdOrderByIdDesc(String referenceId);
+
+    /**
+     * Deletes up to {@code batchSize} entries processed before the given time, oldest first.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        DELETE FROM settlement_inbox
+        WHERE id IN (SELECT id FROM settlement_inbox
+                     WHERE state <> 'RECEIVED'
+                       AND processed_at < :processedBefore
+                     ORDER BY processed_at
+                     LIMIT :batchSize)
+        """)
+    int deleteProcessedBefore(@Param("processedBefore") LocalDateTime processedBefore, @Param("batchSize") int batchSize);
+
+    @Query("SELECT MIN(e.receivedAt) FROM SettlementInboxEntry e WHERE e.state = :state")
+    Optional<LocalDateTime> findOldestReceivedAt(@Param("state") SettlementState state);
+
+    long countByState(SettlementState state);
+}
@@ -1,23 +1,173 @@
 package com.github.tddiaz.wallet.repository;
 
 import com.github.tddiaz.wallet.model.Transaction;
-import jakarta.persistence.LockModeType;
+import com.github.tddiaz.wallet.model.TransactionId;
+import jakarta.persistence.QueryHint;
+import org.hibernate.jpa.AvailableHints;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
-import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.jpa.repository.QueryHints;
 import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.stream.Stream;
 
-public interface TransactionRepository extends JpaRepository<Transaction, Long> {
+public interface TransactionRepository extends JpaRepository<Transaction, TransactionId> {
 
-    Optional<Transaction> findByReferenceId(String referenceId);
+    int STREAM_FETCH_SIZE = 500;
 
-    @Lock(LockModeType.PESSIMISTIC_READ)
-    @Query("SELECT t FROM Transaction t WHERE t.referenceId = :referenceId")
-    Optional<Transaction> findByReferenceIdWithExclusiveLock(@Param("referenceId") String referenceId);
+    /**
+     * The table is partitioned by created_at. Lookups by reference id find the created_at of the reference in
+     * transaction_reference first, so they read one partition instead of probing each of them.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT t.* FROM transaction t
+        WHERE (t.id, t.created_at) = (SELECT r.transaction_id, r.created_at FROM transaction_reference r WHERE r.reference_id = :referenceId)
+        """)
+    Optional<Transaction> findByReferenceId(@Param("referenceId") String referenceId);
+
+    @Query(nativeQuery = true, value = "SELECT EXISTS (SELECT 1 FROM transaction_reference WHERE reference_id = :referenceId)")
+    boolean existsByReferenceId(@Param("referenceId") String referenceId);
+
+    /**
+     * Returns the given reference ids that are registered, including the ones of archived transactions.
+     */
+    @Query(nativeQuery = true, value = "SELECT reference_id FROM transaction_reference WHERE reference_id IN (:referenceIds)")
+    List<String> findRegisteredReferenceIds(@Param("referenceIds") Collection<String> referenceIds);
+
+    /**
+     * Reads every reference id through a server-side cursor, {@value #STREAM_FETCH_SIZE} per round trip.
+     * Must be consumed and closed inside a transaction.
+     */
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+        @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query(nativeQuery = true, value = "SELECT reference_id FROM transaction_reference")
+    Stream<String> streamAllReferenceIds();
+
+    /**
+     * Moves a pending transaction to the given status in one compare-and-set statement and returns it,
+     * empty when it is unknown or no longer pending.
+     * <p>
+     * Not {@code @Modifying}: the {@code UPDATE ... RETURNING} is run as a query and the row it returns is mapped to the entity
+     * like a {@code SELECT}, saving the read that would follow a row count. Hence it needs the caller's read-write transaction,
+     * a read-only one would reject the update, and it must run before the transaction is loaded in the same persistence context,
+     * since an entity already loaded is returned as it is, with its old status.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(nativeQuery = true, value = """
+        UPDATE transaction
+        SET status = :status
+        WHERE (id, created_at) = (SELECT r.transaction_id, r.created_at FROM transaction_reference r WHERE r.reference_id = :referenceId)
+          AND status = 'PENDING'
+        RETURNING *
+        """)
+    Optional<Transaction> updateStatusIfPending(@Param("referenceId") String referenceId, @Param("status") String status);
+
+    /**
+     * Moves the pending ones of the given transactions to the given status and returns them. Rows are locked in id order,
+     * so concurrent updates of the same transactions cannot deadlock, and a row settled meanwhile is skipped.
+     * An {@code UPDATE ... RETURNING} query like {@link #updateStatusIfPending}, with the same constraints.
+     */
+    @Transactional(propagation = Propagation.MANDATORY)
+    @Query(nativeQuery = true, value = """
+        WITH pending AS (
+            SELECT t.id, t.created_at FROM transaction t
+            WHERE (t.id, t.created_at) IN (SELECT r.transaction_id, r.created_at FROM transaction_reference r WHERE r.reference_id IN (:referenceIds))
+              AND t.status = 'PENDING'
+            ORDER BY t.id
+            FOR UPDATE
+        )
+        UPDATE transaction t
+        SET status = :status
+        FROM pending p
+        WHERE (t.id, t.created_at) = (p.id, p.created_at)
+        RETURNING t.*
+        """)
+    List<Transaction> updateStatusesIfPending(@Param("referenceIds") Collection<String> referenceIds, @Param("status") String status);
+
+    @Query(nativeQuery = true, value = """
+        SELECT t.* FROM transaction t
+        WHERE (t.id, t.created_at) IN (SELECT r.transaction_id, r.created_at FROM transaction_reference r WHERE r.reference_id IN (:referenceIds))
+        """)
+    List<Transaction> findAllByReferenceIdIn(@Param("referenceIds") Collection<String> referenceIds);
+
+    /**
+     * Rows are locked in id order, so concurrent batches touching the same transactions cannot deadlock.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT t.* FROM transaction t
+        WHERE (t.id, t.created_at) IN (SELECT r.transaction_id, r.created_at FROM transaction_reference r WHERE r.reference_id IN (:referenceIds))
+        ORDER BY t.id
+        FOR UPDATE
+        """)
+    List<Transaction> findAllByReferenceIdInWithExclusiveLock(@Param("referenceIds") Collection<String> referenceIds);
 
     Page<Transaction> findAllByWalletId(Long walletId, Pageable pageable);
+
+    Slice<Transaction> findAllByWalletIdOrderByCreatedAtDescIdDesc(Long walletId, Pageable pageable);
+
+    /**
+     * Seeks past the given position in {@code created_at DESC, id DESC} order. The redundant {@code created_at <=}
+     * bound lets the scan start at the cursor instead of filtering the rows before it.
+     */
+    @Query("""
+        SELECT t FROM Transaction t
+        WHERE t.walletId = :walletId
+          AND t.createdAt <= :createdAt
+          AND (t.createdAt < :createdAt OR t.id < :id)
+        ORDER BY t.createdAt DESC, t.id DESC
+        """)
+    Slice<Transaction> findAllByWalletIdAfter(@Param("walletId") Long walletId, @Param("createdAt") LocalDateTime createdAt,
+                                              @Param("id") Long id, Pageable pageable);
+
+    /**
+     * Reads the whole history of a wallet through a server-side cursor, {@value #STREAM_FETCH_SIZE} rows per round trip.
+     * Must be consumed and closed inside a transaction.
+     */
+    @QueryHints({
+        @QueryHint(name = AvailableHints.HINT_FETCH_SIZE, value = "" + STREAM_FETCH_SIZE),
+        @QueryHint(name = AvailableHints.HINT_READ_ONLY, value = "true")
+    })
+    @Query("SELECT t FROM Transaction t WHERE t.walletId = :walletId ORDER BY t.createdAt DESC, t.id DESC")
+    Stream<Transaction> streamAllByWalletId(@Param("walletId") Long walletId);
+
+    /**
+     * The oldest settled transactions created before the given time, for the archival. Read from
+     * idx_transaction_settled_created_at, so every row scanned is returned.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT * FROM transaction
+        WHERE status IN ('SUCCESS', 'FAILED')
+          AND created_at < :createdBefore
+        ORDER BY created_at
+        LIMIT :limit
+        """)
+    List<Transaction> findSettledCreatedBefore(@Param("createdBefore") LocalDateTime createdBefore, @Param("limit") int limit);
+
+    /**
+     * Deletes the given transactions, created between the given times. The bounds let the statement skip the partitions
+     * outside of them, which the ids alone cannot.
+     */
+    @Modifying
+    @Query("DELETE FROM Transaction t WHERE t.id IN :ids AND t.createdAt BETWEEN :createdFrom AND :createdTo")
+    int deleteAllByIdIn(@Param("ids") Collection<Long> ids, @Param("createdFrom") LocalDateTime createdFrom,
+                        @Param("createdTo") LocalDateTime createdTo);
+
+    /**
+     * Creates the partition of the month of the given date, when it does not exist yet, and returns its name.
+     */
+    @Query(nativeQuery = true, value = "SELECT create_transaction_partition(:month)")
+    String createPartition(@Param("month") LocalDate month);
 }
@@ -0,0 +1,27 @@
+package com.github.tddiaz.wallet.repository;
+
+import java.math.BigDecimal;
+
+/**
+ * Balances of a wallet read together, see {@link WalletRepository#findBalanceByIdAndCustomerId}.
+ */
+public interface WalletBalanceView {
+
+    Long getWalletId();
+
+    Long getCustomerId();
+
+    String getCurrency();
+
+    BigDecimal getBalanceAmount();
+
+    /**
+     * Sum of the balance buckets of the wallet, zero when it has none.
+     */
+    BigDecimal getBucketsAmount();
+
+    /**
+     * Sum of the holds of the wallet, zero when it has none.
+     */
+    BigDecimal getHeldAmount();
+}
@@ -0,0 +1,25 @@
+package com.github.tddiaz.wallet.repository;
+
+import com.github.tddiaz.wallet.model.WalletHold;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.math.BigDecimal;
+
+public interface WalletHoldRepository extends JpaRepository<WalletHold, Long> {
+
+    /**
+     * Sum of the holds of a wallet, zero when it has none. Reads only idx_wallet_hold_wallet_id.
+     */
+    @Query(nativeQuery = true, value = "SELECT COALESCE(SUM(hold_amount), 0) FROM wallet_hold WHERE wallet_id = :walletId")
+    BigDecimal sumAmountByWalletId(@Param("walletId") Long walletId);
+
+    /**
+     * Releases the hold of a settled withdraw transaction. Returns 0 when it was already released.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = "DELETE FROM wallet_hold WHERE transaction_id = :transactionId")
+    int release(@Param("transactionId") Long transactionId);
+}
@@ -1,12 +1,17 @@
 package com.github.tddiaz.wallet.repository;
 
+import com.github.tddiaz.wallet.model.Transaction;
 import com.github.tddiaz.wallet.model.Wallet;
 import jakarta.persistence.LockModeType;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.data.jpa.repository.Lock;
+import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 
+import java.math.BigDecimal;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
 
 public interface WalletRepository extends JpaRepository<Wallet, Long> {
@@ -15,9 +20,183 @@ public interface WalletRepository extends JpaRepository<Wallet, Long> {
     @Query("SELECT w FROM Wallet w WHERE w.id = :id")
     Optional<Wallet> findByIdWithExclusiveLock(@Param("id") Long walletId);
 
+    /**
+     * Rows are locked in id order, so concurrent batches touching the same wallets cannot deadlock.
+     */
+    @Lock(LockModeType.PESSIMISTIC_WRITE)
+    @Query("SELECT w FROM Wallet w WHERE w.id IN :ids ORDER BY w.id")
+    List<Wallet> findAllByIdInWithExclusiveLock(@Param("ids") Collection<Long> walletIds);
+
     Optional<Wallet> findByIdAndCustomerId(Long walletId, Long customerId);
 
     @Lock(LockModeType.PESSIMISTIC_WRITE)
     @Query("SELECT w FROM Wallet w WHERE w.id = :id AND w.customerId = :customerId")
     Optional<Wallet> findByIdAndCustomerIdWithExclusiveLock(@Param("id") Long walletId, @Param("customerId") Long customerId);
+
+    /**
+     * Debits the wallet and inserts the pending withdraw transaction and its hold in one statement.
+     * Returns 0 when nothing was debited, i.e. the wallet was not found, the currency did not match or the balance was not enough.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        WITH debited_wallet AS (
+            UPDATE wallet
+            SET balance_amount = balance_amount - :#{#transaction.amount.amount},
+                version        = version + 1
+            WHERE id = :#{#transaction.walletId}
+              AND customer_id = :customerId
+              AND balance_currency = :#{#transaction.amount.currency}
+              AND balance_amount >= :#{#transaction.amount.amount}
+            RETURNING id
+        ), held_funds AS (
+            INSERT INTO wallet_hold (transaction_id, wallet_id, hold_currency, hold_amount, created_at)
+            SELECT :#{#transaction.id},
+                   debited_wallet.id,
+                   :#{#transaction.amount.currency},
+                   :#{#transaction.amount.amount},
+                   :#{#transaction.createdAt}
+            FROM debited_wallet
+        )
+        INSERT INTO transaction (id, reference_id, wallet_id, transaction_currency, transaction_amount, status, transaction_type, entry, created_at)
+        SELECT :#{#transaction.id},
+               :#{#transaction.referenceId},
+               debited_wallet.id,
+               :#{#transaction.amount.currency},
+               :#{#transaction.amount.amount},
+               :#{#transaction.status.name()},
+               :#{#transaction.type.name()},
+               :#{#transaction.entry.name()},
+               :#{#transaction.createdAt}
+        FROM debited_wallet
+        """)
+    int withdrawAndInsertTransaction(@Param("customerId") Long customerId, @Param("transaction") Transaction transaction);
+
+    /**
+     * Adds the amount to a bucket of the wallet, creating the bucket when it does not exist yet.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        INSERT INTO wallet_balance_bucket (wallet_id, bucket, balance_amount)
+        VALUES (:walletId, :bucket, :amount)
+        ON CONFLICT (wallet_id, bucket) DO UPDATE SET balance_amount = wallet_balance_bucket.balance_amount + EXCLUDED.balance_amount
+        """)
+    int creditBucket(@Param("walletId") Long walletId, @Param("bucket") int bucket, @Param("amount") BigDecimal amount);
+
+    /**
+     * Debits a single bucket holding enough funds and inserts the pending withdraw transaction and its hold in one statement.
+     * Buckets locked by other statements are skipped. Returns 0 when nothing was debited, i.e. the wallet was not found,
+     * the currency did not match or no bucket free at the time held enough on its own.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        WITH debited_bucket AS (
+            UPDATE wallet_balance_bucket b
+            SET balance_amount = b.balance_amount - :#{#transaction.amount.amount}
+            FROM (SELECT wallet_id, bucket
+                  FROM wallet_balance_bucket
+                  WHERE wallet_id = :#{#transaction.walletId}
+                    AND balance_amount >= :#{#transaction.amount.amount}
+                  ORDER BY balance_amount DESC
+                  LIMIT 1
+                  FOR UPDATE SKIP LOCKED) candidate,
+                 wallet w
+            WHERE b.wallet_id = candidate.wallet_id
+              AND b.bucket = candidate.bucket
+              AND w.id = b.wallet_id
+              AND w.customer_id = :customerId
+              AND w.balance_currency = :#{#transaction.amount.currency}
+            RETURNING b.wallet_id
+        ), held_funds AS (
+            INSERT INTO wallet_hold (transaction_id, wallet_id, hold_currency, hold_amount, created_at)
+            SELECT :#{#transaction.id},
+                   debited_bucket.wallet_id,
+                   :#{#transaction.amount.currency},
+                   :#{#transaction.amount.amount},
+                   :#{#transaction.createdAt}
+            FROM debited_bucket
+        )
+        INSERT INTO transaction (id, reference_id, wallet_id, transaction_currency, transaction_amount, status, transaction_type, entry, created_at)
+        SELECT :#{#transaction.id},
+               :#{#transaction.referenceId},
+               debited_bucket.wallet_id,
+               :#{#transaction.amount.currency},
+               :#{#transaction.amount.amount},
+               :#{#transaction.status.name()},
+               :#{#transaction.type.name()},
+               :#{#transaction.entry.name()},
+               :#{#transaction.createdAt}
+        FROM debited_bucket
+        """)
+    int withdrawFromBucketAndInsertTransaction(@Param("customerId") Long customerId, @Param("transaction") Transaction transaction);
+
+    /**
+     * Locks the buckets of the wallet in bucket order, zeroes them and returns the sum of what they held.
+     * Must run before the wallet row is locked, settlements lock a bucket without ever locking the wallet row.
+     */
+    @Query(nativeQuery = true, value = """
+        WITH locked_buckets AS (
+            SELECT wallet_id, bucket, balance_amount
+            FROM wallet_balance_bucket
+            WHERE wallet_id = :walletId
+              AND balance_amount <> 0
+            ORDER BY bucket
+            FOR UPDATE
+        ), emptied_buckets AS (
+            UPDATE wallet_balance_bucket b
+            SET balance_amount = 0
+            FROM locked_buckets
+            WHERE b.wallet_id = locked_buckets.wallet_id
+              AND b.bucket = locked_buckets.bucket
+            RETURNING locked_buckets.balance_amount
+        )
+        SELECT COALESCE(SUM(balance_amount), 0) FROM emptied_buckets
+        """)
+    BigDecimal emptyBuckets(@Param("walletId") Long walletId);
+
+    /**
+     * Empties the buckets of the wallet into its row in one statement and returns the number of wallet rows credited,
+     * 0 when the buckets held nothing. The buckets are locked first, as in {@link #emptyBuckets}, and the version is bumped.
+     */
+    @Modifying
+    @Query(nativeQuery = true, value = """
+        WITH locked_buckets AS (
+            SELECT wallet_id, bucket, balance_amount
+            FROM wallet_balance_bucket
+            WHERE wallet_id = :walletId
+              AND balance_amount <> 0
+            ORDER BY bucket
+            FOR UPDATE
+        ), emptied_buckets AS (
+            UPDATE wallet_balance_bucket b
+            SET balance_amount = 0
+            FROM locked_buckets
+            WHERE b.wallet_id = locked_buckets.wallet_id
+              AND b.bucket = locked_buckets.bucket
+            RETURNING locked_buckets.balance_amount
+        )
+        UPDATE wallet
+        SET balance_amount = balance_amount + bucket_funds.amount,
+            version        = version + 1
+        FROM (SELECT SUM(balance_amount) AS amount FROM emptied_buckets) bucket_funds
+        WHERE id = :walletId
+          AND bucket_funds.amount IS NOT NULL
+        """)
+    int moveBucketFundsToWallet(@Param("walletId") Long walletId);
+
+    /**
+     * Reads the wallet row, the sum of its buckets and the sum of its holds in one statement, so they all come from the same snapshot
+     * and a withdrawal moving funds from a bucket or the row to a hold is never counted twice or missed.
+     */
+    @Query(nativeQuery = true, value = """
+        SELECT w.id               AS "walletId",
+               w.customer_id      AS "customerId",
+               w.balance_currency AS "currency",
+               w.balance_amount   AS "balanceAmount",
+               (SELECT COALESCE(SUM(b.balance_amount), 0) FROM wallet_balance_bucket b WHERE b.wallet_id = w.id) AS "bucketsAmount",
+               (SELECT COALESCE(SUM(h.hold_amount), 0) FROM wallet_hold h WHERE h.wallet_id = w.id) AS "heldAmount"
+        FROM wallet w
+        WHERE w.id = :walletId
+          AND w.customer_id = :customerId
+        """)
+    Optional<WalletBalanceView> findBalanceByIdAndCustomerId(@Param("walletId") Long walletId, @Param("customerId") Long customerId);
 }
@@ -0,0 +1,74 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.config.ArchiveConfiguration.TransactionArchiving;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.repository.ArchiveSegmentRepository;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDateTime;
+import java.util.Collections;
+
+/**
+ * Moves a batch of settled transactions older than the retention into a new segment file. The file is registered and
+ * the rows are deleted in one DB transaction, a file left by a rolled back batch is removed and never read.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ArchiveTransactionsUseCase {
+
+    private static final long ARCHIVAL_LOCK_ID = 0x5E6A_4C41L;
+
+    private final TransactionArchiving transactionArchiving;
+
+    private final TransactionRepository transactionRepository;
+
+    private final ArchiveSegmentRepository archiveSegmentRepository;
+
+    private final TransactionArchive transactionArchive;
+
+    private final PlatformTransactionManager transactionManager;
+
+    /**
+     * Returns the number of archived transactions, 0 when there is nothing to archive or another instance is archiving.
+     */
+    public int execute() {
+        return new TransactionTemplate(transactionManager).execute(status -> {
+            if (!archiveSegmentRepository.tryLockArchival(ARCHIVAL_LOCK_ID)) {
+                return 0;
+            }
+
+            var createdBefore = LocalDateTime.now().minus(transactionArchiving.getSettledOlderThan());
+            var transactions = transactionRepository.findSettledCreatedBefore(createdBefore, transactionArchiving.getBatchSize());
+            if (transactions.isEmpty()) {
+                return 0;
+            }
+
+            var segment = transactionArchive.write(transactions);
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) {
+                        transactionArchive.discard(segment);
+                    }
+                }
+            });
+
+            archiveSegmentRepository.save(segment);
+            var createdAts = transactions.stream().map(Transaction::getCreatedAt).toList();
+            transactionRepository.deleteAllByIdIn(transactions.stream().map(Transaction::getId).toList(),
+                Collections.min(createdAts), Collections.max(createdAts));
+
+            log.info("archived {} transactions created before {} to {}", transactions.size(), createdBefore, segment.getFileName());
+            return transactions.size();
+        });
+    }
+}
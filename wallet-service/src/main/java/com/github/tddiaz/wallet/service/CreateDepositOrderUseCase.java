@@ -1,5 +1,8 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.cache.ReferenceIdFilter;
+import com.github.tddiaz.wallet.concurrency.SingleFlight;
 import com.github.tddiaz.wallet.config.SupportedCurrencyConfiguration.SupportedCurrencies;
 import com.github.tddiaz.wallet.config.TransactionLimitsConfiguration.DepositLimit;
 import com.github.tddiaz.wallet.controller.dto.DepositRequestDto;
@@ -7,7 +10,12 @@ import com.github.tddiaz.wallet.controller.dto.DepositResponseDto;
 import com.github.tddiaz.wallet.exception.AmountNotWithinLimitException;
 import com.github.tddiaz.wallet.exception.CurrencyMismatchException;
 import com.github.tddiaz.wallet.exception.CurrencyNotSupportedException;
+import com.github.tddiaz.wallet.exception.DuplicateReferenceIdException;
 import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.Operation;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.UseCase;
 import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.model.Transaction;
 import com.github.tddiaz.wallet.repository.TransactionRepository;
@@ -15,7 +23,8 @@ import com.github.tddiaz.wallet.repository.WalletRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 @Service
 @RequiredArgsConstructor
@@ -29,18 +38,41 @@ public class CreateDepositOrderUseCase {
 
     private final SupportedCurrencies supportedCurrencies;
 
-    @Transactional
+    private final IdGenerator idGenerator;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final WalletMetrics walletMetrics;
+
+    private final ReferenceIdFilter referenceIdFilter;
+
+    private final TransactionArchive transactionArchive;
+
+    private final SingleFlight<DepositResponseDto> inFlightOrders = new SingleFlight<>();
+
     public DepositResponseDto execute(DepositRequestDto request) {
+        // the transaction is opened inside the timing, so the wait for a connection and the commit are part of it
+        // a retried order arriving while the first one is still running gets its response, instead of failing on the reference id
+        return walletMetrics.timeUseCase(UseCase.CREATE_DEPOSIT_ORDER, () -> inFlightOrders.execute(request.referenceId(),
+            () -> referenceIdFilter.placeOrder(request.referenceId(),
+                () -> new TransactionTemplate(transactionManager).execute(status -> createDepositOrder(request)),
+                () -> replayArchivedOrder(request)),
+            () -> walletMetrics.idempotentReplay(Operation.DEPOSIT, request.referenceId())));
+    }
+
+    private DepositResponseDto createDepositOrder(DepositRequestDto request) {
         log.info("processing deposit order request: {}", request);
 
-        var existingTransaction = transactionRepository.findByReferenceId(request.referenceId());
+        var existingTransaction = referenceIdFilter.findByReferenceId(request.referenceId(),
+            () -> transactionRepository.findByReferenceId(request.referenceId()));
         if (existingTransaction.isPresent()) {
+            walletMetrics.idempotentReplay(Operation.DEPOSIT, request.referenceId());
             Transaction transaction = existingTransaction.get();
             return new DepositResponseDto(transaction.getId(), transaction.getStatus().name());
         }
 
         var depositAmount = Money.create(request.amount().currency(), request.amount().value());
-        validateDepositAmount(depositAmount);
+        validateDepositAmount(request.walletId(), depositAmount);
 
         var wallet = walletRepository.findByIdAndCustomerId(request.walletId(), request.customerId())
             .orElseThrow(() -> new NotFoundException("Wallet not found"));
@@ -49,10 +81,12 @@ public class CreateDepositOrderUseCase {
         }
 
         var depositTransaction = Transaction.createDepositRequest(
+            idGenerator.nextId(),
             wallet.getId(),
             depositAmount,
             request.referenceId()
         );
+        referenceIdFilter.add(request.referenceId());
         transactionRepository.save(depositTransaction);
 
         log.info("deposit transaction has been successfully saved to DB - {}", depositTransaction);
@@ -60,12 +94,21 @@ public class CreateDepositOrderUseCase {
         return new DepositResponseDto(depositTransaction.getId(), depositTransaction.getStatus().name());
     }
 
-    private void validateDepositAmount(Money depositAmount) {
+    private DepositResponseDto replayArchivedOrder(DepositRequestDto request) {
+        var transaction = transactionArchive.findByReferenceId(request.walletId(), request.referenceId())
+            .orElseThrow(() -> new DuplicateReferenceIdException(String.format("Reference id %s is already used", request.referenceId())));
+
+        walletMetrics.idempotentReplay(Operation.DEPOSIT, request.referenceId());
+        return new DepositResponseDto(transaction.getId(), transaction.getStatus().name());
+    }
+
+    private void validateDepositAmount(Long walletId, Money depositAmount) {
         if (!supportedCurrencies.isSupported(depositAmount.getCurrency())) {
             throw new CurrencyNotSupportedException(String.format("Currency '%s' is not supported", depositAmount.getCurrency()));
         }
 
         if (!depositLimit.isWithinLimit(depositAmount.getAmount())) {
+            walletMetrics.limitRejected(Operation.DEPOSIT, walletId, depositAmount);
             throw new AmountNotWithinLimitException(String.format("Invalid deposit amount. Max limit is '%s' and Min limit is '%s'",
                 depositLimit.getMax().toPlainString(), depositLimit.getMin().toPlainString()));
         }
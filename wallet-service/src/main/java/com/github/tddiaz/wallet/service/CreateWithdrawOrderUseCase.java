@@ -1,5 +1,15 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.cache.ReferenceIdFilter;
+import com.github.tddiaz.wallet.cache.WalletDetailsCache;
+import com.github.tddiaz.wallet.concurrency.SingleFlight;
+import com.github.tddiaz.wallet.concurrency.WalletCommandEngine;
+import com.github.tddiaz.wallet.concurrency.WalletLockManager;
+import com.github.tddiaz.wallet.concurrency.WalletTransactionExecutor;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.BalanceBuckets;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WithdrawExecution;
 import com.github.tddiaz.wallet.config.SupportedCurrencyConfiguration.SupportedCurrencies;
 import com.github.tddiaz.wallet.config.TransactionLimitsConfiguration.WithdrawalLimit;
 import com.github.tddiaz.wallet.controller.dto.WithdrawRequestDto;
@@ -7,15 +17,28 @@ import com.github.tddiaz.wallet.controller.dto.WithdrawResponseDto;
 import com.github.tddiaz.wallet.exception.AmountNotWithinLimitException;
 import com.github.tddiaz.wallet.exception.CurrencyMismatchException;
 import com.github.tddiaz.wallet.exception.CurrencyNotSupportedException;
+import com.github.tddiaz.wallet.exception.DuplicateReferenceIdException;
+import com.github.tddiaz.wallet.exception.InsufficientFundsException;
 import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.LockQuery;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.Operation;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.UseCase;
 import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.model.WalletHold;
 import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletHoldRepository;
 import com.github.tddiaz.wallet.repository.WalletRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.math.BigDecimal;
+import java.util.Objects;
+import java.util.Optional;
 
 @Service
 @RequiredArgsConstructor
@@ -25,50 +48,278 @@ public class CreateWithdrawOrderUseCase {
 
     private final TransactionRepository transactionRepository;
 
+    private final WalletHoldRepository walletHoldRepository;
+
     private final WithdrawalLimit withdrawalLimit;
 
     private final SupportedCurrencies supportedCurrencies;
 
-    @Transactional
+    private final WithdrawExecution withdrawExecution;
+
+    private final WalletLocking walletLocking;
+
+    private final BalanceBuckets balanceBuckets;
+
+    private final WalletTransactionExecutor walletTransactionExecutor;
+
+    private final WalletLockManager walletLockManager;
+
+    private final WalletCommandEngine walletCommandEngine;
+
+    private final WalletDetailsCache walletDetailsCache;
+
+    private final IdGenerator idGenerator;
+
+    private final WalletMetrics walletMetrics;
+
+    private final ReferenceIdFilter referenceIdFilter;
+
+    private final TransactionArchive transactionArchive;
+
+    private final SingleFlight<WithdrawResponseDto> inFlightOrders = new SingleFlight<>();
+
     public WithdrawResponseDto execute(WithdrawRequestDto request) {
+        // a retried order arriving while the first one is still running gets its response, without queuing on the wallet lock
+        return walletMetrics.timeUseCase(UseCase.CREATE_WITHDRAW_ORDER, () -> inFlightOrders.execute(request.referenceId(),
+            () -> referenceIdFilter.placeOrder(request.referenceId(), () -> createWithdrawOrder(request), () -> replayArchivedOrder(request)),
+            () -> walletMetrics.idempotentReplay(Operation.WITHDRAW, request.referenceId())));
+    }
+
+    private WithdrawResponseDto createWithdrawOrder(WithdrawRequestDto request) {
         log.info("processing withdraw order request: {}", request);
 
-        var existingTransaction = transactionRepository.findByReferenceId(request.referenceId());
+        try {
+            if (balanceBuckets.isSharded(request.walletId())) {
+                return walletLockManager.executeWithLock(request.walletId(),
+                    () -> walletTransactionExecutor.execute(() -> placeWithdrawOrder(request)));
+            }
+
+            return placeWithdrawOrderOnWalletRow(request);
+        } catch (InsufficientFundsException e) {
+            walletMetrics.insufficientFunds();
+            throw e;
+        }
+    }
+
+    private WithdrawResponseDto placeWithdrawOrderOnWalletRow(WithdrawRequestDto request) {
+        try {
+            return placeWithdrawOrderOnWalletRowOnce(request);
+        } catch (InsufficientFundsException e) {
+            // a wallet not listed here can still have buckets, credited by an instance listing it or before it was unlisted
+            if (!moveBucketFundsToWalletRow(request)) {
+                throw e;
+            }
+            return placeWithdrawOrderOnWalletRowOnce(request);
+        }
+    }
+
+    private WithdrawResponseDto placeWithdrawOrderOnWalletRowOnce(WithdrawRequestDto request) {
+        // the wallets listed here keep out of the engine, their buckets are updated outside of it
+        if (walletCommandEngine.isEnabled()) {
+            return placeWithdrawOrderOnCommandEngine(request);
+        }
+
+        return walletLockManager.executeWithLock(request.walletId(),
+            () -> walletTransactionExecutor.execute(() -> placeWithdrawOrder(request)));
+    }
+
+    /**
+     * Moves the funds of the buckets of a wallet not listed here to its row, when together they hold enough for the order.
+     * Returns whether the order is worth placing again. Reads without a lock first, so the wallets without buckets,
+     * i.e. all of them unless some are listed, only pay for that read.
+     */
+    private boolean moveBucketFundsToWalletRow(WithdrawRequestDto request) {
+        var balance = walletRepository.findBalanceByIdAndCustomerId(request.walletId(), request.customerId());
+        if (balance.isEmpty()) {
+            return false;
+        }
+
+        var balanceAmount = balance.get().getBalanceAmount();
+        var bucketsAmount = balance.get().getBucketsAmount();
+        if (bucketsAmount.signum() == 0) {
+            // the buckets may have been emptied into the row by a concurrent order since the row was found short
+            return balanceAmount.compareTo(request.amount().value()) >= 0;
+        }
+        if (balanceAmount.add(bucketsAmount).compareTo(request.amount().value()) < 0) {
+            return false;
+        }
+
+        if (walletCommandEngine.isEnabled()) {
+            // the engine owns the wallet row, a write outside of it would fail its groups on the version check
+            walletCommandEngine.execute(request.walletId(), wallet -> {
+                var bucketFunds = walletRepository.emptyBuckets(wallet.getId());
+                if (bucketFunds.signum() > 0) {
+                    wallet.deposit(Money.create(wallet.getCurrency(), bucketFunds));
+                }
+                return bucketFunds;
+            });
+        } else {
+            // one conditional statement bumping the version, whatever the mode, so it takes no lock of its own on the wallet row
+            walletTransactionExecutor.execute(() -> walletRepository.moveBucketFundsToWallet(request.walletId()));
+        }
+        return true;
+    }
+
+    private WithdrawResponseDto replayArchivedOrder(WithdrawRequestDto request) {
+        var transaction = transactionArchive.findByReferenceId(request.walletId(), request.referenceId())
+            .orElseThrow(() -> new DuplicateReferenceIdException(String.format("Reference id %s is already used", request.referenceId())));
+
+        walletMetrics.idempotentReplay(Operation.WITHDRAW, request.referenceId());
+        return new WithdrawResponseDto(transaction.getId(), transaction.getStatus().name());
+    }
+
+    private WithdrawResponseDto placeWithdrawOrder(WithdrawRequestDto request) {
+        var existingTransaction = referenceIdFilter.findByReferenceId(request.referenceId(),
+            () -> transactionRepository.findByReferenceId(request.referenceId()));
         if (existingTransaction.isPresent()) {
+            walletMetrics.idempotentReplay(Operation.WITHDRAW, request.referenceId());
             Transaction transaction = existingTransaction.get();
             return new WithdrawResponseDto(transaction.getId(), transaction.getStatus().name());
         }
 
         var withdrawAmount = Money.create(request.amount().currency(), request.amount().value());
-        validateWithdrawAmount(withdrawAmount);
+        validateWithdrawAmount(request.walletId(), withdrawAmount);
 
-        var wallet = walletRepository.findByIdAndCustomerIdWithExclusiveLock(request.walletId(), request.customerId())
-            .orElseThrow(() -> new NotFoundException("Wallet not found"));
-        if (!wallet.isCurrencyMatched(withdrawAmount.getCurrency())) {
-            throw new CurrencyMismatchException(String.format("Customer wallet only supports '%s' as currency", wallet.getCurrency()));
+        var withdrawTransaction = balanceBuckets.isSharded(request.walletId())
+            ? withdrawFromBuckets(request, withdrawAmount)
+            : switch (withdrawExecution.getMode()) {
+                case LOCKING -> withdrawWithWalletLock(request, withdrawAmount);
+                case CONDITIONAL_UPDATE -> withdrawWithConditionalUpdate(request, withdrawAmount);
+            };
+
+        log.debug("withdraw transaction has been successfully saved to DB - {}", withdrawTransaction);
+
+        return new WithdrawResponseDto(withdrawTransaction.getId(), withdrawTransaction.getStatus().name());
+    }
+
+    private WithdrawResponseDto placeWithdrawOrderOnCommandEngine(WithdrawRequestDto request) {
+        // the lookups and validations only read, so they run on the caller thread and keep the partition free for writes
+        var existingTransaction = referenceIdFilter.findByReferenceId(request.referenceId(),
+            () -> transactionRepository.findByReferenceId(request.referenceId()));
+        if (existingTransaction.isPresent()) {
+            walletMetrics.idempotentReplay(Operation.WITHDRAW, request.referenceId());
+            Transaction transaction = existingTransaction.get();
+            return new WithdrawResponseDto(transaction.getId(), transaction.getStatus().name());
         }
 
+        var withdrawAmount = Money.create(request.amount().currency(), request.amount().value());
+        validateWithdrawAmount(request.walletId(), withdrawAmount);
+
+        var withdrawTransaction = walletCommandEngine.execute(request.walletId(), wallet -> {
+            if (!Objects.equals(wallet.getCustomerId(), request.customerId())) {
+                throw new NotFoundException("Wallet not found");
+            }
+            return withdrawFromWallet(wallet, request, withdrawAmount);
+        });
+
+        log.debug("withdraw transaction has been successfully saved to DB - {}", withdrawTransaction);
+
+        return new WithdrawResponseDto(withdrawTransaction.getId(), withdrawTransaction.getStatus().name());
+    }
+
+    private Transaction withdrawWithWalletLock(WithdrawRequestDto request, Money withdrawAmount) {
+        var wallet = findWalletForUpdate(request)
+            .orElseThrow(() -> new NotFoundException("Wallet not found"));
+
+        return withdrawFromWallet(wallet, request, withdrawAmount);
+    }
+
+    private Transaction withdrawFromWallet(Wallet wallet, WithdrawRequestDto request, Money withdrawAmount) {
+        validateWalletCurrency(wallet, withdrawAmount);
+
         wallet.withdraw(withdrawAmount);
         walletRepository.save(wallet);
+        walletDetailsCache.evictAfterCommit(wallet.getId());
 
         var withdrawTransaction = Transaction.createWithdrawalRequest(
+            idGenerator.nextId(),
             wallet.getId(),
             withdrawAmount,
             request.referenceId()
         );
+        referenceIdFilter.add(request.referenceId());
         transactionRepository.save(withdrawTransaction);
+        walletHoldRepository.save(WalletHold.of(withdrawTransaction));
 
-        log.debug("withdraw transaction has been successfully saved to DB - {}", withdrawTransaction);
+        return withdrawTransaction;
+    }
 
-        return new WithdrawResponseDto(withdrawTransaction.getId(), withdrawTransaction.getStatus().name());
+    private Transaction withdrawWithConditionalUpdate(WithdrawRequestDto request, Money withdrawAmount) {
+        var withdrawTransaction = Transaction.createWithdrawalRequest(
+            idGenerator.nextId(),
+            request.walletId(),
+            withdrawAmount,
+            request.referenceId()
+        );
+
+        referenceIdFilter.add(request.referenceId());
+        if (walletRepository.withdrawAndInsertTransaction(request.customerId(), withdrawTransaction) == 0) {
+            // nothing was debited, read the wallet without a lock to find out why
+            var wallet = walletRepository.findByIdAndCustomerId(request.walletId(), request.customerId())
+                .orElseThrow(() -> new NotFoundException("Wallet not found"));
+            validateWalletCurrency(wallet, withdrawAmount);
+
+            throw new InsufficientFundsException("Not enough funds to withdraw. Remaining balance is only " + wallet.getBalance().toFormattedString());
+        }
+        walletDetailsCache.evictAfterCommit(request.walletId());
+
+        return withdrawTransaction;
+    }
+
+    private Transaction withdrawFromBuckets(WithdrawRequestDto request, Money withdrawAmount) {
+        var withdrawTransaction = Transaction.createWithdrawalRequest(
+            idGenerator.nextId(),
+            request.walletId(),
+            withdrawAmount,
+            request.referenceId()
+        );
+
+        referenceIdFilter.add(request.referenceId());
+        if (walletRepository.withdrawFromBucketAndInsertTransaction(request.customerId(), withdrawTransaction) > 0) {
+            walletDetailsCache.evictAfterCommit(request.walletId());
+            return withdrawTransaction;
+        }
+
+        // no free bucket holds enough on its own, so the buckets are emptied into the wallet row and the order is placed on it
+        return withdrawWithBucketFunds(request, withdrawAmount, walletRepository.emptyBuckets(request.walletId()));
+    }
+
+    /**
+     * Moves the funds emptied from the buckets of the wallet to its row and withdraws from it. The buckets must be emptied
+     * before the wallet row is locked.
+     */
+    private Transaction withdrawWithBucketFunds(WithdrawRequestDto request, Money withdrawAmount, BigDecimal bucketFunds) {
+        var wallet = findWalletForUpdate(request)
+            .orElseThrow(() -> new NotFoundException("Wallet not found"));
+        validateWalletCurrency(wallet, withdrawAmount);
+
+        if (bucketFunds.signum() > 0) {
+            wallet.deposit(Money.create(wallet.getCurrency(), bucketFunds));
+        }
+        return withdrawFromWallet(wallet, request, withdrawAmount);
+    }
+
+    private Optional<Wallet> findWalletForUpdate(WithdrawRequestDto request) {
+        return switch (walletLocking.getMode()) {
+            case PESSIMISTIC -> walletMetrics.timeLockQuery(LockQuery.WALLET_BY_ID_AND_CUSTOMER_ID, request.walletId(),
+                () -> walletRepository.findByIdAndCustomerIdWithExclusiveLock(request.walletId(), request.customerId()));
+            case OPTIMISTIC -> walletRepository.findByIdAndCustomerId(request.walletId(), request.customerId());
+        };
+    }
+
+    private void validateWalletCurrency(Wallet wallet, Money withdrawAmount) {
+        if (!wallet.isCurrencyMatched(withdrawAmount.getCurrency())) {
+            throw new CurrencyMismatchException(String.format("Customer wallet only supports '%s' as currency", wallet.getCurrency()));
+        }
     }
 
-    private void validateWithdrawAmount(Money withdrawAmount) {
+    private void validateWithdrawAmount(Long walletId, Money withdrawAmount) {
         if (!supportedCurrencies.isSupported(withdrawAmount.getCurrency())) {
             throw new CurrencyNotSupportedException(String.format("Currency '%s' is not supported", withdrawAmount.getCurrency()));
         }
 
         if (!withdrawalLimit.isWithinLimit(withdrawAmount.getAmount())) {
+            walletMetrics.limitRejected(Operation.WITHDRAW, walletId, withdrawAmount);
             throw new AmountNotWithinLimitException(String.format("Invalid withdraw amount. Max limit is '%s' and Min limit is '%s'",
                 withdrawalLimit.getMax().toPlainString(), withdrawalLimit.getMin().toPlainString()));
         }
@@ -0,0 +1,31 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.model.SettlementInboxEntry;
+import com.github.tddiaz.wallet.repository.SettlementInboxRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+/**
+ * Accepts a bank notification with a single insert into the settlement inbox, drained by the {@link SettlementInboxWorker}
+ * started with the application, see {@link ProcessSettlementInboxUseCase}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class EnqueueSettlementUseCase {
+
+    private final SettlementInboxRepository settlementInboxRepository;
+
+    private final IdGenerator idGenerator;
+
+    @Transactional
+    public void execute(BankTransactionStatusRequestDto request) {
+        log.info("queueing bank transaction status notification request: {}", request);
+
+        settlementInboxRepository.enqueue(SettlementInboxEntry.receive(idGenerator.nextId(), request.referenceId(), request.status()));
+    }
+}
@@ -0,0 +1,111 @@
+package com.github.tddiaz.wallet.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.github.tddiaz.wallet.controller.dto.ExportTransactionsRequestDto;
+import com.github.tddiaz.wallet.controller.dto.ExportTransactionsRequestDto.ExportFormat;
+import com.github.tddiaz.wallet.controller.dto.TransactionDto;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import jakarta.persistence.EntityManager;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.Objects;
+/**
+ * Streams the full transaction history of a wallet, newest first. Rows are read through a server-side cursor and
+ * written one by one, so memory use does not depend on the size of the history.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class ExportTransactionsUseCase {
+
+    static final String CSV_HEADER = "id,referenceId,type,entry,status,createdAt,currency,amount";
+
+    private final WalletRepository walletRepository;
+
+    private final TransactionRepository transactionRepository;
+
+    private final PlatformTransactionManager transactionManager;
+
+    private final EntityManager entityManager;
+
+    private final ObjectMapper objectMapper;
+
+    public StreamingResponseBody execute(ExportTransactionsRequestDto request) {
+        // checked before the response is committed, so a missing wallet is still answered with an error status
+        var wallet = walletRepository.findByIdAndCustomerId(request.walletId(), request.customerId())
+            .orElseThrow(() -> new NotFoundException("Wallet not found"));
+
+        var format = request.getFormatEnum();
+
+        return outputStream -> {
+            log.info("exporting transactions of wallet {} as {}", wallet.getId(), format);
+
+            var writer = new BufferedWriter(new OutputStreamWriter(outputStream, StandardCharsets.UTF_8));
+            if (format == ExportFormat.CSV) {
+                writer.write(CSV_HEADER);
+                writer.write('\n');
+            }
+
+            // the cursor only stays open inside a transaction, the body runs after the request thread has returned
+            var transactionTemplate = new TransactionTemplate(transactionManager);
+            transactionTemplate.setReadOnly(true);
+            transactionTemplate.executeWithoutResult(status -> {
+                try (var transactions = transactionRepository.streamAllByWalletId(wallet.getId())) {
+                    transactions.forEach(transaction -> {
+                        write(writer, format, GetTransactionsUseCase.toTransactionDto(transaction));
+                        // written rows are not needed anymore, keep the persistence context from growing with the history
+                        entityManager.detach(transaction);
+                    });
+                }
+            });
+
+            writer.flush();
+        };
+    }
+
+    private void write(Writer writer, ExportFormat format, TransactionDto transaction) {
+        try {
+            switch (format) {
+                case NDJSON -> writer.write(objectMapper.writeValueAsString(transaction));
+                case CSV -> writer.write(String.join(",",
+                    String.valueOf(transaction.id()),
+                    csvValue(transaction.referenceId()),
+                    transaction.type(),
+                    transaction.entry(),
+                    transaction.status(),
+                    transaction.createdAt().toString(),
+                    transaction.amount().currency(),
+                    transaction.amount().value().toPlainString()
+                ));
+            }
+            writer.write('\n');
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    static String csvValue(String value) {
+        if (Objects.isNull(value)) {
+            return "";
+        }
+
+        if (value.contains(",") || value.contains("\"") || value.contains("\n") || value.contains("\r")) {
+            return "\"" + value.replace("\"", "\"\"") + "\"";
+        }
+
+        return value;
+    }
+}
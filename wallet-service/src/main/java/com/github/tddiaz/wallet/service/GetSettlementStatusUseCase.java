@@ -0,0 +1,27 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.controller.dto.SettlementStatusResponseDto;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.repository.SettlementInboxRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+@Service
+@RequiredArgsConstructor
+public class GetSettlementStatusUseCase {
+
+    private final SettlementInboxRepository settlementInboxRepository;
+
+    public SettlementStatusResponseDto execute(String referenceId) {
+        var entry = settlementInboxRepository.findFirstByReferenceIdOrderByIdDesc(referenceId)
+            .orElseThrow(() -> new NotFoundException(String.format("No bank notification received for reference %s", referenceId)));
+
+        return new SettlementStatusResponseDto(
+            entry.getReferenceId(),
+            entry.getBankingStatus(),
+            entry.getState().name(),
+            entry.getReceivedAt(),
+            entry.getProcessedAt()
+        );
+    }
+}
@@ -0,0 +1,79 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.archive.TransactionSegment;
+import com.github.tddiaz.wallet.controller.dto.GetTransactionsByCursorRequestDto;
+import com.github.tddiaz.wallet.controller.dto.GetTransactionsByCursorResponseDto;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import lombok.RequiredArgsConstructor;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.List;
+import java.util.Objects;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Transaction history by keyset pagination, each page continues after the last row of the previous one.
+ * Unlike {@link GetTransactionsUseCase} there is no offset to skip and no count query, so any page costs the same,
+ * archived transactions included.
+ */
+@Service
+@RequiredArgsConstructor
+public class GetTransactionsByCursorUseCase {
+
+    private final WalletRepository walletRepository;
+
+    private final TransactionRepository transactionRepository;
+
+    private final TransactionArchive transactionArchive;
+
+    public GetTransactionsByCursorResponseDto execute(GetTransactionsByCursorRequestDto request) {
+        var cursor = Objects.nonNull(request.cursor()) ? TransactionCursor.decode(request.cursor()) : null;
+
+        var wallet = walletRepository.findByIdAndCustomerId(request.walletId(), request.customerId())
+            .orElseThrow(() -> new NotFoundException("Wallet not found"));
+
+        var pageable = PageRequest.ofSize(request.getSize());
+        var queryResult = Objects.isNull(cursor)
+            ? transactionRepository.findAllByWalletIdOrderByCreatedAtDescIdDesc(wallet.getId(), pageable)
+            : transactionRepository.findAllByWalletIdAfter(wallet.getId(), cursor.createdAt(), cursor.id(), pageable);
+
+        var transactions = queryResult.getContent();
+        var hasNext = queryResult.hasNext();
+        if (transactionArchive.containsWallet(wallet.getId())) {
+            transactions = mergeWithArchive(wallet.getId(), cursor, transactions, request.getSize());
+            hasNext = hasNext || transactions.size() > request.getSize();
+            transactions = transactions.subList(0, Math.min(request.getSize(), transactions.size()));
+        }
+
+        var nextCursor = hasNext ? TransactionCursor.after(transactions.get(transactions.size() - 1)).encode() : null;
+
+        return new GetTransactionsByCursorResponseDto(
+            transactions.size(),
+            nextCursor,
+            transactions.stream().map(GetTransactionsUseCase::toTransactionDto).toList()
+        );
+    }
+
+    /**
+     * Merges the page of the DB with the archived rows following the same cursor, keeping one row more than the page
+     * when there is one. The archive is read after the DB, so a batch archived in between shows up on both sides rather
+     * than on neither, and is kept once.
+     */
+    private List<Transaction> mergeWithArchive(Long walletId, TransactionCursor cursor, List<Transaction> hotTransactions, int size) {
+        var archivedTransactions = Objects.isNull(cursor)
+            ? transactionArchive.findAllByWalletId(walletId, size + 1)
+            : transactionArchive.findAllByWalletIdAfter(walletId, cursor.createdAt(), cursor.id(), size + 1);
+
+        var hotIds = hotTransactions.stream().map(Transaction::getId).collect(Collectors.toSet());
+        return Stream.concat(hotTransactions.stream(), archivedTransactions.stream().filter(transaction -> !hotIds.contains(transaction.getId())))
+            .sorted(TransactionSegment.NEWEST_FIRST)
+            .limit(size + 1L)
+            .toList();
+    }
+}
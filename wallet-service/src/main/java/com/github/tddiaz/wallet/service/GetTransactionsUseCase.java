@@ -1,10 +1,17 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.archive.TransactionSegment;
+import com.github.tddiaz.wallet.config.ArchiveConfiguration.TransactionArchiving;
 import com.github.tddiaz.wallet.controller.dto.GetTransactionsRequestDto;
 import com.github.tddiaz.wallet.controller.dto.GetTransactionsResponseDto;
 import com.github.tddiaz.wallet.controller.dto.MoneyDto;
 import com.github.tddiaz.wallet.controller.dto.TransactionDto;
 import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.UseCase;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.repository.ArchiveSegmentRepository;
 import com.github.tddiaz.wallet.repository.TransactionRepository;
 import com.github.tddiaz.wallet.repository.WalletRepository;
 import lombok.RequiredArgsConstructor;
@@ -12,6 +19,13 @@ import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Objects;
+import java.util.function.BiFunction;
+
 @Service
 @RequiredArgsConstructor
 public class GetTransactionsUseCase {
@@ -20,25 +34,29 @@ public class GetTransactionsUseCase {
 
     private final TransactionRepository transactionRepository;
 
+    private final TransactionArchive transactionArchive;
+
+    private final ArchiveSegmentRepository archiveSegmentRepository;
+
+    private final TransactionArchiving transactionArchiving;
+
+    private final WalletMetrics walletMetrics;
+
     public GetTransactionsResponseDto execute(GetTransactionsRequestDto request) {
+        return walletMetrics.timeUseCase(UseCase.GET_TRANSACTIONS, () -> getTransactions(request));
+    }
+
+    private GetTransactionsResponseDto getTransactions(GetTransactionsRequestDto request) {
         var wallet = walletRepository.findByIdAndCustomerId(request.walletId(), request.customerId())
             .orElseThrow(() -> new NotFoundException("Wallet not found"));
 
-        var queryResult = transactionRepository.findAllByWalletId(
-            wallet.getId(),
-            PageRequest.of(request.pageNumber(), request.size(), Sort.by("createdAt").descending())
-        );
+        var pageRequest = PageRequest.of(request.pageNumber(), request.size(), Sort.by("createdAt").descending());
+        if (transactionArchive.containsWallet(wallet.getId())) {
+            return getTransactionsWithArchive(wallet.getId(), pageRequest);
+        }
 
-        var content = queryResult.getContent().stream().map(transaction ->
-            new TransactionDto(
-                transaction.getId(),
-                transaction.getReferenceId(),
-                transaction.getType().name(),
-                transaction.getEntry().name(),
-                transaction.getStatus().name(),
-                transaction.getCreatedAt(),
-                new MoneyDto(transaction.getAmount().getCurrency(), transaction.getAmount().getAmount())
-            )).toList();
+        var queryResult = transactionRepository.findAllByWalletId(wallet.getId(), pageRequest);
+        var content = queryResult.getContent().stream().map(GetTransactionsUseCase::toTransactionDto).toList();
 
         return new GetTransactionsResponseDto(
             queryResult.getTotalElements(),
@@ -48,4 +66,111 @@ public class GetTransactionsUseCase {
             content
         );
     }
+
+    /**
+     * Merges the DB rows and the archived rows of the wallet newest first, down to the end of the page. Both sides are
+     * read a chunk at a time, each chunk seeking past the last row of the previous one, so a deep page reads the rows
+     * before it like an offset query would, without holding more than a chunk of each side. A batch archived while
+     * the rows are read shows up on both sides next to each other, and is kept once.
+     */
+    private GetTransactionsResponseDto getTransactionsWithArchive(Long walletId, PageRequest pageRequest) {
+        var totalCount = archiveSegmentRepository.countTransactionsByWalletId(walletId);
+
+        var readSize = (int) Math.min(pageRequest.getOffset() + pageRequest.getPageSize(), transactionArchiving.getPageReadSize());
+        var hotTransactions = new NewestFirst(readSize, (after, limit) -> Objects.isNull(after)
+            ? transactionRepository.findAllByWalletIdOrderByCreatedAtDescIdDesc(walletId, PageRequest.ofSize(limit)).getContent()
+            : transactionRepository.findAllByWalletIdAfter(walletId, after.getCreatedAt(), after.getId(), PageRequest.ofSize(limit)).getContent());
+        var archivedTransactions = new NewestFirst(readSize, (after, limit) -> Objects.isNull(after)
+            ? transactionArchive.findAllByWalletId(walletId, limit)
+            : transactionArchive.findAllByWalletIdAfter(walletId, after.getCreatedAt(), after.getId(), limit));
+
+        var content = new ArrayList<TransactionDto>();
+        var skipped = 0L;
+        Transaction previous = null;
+        while (content.size() < pageRequest.getPageSize()) {
+            var hot = hotTransactions.peek();
+            var archived = archivedTransactions.peek();
+            if (Objects.isNull(hot) && Objects.isNull(archived)) {
+                break;
+            }
+
+            var next = Objects.isNull(archived) || (Objects.nonNull(hot) && TransactionSegment.NEWEST_FIRST.compare(hot, archived) <= 0)
+                ? hotTransactions.next()
+                : archivedTransactions.next();
+            if (Objects.nonNull(previous) && previous.getId().equals(next.getId())) {
+                continue;
+            }
+
+            previous = next;
+            if (skipped < pageRequest.getOffset()) {
+                skipped++;
+            } else {
+                content.add(toTransactionDto(next));
+            }
+        }
+
+        return new GetTransactionsResponseDto(
+            totalCount,
+            (int) Math.ceil((double) totalCount / pageRequest.getPageSize()),
+            pageRequest.getPageNumber(),
+            content.size(),
+            content
+        );
+    }
+
+    static TransactionDto toTransactionDto(Transaction transaction) {
+        return new TransactionDto(
+            transaction.getId(),
+            transaction.getReferenceId(),
+            transaction.getType().name(),
+            transaction.getEntry().name(),
+            transaction.getStatus().name(),
+            transaction.getCreatedAt(),
+            new MoneyDto(transaction.getAmount().getCurrency(), transaction.getAmount().getAmount())
+        );
+    }
+
+    /**
+     * The transactions of one side, newest first, read a chunk at a time past the last one read.
+     */
+    private static class NewestFirst {
+
+        private final int readSize;
+
+        private final BiFunction<Transaction, Integer, List<Transaction>> reader;
+
+        private Iterator<Transaction> chunk = Collections.emptyIterator();
+
+        private Transaction head;
+
+        private Transaction last;
+
+        private boolean exhausted;
+
+        NewestFirst(int readSize, BiFunction<Transaction, Integer, List<Transaction>> reader) {
+            this.readSize = readSize;
+            this.reader = reader;
+        }
+
+        /**
+         * Returns the next transaction without taking it, null when there is none left.
+         */
+        Transaction peek() {
+            if (Objects.isNull(head)) {
+                if (!chunk.hasNext() && !exhausted) {
+                    var transactions = reader.apply(last, readSize);
+                    exhausted = transactions.size() < readSize;
+                    chunk = transactions.iterator();
+                }
+                head = chunk.hasNext() ? chunk.next() : null;
+            }
+            return head;
+        }
+
+        Transaction next() {
+            last = peek();
+            head = null;
+            return last;
+        }
+    }
 }
@@ -1,8 +1,12 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.cache.WalletDetailsCache;
 import com.github.tddiaz.wallet.controller.dto.GetWalletDetailsResponseDto;
 import com.github.tddiaz.wallet.controller.dto.MoneyDto;
 import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.UseCase;
+import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.repository.WalletRepository;
 import lombok.RequiredArgsConstructor;
 import org.springframework.stereotype.Service;
@@ -13,15 +17,27 @@ public class GetWalletDetailsUseCase {
 
     private final WalletRepository walletRepository;
 
+    private final WalletDetailsCache walletDetailsCache;
+
+    private final WalletMetrics walletMetrics;
+
     public GetWalletDetailsResponseDto execute(Long walletId, Long customerId) {
-        var wallet = walletRepository.findByIdAndCustomerId(walletId, customerId)
+        return walletMetrics.timeUseCase(UseCase.GET_WALLET_DETAILS,
+            () -> walletDetailsCache.get(walletId, customerId, () -> loadWalletDetails(walletId, customerId)));
+    }
+
+    private GetWalletDetailsResponseDto loadWalletDetails(Long walletId, Long customerId) {
+        var wallet = walletRepository.findBalanceByIdAndCustomerId(walletId, customerId)
             .orElseThrow(() -> new NotFoundException("Wallet not found"));
+        // the buckets of a wallet no longer listed still count until they are emptied
+        var balance = Money.create(wallet.getCurrency(), wallet.getBalanceAmount().add(wallet.getBucketsAmount()));
+        var balanceOnHold = Money.create(wallet.getCurrency(), wallet.getHeldAmount());
 
         return new GetWalletDetailsResponseDto(
-            wallet.getId(),
+            wallet.getWalletId(),
             wallet.getCustomerId(),
-            new MoneyDto(wallet.getBalance().getCurrency(), wallet.getBalance().getAmount()),
-            new MoneyDto(wallet.getBalanceOnHold().getCurrency(), wallet.getBalanceOnHold().getAmount())
+            new MoneyDto(balance.getCurrency(), balance.getAmount()),
+            new MoneyDto(balanceOnHold.getCurrency(), balanceOnHold.getAmount())
         );
     }
 }
@@ -0,0 +1,170 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.config.SettlementConfiguration.SettlementInbox;
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.model.SettlementInboxEntry;
+import com.github.tddiaz.wallet.model.SettlementState;
+import com.github.tddiaz.wallet.repository.SettlementInboxRepository;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Settles the next batch of received notifications of a worker partition, in the same DB transaction that marks them processed.
+ * When the batch fails, its entries are settled one by one, so a single failing entry does not hold back the others.
+ */
+@Service
+@Slf4j
+public class ProcessSettlementInboxUseCase {
+
+    private static final int PARTITION_LOCK_SPACE = 0x5E771E;
+
+    private final SettlementInboxRepository settlementInboxRepository;
+
+    private final SettleTransactionsBatchUseCase settleTransactionsBatchUseCase;
+
+    private final SettlementInbox settlementInbox;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private final Timer settlementDelay;
+
+    private final Counter failedEntries;
+
+    public ProcessSettlementInboxUseCase(SettlementInboxRepository settlementInboxRepository, SettleTransactionsBatchUseCase settleTransactionsBatchUseCase,
+                                         SettlementInbox settlementInbox, PlatformTransactionManager transactionManager, MeterRegistry meterRegistry) {
+        this.settlementInboxRepository = settlementInboxRepository;
+        this.settleTransactionsBatchUseCase = settleTransactionsBatchUseCase;
+        this.settlementInbox = settlementInbox;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+        this.settlementDelay = Timer.builder("settlement.inbox.delay")
+            .description("Time from receiving a bank notification to settling it")
+            .register(meterRegistry);
+        this.failedEntries = Counter.builder("settlement.inbox.failed")
+            .description("Bank notifications set aside after failing to settle max-attempts times")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Returns the number of processed entries, 0 when the partition is empty or drained by another instance.
+     */
+    public int execute(int partition) {
+        var claimedEntries = new ArrayList<SettlementInboxEntry>();
+        try {
+            return transactionTemplate.execute(status -> {
+                if (!settlementInboxRepository.tryLockPartition(PARTITION_LOCK_SPACE, partition)) {
+                    return 0;
+                }
+
+                var entries = settlementInboxRepository.claimReceived(settlementInbox.getWorkers(), partition, settlementInbox.getBatchSize());
+                claimedEntries.addAll(entries);
+                settle(entries);
+
+                log.debug("processed {} settlement inbox entries of partition {}", entries.size(), partition);
+                return entries.size();
+            });
+        } catch (RuntimeException e) {
+            if (claimedEntries.isEmpty()) {
+                throw e;
+            }
+
+            log.warn("failed to settle {} settlement inbox entries of partition {} as a batch, settling them one by one",
+                claimedEntries.size(), partition, e);
+            return settleOneByOne(partition, claimedEntries);
+        }
+    }
+
+    /**
+     * Settles each entry in a DB transaction of its own. A failure is counted on the entry, and the later entries of its wallet
+     * wait for the next poll, so they are still settled after it.
+     */
+    private int settleOneByOne(int partition, List<SettlementInboxEntry> entries) {
+        var processed = 0;
+        var heldBack = new HashSet<String>();
+        for (var entry : entries) {
+            var orderKey = Objects.nonNull(entry.getWalletId()) ? entry.getWalletId().toString() : entry.getReferenceId();
+            if (heldBack.contains(orderKey)) {
+                continue;
+            }
+
+            try {
+                var outcome = transactionTemplate.execute(status -> {
+                    if (!settlementInboxRepository.tryLockPartition(PARTITION_LOCK_SPACE, partition)) {
+                        return Outcome.PARTITION_TAKEN;
+                    }
+
+                    return settlementInboxRepository.claimReceivedById(entry.getId())
+                        .map(claimedEntry -> {
+                            settle(List.of(claimedEntry));
+                            return Outcome.SETTLED;
+                        })
+                        .orElse(Outcome.SKIPPED);
+                });
+
+                if (outcome == Outcome.PARTITION_TAKEN) {
+                    break;
+                }
+                if (outcome == Outcome.SETTLED) {
+                    processed++;
+                }
+            } catch (RuntimeException e) {
+                heldBack.add(orderKey);
+                recordFailure(entry, e);
+            }
+        }
+        return processed;
+    }
+
+    private void recordFailure(SettlementInboxEntry entry, RuntimeException cause) {
+        transactionTemplate.executeWithoutResult(status -> settlementInboxRepository.findById(entry.getId())
+            .filter(failedEntry -> failedEntry.getState() == SettlementState.RECEIVED)
+            .ifPresent(failedEntry -> {
+                if (failedEntry.failed(settlementInbox.getMaxAttempts())) {
+                    failedEntries.increment();
+                    log.error("set aside settlement inbox entry {} of reference {} after {} failed attempts",
+                        failedEntry.getId(), failedEntry.getReferenceId(), failedEntry.getAttempts(), cause);
+                } else {
+                    log.warn("failed attempt {} of {} to settle settlement inbox entry {} of reference {}",
+                        failedEntry.getAttempts(), settlementInbox.getMaxAttempts(), failedEntry.getId(), failedEntry.getReferenceId(), cause);
+                }
+                settlementInboxRepository.save(failedEntry);
+            }));
+    }
+
+    private void settle(List<SettlementInboxEntry> entries) {
+        if (entries.isEmpty()) {
+            return;
+        }
+
+        var items = entries.stream()
+            .map(entry -> new BankTransactionStatusRequestDto(entry.getReferenceId(), entry.getBankingStatus()))
+            .toList();
+        var results = settleTransactionsBatchUseCase.execute(new BatchBankTransactionStatusRequestDto(items)).results();
+
+        var now = LocalDateTime.now();
+        for (int i = 0; i < entries.size(); i++) {
+            var entry = entries.get(i);
+            entry.processed(SettlementState.valueOf(results.get(i).result().name()));
+            settlementDelay.record(Duration.between(entry.getReceivedAt(), now));
+        }
+        settlementInboxRepository.saveAll(entries);
+    }
+
+    private enum Outcome {
+        SETTLED,
+        SKIPPED,
+        PARTITION_TAKEN
+    }
+}
@@ -1,14 +1,34 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.cache.WalletDetailsCache;
+import com.github.tddiaz.wallet.concurrency.DepositSettlementCoalescer;
+import com.github.tddiaz.wallet.concurrency.WalletCommandEngine;
+import com.github.tddiaz.wallet.concurrency.WalletLockManager;
+import com.github.tddiaz.wallet.concurrency.WalletTransactionExecutor;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.BalanceBuckets;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
 import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
 import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.LockQuery;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.Operation;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.UseCase;
+import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.TransactionEntry;
+import com.github.tddiaz.wallet.model.TransactionStatus;
+import com.github.tddiaz.wallet.model.Wallet;
 import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletHoldRepository;
 import com.github.tddiaz.wallet.repository.WalletRepository;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+import java.util.stream.Collectors;
 
 import static com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto.BankingStatus;
 
@@ -18,33 +38,141 @@ import static com.github.tddiaz.wallet.controller.dto.BankTransactionStatusReque
 public class SettleTransactionUseCase {
     private final WalletRepository walletRepository;
     private final TransactionRepository transactionRepository;
+    private final WalletHoldRepository walletHoldRepository;
+    private final WalletLocking walletLocking;
+    private final BalanceBuckets balanceBuckets;
+    private final WalletTransactionExecutor walletTransactionExecutor;
+    private final WalletLockManager walletLockManager;
+    private final WalletCommandEngine walletCommandEngine;
+    private final DepositSettlementCoalescer depositSettlementCoalescer;
+    private final WalletDetailsCache walletDetailsCache;
+    private final WalletMetrics walletMetrics;
 
-    @Transactional
     public void execute(BankTransactionStatusRequestDto request) {
+        walletMetrics.timeUseCaseWithoutResult(UseCase.SETTLE_TRANSACTION, () -> settleTransaction(request));
+    }
+
+    private void settleTransaction(BankTransactionStatusRequestDto request) {
         log.info("processing bank transaction status notification request: {}", request);
 
-        var transaction = transactionRepository.findByReferenceIdWithExclusiveLock(request.referenceId())
-            .orElseThrow(() -> new NotFoundException(String.format("Transaction with reference %s not found", request.referenceId())));
+        if (!walletCommandEngine.isEnabled() && !walletLockManager.isEnabled() && !depositSettlementCoalescer.isEnabled()) {
+            walletTransactionExecutor.executeWithoutResult(() -> settle(request));
+            return;
+        }
+
+        // the wallet of a transaction never changes, so it can be looked up before taking the wallet lock
+        var archivedOrTransaction = findTransaction(request);
+        if (archivedOrTransaction.isEmpty() || !archivedOrTransaction.get().isPending()) {
+            walletMetrics.idempotentReplay(Operation.SETTLEMENT, request.referenceId());
+            return;
+        }
+
+        var transaction = archivedOrTransaction.get();
+        if (!writesWallet(transaction, request.getStatusEnum())) {
+            // a successful withdrawal only releases its hold and a wallet with buckets is credited on one of them,
+            // neither waits for the wallet lock nor queues on the wallet partition
+            walletTransactionExecutor.executeWithoutResult(() -> settle(request));
+            return;
+        }
+
+        if (walletCommandEngine.isEnabled()) {
+            settleOnCommandEngine(request, transaction);
+            return;
+        }
+
+        if (depositSettlementCoalescer.isEnabled() && transaction.getEntry() == TransactionEntry.DEPOSIT) {
+            // only successful deposits get here, they are applied with the ones of the same wallet arriving meanwhile
+            var walletId = transaction.getWalletId();
+            depositSettlementCoalescer.settle(walletId, request.referenceId(), referenceIds -> settleDeposits(walletId, referenceIds));
+            return;
+        }
+
+        walletLockManager.runWithLock(transaction.getWalletId(),
+            () -> walletTransactionExecutor.executeWithoutResult(() -> settle(request)));
+    }
+
+    private void settle(BankTransactionStatusRequestDto request) {
+        // only the request moving the transaction out of pending goes on to the wallet, a duplicate callback
+        // waits on the row lock of the update and then finds nothing to update, instead of upgrading a shared lock
+        var transaction = transactionRepository.updateStatusIfPending(request.referenceId(), toTransactionStatus(request.getStatusEnum()).name());
+        if (transaction.isEmpty()) {
+            if (!transactionRepository.existsByReferenceId(request.referenceId())) {
+                throw transactionNotFound(request);
+            }
 
-        if (!transaction.isPending()) {
             // skip request since transaction has already been updated from pending state
+            walletMetrics.idempotentReplay(Operation.SETTLEMENT, request.referenceId());
             return;
         }
 
-        switch (transaction.getEntry()) {
-            case DEPOSIT -> settleDepositTransaction(transaction, request.getStatusEnum());
-            case WITHDRAW -> settleWithdrawTransaction(transaction, request.getStatusEnum());
+        var settledTransaction = transaction.get();
+        Supplier<Wallet> walletForUpdate = () -> findWalletForUpdate(settledTransaction.getWalletId())
+            .orElseThrow(() -> new NotFoundException("wallet not found"));
+
+        settle(settledTransaction, request.getStatusEnum(), walletForUpdate);
+    }
+
+    private void settleOnCommandEngine(BankTransactionStatusRequestDto request, Transaction transaction) {
+        walletCommandEngine.execute(transaction.getWalletId(), wallet -> {
+            transactionRepository.updateStatusIfPending(request.referenceId(), toTransactionStatus(request.getStatusEnum()).name())
+                .ifPresentOrElse(pendingTransaction -> settle(pendingTransaction, request.getStatusEnum(), () -> wallet),
+                    () -> walletMetrics.idempotentReplay(Operation.SETTLEMENT, request.referenceId()));
+            return null;
+        });
+    }
+
+    /**
+     * Settles successful deposits of a wallet together, with one status update of their transactions and one deposit of their sum.
+     */
+    private void settleDeposits(Long walletId, List<String> referenceIds) {
+        // the settlements of the group are recorded once it is committed
+        walletMetrics.recordSettlements(referenceIds, BankingStatus.SUCCESS.name(), () -> walletLockManager.executeWithLock(walletId,
+            () -> walletTransactionExecutor.execute(() -> depositSettledSum(walletId, referenceIds))));
+    }
+
+    /**
+     * Returns the transactions moved out of pending, the ones settled earlier are replays.
+     */
+    private List<Transaction> depositSettledSum(Long walletId, List<String> referenceIds) {
+        var depositTransactions = transactionRepository.updateStatusesIfPending(referenceIds, TransactionStatus.SUCCESS.name());
+        if (depositTransactions.size() < referenceIds.size()) {
+            var settledReferenceIds = depositTransactions.stream().map(Transaction::getReferenceId).collect(Collectors.toSet());
+            walletMetrics.idempotentReplays(Operation.SETTLEMENT, referenceIds.stream()
+                .filter(referenceId -> !settledReferenceIds.contains(referenceId))
+                .toList());
         }
+        if (depositTransactions.isEmpty()) {
+            return depositTransactions;
+        }
+
+        var wallet = findWalletForUpdate(walletId).orElseThrow(() -> new NotFoundException("wallet not found"));
+        var amount = depositTransactions.stream()
+            .map(Transaction::getAmount)
+            .reduce(Money::add)
+            .orElseThrow();
+
+        wallet.deposit(amount);
+        walletRepository.save(wallet);
+        walletDetailsCache.evictAfterCommit(walletId);
+        return depositTransactions;
+    }
+
+    /**
+     * Applies the status of a pending transaction to it and its wallet. Shared with {@link SettleTransactionsBatchUseCase}.
+     */
+    void settle(Transaction transaction, BankingStatus bankingStatus, Supplier<Wallet> walletForUpdate) {
+        walletMetrics.recordSettlement(transaction, bankingStatus.name(), () -> {
+            switch (transaction.getEntry()) {
+                case DEPOSIT -> settleDepositTransaction(transaction, bankingStatus, walletForUpdate);
+                case WITHDRAW -> settleWithdrawTransaction(transaction, bankingStatus, walletForUpdate);
+            }
+        });
     }
 
-    private void settleDepositTransaction(Transaction depositTransaction, BankingStatus bankingStatus) {
+    private void settleDepositTransaction(Transaction depositTransaction, BankingStatus bankingStatus, Supplier<Wallet> walletForUpdate) {
         switch (bankingStatus) {
             case SUCCESS -> {
-                var wallet = walletRepository.findByIdWithExclusiveLock(depositTransaction.getWalletId())
-                    .orElseThrow(() -> new NotFoundException("wallet not found"));
-
-                wallet.deposit(depositTransaction.getAmount());
-                walletRepository.save(wallet);
+                credit(depositTransaction, walletForUpdate);
 
                 depositTransaction.success();
                 transactionRepository.save(depositTransaction);
@@ -56,26 +184,86 @@ public class SettleTransactionUseCase {
         }
     }
 
-    private void settleWithdrawTransaction(Transaction withdrawTransaction, BankingStatus bankingStatus) {
-        var wallet = walletRepository.findByIdWithExclusiveLock(withdrawTransaction.getWalletId())
-            .orElseThrow(() -> new NotFoundException("wallet not found"));
-
+    private void settleWithdrawTransaction(Transaction withdrawTransaction, BankingStatus bankingStatus, Supplier<Wallet> walletForUpdate) {
         switch (bankingStatus) {
             case SUCCESS -> {
-                wallet.resetBalanceOnHold();
-                walletRepository.save(wallet);
+                // the funds were already debited from the balance when the order was placed, the wallet row is left as it is
+                releaseHold(withdrawTransaction);
 
                 withdrawTransaction.success();
                 transactionRepository.save(withdrawTransaction);
             }
             case FAILED -> {
-                wallet.deposit(withdrawTransaction.getAmount());
-                wallet.resetBalanceOnHold();
-                walletRepository.save(wallet);
+                credit(withdrawTransaction, walletForUpdate);
+                releaseHold(withdrawTransaction);
 
                 withdrawTransaction.failed();
                 transactionRepository.save(withdrawTransaction);
             }
         }
     }
+
+    private void credit(Transaction transaction, Supplier<Wallet> walletForUpdate) {
+        if (balanceBuckets.isSharded(transaction.getWalletId())) {
+            walletRepository.creditBucket(transaction.getWalletId(), balanceBuckets.randomBucket(), transaction.getAmount().getAmount());
+        } else {
+            var wallet = walletForUpdate.get();
+
+            wallet.deposit(transaction.getAmount());
+            walletRepository.save(wallet);
+        }
+        walletDetailsCache.evictAfterCommit(transaction.getWalletId());
+    }
+
+    private void releaseHold(Transaction withdrawTransaction) {
+        if (walletHoldRepository.release(withdrawTransaction.getId()) == 0) {
+            log.warn("no hold found for withdraw transaction {}", withdrawTransaction.getReferenceId());
+        }
+        walletDetailsCache.evictAfterCommit(withdrawTransaction.getWalletId());
+    }
+
+    /**
+     * Whether settling the pending transaction with the status changes the wallet row, and so needs it locked.
+     */
+    boolean writesWallet(Transaction transaction, BankingStatus bankingStatus) {
+        if (balanceBuckets.isSharded(transaction.getWalletId())) {
+            return false;
+        }
+
+        return switch (transaction.getEntry()) {
+            case DEPOSIT -> bankingStatus == BankingStatus.SUCCESS;
+            case WITHDRAW -> bankingStatus == BankingStatus.FAILED;
+        };
+    }
+
+    private TransactionStatus toTransactionStatus(BankingStatus bankingStatus) {
+        return switch (bankingStatus) {
+            case SUCCESS -> TransactionStatus.SUCCESS;
+            case FAILED -> TransactionStatus.FAILED;
+        };
+    }
+
+    /**
+     * Returns the transaction of the reference, empty when it was archived. An archived transaction is settled and no longer
+     * in the transaction table, but its reference stays registered, so its notification is a replay like the one of
+     * a transaction still in the table, as in {@link #settle(BankTransactionStatusRequestDto)}.
+     */
+    private Optional<Transaction> findTransaction(BankTransactionStatusRequestDto request) {
+        var transaction = transactionRepository.findByReferenceId(request.referenceId());
+        if (transaction.isEmpty() && !transactionRepository.existsByReferenceId(request.referenceId())) {
+            throw transactionNotFound(request);
+        }
+        return transaction;
+    }
+
+    private NotFoundException transactionNotFound(BankTransactionStatusRequestDto request) {
+        return new NotFoundException(String.format("Transaction with reference %s not found", request.referenceId()));
+    }
+
+    private Optional<Wallet> findWalletForUpdate(Long walletId) {
+        return switch (walletLocking.getMode()) {
+            case PESSIMISTIC -> walletMetrics.timeLockQuery(LockQuery.WALLET_BY_ID, walletId, () -> walletRepository.findByIdWithExclusiveLock(walletId));
+            case OPTIMISTIC -> walletRepository.findById(walletId);
+        };
+    }
 }
@@ -0,0 +1,177 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.concurrency.WalletCommandEngine;
+import com.github.tddiaz.wallet.concurrency.WalletTransactionExecutor;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto.BankingStatus;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.ItemResult;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.SettlementResult;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.LockQuery;
+import com.github.tddiaz.wallet.metrics.WalletMetrics.Operation;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+/**
+ * Settles a batch of bank notifications in one DB transaction. The transactions are loaded in one query,
+ * every wallet is locked once and the resulting updates are flushed together with JDBC batching.
+ * Each item gets the same outcome as a single notification would, see {@link SettleTransactionUseCase}.
+ */
+@Service
+@Slf4j
+@RequiredArgsConstructor
+public class SettleTransactionsBatchUseCase {
+    private final WalletRepository walletRepository;
+    private final TransactionRepository transactionRepository;
+    private final WalletLocking walletLocking;
+    private final WalletTransactionExecutor walletTransactionExecutor;
+    private final WalletCommandEngine walletCommandEngine;
+    private final SettleTransactionUseCase settleTransactionUseCase;
+    private final WalletMetrics walletMetrics;
+
+    public BatchBankTransactionStatusResponseDto execute(BatchBankTransactionStatusRequestDto request) {
+        log.info("processing batch of {} bank transaction status notifications", request.items().size());
+
+        // a reference repeated in the batch is settled by its first item, the others are ignored like repeated single calls
+        var statuses = new LinkedHashMap<String, BankingStatus>();
+        request.items().forEach(item -> statuses.putIfAbsent(item.referenceId(), item.getStatusEnum()));
+
+        var settledReferenceIds = withArchivedReferenceIds(statuses.keySet(), walletCommandEngine.isEnabled()
+            ? settleOnCommandEngine(statuses)
+            : walletTransactionExecutor.execute(() -> settle(statuses)));
+
+        var seenReferenceIds = new HashSet<String>();
+        var results = request.items().stream()
+            .map(item -> new ItemResult(item.referenceId(), toResult(item.referenceId(), seenReferenceIds.add(item.referenceId()), settledReferenceIds)))
+            .toList();
+        walletMetrics.idempotentReplays(Operation.SETTLEMENT, results.stream()
+            .filter(result -> result.result() == SettlementResult.IGNORED)
+            .map(ItemResult::referenceId)
+            .toList());
+
+        log.debug("settled {} of {} bank transaction status notifications", settledReferenceIds.settled().size(), request.items().size());
+
+        return new BatchBankTransactionStatusResponseDto(results);
+    }
+
+    private SettledReferenceIds settle(Map<String, BankingStatus> statuses) {
+        var transactions = walletMetrics.timeLockQuery(LockQuery.TRANSACTIONS_BY_REFERENCE_IDS,
+            () -> transactionRepository.findAllByReferenceIdInWithExclusiveLock(statuses.keySet()));
+        var pendingTransactions = transactions.stream().filter(Transaction::isPending).toList();
+
+        // wallets only settled by successful withdrawals or credited on buckets are not written, so they are not locked either
+        var wallets = findWalletsForUpdate(pendingTransactions.stream()
+            .filter(transaction -> settleTransactionUseCase.writesWallet(transaction, statuses.get(transaction.getReferenceId())))
+            .map(Transaction::getWalletId)
+            .collect(Collectors.toSet()));
+        pendingTransactions.forEach(transaction -> settleTransactionUseCase.settle(
+            transaction,
+            statuses.get(transaction.getReferenceId()),
+            () -> Optional.ofNullable(wallets.get(transaction.getWalletId())).orElseThrow(() -> new NotFoundException("wallet not found"))
+        ));
+
+        return new SettledReferenceIds(referenceIdsOf(transactions), referenceIdsOf(pendingTransactions));
+    }
+
+    private SettledReferenceIds settleOnCommandEngine(Map<String, BankingStatus> statuses) {
+        var transactions = transactionRepository.findAllByReferenceIdIn(statuses.keySet());
+        var referenceIdsByWallet = transactions.stream()
+            .filter(Transaction::isPending)
+            .collect(Collectors.groupingBy(Transaction::getWalletId, Collectors.mapping(Transaction::getReferenceId, Collectors.toList())));
+
+        // one command per wallet, the partitions settle their wallets in parallel
+        var settled = referenceIdsByWallet.entrySet().stream()
+            .map(entry -> walletCommandEngine.submit(entry.getKey(), wallet -> {
+                // a single callback may settle some of them meanwhile outside of the engine, e.g. on a wallet with buckets,
+                // so the rows are locked and only the ones still pending are settled by the command
+                var pendingTransactions = transactionRepository.findAllByReferenceIdInWithExclusiveLock(entry.getValue()).stream()
+                    .filter(Transaction::isPending)
+                    .toList();
+                pendingTransactions.forEach(transaction -> settleTransactionUseCase.settle(transaction, statuses.get(transaction.getReferenceId()), () -> wallet));
+                return referenceIdsOf(pendingTransactions);
+            }))
+            .toList()
+            .stream()
+            .map(this::join)
+            .flatMap(Set::stream)
+            .collect(Collectors.toSet());
+
+        return new SettledReferenceIds(referenceIdsOf(transactions), settled);
+    }
+
+    /**
+     * Adds the references not found in the transaction table whose transactions were archived. Their references stay registered,
+     * so their notifications are ignored like the ones of settled transactions still in the table.
+     */
+    private SettledReferenceIds withArchivedReferenceIds(Set<String> referenceIds, SettledReferenceIds settledReferenceIds) {
+        var missingReferenceIds = referenceIds.stream()
+            .filter(referenceId -> !settledReferenceIds.found().contains(referenceId))
+            .toList();
+        if (missingReferenceIds.isEmpty()) {
+            return settledReferenceIds;
+        }
+
+        var found = new HashSet<>(settledReferenceIds.found());
+        found.addAll(transactionRepository.findRegisteredReferenceIds(missingReferenceIds));
+        return new SettledReferenceIds(found, settledReferenceIds.settled());
+    }
+
+    private Map<Long, Wallet> findWalletsForUpdate(Collection<Long> walletIds) {
+        if (walletIds.isEmpty()) {
+            return Map.of();
+        }
+
+        var wallets = switch (walletLocking.getMode()) {
+            case PESSIMISTIC -> walletMetrics.timeLockQuery(LockQuery.WALLETS_BY_IDS, () -> walletRepository.findAllByIdInWithExclusiveLock(walletIds));
+            case OPTIMISTIC -> walletRepository.findAllById(walletIds);
+        };
+
+        return wallets.stream().collect(Collectors.toMap(Wallet::getId, Function.identity()));
+    }
+
+    private SettlementResult toResult(String referenceId, boolean firstOccurrence, SettledReferenceIds settledReferenceIds) {
+        if (!settledReferenceIds.found().contains(referenceId)) {
+            return SettlementResult.NOT_FOUND;
+        }
+
+        return firstOccurrence && settledReferenceIds.settled().contains(referenceId) ? SettlementResult.SETTLED : SettlementResult.IGNORED;
+    }
+
+    private <T> T join(CompletableFuture<T> future) {
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            throw e;
+        }
+    }
+
+    private static Set<String> referenceIdsOf(List<Transaction> transactions) {
+        return transactions.stream().map(Transaction::getReferenceId).collect(Collectors.toSet());
+    }
+
+    private record SettledReferenceIds(Set<String> found, Set<String> settled) {
+    }
+}
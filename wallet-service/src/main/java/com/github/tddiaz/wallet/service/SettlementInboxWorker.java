@@ -0,0 +1,150 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.config.SettlementConfiguration.SettlementInbox;
+import com.github.tddiaz.wallet.config.SettlementConfiguration.SettlementMode;
+import com.github.tddiaz.wallet.model.SettlementState;
+import com.github.tddiaz.wallet.repository.SettlementInboxRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Background workers draining the settlement inbox, one per partition, started with the application in
+ * {@link SettlementMode#ASYNC} mode. Processed entries are deleted daily once older than the retention, whatever the mode.
+ */
+@Component
+@Slf4j
+public class SettlementInboxWorker {
+
+    private final SettlementInbox settlementInbox;
+
+    private final ProcessSettlementInboxUseCase processSettlementInboxUseCase;
+
+    private final SettlementInboxRepository settlementInboxRepository;
+
+    private final MeterRegistry meterRegistry;
+
+    private final TransactionTemplate transactionTemplate;
+
+    private ScheduledExecutorService scheduler;
+
+    // read by the gauges on every scrape, refreshed from the DB every gauge-interval
+    private volatile long pendingCount;
+
+    private volatile double lagSeconds;
+
+    public SettlementInboxWorker(SettlementInbox settlementInbox, ProcessSettlementInboxUseCase processSettlementInboxUseCase,
+                                 SettlementInboxRepository settlementInboxRepository, MeterRegistry meterRegistry,
+                                 PlatformTransactionManager transactionManager) {
+        this.settlementInbox = settlementInbox;
+        this.processSettlementInboxUseCase = processSettlementInboxUseCase;
+        this.settlementInboxRepository = settlementInboxRepository;
+        this.meterRegistry = meterRegistry;
+        this.transactionTemplate = new TransactionTemplate(transactionManager);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        if (settlementInbox.getMode() == SettlementMode.ASYNC) {
+            start();
+        }
+    }
+
+    private synchronized void start() {
+        if (scheduler != null) {
+            return;
+        }
+
+        Gauge.builder("settlement.inbox.lag", this, worker -> worker.lagSeconds)
+            .description("Age of the oldest bank notification waiting in the settlement inbox")
+            .baseUnit("seconds")
+            .register(meterRegistry);
+        Gauge.builder("settlement.inbox.pending", this, worker -> worker.pendingCount)
+            .description("Number of bank notifications waiting in the settlement inbox")
+            .register(meterRegistry);
+
+        // one thread more than the workers for the gauges
+        var threadIndex = new AtomicInteger();
+        scheduler = Executors.newScheduledThreadPool(settlementInbox.getWorkers() + 1, runnable -> {
+            var thread = new Thread(runnable, "settlement-inbox-" + threadIndex.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+
+        var pollInterval = settlementInbox.getPollInterval().toMillis();
+        for (int partition = 0; partition < settlementInbox.getWorkers(); partition++) {
+            var workerPartition = partition;
+            scheduler.scheduleWithFixedDelay(() -> drain(workerPartition), 0, pollInterval, TimeUnit.MILLISECONDS);
+        }
+        scheduler.scheduleWithFixedDelay(this::refreshGauges, 0, settlementInbox.getGaugeInterval().toMillis(), TimeUnit.MILLISECONDS);
+
+        log.info("started {} settlement inbox workers", settlementInbox.getWorkers());
+    }
+
+    @PreDestroy
+    public synchronized void stop() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+            scheduler = null;
+        }
+    }
+
+    /**
+     * Deletes the entries processed before the retention, batch after batch.
+     */
+    @Scheduled(cron = "#{@settlementInbox.pruneCron}")
+    public void prune() {
+        var processedBefore = LocalDateTime.now().minus(settlementInbox.getRetention());
+        try {
+            var deleted = 0;
+            int batch;
+            do {
+                batch = transactionTemplate.execute(status -> settlementInboxRepository.deleteProcessedBefore(processedBefore, settlementInbox.getBatchSize()));
+                deleted += batch;
+            } while (batch >= settlementInbox.getBatchSize());
+
+            log.info("deleted {} settlement inbox entries processed before {}", deleted, processedBefore);
+        } catch (RuntimeException e) {
+            // the committed batches stay deleted, the next run deletes the others
+            log.error("failed to delete settlement inbox entries processed before {}", processedBefore, e);
+        }
+    }
+
+    private void drain(int partition) {
+        try {
+            // keep going while full batches come back, the partition is behind
+            while (processSettlementInboxUseCase.execute(partition) >= settlementInbox.getBatchSize()) {
+                log.debug("settlement inbox partition {} is behind, draining the next batch", partition);
+            }
+        } catch (RuntimeException e) {
+            // the batch was rolled back and is picked up again on the next poll, a thrown error would cancel the schedule
+            log.error("failed to process settlement inbox partition {}", partition, e);
+        }
+    }
+
+    private void refreshGauges() {
+        try {
+            pendingCount = settlementInboxRepository.countByState(SettlementState.RECEIVED);
+            lagSeconds = settlementInboxRepository.findOldestReceivedAt(SettlementState.RECEIVED)
+                .map(receivedAt -> Duration.between(receivedAt, LocalDateTime.now()).toMillis() / 1000d)
+                .orElse(0d);
+        } catch (RuntimeException e) {
+            // the gauges keep their last values until the next refresh
+            log.warn("failed to read the settlement inbox gauges", e);
+        }
+    }
+}
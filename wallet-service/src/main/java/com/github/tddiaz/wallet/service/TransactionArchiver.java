@@ -0,0 +1,41 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.config.ArchiveConfiguration.TransactionArchiving;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+/**
+ * Archives settled transactions daily, batch after batch until none is left.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TransactionArchiver {
+
+    private final TransactionArchiving transactionArchiving;
+
+    private final ArchiveTransactionsUseCase archiveTransactionsUseCase;
+
+    @Scheduled(cron = "#{@transactionArchiving.cron}")
+    public void archive() {
+        if (!transactionArchiving.isEnabled()) {
+            return;
+        }
+
+        try {
+            var archived = 0;
+            int batch;
+            do {
+                batch = archiveTransactionsUseCase.execute();
+                archived += batch;
+            } while (batch >= transactionArchiving.getBatchSize());
+
+            log.info("archived {} settled transactions", archived);
+        } catch (RuntimeException e) {
+            // the failed batch was rolled back, the next run picks it up again
+            log.error("failed to archive settled transactions", e);
+        }
+    }
+}
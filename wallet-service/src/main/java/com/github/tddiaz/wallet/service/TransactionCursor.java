@@ -0,0 +1,40 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.exception.InvalidCursorException;
+import com.github.tddiaz.wallet.model.Transaction;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+/**
+ * Position after the last transaction of a page, in the {@code created_at DESC, id DESC} order of the history.
+ * Handed to clients as an opaque URL safe string.
+ */
+record TransactionCursor(LocalDateTime createdAt, Long id) {
+
+    private static final String SEPARATOR = "|";
+
+    static TransactionCursor after(Transaction transaction) {
+        return new TransactionCursor(transaction.getCreatedAt(), transaction.getId());
+    }
+
+    static TransactionCursor decode(String cursor) {
+        try {
+            var value = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            var separatorIndex = value.indexOf(SEPARATOR);
+
+            return new TransactionCursor(
+                LocalDateTime.parse(value.substring(0, separatorIndex)),
+                Long.parseLong(value.substring(separatorIndex + 1))
+            );
+        } catch (RuntimeException e) {
+            throw new InvalidCursorException("Invalid cursor", e);
+        }
+    }
+
+    String encode() {
+        var value = createdAt + SEPARATOR + id;
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(value.getBytes(StandardCharsets.UTF_8));
+    }
+}
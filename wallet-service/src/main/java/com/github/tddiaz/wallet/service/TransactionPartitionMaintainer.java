@@ -0,0 +1,51 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.config.PartitioningConfiguration.TransactionPartitioning;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.time.LocalDate;
+
+/**
+ * Creates the monthly partitions of the transaction table ahead of time, on startup and then daily.
+ */
+@Component
+@Slf4j
+@RequiredArgsConstructor
+public class TransactionPartitionMaintainer {
+
+    private final TransactionPartitioning transactionPartitioning;
+
+    private final TransactionRepository transactionRepository;
+
+    private final PlatformTransactionManager transactionManager;
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void onApplicationReady() {
+        createUpcomingPartitions();
+    }
+
+    @Scheduled(cron = "#{@transactionPartitioning.cron}")
+    public void createUpcomingPartitions() {
+        var currentMonth = LocalDate.now().withDayOfMonth(1);
+        var transactionTemplate = new TransactionTemplate(transactionManager);
+
+        for (int i = 0; i <= transactionPartitioning.getMonthsAhead(); i++) {
+            var month = currentMonth.plusMonths(i);
+            try {
+                var partition = transactionTemplate.execute(status -> transactionRepository.createPartition(month));
+                log.debug("transaction partition {} is in place for {}", partition, month);
+            } catch (RuntimeException e) {
+                // the partitions are created months ahead, the next run tries again
+                log.error("failed to create transaction partition for {}", month, e);
+            }
+        }
+    }
+}
@@ -0,0 +1,37 @@
+-- Replaces create_transaction_partition of V5: the months covered by the legacy partition are told from its bound
+-- in the catalog, instead of from any invalid_object_definition raised while creating the partition.
+CREATE OR REPLACE FUNCTION create_transaction_partition(month DATE) RETURNS TEXT AS
+$$
+DECLARE
+    partition_start DATE := date_trunc('month', month);
+    partition_end   DATE := date_trunc('month', month) + INTERVAL '1 month';
+    partition_name  TEXT := 'transaction_' || to_char(partition_start, '"y"YYYY"m"MM');
+    legacy_end      TIMESTAMP;
+BEGIN
+    -- instances starting together create the same partitions
+    PERFORM pg_advisory_xact_lock(hashtext('create_transaction_partition'));
+
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN partition_name;
+    END IF;
+
+    -- the legacy partition holds everything up to the end of the month of the migration
+    SELECT (regexp_match(pg_get_expr(c.relpartbound, c.oid), 'TO \(''(.+)''\)'))[1]::TIMESTAMP
+    INTO legacy_end
+    FROM pg_class c
+    WHERE c.oid = to_regclass('transaction_legacy');
+    IF partition_start < legacy_end THEN
+        RETURN 'transaction_legacy';
+    END IF;
+
+    EXECUTE format('CREATE TABLE %I (LIKE transaction INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+    EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (id, created_at)', partition_name);
+    EXECUTE format('CREATE INDEX %I ON %I (wallet_id, created_at DESC, id DESC) '
+                       || 'INCLUDE (reference_id, transaction_currency, transaction_amount, status, transaction_type, entry)',
+                   'idx_' || partition_name || '_wallet_id_created_at_id', partition_name);
+    EXECUTE format('ALTER TABLE transaction ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                   partition_name, partition_start, partition_end);
+
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
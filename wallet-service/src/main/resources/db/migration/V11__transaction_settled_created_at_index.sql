@@ -0,0 +1,6 @@
+-- Serves the archival, which reads the oldest settled transactions first, from the settled rows alone.
+-- A partitioned table can't be indexed concurrently: each partition is indexed in turn and its writes wait meanwhile.
+-- New partitions get the index when attached by create_transaction_partition.
+CREATE INDEX idx_transaction_settled_created_at
+    ON transaction (created_at)
+    WHERE status IN ('SUCCESS', 'FAILED');
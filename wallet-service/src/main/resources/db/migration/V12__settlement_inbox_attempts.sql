@@ -0,0 +1,3 @@
+-- Failed attempts to settle an entry. An entry failing settlement.inbox.max-attempts times is set aside as FAILED,
+-- instead of failing the batches of its partition forever.
+ALTER TABLE settlement_inbox ADD COLUMN attempts INTEGER NOT NULL DEFAULT 0;
@@ -0,0 +1,6 @@
+-- Serves the deletion of the entries processed before the retention, oldest first.
+-- Built concurrently so the inbox keeps taking notifications. Flyway runs this statement outside of a transaction,
+-- keep it alone in this migration. If the build fails, drop the INVALID index left behind before running it again.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_settlement_inbox_processed_at
+    ON settlement_inbox (processed_at)
+    WHERE state <> 'RECEIVED';
@@ -0,0 +1,15 @@
+CREATE TABLE settlement_inbox
+(
+    id             BIGINT                      NOT NULL,
+    reference_id   VARCHAR                     NOT NULL,
+    wallet_id      BIGINT,
+    banking_status VARCHAR(10)                 NOT NULL,
+    state          VARCHAR(10)                 NOT NULL,
+    received_at    TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    processed_at   TIMESTAMP WITHOUT TIME ZONE,
+    PRIMARY KEY (id)
+);
+
+CREATE INDEX idx_settlement_inbox_received ON settlement_inbox (id) WHERE state = 'RECEIVED';
+
+CREATE INDEX idx_settlement_inbox_reference_id ON settlement_inbox (reference_id);
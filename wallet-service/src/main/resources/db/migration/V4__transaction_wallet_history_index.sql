@@ -0,0 +1,6 @@
+-- Serves the transaction history of a wallet, newest first, from the index alone.
+-- Built concurrently so writes to the table are not blocked. Flyway runs this statement outside of a transaction,
+-- keep it alone in this migration. If the build fails, drop the INVALID index left behind before running it again.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_transaction_wallet_id_created_at_id
+    ON transaction (wallet_id, created_at DESC, id DESC)
+    INCLUDE (reference_id, transaction_currency, transaction_amount, status, transaction_type, entry);
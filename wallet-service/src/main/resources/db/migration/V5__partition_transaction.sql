@@ -0,0 +1,109 @@
+-- Turns transaction into a table partitioned by month of created_at.
+-- The existing rows are not copied: the old table is attached as the partition of everything before the current month ends,
+-- new months get partitions of their own, created ahead of time by TransactionPartitionMaintainer.
+
+ALTER TABLE transaction RENAME TO transaction_legacy;
+-- a partition has the primary key of the partitioned table, which has to include created_at
+ALTER TABLE transaction_legacy DROP CONSTRAINT transaction_pkey;
+ALTER TABLE transaction_legacy ADD CONSTRAINT transaction_legacy_pkey PRIMARY KEY (id, created_at);
+ALTER TABLE transaction_legacy RENAME CONSTRAINT uq_transaction_reference_id TO uq_transaction_legacy_reference_id;
+ALTER INDEX idx_transaction_wallet_id_created_at_id RENAME TO idx_transaction_legacy_wallet_id_created_at_id;
+
+CREATE TABLE transaction
+(
+    id                   BIGINT                      NOT NULL,
+    reference_id         VARCHAR                     NOT NULL,
+    wallet_id            BIGINT                      NOT NULL,
+    transaction_currency VARCHAR(3)                  NOT NULL,
+    transaction_amount   DECIMAL(19, 4)              NOT NULL,
+    status               VARCHAR(10)                 NOT NULL,
+    transaction_type     VARCHAR(20)                 NOT NULL,
+    entry                VARCHAR(10)                 NOT NULL,
+    created_at           TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (id, created_at),
+    CONSTRAINT fk_transaction_wallet_id FOREIGN KEY (wallet_id) REFERENCES wallet (id)
+) PARTITION BY RANGE (created_at);
+
+-- matches the index of the legacy table, which is attached to it instead of building a new one
+CREATE INDEX idx_transaction_wallet_id_created_at_id
+    ON transaction (wallet_id, created_at DESC, id DESC)
+    INCLUDE (reference_id, transaction_currency, transaction_amount, status, transaction_type, entry);
+
+-- A unique index on a partitioned table has to include created_at, so reference ids are kept unique here instead.
+-- It also tells the partition of a reference, lookups by reference id read a single partition.
+CREATE TABLE transaction_reference
+(
+    reference_id   VARCHAR                     NOT NULL,
+    transaction_id BIGINT                      NOT NULL,
+    created_at     TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    CONSTRAINT uq_transaction_reference_id PRIMARY KEY (reference_id)
+);
+
+INSERT INTO transaction_reference (reference_id, transaction_id, created_at)
+SELECT reference_id, id, created_at
+FROM transaction_legacy;
+
+CREATE FUNCTION register_transaction_reference() RETURNS TRIGGER AS
+$$
+BEGIN
+    -- a reused reference id fails the insert on uq_transaction_reference_id, as it did before partitioning
+    INSERT INTO transaction_reference (reference_id, transaction_id, created_at)
+    VALUES (NEW.reference_id, NEW.id, NEW.created_at);
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TRIGGER trg_transaction_reference
+    BEFORE INSERT
+    ON transaction
+    FOR EACH ROW
+EXECUTE FUNCTION register_transaction_reference();
+
+-- Creates the partition of the month of the given date, when missing, and returns its name.
+-- Partition indexes are created before attaching, with names the history queries can be checked against.
+CREATE FUNCTION create_transaction_partition(month DATE) RETURNS TEXT AS
+$$
+DECLARE
+    partition_start DATE := date_trunc('month', month);
+    partition_end   DATE := date_trunc('month', month) + INTERVAL '1 month';
+    partition_name  TEXT := 'transaction_' || to_char(partition_start, '"y"YYYY"m"MM');
+BEGIN
+    -- instances starting together create the same partitions
+    PERFORM pg_advisory_xact_lock(hashtext('create_transaction_partition'));
+
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN partition_name;
+    END IF;
+
+    BEGIN
+        EXECUTE format('CREATE TABLE %I (LIKE transaction INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+        EXECUTE format('ALTER TABLE %I ADD PRIMARY KEY (id, created_at)', partition_name);
+        EXECUTE format('CREATE INDEX %I ON %I (wallet_id, created_at DESC, id DESC) '
+                           || 'INCLUDE (reference_id, transaction_currency, transaction_amount, status, transaction_type, entry)',
+                       'idx_' || partition_name || '_wallet_id_created_at_id', partition_name);
+        EXECUTE format('ALTER TABLE transaction ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, partition_start, partition_end);
+    EXCEPTION
+        -- the month overlaps the legacy partition, which holds everything up to the end of the month of the migration
+        WHEN invalid_object_definition THEN
+            RETURN 'transaction_legacy';
+    END;
+
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+-- the check lets the attach skip scanning the legacy rows for its bounds
+DO
+$$
+DECLARE
+    legacy_end DATE := date_trunc('month', now()) + INTERVAL '1 month';
+BEGIN
+    EXECUTE format('ALTER TABLE transaction_legacy ADD CONSTRAINT chk_transaction_legacy_created_at CHECK (created_at < %L)', legacy_end);
+    EXECUTE format('ALTER TABLE transaction ATTACH PARTITION transaction_legacy FOR VALUES FROM (MINVALUE) TO (%L)', legacy_end);
+    ALTER TABLE transaction_legacy DROP CONSTRAINT chk_transaction_legacy_created_at;
+
+    PERFORM create_transaction_partition(legacy_end);
+    PERFORM create_transaction_partition((legacy_end + INTERVAL '1 month')::DATE);
+END;
+$$;
@@ -0,0 +1,9 @@
+CREATE TABLE archive_segment
+(
+    id         BIGINT                      NOT NULL,
+    file_name  VARCHAR                     NOT NULL,
+    row_count  INTEGER                     NOT NULL,
+    created_at TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (id),
+    CONSTRAINT uq_archive_segment_file_name UNIQUE (file_name)
+);
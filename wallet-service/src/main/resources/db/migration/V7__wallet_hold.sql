@@ -0,0 +1,26 @@
+-- Funds held by pending withdrawals, one row per withdraw transaction, replacing the single on-hold balance of the wallet.
+-- Settling a withdrawal deletes its row, so a successful one no longer writes the wallet row
+-- and the holds of the other pending withdrawals of the wallet stay as they are.
+CREATE TABLE wallet_hold
+(
+    transaction_id BIGINT                      NOT NULL,
+    wallet_id      BIGINT                      NOT NULL,
+    hold_currency  VARCHAR(3)                  NOT NULL,
+    hold_amount    DECIMAL(19, 4)              NOT NULL,
+    created_at     TIMESTAMP WITHOUT TIME ZONE NOT NULL,
+    PRIMARY KEY (transaction_id),
+    CONSTRAINT fk_wallet_hold_wallet_id FOREIGN KEY (wallet_id) REFERENCES wallet (id)
+);
+
+-- the on-hold balance of a wallet is summed from this index alone
+CREATE INDEX idx_wallet_hold_wallet_id ON wallet_hold (wallet_id) INCLUDE (hold_amount);
+
+INSERT INTO wallet_hold (transaction_id, wallet_id, hold_currency, hold_amount, created_at)
+SELECT id, wallet_id, transaction_currency, transaction_amount, created_at
+FROM transaction
+WHERE entry = 'WITHDRAW'
+  AND status = 'PENDING';
+
+ALTER TABLE wallet
+    DROP COLUMN balance_held_currency,
+    DROP COLUMN balance_held_amount;
@@ -0,0 +1,10 @@
+-- Parts of the balance of the wallets listed in concurrency.balance-buckets.wallet-ids.
+-- Settlements credit one bucket each, created on first credit, so they rarely wait on each other or on the wallet row.
+CREATE TABLE wallet_balance_bucket
+(
+    wallet_id      BIGINT         NOT NULL,
+    bucket         INTEGER        NOT NULL,
+    balance_amount DECIMAL(19, 4) NOT NULL,
+    PRIMARY KEY (wallet_id, bucket),
+    CONSTRAINT fk_wallet_balance_bucket_wallet_id FOREIGN KEY (wallet_id) REFERENCES wallet (id)
+);
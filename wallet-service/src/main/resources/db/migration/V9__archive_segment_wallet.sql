@@ -0,0 +1,11 @@
+-- The wallets archived in each segment with their number of transactions, registered with the segment.
+-- The history of a wallet opens its segments only, and its archived transactions are counted without opening any.
+-- Segments registered before this table are indexed from their files when the service starts.
+CREATE TABLE archive_segment_wallet
+(
+    wallet_id  BIGINT  NOT NULL,
+    segment_id BIGINT  NOT NULL,
+    row_count  INTEGER NOT NULL,
+    PRIMARY KEY (wallet_id, segment_id),
+    CONSTRAINT fk_archive_segment_wallet_segment_id FOREIGN KEY (segment_id) REFERENCES archive_segment (id)
+);
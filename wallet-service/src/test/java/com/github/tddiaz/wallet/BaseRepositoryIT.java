@@ -1,9 +1,11 @@
 package com.github.tddiaz.wallet;
 
+import com.github.tddiaz.wallet.config.FlywayConfiguration;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.jdbc.AutoConfigureTestDatabase;
 import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.context.annotation.Import;
 import org.springframework.test.context.ContextConfiguration;
 import org.springframework.test.context.junit.jupiter.SpringExtension;
 import org.springframework.transaction.support.TransactionTemplate;
@@ -11,6 +13,7 @@ import org.springframework.transaction.support.TransactionTemplate;
 @DataJpaTest
 @ExtendWith(SpringExtension.class)
 @AutoConfigureTestDatabase(replace= AutoConfigureTestDatabase.Replace.NONE)
+@Import(FlywayConfiguration.class)
 @ContextConfiguration(
     initializers = {TestDatasourceContextInitializer.class}
 )
@@ -0,0 +1,109 @@
+package com.github.tddiaz.wallet.archive;
+
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.entry;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class TransactionSegmentTest {
+
+    private static final LocalDateTime CREATED_AT = LocalDateTime.of(2023, 4, 10, 10, 0, 0, 123_456_000);
+
+    @TempDir
+    private Path directory;
+
+    @Test
+    void givenTransactionsOfManyWallets_whenWriteAndOpen_thenReadEachWalletNewestFirst() throws IOException {
+        // given
+        var firstDeposit = settled(Transaction.createDepositRequest(1L, Money.create("GBP", new BigDecimal("10.5000")), "REF1"), 0);
+        var withdraw = settled(Transaction.createWithdrawalRequest(1L, Money.create("GBP", new BigDecimal("0.0001")), "REF,2"), 1);
+        withdraw.failed();
+        var secondDeposit = settled(Transaction.createDepositRequest(1L, Money.create("AED", new BigDecimal("99999.9999")), "REF3"), 2);
+        var otherWalletDeposit = settled(Transaction.createDepositRequest(3L, Money.create("GBP", new BigDecimal("10.0000")), "REF4"), 0);
+
+        var file = directory.resolve("transactions.seg");
+
+        // when
+        TransactionSegment.write(file, List.of(withdraw, otherWalletDeposit, firstDeposit, secondDeposit));
+        var underTest = TransactionSegment.open(file);
+
+        // then
+        assertThat(underTest.countByWalletId(1L)).isEqualTo(3);
+        assertThat(underTest.countByWalletId(2L)).isZero();
+        assertThat(underTest.countByWalletId()).containsExactly(entry(1L, 3), entry(3L, 1));
+        assertThat(underTest.findAllByWalletId(1L, 10)).containsExactly(secondDeposit, withdraw, firstDeposit);
+        assertThat(underTest.findAllByWalletId(1L, 2)).containsExactly(secondDeposit, withdraw);
+        assertThat(underTest.findAllByWalletId(3L, 10)).containsExactly(otherWalletDeposit);
+        assertThat(underTest.findAllByWalletId(2L, 10)).isEmpty();
+
+        try (var files = Files.list(directory)) {
+            assertThat(files).containsExactly(file);
+        }
+    }
+
+    @Test
+    void givenPositionInHistory_whenFindAllByWalletIdAfter_thenReadRowsFollowingIt() throws IOException {
+        // given
+        var first = settled(Transaction.createDepositRequest(1L, Money.create("GBP", BigDecimal.TEN), "REF1"), 0);
+        var second = settled(Transaction.createDepositRequest(1L, Money.create("GBP", BigDecimal.TEN), "REF2"), 1);
+        var sameTimeAsSecond = settled(Transaction.createDepositRequest(1L, Money.create("GBP", BigDecimal.TEN), "REF3"), 1);
+        var third = settled(Transaction.createDepositRequest(1L, Money.create("GBP", BigDecimal.TEN), "REF4"), 2);
+
+        var file = directory.resolve("transactions.seg");
+        TransactionSegment.write(file, List.of(first, second, sameTimeAsSecond, third));
+
+        // when
+        var underTest = TransactionSegment.open(file);
+
+        // then
+        var newestOfMinuteOne = second.getId() > sameTimeAsSecond.getId() ? second : sameTimeAsSecond;
+        var oldestOfMinuteOne = newestOfMinuteOne == second ? sameTimeAsSecond : second;
+        assertThat(underTest.findAllByWalletIdAfter(1L, third.getCreatedAt(), third.getId(), 10)).containsExactly(newestOfMinuteOne, oldestOfMinuteOne, first);
+        assertThat(underTest.findAllByWalletIdAfter(1L, newestOfMinuteOne.getCreatedAt(), newestOfMinuteOne.getId(), 1)).containsExactly(oldestOfMinuteOne);
+        // a position between rows of the segment, e.g. the last row of a page of the DB
+        assertThat(underTest.findAllByWalletIdAfter(1L, CREATED_AT.plusSeconds(30), Long.MAX_VALUE, 10)).containsExactly(first);
+        assertThat(underTest.findAllByWalletIdAfter(1L, first.getCreatedAt(), first.getId(), 10)).isEmpty();
+    }
+
+    @Test
+    void givenReferenceId_whenFindByReferenceId_thenReadTransactionOfThatWalletOnly() throws IOException {
+        // given
+        var deposit = settled(Transaction.createDepositRequest(1L, Money.create("GBP", BigDecimal.TEN), "REF1"), 0);
+        var withdraw = settled(Transaction.createWithdrawalRequest(1L, Money.create("GBP", BigDecimal.ONE), "REF2"), 1);
+        var otherWalletDeposit = settled(Transaction.createDepositRequest(3L, Money.create("GBP", BigDecimal.TEN), "REF3"), 0);
+
+        var file = directory.resolve("transactions.seg");
+        TransactionSegment.write(file, List.of(deposit, withdraw, otherWalletDeposit));
+
+        // when
+        var underTest = TransactionSegment.open(file);
+
+        // then
+        assertThat(underTest.findByReferenceId(1L, "REF2")).contains(withdraw);
+        assertThat(underTest.findByReferenceId(1L, "REF3")).isEmpty();
+        assertThat(underTest.findByReferenceId(2L, "REF1")).isEmpty();
+    }
+
+    @Test
+    void givenFileThatIsNotSegment_whenOpen_thenThrowError() throws IOException {
+        var file = Files.writeString(directory.resolve("transactions.seg"), "not a segment file at all");
+
+        assertThrows(IOException.class, () -> TransactionSegment.open(file));
+    }
+
+    private static Transaction settled(Transaction transaction, int minutes) {
+        transaction.success();
+        return transaction.setCreatedAt(CREATED_AT.plusMinutes(minutes));
+    }
+}
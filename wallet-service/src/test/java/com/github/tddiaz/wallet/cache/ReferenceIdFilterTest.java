@@ -0,0 +1,143 @@
+package com.github.tddiaz.wallet.cache;
+
+import com.github.tddiaz.wallet.config.CacheConfiguration.ReferenceIdFiltering;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.util.Optional;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+class ReferenceIdFilterTest {
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final ReferenceIdFiltering referenceIdFiltering = new ReferenceIdFiltering(true, 1_000, 0.01);
+
+    private final ReferenceIdFilter underTest = new ReferenceIdFilter(referenceIdFiltering, transactionRepository,
+        mock(PlatformTransactionManager.class), meterRegistry);
+
+    private final AtomicInteger lookups = new AtomicInteger();
+
+    @Test
+    void givenFilterIsNotBuilt_whenFindByReferenceId_thenLookUpEveryReferenceId() {
+        assertThat(underTest.findByReferenceId("REF123", this::lookup)).isEmpty();
+        assertThat(lookups).hasValue(1);
+        assertThat(meterRegistry.get("wallet.reference.filter.lookups").tag("result", "unfiltered").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("wallet.reference.filter.lookups").tag("result", "false.positive").counter().count()).isZero();
+        assertThat(meterRegistry.get("wallet.reference.filter.expected.fpp").gauge().value()).isEqualTo(1);
+    }
+
+    @Test
+    void givenFilterIsBuilt_whenFindByReferenceId_thenLookUpKnownReferenceIdsOnly() {
+        // given
+        when(transactionRepository.streamAllReferenceIds()).thenReturn(Stream.of("REF001", "REF002"));
+        assertThat(underTest.rebuild().join()).isEqualTo(2);
+
+        // when
+        underTest.findByReferenceId("REF001", () -> Optional.of("transaction"));
+        underTest.findByReferenceId("REF123", this::lookup);
+
+        // then
+        assertThat(lookups).hasValue(0);
+        assertThat(meterRegistry.get("wallet.reference.filter.lookups").tag("result", "found").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("wallet.reference.filter.lookups").tag("result", "skipped").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("wallet.reference.filter.insertions").gauge().value()).isEqualTo(2);
+    }
+
+    @Test
+    void givenFilterIsBuilt_whenReferenceIdIsAdded_thenLookItUp() {
+        // given
+        when(transactionRepository.streamAllReferenceIds()).thenReturn(Stream.empty());
+        underTest.rebuild().join();
+
+        // when
+        underTest.add("REF123");
+
+        // then
+        underTest.findByReferenceId("REF123", this::lookup);
+        assertThat(lookups).hasValue(1);
+        assertThat(meterRegistry.get("wallet.reference.filter.lookups").tag("result", "false.positive").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenFilterIsDisabled_whenFindByReferenceId_thenLookUpEveryReferenceId() {
+        // given
+        when(transactionRepository.streamAllReferenceIds()).thenReturn(Stream.empty());
+        underTest.rebuild().join();
+        referenceIdFiltering.setEnabled(false);
+
+        // when
+        underTest.findByReferenceId("REF123", this::lookup);
+
+        // then
+        assertThat(lookups).hasValue(1);
+        assertThat(meterRegistry.get("wallet.reference.filter.lookups").tag("result", "unfiltered").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("wallet.reference.filter.lookups").tag("result", "false.positive").counter().count()).isZero();
+    }
+
+    @Test
+    void givenOrderFailsOnUniqueReferenceId_whenPlaceOrder_thenPlaceItAgain() {
+        // given
+        var attempts = new AtomicInteger();
+
+        // when
+        var result = underTest.placeOrder("REF123", () -> {
+            if (attempts.incrementAndGet() == 1) {
+                throw duplicateKey("uq_transaction_reference_id");
+            }
+            return "replayed";
+        }, () -> "archived");
+
+        // then
+        assertThat(result).isEqualTo("replayed");
+        assertThat(meterRegistry.get("wallet.reference.filter.duplicates").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenOrderFailsOnOtherConstraint_whenPlaceOrder_thenThrowError() {
+        var attempts = new AtomicInteger();
+
+        assertThrows(DataIntegrityViolationException.class, () -> underTest.placeOrder("REF123", () -> {
+            attempts.incrementAndGet();
+            throw duplicateKey("transaction_pkey");
+        }, () -> "archived"));
+        assertThat(attempts).hasValue(1);
+    }
+
+    @Test
+    void givenOrderFailsOnUniqueReferenceIdTwice_whenPlaceOrder_thenReplayArchivedOrder() {
+        // given
+        var attempts = new AtomicInteger();
+
+        // when
+        var result = underTest.placeOrder("REF123", () -> {
+            attempts.incrementAndGet();
+            throw duplicateKey("uq_transaction_reference_id");
+        }, () -> "archived");
+
+        // then
+        assertThat(result).isEqualTo("archived");
+        assertThat(attempts).hasValue(2);
+    }
+
+    private Optional<String> lookup() {
+        lookups.incrementAndGet();
+        return Optional.empty();
+    }
+
+    private static DataIntegrityViolationException duplicateKey(String constraintName) {
+        return new DataIntegrityViolationException("duplicate key", new ConstraintViolationException("duplicate key", null, constraintName));
+    }
+}
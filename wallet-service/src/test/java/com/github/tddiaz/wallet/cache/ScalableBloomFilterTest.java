@@ -0,0 +1,46 @@
+package com.github.tddiaz.wallet.cache;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ScalableBloomFilterTest {
+
+    @Test
+    void givenKeysBeyondInitialCapacity_whenMightContain_thenFindEveryAddedKey() {
+        // given
+        var underTest = new ScalableBloomFilter(1_000, 0.01);
+
+        // when
+        IntStream.range(0, 10_000).forEach(i -> underTest.add("REF" + i));
+
+        // then
+        assertThat(IntStream.range(0, 10_000).allMatch(i -> underTest.mightContain("REF" + i))).isTrue();
+        assertThat(underTest.numberOfSlices()).isEqualTo(4);
+        assertThat(underTest.insertions()).isEqualTo(10_000);
+    }
+
+    @Test
+    void givenKeysBeyondInitialCapacity_whenMightContainUnknownKeys_thenKeepFalsePositiveRateUnderTarget() {
+        // given
+        var underTest = new ScalableBloomFilter(1_000, 0.01);
+        IntStream.range(0, 10_000).forEach(i -> underTest.add("REF" + i));
+
+        // when
+        var falsePositives = IntStream.range(0, 100_000).filter(i -> underTest.mightContain("NEW" + i)).count();
+
+        // then
+        assertThat(falsePositives / 100_000d).isLessThan(0.01);
+        assertThat(underTest.expectedFalsePositiveRate()).isLessThan(0.01);
+    }
+
+    @Test
+    void givenEmptyFilter_whenMightContain_thenReturnFalse() {
+        var underTest = new ScalableBloomFilter(1_000, 0.01);
+
+        assertThat(underTest.mightContain("REF123")).isFalse();
+        assertThat(underTest.expectedFalsePositiveRate()).isZero();
+    }
+}
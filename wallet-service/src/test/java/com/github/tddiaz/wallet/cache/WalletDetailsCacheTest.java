@@ -0,0 +1,158 @@
+package com.github.tddiaz.wallet.cache;
+
+import com.github.tddiaz.wallet.config.CacheConfiguration.WalletDetailsCaching;
+import com.github.tddiaz.wallet.controller.dto.GetWalletDetailsResponseDto;
+import com.github.tddiaz.wallet.controller.dto.MoneyDto;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+class WalletDetailsCacheTest {
+
+    private static final Long WALLET_ID = 434620675409151281L;
+    private static final Long CUSTOMER_ID = 123L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final WalletDetailsCaching walletDetailsCaching = new WalletDetailsCaching(true, 100, Duration.ofMinutes(1));
+
+    private final WalletDetailsCache underTest = new WalletDetailsCache(walletDetailsCaching, meterRegistry);
+
+    private final AtomicInteger loads = new AtomicInteger();
+
+    @AfterEach
+    void tearDown() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.clearSynchronization();
+        }
+    }
+
+    @Test
+    void givenCachedWallet_whenGet_thenReturnCachedDetailsWithoutLoading() {
+        // given
+        underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.TEN));
+
+        // when
+        var walletDetails = underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.ONE));
+
+        // then
+        assertThat(walletDetails.totalBalance()).isEqualTo(new MoneyDto("GBP", BigDecimal.TEN));
+        assertThat(loads).hasValue(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "walletDetails").tag("result", "hit").functionCounter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("cache.gets").tag("cache", "walletDetails").tag("result", "miss").functionCounter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenCachedWalletOfAnotherCustomer_whenGet_thenLoadForRequestingCustomer() {
+        // given
+        underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.TEN));
+
+        // when
+        var walletDetails = underTest.get(WALLET_ID, 456L, () -> {
+            loads.incrementAndGet();
+            return null;
+        });
+
+        // then
+        assertThat(walletDetails).isNull();
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void givenEvictionInsideTransaction_whenGetBeforeAndAfterCommit_thenReloadOnlyAfterCommit() {
+        // given
+        underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.TEN));
+        TransactionSynchronizationManager.initSynchronization();
+
+        // when
+        underTest.evictAfterCommit(WALLET_ID);
+        var beforeCommit = underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.ONE));
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(TransactionSynchronization::afterCommit);
+        var afterCommit = underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.ONE));
+
+        // then
+        assertThat(beforeCommit.totalBalance()).isEqualTo(new MoneyDto("GBP", BigDecimal.TEN));
+        assertThat(afterCommit.totalBalance()).isEqualTo(new MoneyDto("GBP", BigDecimal.ONE));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void givenLoadInProgress_whenEvictedByAnotherThread_thenEvictionDoesNotWaitAndLoadedValueIsNotKept() {
+        // given
+        var eviction = new AtomicBoolean();
+        Supplier<GetWalletDetailsResponseDto> evictingLoader = () -> {
+            // a committing transaction evicting the wallet while the load waits for a DB connection
+            var evictingThread = new Thread(() -> underTest.evictAfterCommit(WALLET_ID));
+            evictingThread.start();
+            try {
+                evictingThread.join(Duration.ofSeconds(5).toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            eviction.set(!evictingThread.isAlive());
+            return loader(BigDecimal.TEN).get();
+        };
+
+        // when
+        var duringEviction = underTest.get(WALLET_ID, CUSTOMER_ID, evictingLoader);
+        var afterEviction = underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.ONE));
+
+        // then
+        assertThat(eviction).isTrue();
+        assertThat(duringEviction.totalBalance()).isEqualTo(new MoneyDto("GBP", BigDecimal.TEN));
+        assertThat(afterEviction.totalBalance()).isEqualTo(new MoneyDto("GBP", BigDecimal.ONE));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void givenFailingLoad_whenGet_thenThrowLoaderExceptionAndLoadAgainNextTime() {
+        // given
+        Supplier<GetWalletDetailsResponseDto> failingLoader = () -> {
+            loads.incrementAndGet();
+            throw new NotFoundException("Wallet not found");
+        };
+
+        // when
+        var thrown = catchThrowable(() -> underTest.get(WALLET_ID, CUSTOMER_ID, failingLoader));
+        var walletDetails = underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.ONE));
+
+        // then
+        assertThat(thrown).isInstanceOf(NotFoundException.class);
+        assertThat(walletDetails.totalBalance()).isEqualTo(new MoneyDto("GBP", BigDecimal.ONE));
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void givenCacheDisabled_whenGet_thenAlwaysLoad() {
+        // given
+        walletDetailsCaching.setEnabled(false);
+
+        // when
+        underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.TEN));
+        var walletDetails = underTest.get(WALLET_ID, CUSTOMER_ID, loader(BigDecimal.ONE));
+
+        // then
+        assertThat(walletDetails.totalBalance()).isEqualTo(new MoneyDto("GBP", BigDecimal.ONE));
+        assertThat(loads).hasValue(2);
+    }
+
+    private Supplier<GetWalletDetailsResponseDto> loader(BigDecimal balance) {
+        return () -> {
+            loads.incrementAndGet();
+            return new GetWalletDetailsResponseDto(WALLET_ID, CUSTOMER_ID, new MoneyDto("GBP", balance), new MoneyDto("GBP", BigDecimal.ZERO));
+        };
+    }
+}
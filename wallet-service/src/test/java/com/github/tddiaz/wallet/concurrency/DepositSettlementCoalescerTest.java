@@ -0,0 +1,79 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.DepositCoalescing;
+import com.github.tddiaz.wallet.exception.InvalidAmountException;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class DepositSettlementCoalescerTest {
+
+    private static final Long WALLET_ID = 434620675409151281L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final List<List<String>> appliedGroups = new CopyOnWriteArrayList<>();
+
+    @Test
+    void givenSettlementsOnSameWallet_whenGroupIsFull_thenApplyThemTogetherWithoutWaitingForTheDelay() throws Exception {
+        // given
+        var underTest = new DepositSettlementCoalescer(new DepositCoalescing(true, Duration.ofSeconds(30), 3), meterRegistry);
+
+        // when
+        var settlements = List.of("REF1", "REF2", "REF3").stream()
+            .map(referenceId -> CompletableFuture.runAsync(() -> underTest.settle(WALLET_ID, referenceId, appliedGroups::add)))
+            .toList();
+
+        // then
+        CompletableFuture.allOf(settlements.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+        assertThat(appliedGroups).hasSize(1);
+        assertThat(appliedGroups.get(0)).containsExactlyInAnyOrder("REF1", "REF2", "REF3");
+        assertThat(meterRegistry.get("wallet.deposit.coalescing.batch.size").summary().max()).isEqualTo(3);
+        assertThat(underTest.pendingGroups()).isZero();
+    }
+
+    @Test
+    void givenSingleSettlement_whenMaxDelayElapses_thenApplyItAlone() {
+        // given
+        var underTest = new DepositSettlementCoalescer(new DepositCoalescing(true, Duration.ofMillis(1), 64), meterRegistry);
+
+        // when
+        underTest.settle(WALLET_ID, "REF1", appliedGroups::add);
+
+        // then
+        assertThat(appliedGroups).containsExactly(List.of("REF1"));
+        assertThat(underTest.pendingGroups()).isZero();
+    }
+
+    @Test
+    void givenGroupFailsToCommit_whenSettle_thenReplayEachSettlementAloneAndFailOnlyTheOffendingOne() throws Exception {
+        // given
+        var underTest = new DepositSettlementCoalescer(new DepositCoalescing(true, Duration.ofSeconds(30), 2), meterRegistry);
+        Consumer<List<String>> settleGroup = referenceIds -> {
+            if (referenceIds.contains("BAD")) {
+                throw new InvalidAmountException("Amount is out of range");
+            }
+            appliedGroups.add(referenceIds);
+        };
+
+        // when
+        var good = CompletableFuture.runAsync(() -> underTest.settle(WALLET_ID, "GOOD", settleGroup));
+        var bad = CompletableFuture.runAsync(() -> underTest.settle(WALLET_ID, "BAD", settleGroup));
+
+        // then
+        good.get(5, TimeUnit.SECONDS);
+        var error = assertThrows(ExecutionException.class, () -> bad.get(5, TimeUnit.SECONDS));
+        assertThat(error.getCause()).isInstanceOf(InvalidAmountException.class);
+        assertThat(appliedGroups).containsExactly(List.of("GOOD"));
+    }
+}
@@ -0,0 +1,125 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SingleFlightTest {
+
+    private final SingleFlight<String> underTest = new SingleFlight<>();
+
+    private final AtomicInteger calls = new AtomicInteger();
+
+    private final AtomicInteger joined = new AtomicInteger();
+
+    @Test
+    void givenRunningCall_whenExecuteWithSameKey_thenWaitForItAndReturnItsResult() throws Exception {
+        // given
+        var release = new CountDownLatch(1);
+        var first = CompletableFuture.supplyAsync(() -> underTest.execute("REF123", () -> {
+            calls.incrementAndGet();
+            await(release);
+            return "first";
+        }, joined::incrementAndGet));
+        awaitInFlight();
+
+        // when
+        var duplicateThread = new AtomicReference<Thread>();
+        var duplicate = CompletableFuture.supplyAsync(() -> {
+            duplicateThread.set(Thread.currentThread());
+            return underTest.execute("REF123", () -> {
+                calls.incrementAndGet();
+                return "duplicate";
+            }, joined::incrementAndGet);
+        });
+        awaitWaiting(duplicateThread);
+        release.countDown();
+
+        // then
+        assertThat(first.get(1, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(duplicate.get(1, TimeUnit.SECONDS)).isEqualTo("first");
+        assertThat(calls).hasValue(1);
+        assertThat(joined).hasValue(1);
+        assertThat(underTest.inFlight()).isZero();
+    }
+
+    @Test
+    void givenRunningCallFails_whenExecuteWithSameKey_thenThrowItsError() throws Exception {
+        // given
+        var release = new CountDownLatch(1);
+        var first = CompletableFuture.runAsync(() -> underTest.execute("REF123", () -> {
+            await(release);
+            throw new IllegalStateException("failed");
+        }, joined::incrementAndGet));
+        awaitInFlight();
+
+        // when
+        var duplicateThread = new AtomicReference<Thread>();
+        var duplicate = CompletableFuture.runAsync(() -> {
+            duplicateThread.set(Thread.currentThread());
+            assertThrows(IllegalStateException.class, () -> underTest.execute("REF123", () -> "duplicate", joined::incrementAndGet));
+        });
+        awaitWaiting(duplicateThread);
+        release.countDown();
+
+        // then
+        duplicate.get(1, TimeUnit.SECONDS);
+        assertThat(first).failsWithin(1, TimeUnit.SECONDS);
+        assertThat(joined).hasValue(0);
+        assertThat(underTest.inFlight()).isZero();
+    }
+
+    @Test
+    void givenCompletedCall_whenExecuteWithSameKey_thenRunAgain() {
+        underTest.execute("REF123", () -> "first", joined::incrementAndGet);
+
+        assertThat(underTest.execute("REF123", () -> "second", joined::incrementAndGet)).isEqualTo("second");
+        assertThat(joined).hasValue(0);
+    }
+
+    @Test
+    void givenRunningCall_whenExecuteWithOtherKey_thenRunWithoutWaiting() throws Exception {
+        var release = new CountDownLatch(1);
+        var first = CompletableFuture.supplyAsync(() -> underTest.execute("REF123", () -> {
+            await(release);
+            return "first";
+        }, joined::incrementAndGet));
+        awaitInFlight();
+
+        assertThat(underTest.execute("REF456", () -> "other", joined::incrementAndGet)).isEqualTo("other");
+
+        release.countDown();
+        first.get(1, TimeUnit.SECONDS);
+        assertThat(joined).hasValue(0);
+    }
+
+    private void awaitInFlight() throws InterruptedException {
+        while (underTest.inFlight() == 0) {
+            Thread.sleep(1);
+        }
+    }
+
+    /**
+     * A duplicate call parks its thread once it waits for the running one.
+     */
+    private static void awaitWaiting(AtomicReference<Thread> thread) throws InterruptedException {
+        while (thread.get() == null || thread.get().getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
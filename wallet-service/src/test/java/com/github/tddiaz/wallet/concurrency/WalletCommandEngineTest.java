@@ -0,0 +1,221 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.CommandEngine;
+import com.github.tddiaz.wallet.exception.InsufficientFundsException;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.exception.WalletBusyException;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.IntStream;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+class WalletCommandEngineTest {
+
+    private static final Long WALLET_ID = 434620675409151281L;
+
+    private final PlatformTransactionManager transactionManager = mock(PlatformTransactionManager.class);
+
+    private final WalletRepository walletRepository = mock(WalletRepository.class);
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final WalletCommandEngine underTest = new WalletCommandEngine(
+        new CommandEngine(true, 1, 64, 100, Duration.ofMillis(500)), transactionManager, walletRepository, meterRegistry);
+
+    private final Wallet wallet = walletWithBalance(BigDecimal.TEN);
+
+    @AfterEach
+    void stop() {
+        underTest.stop();
+    }
+
+    @Test
+    void givenQueuedCommandsOnSameWallet_whenExecute_thenApplyThemInOneTransactionAndReturnTheirResults() throws Exception {
+        // given
+        when(walletRepository.findAllById(any())).thenReturn(List.of(wallet));
+        var partitionBusy = blockPartition();
+
+        // when
+        var results = IntStream.range(0, 5)
+            .mapToObj(i -> underTest.submit(WALLET_ID, wallet -> {
+                wallet.withdraw(Money.create("GBP", BigDecimal.ONE));
+                return wallet.getBalance().getAmount();
+            }))
+            .toList();
+        partitionBusy.countDown();
+
+        // then
+        assertThat(results.get(4).get(1, TimeUnit.SECONDS)).isEqualByComparingTo("5");
+        assertThat(meterRegistry.get("wallet.engine.batch.size").summary().max()).isEqualTo(5);
+        verify(transactionManager, times(2)).commit(any());
+    }
+
+    @Test
+    void givenRejectedCommandInGroup_whenExecute_thenFailOnlyThatCommand() throws Exception {
+        // given
+        when(walletRepository.findAllById(any())).thenReturn(List.of(wallet));
+        var partitionBusy = blockPartition();
+
+        // when
+        var tooLarge = underTest.submit(WALLET_ID, wallet -> {
+            wallet.withdraw(Money.create("GBP", BigDecimal.valueOf(100)));
+            return wallet.getBalance().getAmount();
+        });
+        var accepted = underTest.submit(WALLET_ID, wallet -> {
+            wallet.withdraw(Money.create("GBP", BigDecimal.ONE));
+            return wallet.getBalance().getAmount();
+        });
+        partitionBusy.countDown();
+
+        // then
+        assertThat(accepted.get(1, TimeUnit.SECONDS)).isEqualByComparingTo("9");
+        var error = assertThrows(ExecutionException.class, () -> tooLarge.get(1, TimeUnit.SECONDS));
+        assertThat(error.getCause()).isInstanceOf(InsufficientFundsException.class);
+    }
+
+    @Test
+    void givenGroupFailsToCommit_whenExecute_thenReplayEachCommandInItsOwnTransaction() throws Exception {
+        // given
+        when(walletRepository.findAllById(any())).thenAnswer(invocation -> List.of(walletWithBalance(BigDecimal.TEN)));
+        var partitionBusy = blockPartition();
+        doNothing()
+            .doThrow(new DataIntegrityViolationException("duplicate reference"))
+            .doNothing()
+            .doThrow(new DataIntegrityViolationException("duplicate reference"))
+            .doNothing()
+            .when(transactionManager).commit(any());
+
+        // when
+        var results = LongStream.range(0, 3)
+            .mapToObj(i -> underTest.submit(WALLET_ID, wallet -> wallet.getBalance().getAmount()))
+            .toList();
+        partitionBusy.countDown();
+
+        // then
+        assertThat(results.get(0).get(1, TimeUnit.SECONDS)).isEqualByComparingTo("10");
+        assertThrows(ExecutionException.class, () -> results.get(1).get(1, TimeUnit.SECONDS));
+        assertThat(results.get(2).get(1, TimeUnit.SECONDS)).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void givenUnknownWallet_whenExecute_thenThrowError() {
+        // given
+        when(walletRepository.findAllById(any())).thenReturn(List.of());
+
+        // when then
+        assertThrows(NotFoundException.class, () -> underTest.execute(WALLET_ID, wallet -> "unreachable"));
+    }
+
+    @Test
+    void givenCommandThrowingError_whenExecute_thenFailItsCallerAndKeepPartitionRunning() {
+        // given
+        when(walletRepository.findAllById(any())).thenAnswer(invocation -> List.of(walletWithBalance(BigDecimal.TEN)));
+
+        // when
+        assertThrows(StackOverflowError.class, () -> underTest.execute(WALLET_ID, wallet -> {
+            throw new StackOverflowError();
+        }));
+        var balance = underTest.execute(WALLET_ID, wallet -> wallet.getBalance().getAmount());
+
+        // then
+        assertThat(balance).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void givenPartitionThreadDied_whenExecute_thenReplaceIt() throws Exception {
+        // given
+        when(walletRepository.findAllById(any())).thenAnswer(invocation -> List.of(walletWithBalance(BigDecimal.TEN)));
+        var partitionThread = new AtomicReference<Thread>();
+        underTest.execute(WALLET_ID, wallet -> {
+            partitionThread.set(Thread.currentThread());
+            Thread.currentThread().interrupt();
+            return null;
+        });
+        partitionThread.get().join(1_000);
+
+        // when
+        var balance = underTest.execute(WALLET_ID, wallet -> wallet.getBalance().getAmount());
+
+        // then
+        assertThat(partitionThread.get().isAlive()).isFalse();
+        assertThat(balance).isEqualByComparingTo("10");
+    }
+
+    @Test
+    void givenPartitionBusyBeyondCommandTimeout_whenExecute_thenThrowBusyAndDropTheCommand() throws Exception {
+        // given
+        when(walletRepository.findAllById(any())).thenReturn(List.of(wallet));
+        var partitionBusy = blockPartition();
+        var applied = new AtomicBoolean();
+
+        // when
+        assertThrows(WalletBusyException.class, () -> underTest.execute(WALLET_ID, wallet -> applied.getAndSet(true)));
+        partitionBusy.countDown();
+
+        // then
+        assertThat(underTest.submit(WALLET_ID, wallet -> applied.get()).get(1, TimeUnit.SECONDS)).isFalse();
+    }
+
+    @Test
+    void givenWalletIds_whenPartitionOf_thenSpreadOverAllPartitions() {
+        var usedPartitions = LongStream.range(0, 1_000)
+            .map(i -> WALLET_ID + i)
+            .mapToInt(walletId -> WalletCommandEngine.partitionOf(walletId, 6))
+            .distinct()
+            .count();
+
+        assertThat(usedPartitions).isEqualTo(6);
+    }
+
+    /**
+     * Keeps the single partition busy, so the commands submitted meanwhile are queued into one group.
+     */
+    private CountDownLatch blockPartition() throws Exception {
+        var started = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        underTest.submit(WALLET_ID, wallet -> {
+            started.countDown();
+            try {
+                release.await(1, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            return null;
+        });
+        started.await(1, TimeUnit.SECONDS);
+
+        return release;
+    }
+
+    private static Wallet walletWithBalance(BigDecimal balance) {
+        var wallet = Wallet.initialize(123L, "GBP").setId(WALLET_ID);
+        wallet.deposit(Money.create("GBP", balance));
+        return wallet;
+    }
+}
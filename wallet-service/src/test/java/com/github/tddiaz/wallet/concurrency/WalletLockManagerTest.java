@@ -0,0 +1,126 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.StripedLock;
+import com.github.tddiaz.wallet.exception.WalletBusyException;
+import com.github.tddiaz.wallet.metrics.WalletLockAcquiredEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.LongStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class WalletLockManagerTest {
+
+    private static final Long WALLET_ID = 434620675409151281L;
+
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+
+    private final StripedLock stripedLock = new StripedLock(true, 16, Duration.ofMillis(50));
+
+    private final WalletLockManager underTest = new WalletLockManager(stripedLock, meterRegistry);
+
+    @Test
+    void givenStripeCount_whenCreate_thenRegisterMetersPerStripe() {
+        assertThat(meterRegistry.find("wallet.lock.wait").timers()).hasSize(16);
+        assertThat(meterRegistry.find("wallet.lock.queue.depth").gauges()).hasSize(16);
+    }
+
+    @Test
+    void givenWalletIds_whenStripeOf_thenSpreadOverAllStripes() {
+        var usedStripes = LongStream.range(0, 1_000)
+            .map(i -> WALLET_ID + i)
+            .mapToInt(underTest::stripeOf)
+            .distinct()
+            .count();
+
+        assertThat(usedStripes).isEqualTo(16);
+    }
+
+    @Test
+    void givenLockIsHeldForWallet_whenExecuteWithLockForSameWallet_thenThrowErrorAfterTimeout() throws Exception {
+        var locked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+
+        var holder = CompletableFuture.runAsync(() -> underTest.runWithLock(WALLET_ID, () -> {
+            locked.countDown();
+            await(release);
+        }));
+        locked.await(1, TimeUnit.SECONDS);
+
+        assertThrows(WalletBusyException.class, () -> underTest.executeWithLock(WALLET_ID, () -> "unreachable"));
+
+        release.countDown();
+        holder.get(1, TimeUnit.SECONDS);
+
+        var waitTimer = meterRegistry.get("wallet.lock.wait").tag("stripe", String.valueOf(underTest.stripeOf(WALLET_ID))).timer();
+        assertThat(waitTimer.count()).isEqualTo(2);
+        assertThat(waitTimer.max(TimeUnit.MILLISECONDS)).isGreaterThanOrEqualTo(50);
+    }
+
+    @Test
+    void givenLockIsHeldForWallet_whenExecuteWithLockForSameWallet_thenRecordLockEventOfTheWait() throws Exception {
+        var locked = new CountDownLatch(1);
+        var release = new CountDownLatch(1);
+        var dump = Files.createTempFile("wallet-lock-", ".jfr");
+
+        try (var recording = new Recording()) {
+            recording.enable(WalletLockAcquiredEvent.class).withThreshold(Duration.ofMillis(10));
+            recording.start();
+
+            var holder = CompletableFuture.runAsync(() -> underTest.runWithLock(WALLET_ID, () -> {
+                locked.countDown();
+                await(release);
+            }));
+            locked.await(1, TimeUnit.SECONDS);
+
+            assertThrows(WalletBusyException.class, () -> underTest.executeWithLock(WALLET_ID, () -> "unreachable"));
+
+            release.countDown();
+            holder.get(1, TimeUnit.SECONDS);
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        // the uncontended acquisition of the holder is under the threshold
+        var events = RecordingFile.readAllEvents(dump);
+        assertThat(events).hasSize(1);
+        assertThat(events.get(0).getLong("walletId")).isEqualTo(WALLET_ID);
+        assertThat(events.get(0).getString("lock")).isEqualTo(WalletLockAcquiredEvent.JVM_LOCK);
+        assertThat(events.get(0).getBoolean("acquired")).isFalse();
+        Files.delete(dump);
+    }
+
+    @Test
+    void givenLockIsReleased_whenExecuteWithLockForSameWallet_thenReturnResult() {
+        underTest.runWithLock(WALLET_ID, () -> {
+        });
+
+        assertThat(underTest.executeWithLock(WALLET_ID, () -> "done")).isEqualTo("done");
+    }
+
+    @Test
+    void givenStripedLockDisabled_whenExecuteWithLock_thenRunWithoutRecordingWait() {
+        stripedLock.setEnabled(false);
+
+        assertThat(underTest.executeWithLock(WALLET_ID, () -> "done")).isEqualTo("done");
+        assertThat(meterRegistry.find("wallet.lock.wait").timers()).allMatch(timer -> timer.count() == 0);
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(1, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
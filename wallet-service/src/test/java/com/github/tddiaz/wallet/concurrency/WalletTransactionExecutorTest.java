@@ -0,0 +1,64 @@
+package com.github.tddiaz.wallet.concurrency;
+
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.OptimisticRetry;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLockMode;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
+import com.github.tddiaz.wallet.exception.ConcurrentUpdateException;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+class WalletTransactionExecutorTest {
+
+    private final WalletLocking walletLocking = new WalletLocking(
+        WalletLockMode.OPTIMISTIC,
+        new OptimisticRetry(3, Duration.ofMillis(1), Duration.ofMillis(2))
+    );
+
+    private final WalletTransactionExecutor underTest = new WalletTransactionExecutor(mock(PlatformTransactionManager.class), walletLocking);
+
+    @Test
+    void givenOptimisticMode_whenVersionConflictIsResolvedWithinMaxAttempts_thenReturnResult() {
+        var attempts = new AtomicInteger();
+
+        var result = underTest.execute(() -> {
+            if (attempts.incrementAndGet() < 3) {
+                throw new OptimisticLockingFailureException("conflict");
+            }
+            return "done";
+        });
+
+        assertThat(result).isEqualTo("done");
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void givenOptimisticMode_whenVersionConflictPersists_thenThrowErrorAfterMaxAttempts() {
+        var attempts = new AtomicInteger();
+
+        assertThrows(ConcurrentUpdateException.class, () -> underTest.execute(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("conflict");
+        }));
+        assertThat(attempts).hasValue(3);
+    }
+
+    @Test
+    void givenPessimisticMode_whenVersionConflict_thenDoNotRetry() {
+        walletLocking.setMode(WalletLockMode.PESSIMISTIC);
+        var attempts = new AtomicInteger();
+
+        assertThrows(OptimisticLockingFailureException.class, () -> underTest.execute(() -> {
+            attempts.incrementAndGet();
+            throw new OptimisticLockingFailureException("conflict");
+        }));
+        assertThat(attempts).hasValue(1);
+    }
+}
@@ -0,0 +1,57 @@
+package com.github.tddiaz.wallet.config;
+
+import com.github.tddiaz.wallet.config.SupportedCurrencyConfiguration.SupportedCurrencies;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SupportedCurrenciesTest {
+
+    @Test
+    void givenBoundProperties_whenIsSupported_thenOnlyConfiguredCurrenciesAreSupported() {
+        // given
+        var source = new MapConfigurationPropertySource(Map.of("supported-currencies.values[0]", "GBP", "supported-currencies.values[1]", "AED"));
+        var underTest = new Binder(source).bindOrCreate("supported-currencies", Bindable.ofInstance(new SupportedCurrencies()));
+
+        // when then
+        assertThat(underTest.isSupported("GBP")).isTrue();
+        assertThat(underTest.isSupported("AED")).isTrue();
+        assertThat(underTest.isSupported("USD")).isFalse();
+        assertThat(underTest.isSupported("XYZ")).isFalse();
+        assertThat(underTest.isSupported(null)).isFalse();
+    }
+
+    @Test
+    void givenSupportedCurrencies_whenReload_thenNewCurrenciesAreSupported() {
+        // given
+        var underTest = new SupportedCurrencies(Set.of("GBP"));
+
+        // when
+        underTest.reload(Set.of("USD"));
+
+        // then
+        assertThat(underTest.isSupported("USD")).isTrue();
+        assertThat(underTest.isSupported("GBP")).isFalse();
+        assertThat(underTest.getValues()).containsExactly("USD");
+    }
+
+    @Test
+    void givenCodeThatIsNotIsoCurrency_whenReload_thenThrowErrorAndKeepCurrentCurrencies() {
+        // given
+        var underTest = new SupportedCurrencies(Set.of("GBP"));
+
+        // when
+        assertThrows(IllegalArgumentException.class, () -> underTest.reload(Set.of("USD", "XYZ")));
+
+        // then
+        assertThat(underTest.isSupported("GBP")).isTrue();
+        assertThat(underTest.isSupported("USD")).isFalse();
+    }
+}
@@ -1,8 +1,19 @@
 package com.github.tddiaz.wallet.controller;
 
 import com.github.tddiaz.wallet.BaseControllerIT;
+import com.github.tddiaz.wallet.config.SettlementConfiguration.SettlementInbox;
+import com.github.tddiaz.wallet.config.SettlementConfiguration.SettlementMode;
 import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.ItemResult;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.SettlementResult;
+import com.github.tddiaz.wallet.controller.dto.SettlementStatusResponseDto;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.service.EnqueueSettlementUseCase;
+import com.github.tddiaz.wallet.service.GetSettlementStatusUseCase;
 import com.github.tddiaz.wallet.service.SettleTransactionUseCase;
+import com.github.tddiaz.wallet.service.SettleTransactionsBatchUseCase;
 import io.github.wimdeblauwe.errorhandlingspringbootstarter.ApiFieldError;
 import io.restassured.http.ContentType;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
@@ -13,13 +24,16 @@ import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
 import org.springframework.http.HttpStatus;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doNothing;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
 
 @WebMvcTest(BankCallbackController.class)
 class BankCallbackControllerIT extends BaseControllerIT {
@@ -27,9 +41,22 @@ class BankCallbackControllerIT extends BaseControllerIT {
     @MockBean
     private SettleTransactionUseCase settleTransactionUseCase;
 
+    @MockBean
+    private SettleTransactionsBatchUseCase settleTransactionsBatchUseCase;
+
+    @MockBean
+    private EnqueueSettlementUseCase enqueueSettlementUseCase;
+
+    @MockBean
+    private GetSettlementStatusUseCase getSettlementStatusUseCase;
+
+    @MockBean
+    private SettlementInbox settlementInbox;
+
     @BeforeEach
     void setup() {
         RestAssuredMockMvc.mockMvc(mockMvc);
+        when(settlementInbox.getMode()).thenReturn(SettlementMode.SYNC);
     }
 
     @Test
@@ -88,4 +115,114 @@ class BankCallbackControllerIT extends BaseControllerIT {
         assertThat(bankTransactionStatusRequestDto.referenceId()).isEqualTo("REF123");
         assertThat(bankTransactionStatusRequestDto.status()).isEqualTo("SUCCESS");
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenEmptyBatchRequest_whenNotifyTransferStatusBatch_thenReturnErrorResponse() {
+        List<ApiFieldError> fieldErrors = RestAssuredMockMvc
+            .given()
+            .contentType(ContentType.JSON)
+            .body(new BatchBankTransactionStatusRequestDto(List.of()))
+            .when()
+            .post("/api/v1/external/banking/notify-transfer-status/batch")
+            .then()
+            .status(HttpStatus.BAD_REQUEST)
+            .body("code", equalTo("VALIDATION_FAILED"))
+            .extract().path("fieldErrors");
+
+        assertThat(fieldErrors).hasSize(1);
+        assertThat(fieldErrors).extracting("property").containsOnly("items");
+    }
+
+    @Test
+    void givenBatchRequestWithInvalidItem_whenNotifyTransferStatusBatch_thenReturnErrorResponse() {
+        List<ApiFieldError> fieldErrors = RestAssuredMockMvc
+            .given()
+            .contentType(ContentType.JSON)
+            .body(new BatchBankTransactionStatusRequestDto(List.of(
+                new BankTransactionStatusRequestDto("REF123", "SUCCESS"),
+                new BankTransactionStatusRequestDto("REF124", "REVERSED")
+            )))
+            .when()
+            .post("/api/v1/external/banking/notify-transfer-status/batch")
+            .then()
+            .status(HttpStatus.BAD_REQUEST)
+            .body("code", equalTo("VALIDATION_FAILED"))
+            .extract().path("fieldErrors");
+
+        assertThat(fieldErrors).hasSize(1);
+        assertThat(fieldErrors).extracting("code").containsOnly("INVALID_ENUM");
+        assertThat(fieldErrors).extracting("property").containsOnly("items[1].status");
+    }
+
+    @Test
+    void givenValidBatchRequest_whenNotifyTransferStatusBatch_thenReturnResultPerItem() {
+        when(settleTransactionsBatchUseCase.execute(any(BatchBankTransactionStatusRequestDto.class)))
+            .thenReturn(new BatchBankTransactionStatusResponseDto(List.of(
+                new ItemResult("REF123", SettlementResult.SETTLED),
+                new ItemResult("REF124", SettlementResult.NOT_FOUND)
+            )));
+
+        RestAssuredMockMvc
+            .given()
+            .contentType(ContentType.JSON)
+            .body(new BatchBankTransactionStatusRequestDto(List.of(
+                new BankTransactionStatusRequestDto("REF123", "SUCCESS"),
+                new BankTransactionStatusRequestDto("REF124", "FAILED")
+            )))
+            .when()
+            .post("/api/v1/external/banking/notify-transfer-status/batch")
+            .then()
+            .status(HttpStatus.OK)
+            .body("results[0].referenceId", equalTo("REF123"))
+            .body("results[0].result", equalTo("SETTLED"))
+            .body("results[1].referenceId", equalTo("REF124"))
+            .body("results[1].result", equalTo("NOT_FOUND"));
+    }
+
+    @Test
+    void givenValidRequestInAsyncSettlementMode_whenNotifyTransferStatus_thenQueueRequestAndReturnAccepted() {
+        when(settlementInbox.getMode()).thenReturn(SettlementMode.ASYNC);
+
+        RestAssuredMockMvc
+            .given()
+            .contentType(ContentType.JSON)
+            .body(new BankTransactionStatusRequestDto("REF123", "SUCCESS"))
+            .when()
+            .post("/api/v1/external/banking/notify-transfer-status")
+            .then()
+            .status(HttpStatus.ACCEPTED);
+
+        verify(enqueueSettlementUseCase).execute(new BankTransactionStatusRequestDto("REF123", "SUCCESS"));
+        verify(settleTransactionUseCase, never()).execute(any());
+    }
+
+    @Test
+    void givenReceivedNotification_whenGetTransferStatusNotification_thenReturnProcessingStatus() {
+        var receivedAt = LocalDateTime.of(2023, 4, 14, 12, 48, 59);
+        when(getSettlementStatusUseCase.execute("REF123"))
+            .thenReturn(new SettlementStatusResponseDto("REF123", "SUCCESS", "RECEIVED", receivedAt, null));
+
+        RestAssuredMockMvc
+            .given()
+            .when()
+            .get("/api/v1/external/banking/notify-transfer-status/REF123")
+            .then()
+            .status(HttpStatus.OK)
+            .body("referenceId", equalTo("REF123"))
+            .body("bankingStatus", equalTo("SUCCESS"))
+            .body("state", equalTo("RECEIVED"));
+    }
+
+    @Test
+    void givenUnknownNotification_whenGetTransferStatusNotification_thenReturnNotFound() {
+        when(getSettlementStatusUseCase.execute("REF123")).thenThrow(new NotFoundException("No bank notification received for reference REF123"));
+
+        RestAssuredMockMvc
+            .given()
+            .when()
+            .get("/api/v1/external/banking/notify-transfer-status/REF123")
+            .then()
+            .status(HttpStatus.NOT_FOUND)
+            .body("code", equalTo("NOT_FOUND"));
+    }
+}
@@ -1,8 +1,13 @@
 package com.github.tddiaz.wallet.controller;
 
 import com.github.tddiaz.wallet.BaseControllerIT;
+import com.github.tddiaz.wallet.controller.dto.ExportTransactionsRequestDto;
+import com.github.tddiaz.wallet.controller.dto.GetTransactionsByCursorRequestDto;
+import com.github.tddiaz.wallet.controller.dto.GetTransactionsByCursorResponseDto;
 import com.github.tddiaz.wallet.controller.dto.GetTransactionsRequestDto;
 import com.github.tddiaz.wallet.controller.dto.GetTransactionsResponseDto;
+import com.github.tddiaz.wallet.service.ExportTransactionsUseCase;
+import com.github.tddiaz.wallet.service.GetTransactionsByCursorUseCase;
 import com.github.tddiaz.wallet.service.GetTransactionsUseCase;
 import io.restassured.http.ContentType;
 import io.restassured.module.mockmvc.RestAssuredMockMvc;
@@ -18,6 +23,7 @@ import java.util.Collections;
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.hamcrest.Matchers.equalTo;
 import static org.hamcrest.Matchers.hasSize;
+import static org.hamcrest.Matchers.nullValue;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -28,6 +34,12 @@ class TransactionControllerIT extends BaseControllerIT {
     @MockBean
     private GetTransactionsUseCase getTransactionsUseCase;
 
+    @MockBean
+    private GetTransactionsByCursorUseCase getTransactionsByCursorUseCase;
+
+    @MockBean
+    private ExportTransactionsUseCase exportTransactionsUseCase;
+
     @BeforeEach
     public void setup() {
         RestAssuredMockMvc.mockMvc(mockMvc);
@@ -77,4 +89,77 @@ class TransactionControllerIT extends BaseControllerIT {
         assertThat(getTransactionRequestDto.pageNumber()).isEqualTo(0);
         assertThat(getTransactionRequestDto.size()).isEqualTo(10);
     }
-}
\ No newline at end of file
+
+    @Test
+    void givenSizeAboveLimit_whenGetTransactionsByCursor_thenReturnErrorResponse() {
+        RestAssuredMockMvc
+            .given()
+            .param("walletId", 123)
+            .param("customerId", 123)
+            .param("size", 1000)
+            .contentType(ContentType.JSON)
+            .when()
+            .get("/api/v1/transactions/seek")
+            .then()
+            .status(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void givenValid_whenGetTransactionsByCursor_thenReturnSuccessResponse() {
+        when(getTransactionsByCursorUseCase.execute(any(GetTransactionsByCursorRequestDto.class)))
+            .thenReturn(new GetTransactionsByCursorResponseDto(0, null, Collections.emptyList()));
+
+        RestAssuredMockMvc
+            .given()
+            .param("walletId", 123)
+            .param("customerId", 123)
+            .param("cursor", "MjAyMy0wNC0xMFQxMDowMHwx")
+            .param("size", 10)
+            .contentType(ContentType.JSON)
+            .when()
+            .get("/api/v1/transactions/seek")
+            .then()
+            .status(HttpStatus.OK)
+            .body("data", hasSize(0))
+            .body("numberOfElements", equalTo(0))
+            .body("nextCursor", nullValue());
+
+        var requestDtoArgumentCaptor = ArgumentCaptor.forClass(GetTransactionsByCursorRequestDto.class);
+        verify(getTransactionsByCursorUseCase).execute(requestDtoArgumentCaptor.capture());
+
+        assertThat(requestDtoArgumentCaptor.getValue()).isEqualTo(new GetTransactionsByCursorRequestDto(123L, 123L, "MjAyMy0wNC0xMFQxMDowMHwx", 10));
+    }
+
+    @Test
+    void givenUnknownFormat_whenExportTransactions_thenReturnErrorResponse() {
+        RestAssuredMockMvc
+            .given()
+            .param("walletId", 123)
+            .param("customerId", 123)
+            .param("format", "XML")
+            .when()
+            .get("/api/v1/transactions/export")
+            .then()
+            .status(HttpStatus.BAD_REQUEST);
+    }
+
+    @Test
+    void givenValid_whenExportTransactions_thenReturnStreamedAttachment() {
+        when(exportTransactionsUseCase.execute(any(ExportTransactionsRequestDto.class)))
+            .thenReturn(outputStream -> outputStream.write("id,referenceId\n".getBytes()));
+
+        RestAssuredMockMvc
+            .given()
+            .param("walletId", 123)
+            .param("customerId", 123)
+            .param("format", "CSV")
+            .when()
+            .get("/api/v1/transactions/export")
+            .then()
+            .status(HttpStatus.OK)
+            .contentType("text/csv")
+            .header("Content-Disposition", "attachment; filename=\"transactions-123.csv\"");
+
+        verify(exportTransactionsUseCase).execute(new ExportTransactionsRequestDto(123L, 123L, "CSV"));
+    }
+}
@@ -101,6 +101,24 @@ class WalletControllerIT extends BaseControllerIT {
             assertThat(fieldErrors).extracting("property").containsOnly("amount.currency");
         }
 
+        @Test
+        void givenRequestWithAmountWithTooManyDecimalPlaces_whenDeposit_thenReturnErrorResponse() {
+            List<ApiFieldError> fieldErrors = RestAssuredMockMvc
+                .given()
+                .contentType(ContentType.JSON)
+                .body(new DepositRequestDto("REF123", 123L, 123L, new MoneyDto("GBP", new BigDecimal("10.00001"))))
+                .when()
+                .post("/api/v1/wallet/deposit")
+                .then()
+                .status(HttpStatus.BAD_REQUEST)
+                .body("code", equalTo("VALIDATION_FAILED"))
+                .extract().path("fieldErrors");
+
+            assertThat(fieldErrors).hasSize(1);
+            assertThat(fieldErrors).extracting("code").containsOnly("INVALID_DIGITS");
+            assertThat(fieldErrors).extracting("property").containsOnly("amount.value");
+        }
+
         @Test
         void givenValidRequest_whenDeposit_thenReturnSuccessResponse() {
             when(createDepositOrderUseCase.execute(ArgumentMatchers.any(DepositRequestDto.class)))
@@ -185,6 +203,24 @@ class WalletControllerIT extends BaseControllerIT {
             assertThat(fieldErrors).extracting("property").containsOnly("amount.currency");
         }
 
+        @Test
+        void givenRequestWithAmountWithTooManyDecimalPlaces_whenWithdraw_thenReturnErrorResponse() {
+            List<ApiFieldError> fieldErrors = RestAssuredMockMvc
+                .given()
+                .contentType(ContentType.JSON)
+                .body(new DepositRequestDto("REF123", 123L, 123L, new MoneyDto("GBP", new BigDecimal("10.00001"))))
+                .when()
+                .post("/api/v1/wallet/withdraw")
+                .then()
+                .status(HttpStatus.BAD_REQUEST)
+                .body("code", equalTo("VALIDATION_FAILED"))
+                .extract().path("fieldErrors");
+
+            assertThat(fieldErrors).hasSize(1);
+            assertThat(fieldErrors).extracting("code").containsOnly("INVALID_DIGITS");
+            assertThat(fieldErrors).extracting("property").containsOnly("amount.value");
+        }
+
         @Test
         void givenValidRequest_whenWithdraw_thenReturnSuccessResponse() {
             when(createWithdrawOrderUseCase.execute(ArgumentMatchers.any(WithdrawRequestDto.class)))
@@ -0,0 +1,122 @@
+package com.github.tddiaz.wallet.id;
+
+import com.github.f4b6a3.tsid.Tsid;
+import org.junit.jupiter.api.Test;
+
+import java.time.Instant;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class IdGeneratorTest {
+
+    private static final long NOW = Instant.parse("2023-04-10T10:00:00Z").toEpochMilli();
+
+    private final AtomicLong clock = new AtomicLong(NOW);
+
+    @Test
+    void givenNodeId_whenNextId_thenReturnTsidOfNodeAndCurrentTime() {
+        // given
+        var underTest = new IdGenerator(5, 10, clock::get);
+
+        // when
+        var id = underTest.nextId();
+
+        // then
+        assertThat(Tsid.from(id).getUnixMilliseconds()).isEqualTo(NOW);
+        assertThat(nodeOf(id, 10)).isEqualTo(5L);
+    }
+
+    @Test
+    void givenSameMillisecond_whenNextId_thenIncrementCounter() {
+        // given
+        var underTest = new IdGenerator(5, 10, clock::get);
+
+        // when
+        var first = underTest.nextId();
+        var second = underTest.nextId();
+
+        // then
+        assertThat(second).isEqualTo(first + 1);
+    }
+
+    @Test
+    void givenClockMovedBackwards_whenNextId_thenKeepIncreasing() {
+        // given
+        var underTest = new IdGenerator(5, 10, clock::get);
+        var first = underTest.nextId();
+
+        // when
+        clock.addAndGet(-1_000L);
+        var second = underTest.nextId();
+
+        // then
+        assertThat(second).isGreaterThan(first);
+        assertThat(Tsid.from(second).getUnixMilliseconds()).isEqualTo(NOW);
+    }
+
+    @Test
+    void givenCounterOfMillisecondRunsOut_whenNextId_thenMoveToNextMillisecond() {
+        // given
+        var underTest = new IdGenerator(5, 20, clock::get);
+        var ids = new ArrayList<Long>();
+
+        // when
+        for (int i = 0; i < 5; i++) {
+            ids.add(underTest.nextId());
+        }
+
+        // then
+        assertThat(ids).isSorted().doesNotHaveDuplicates();
+        assertThat(ids).extracting(id -> Tsid.from(id).getUnixMilliseconds()).containsExactly(NOW, NOW, NOW, NOW, NOW + 1);
+        assertThat(ids).extracting(id -> nodeOf(id, 20)).containsOnly(5L);
+    }
+
+    @Test
+    void givenNodeIdOutOfRange_whenCreate_thenThrowError() {
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(1024, 10));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(-1, 10));
+        assertThrows(IllegalArgumentException.class, () -> new IdGenerator(0, 21));
+    }
+
+    @Test
+    void givenManyThreads_whenNextId_thenIdsOfEachThreadIncreaseAndAreUnique() throws Exception {
+        // given
+        var underTest = new IdGenerator(5, 10);
+        var executor = Executors.newFixedThreadPool(8);
+        Callable<List<Long>> generate = () -> {
+            var ids = new ArrayList<Long>();
+            for (int i = 0; i < 10_000; i++) {
+                ids.add(underTest.nextId());
+            }
+            return ids;
+        };
+
+        // when
+        var futures = new ArrayList<Future<List<Long>>>();
+        for (int i = 0; i < 8; i++) {
+            futures.add(executor.submit(generate));
+        }
+
+        // then
+        var allIds = new HashSet<Long>();
+        for (var future : futures) {
+            var ids = future.get();
+            assertThat(ids).isSorted();
+            allIds.addAll(ids);
+        }
+        executor.shutdown();
+        assertThat(allIds).hasSize(80_000);
+    }
+
+    private static long nodeOf(long id, int nodeBits) {
+        return (id & ((1L << IdGenerator.RANDOM_BITS) - 1)) >>> (IdGenerator.RANDOM_BITS - nodeBits);
+    }
+}
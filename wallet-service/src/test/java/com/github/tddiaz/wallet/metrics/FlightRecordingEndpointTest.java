@@ -0,0 +1,51 @@
+package com.github.tddiaz.wallet.metrics;
+
+import com.github.tddiaz.wallet.metrics.WalletMetrics.Operation;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.actuate.endpoint.web.WebEndpointResponse;
+
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FlightRecordingEndpointTest {
+
+    private final WalletMetrics walletMetrics = new WalletMetrics(new SimpleMeterRegistry());
+
+    private final FlightRecordingEndpoint underTest = new FlightRecordingEndpoint();
+
+    @Test
+    void givenRunningRecording_whenDump_thenReturnRecordingWithWalletEvents() throws Exception {
+        // given
+        try (var recording = new Recording()) {
+            recording.enable(IdempotentReplayEvent.class);
+            recording.start();
+
+            walletMetrics.idempotentReplays(Operation.SETTLEMENT, List.of("REF123", "REF456"));
+
+            // when
+            var response = underTest.dump();
+
+            // then
+            assertThat(response.getStatus()).isEqualTo(WebEndpointResponse.STATUS_OK);
+
+            var dump = Files.createTempFile("wallet-dump-", ".jfr");
+            try (var inputStream = response.getBody().getInputStream()) {
+                Files.copy(inputStream, dump, StandardCopyOption.REPLACE_EXISTING);
+            }
+            assertThat(response.getBody().exists()).isFalse();
+
+            var referenceIds = RecordingFile.readAllEvents(dump).stream()
+                .filter(event -> event.getEventType().getName().equals("com.github.tddiaz.wallet.IdempotentReplay"))
+                .map(event -> event.getString("referenceId"))
+                .toList();
+            assertThat(referenceIds).containsExactly("REF123", "REF456");
+            Files.delete(dump);
+        }
+    }
+}
@@ -1,6 +1,7 @@
 package com.github.tddiaz.wallet.model;
 
 import com.github.tddiaz.wallet.exception.CurrencyMismatchException;
+import com.github.tddiaz.wallet.exception.InvalidAmountException;
 import org.junit.jupiter.api.Assertions;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
@@ -22,7 +23,34 @@ class MoneyTest {
 
         // THEN
         assertThat(money.getCurrency()).isEqualTo(currency);
-        assertThat(money.getAmount()).isEqualTo(amount);
+        assertThat(money.getAmount()).isEqualByComparingTo(amount);
+        assertThat(money.getMinorUnits()).isEqualTo(100_000L);
+    }
+
+    @Test
+    void givenAmountsOfDifferentScale_whenCreate_thenReturnEqualMoney() {
+        assertThat(Money.create("GBP", new BigDecimal("10.5000"))).isEqualTo(Money.create("GBP", new BigDecimal("10.5")));
+        assertThat(Money.create("GBP", new BigDecimal("10.5")).getAmount()).isEqualTo(new BigDecimal("10.5000"));
+    }
+
+    @Test
+    void givenAmountWithMoreThanFourDecimalPlaces_whenCreate_thenThrowError() {
+        Assertions.assertThrows(InvalidAmountException.class, () -> Money.create("GBP", new BigDecimal("0.00001")));
+    }
+
+    @Test
+    void givenAmountOutOfRange_whenCreate_thenThrowError() {
+        Assertions.assertThrows(InvalidAmountException.class, () -> Money.create("GBP", new BigDecimal("1000000000000000")));
+    }
+
+    @Test
+    void givenCurrencyCodeBuiltAtRuntime_whenCreate_thenKeepCanonicalInstance() {
+        var currency = new String("GBP".toCharArray());
+
+        var money = Money.create(currency, BigDecimal.TEN);
+
+        assertThat(money.getCurrency()).isSameAs(CurrencyRegistry.canonical("GBP"));
+        assertThat(money.add(Money.create("GBP", BigDecimal.ONE))).isEqualTo(Money.create("GBP", BigDecimal.valueOf(11L)));
     }
 
     @Nested
@@ -42,6 +70,13 @@ class MoneyTest {
 
             assertThat(result).isEqualTo(Money.create("USD", BigDecimal.valueOf(20L)));
         }
+
+        @Test
+        void givenMoney_whenAddOverflows_thenThrowError() {
+            var max = Money.ofMinorUnits("USD", Long.MAX_VALUE);
+
+            Assertions.assertThrows(InvalidAmountException.class, () -> max.add(Money.ofMinorUnits("USD", 1L)));
+        }
     }
 
     @Nested
@@ -61,6 +96,13 @@ class MoneyTest {
 
             assertThat(result).isEqualTo(Money.create("USD", BigDecimal.ZERO));
         }
+
+        @Test
+        void givenMoney_whenSubtractOverflows_thenThrowError() {
+            var min = Money.ofMinorUnits("USD", Long.MIN_VALUE);
+
+            Assertions.assertThrows(InvalidAmountException.class, () -> min.subtract(Money.ofMinorUnits("USD", 1L)));
+        }
     }
 
     @Nested
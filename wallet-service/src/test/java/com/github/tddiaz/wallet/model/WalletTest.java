@@ -25,7 +25,6 @@ class WalletTest {
         assertThat(wallet.getId()).isNotNull();
         assertThat(wallet.getCustomerId()).isEqualTo(CUSTOMER_ID);
         assertThat(wallet.getBalance()).isEqualTo(Money.create("GBP", BigDecimal.ZERO));
-        assertThat(wallet.getBalanceOnHold()).isEqualTo(Money.create("GBP", BigDecimal.ZERO));
         assertThat(wallet.getCreatedAt()).isNotNull();
     }
 
@@ -79,7 +78,7 @@ class WalletTest {
         }
 
         @Test
-        void givenFundsEqualsToCurrentBalance_whenWithdraw_thenAcceptWithdrawalAndUpdateWalletBalanceAndOnHoldBalance() {
+        void givenFundsEqualsToCurrentBalance_whenWithdraw_thenAcceptWithdrawalAndUpdateWalletBalance() {
             // given
             var wallet = Wallet.initialize(CUSTOMER_ID, CURRENCY);
             wallet.deposit(Money.create(CURRENCY, BigDecimal.TEN));
@@ -89,11 +88,10 @@ class WalletTest {
 
             // then
             assertThat(wallet.getBalance()).isEqualTo(Money.create(CURRENCY, BigDecimal.ZERO));
-            assertThat(wallet.getBalanceOnHold()).isEqualTo(Money.create(CURRENCY, BigDecimal.TEN));
         }
 
         @Test
-        void givenFundsLessThaCurrentBalance_whenWithdraw_thenAcceptWithdrawalAndUpdateWalletBalanceAndOnHoldBalance() {
+        void givenFundsLessThaCurrentBalance_whenWithdraw_thenAcceptWithdrawalAndUpdateWalletBalance() {
             // given
             var wallet = Wallet.initialize(CUSTOMER_ID, CURRENCY);
             wallet.deposit(Money.create(CURRENCY, BigDecimal.TEN));
@@ -103,7 +101,6 @@ class WalletTest {
 
             // then
             assertThat(wallet.getBalance()).isEqualTo(Money.create(CURRENCY, BigDecimal.valueOf(9L)));
-            assertThat(wallet.getBalanceOnHold()).isEqualTo(Money.create(CURRENCY, BigDecimal.ONE));
         }
     }
 }
\ No newline at end of file
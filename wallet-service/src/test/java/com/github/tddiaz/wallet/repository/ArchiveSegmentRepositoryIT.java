@@ -0,0 +1,79 @@
+package com.github.tddiaz.wallet.repository;
+
+import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.tddiaz.wallet.BaseRepositoryIT;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.model.ArchiveSegment;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.Wallet;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ArchiveSegmentRepositoryIT extends BaseRepositoryIT {
+
+    @Autowired
+    private ArchiveSegmentRepository underTest;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void findSegmentsAndCountTransactionsByWalletIdTest() {
+        var wallet = walletRepository.save(Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP"));
+        var otherWalletId = TsidCreator.getTsid().toLong();
+
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        transactionRepository.saveAll(List.of(
+            Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString()),
+            Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString())
+        ));
+        var segment = underTest.save(ArchiveSegment.create(IdGenerator.DEFAULT.nextId(), Map.of(wallet.getId(), 3, otherWalletId, 1)));
+        underTest.save(ArchiveSegment.create(IdGenerator.DEFAULT.nextId(), Map.of(otherWalletId, 5)));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(underTest.findById(segment.getId())).map(ArchiveSegment::getRowCount).contains(4);
+        assertThat(underTest.findAllFileNamesByWalletId(wallet.getId())).containsExactly(segment.getFileName());
+        assertThat(underTest.existsByWalletId(wallet.getId())).isTrue();
+        assertThat(underTest.existsByWalletId(TsidCreator.getTsid().toLong())).isFalse();
+        assertThat(underTest.countTransactionsByWalletId(wallet.getId())).isEqualTo(5);
+        assertThat(underTest.countTransactionsByWalletId(otherWalletId)).isEqualTo(6);
+    }
+
+    @Test
+    void findAllNotIndexedTest() {
+        var walletId = TsidCreator.getTsid().toLong();
+        var indexed = underTest.save(ArchiveSegment.create(IdGenerator.DEFAULT.nextId(), Map.of(walletId, 1)));
+        // a segment registered before the wallets of the segments were
+        var notIndexed = underTest.save(ArchiveSegment.create(IdGenerator.DEFAULT.nextId(), Map.of()).setRowCount(2));
+        entityManager.flush();
+        entityManager.clear();
+
+        var found = underTest.findAllNotIndexed();
+        assertThat(found).extracting(ArchiveSegment::getId).contains(notIndexed.getId()).doesNotContain(indexed.getId());
+
+        entityManager.clear();
+        var segment = found.stream().filter(notIndexedSegment -> notIndexedSegment.getId().equals(notIndexed.getId())).findFirst().orElseThrow();
+        underTest.save(segment.setRowCountByWalletId(Map.of(walletId, 2)));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(underTest.findAllNotIndexed()).extracting(ArchiveSegment::getId).doesNotContain(notIndexed.getId());
+        assertThat(underTest.countTransactionsByWalletId(walletId)).isEqualTo(3);
+    }
+}
@@ -0,0 +1,70 @@
+package com.github.tddiaz.wallet.repository;
+
+import com.github.tddiaz.wallet.BaseRepositoryIT;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.model.SettlementInboxEntry;
+import com.github.tddiaz.wallet.model.SettlementState;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SettlementInboxRepositoryIT extends BaseRepositoryIT {
+
+    @Autowired
+    private SettlementInboxRepository underTest;
+
+    @Autowired
+    private EntityManager entityManager;
+
+    @Test
+    void deleteProcessedBeforeTest() {
+        var processedBefore = LocalDateTime.now().minusDays(7);
+
+        var expired = receive();
+        expired.processed(SettlementState.SETTLED);
+        expired.setProcessedAt(processedBefore.minusDays(1));
+        var failed = receive();
+        failed.processed(SettlementState.FAILED);
+        failed.setProcessedAt(processedBefore.minusDays(2));
+        var recent = receive();
+        recent.processed(SettlementState.IGNORED);
+        var received = receive().setReceivedAt(processedBefore.minusDays(3));
+        underTest.saveAll(List.of(expired, failed, recent, received));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(underTest.deleteProcessedBefore(processedBefore, 1)).isEqualTo(1);
+        entityManager.clear();
+        assertThat(underTest.findById(failed.getId())).isEmpty();
+        assertThat(underTest.findById(expired.getId())).isPresent();
+
+        assertThat(underTest.deleteProcessedBefore(processedBefore, 10)).isEqualTo(1);
+        entityManager.clear();
+        assertThat(underTest.findById(expired.getId())).isEmpty();
+        assertThat(underTest.findById(recent.getId())).isPresent();
+        assertThat(underTest.findById(received.getId())).isPresent();
+    }
+
+    @Test
+    void claimReceivedByIdTest() {
+        var received = receive();
+        var processed = receive();
+        processed.processed(SettlementState.SETTLED);
+        underTest.saveAll(List.of(received, processed));
+        entityManager.flush();
+        entityManager.clear();
+
+        assertThat(underTest.claimReceivedById(received.getId())).map(SettlementInboxEntry::getAttempts).contains(0);
+        assertThat(underTest.claimReceivedById(processed.getId())).isEmpty();
+    }
+
+    private static SettlementInboxEntry receive() {
+        return SettlementInboxEntry.receive(IdGenerator.DEFAULT.nextId(), UUID.randomUUID().toString(), "SUCCESS");
+    }
+}
@@ -4,26 +4,45 @@ import com.github.f4b6a3.tsid.TsidCreator;
 import com.github.tddiaz.wallet.BaseRepositoryIT;
 import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.TransactionStatus;
 import com.github.tddiaz.wallet.model.Wallet;
+import jakarta.persistence.EntityManager;
 import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DataIntegrityViolationException;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 class TransactionRepositoryIT extends BaseRepositoryIT {
 
+    // the plan scans the copy of idx_transaction_wallet_id_created_at_id on each partition
+    private static final String WALLET_HISTORY_INDEX_SCAN = "Index (Only )?Scan using idx_transaction_\\w+_wallet_id_created_at_id";
+
+    // the plan scans the copy of idx_transaction_settled_created_at on each partition, named after the partition
+    private static final String SETTLED_INDEX_SCAN = "Index Scan using transaction_\\w+_created_at_idx";
+
     @Autowired
     private TransactionRepository underTest;
 
     @Autowired
     private WalletRepository walletRepository;
 
+    @Autowired
+    private EntityManager entityManager;
+
     @Test
     void findAllByWalletIdTest() {
         var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
@@ -66,4 +85,249 @@ class TransactionRepositoryIT extends BaseRepositoryIT {
         }
 
     }
-}
\ No newline at end of file
+
+    @Test
+    void findAllByWalletIdAfterTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        transactionTemplate.execute(action ->
+            walletRepository.save(wallet)
+        );
+
+        // rows sharing a timestamp are ordered by id
+        var createdAt = LocalDateTime.of(2023, 4, 10, 10, 0);
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        var transactions = IntStream.range(0, 5)
+            .mapToObj(i -> Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString()).setCreatedAt(createdAt.plusMinutes(i / 2)))
+            .toList();
+
+        transactionTemplate.execute(action -> underTest.saveAll(transactions));
+
+        var firstPage = underTest.findAllByWalletIdOrderByCreatedAtDescIdDesc(wallet.getId(), PageRequest.ofSize(2));
+        assertThat(firstPage.hasNext()).isTrue();
+        assertThat(firstPage.getContent()).extracting(Transaction::getId).containsExactly(transactions.get(4).getId(), transactions.get(3).getId());
+
+        var last = firstPage.getContent().get(1);
+        var secondPage = underTest.findAllByWalletIdAfter(wallet.getId(), last.getCreatedAt(), last.getId(), PageRequest.ofSize(2));
+        assertThat(secondPage.hasNext()).isTrue();
+        assertThat(secondPage.getContent()).extracting(Transaction::getId).containsExactly(transactions.get(2).getId(), transactions.get(1).getId());
+
+        last = secondPage.getContent().get(1);
+        var thirdPage = underTest.findAllByWalletIdAfter(wallet.getId(), last.getCreatedAt(), last.getId(), PageRequest.ofSize(2));
+        assertThat(thirdPage.hasNext()).isFalse();
+        assertThat(thirdPage.getContent()).extracting(Transaction::getId).containsExactly(transactions.get(0).getId());
+    }
+
+    @Test
+    void streamAllByWalletIdTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        walletRepository.save(wallet);
+
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        var transactions = IntStream.range(0, TransactionRepository.STREAM_FETCH_SIZE + 1)
+            .mapToObj(i -> Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString()))
+            .toList();
+        underTest.saveAllAndFlush(transactions);
+
+        var newestFirst = new ArrayList<>(transactions.stream().map(Transaction::getId).toList());
+        Collections.reverse(newestFirst);
+
+        try (var stream = underTest.streamAllByWalletId(wallet.getId())) {
+            assertThat(stream.map(Transaction::getId)).containsExactlyElementsOf(newestFirst);
+        }
+    }
+
+    @Test
+    void findByReferenceIdAcrossPartitionsTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        walletRepository.save(wallet);
+
+        var nextMonth = LocalDate.now().plusMonths(1);
+        var partition = underTest.createPartition(nextMonth);
+        assertThat(underTest.createPartition(nextMonth)).isEqualTo(partition);
+
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        var legacyTransaction = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString())
+            .setCreatedAt(LocalDateTime.of(2023, 4, 10, 10, 0));
+        var currentTransaction = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString());
+        var nextMonthTransaction = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString())
+            .setCreatedAt(nextMonth.withDayOfMonth(1).atStartOfDay());
+        underTest.saveAllAndFlush(List.of(legacyTransaction, currentTransaction, nextMonthTransaction));
+        entityManager.clear();
+
+        assertThat(underTest.findByReferenceId(nextMonthTransaction.getReferenceId())).map(Transaction::getId).contains(nextMonthTransaction.getId());
+        assertThat(underTest.existsByReferenceId(legacyTransaction.getReferenceId())).isTrue();
+        assertThat(underTest.existsByReferenceId(UUID.randomUUID().toString())).isFalse();
+        assertThat(underTest.findAllByReferenceIdInWithExclusiveLock(List.of(legacyTransaction.getReferenceId(), nextMonthTransaction.getReferenceId())))
+            .extracting(Transaction::getId)
+            .containsExactlyInAnyOrder(legacyTransaction.getId(), nextMonthTransaction.getId());
+
+        assertThat(underTest.updateStatusIfPending(currentTransaction.getReferenceId(), "SUCCESS")).map(Transaction::getStatus).contains(TransactionStatus.SUCCESS);
+        assertThat(underTest.updateStatusIfPending(currentTransaction.getReferenceId(), "FAILED")).isEmpty();
+    }
+
+    @Test
+    void updateStatusIfPendingTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        walletRepository.save(wallet);
+
+        var pending = Transaction.createDepositRequest(wallet.getId(), Money.create("GBP", new BigDecimal("12.3400")), UUID.randomUUID().toString())
+            .setCreatedAt(LocalDateTime.now().withNano(0));
+        var failed = Transaction.createDepositRequest(wallet.getId(), Money.create("GBP", BigDecimal.TEN), UUID.randomUUID().toString());
+        failed.failed();
+        underTest.saveAllAndFlush(List.of(pending, failed));
+        entityManager.clear();
+
+        // the returned row is mapped to the whole entity
+        var updated = underTest.updateStatusIfPending(pending.getReferenceId(), "SUCCESS").orElseThrow();
+        assertThat(updated.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+        assertThat(updated.getId()).isEqualTo(pending.getId());
+        assertThat(updated.getWalletId()).isEqualTo(wallet.getId());
+        assertThat(updated.getAmount()).isEqualTo(pending.getAmount());
+        assertThat(updated.getType()).isEqualTo(pending.getType());
+        assertThat(updated.getReferenceId()).isEqualTo(pending.getReferenceId());
+        assertThat(updated.getCreatedAt()).isEqualTo(pending.getCreatedAt());
+
+        // no longer pending, nor unknown: nothing is updated
+        assertThat(underTest.updateStatusIfPending(pending.getReferenceId(), "FAILED")).isEmpty();
+        assertThat(underTest.updateStatusIfPending(failed.getReferenceId(), "SUCCESS")).isEmpty();
+        assertThat(underTest.updateStatusIfPending(UUID.randomUUID().toString(), "SUCCESS")).isEmpty();
+        entityManager.clear();
+
+        assertThat(underTest.findByReferenceId(pending.getReferenceId())).map(Transaction::getStatus).contains(TransactionStatus.SUCCESS);
+        assertThat(underTest.findByReferenceId(failed.getReferenceId())).map(Transaction::getStatus).contains(TransactionStatus.FAILED);
+    }
+
+    @Test
+    void updateStatusesIfPendingTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        walletRepository.save(wallet);
+
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        var pending = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString());
+        var settled = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString());
+        settled.success();
+        underTest.saveAllAndFlush(List.of(pending, settled));
+        entityManager.clear();
+
+        var updated = underTest.updateStatusesIfPending(List.of(pending.getReferenceId(), settled.getReferenceId(), UUID.randomUUID().toString()), "FAILED");
+        assertThat(updated).extracting(Transaction::getId).containsExactly(pending.getId());
+        assertThat(updated).extracting(Transaction::getStatus).containsExactly(TransactionStatus.FAILED);
+        entityManager.clear();
+
+        assertThat(underTest.findByReferenceId(settled.getReferenceId())).map(Transaction::getStatus).contains(TransactionStatus.SUCCESS);
+    }
+
+    @Test
+    void referenceIdIsUniqueAcrossPartitionsTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        walletRepository.save(wallet);
+
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        var referenceId = UUID.randomUUID().toString();
+        underTest.saveAndFlush(Transaction.createDepositRequest(wallet.getId(), amount, referenceId).setCreatedAt(LocalDateTime.of(2023, 4, 10, 10, 0)));
+
+        assertThrows(DataIntegrityViolationException.class, () -> underTest.saveAndFlush(Transaction.createDepositRequest(wallet.getId(), amount, referenceId)));
+    }
+
+    @Test
+    void updateAndDeleteByIdAndCreatedAtAcrossPartitionsTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        walletRepository.save(wallet);
+
+        var nextMonth = LocalDate.now().plusMonths(1);
+        underTest.createPartition(nextMonth);
+
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        var legacyTransaction = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString())
+            .setCreatedAt(LocalDateTime.of(2023, 4, 10, 10, 0));
+        var nextMonthTransaction = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString())
+            .setCreatedAt(nextMonth.withDayOfMonth(1).atStartOfDay());
+        underTest.saveAllAndFlush(List.of(legacyTransaction, nextMonthTransaction));
+        entityManager.clear();
+
+        // the select of the merge and the update of the dirty transaction go by id and created_at
+        var loaded = underTest.findByReferenceId(nextMonthTransaction.getReferenceId()).orElseThrow();
+        loaded.success();
+        underTest.saveAndFlush(loaded);
+        entityManager.clear();
+        assertThat(underTest.findByReferenceId(nextMonthTransaction.getReferenceId())).map(Transaction::getStatus).contains(TransactionStatus.SUCCESS);
+
+        var deleted = underTest.deleteAllByIdIn(List.of(legacyTransaction.getId(), nextMonthTransaction.getId()),
+            legacyTransaction.getCreatedAt(), nextMonthTransaction.getCreatedAt());
+        assertThat(deleted).isEqualTo(2);
+        assertThat(underTest.findAllByWalletId(wallet.getId(), PageRequest.ofSize(10))).isEmpty();
+    }
+
+    @Test
+    void transactionHistoryUsesWalletHistoryIndexTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        walletRepository.save(wallet);
+
+        // the partitions are too small for the planner to prefer an ordered index scan on its own
+        entityManager.createNativeQuery("SET LOCAL enable_seqscan = off").executeUpdate();
+        entityManager.createNativeQuery("SET LOCAL enable_bitmapscan = off").executeUpdate();
+
+        var firstPagePlan = explain("""
+            SELECT * FROM transaction
+            WHERE wallet_id = :walletId
+            ORDER BY created_at DESC, id DESC
+            LIMIT 11
+            """, wallet.getId());
+        assertThat(firstPagePlan).containsPattern(WALLET_HISTORY_INDEX_SCAN).doesNotContain("Sort");
+
+        var seekPlan = explain("""
+            SELECT * FROM transaction
+            WHERE wallet_id = :walletId
+              AND created_at <= now()
+              AND (created_at < now() OR id < 1)
+            ORDER BY created_at DESC, id DESC
+            LIMIT 11
+            """, wallet.getId());
+        assertThat(seekPlan).containsPattern(WALLET_HISTORY_INDEX_SCAN).doesNotContain("Sort");
+    }
+
+    @Test
+    void findSettledCreatedBeforeTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        walletRepository.save(wallet);
+
+        var createdBefore = LocalDateTime.of(1970, 2, 1, 0, 0);
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        var older = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString()).setCreatedAt(createdBefore.minusDays(2));
+        older.success();
+        var old = Transaction.createWithdrawalRequest(wallet.getId(), amount, UUID.randomUUID().toString()).setCreatedAt(createdBefore.minusDays(1));
+        old.failed();
+        var oldPending = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString()).setCreatedAt(createdBefore.minusDays(3));
+        var recent = Transaction.createDepositRequest(wallet.getId(), amount, UUID.randomUUID().toString()).setCreatedAt(createdBefore.plusDays(1));
+        recent.success();
+        underTest.saveAllAndFlush(List.of(old, oldPending, recent, older));
+
+        assertThat(underTest.findSettledCreatedBefore(createdBefore, 10)).extracting(Transaction::getId).containsExactly(older.getId(), old.getId());
+        assertThat(underTest.findSettledCreatedBefore(createdBefore, 1)).extracting(Transaction::getId).containsExactly(older.getId());
+    }
+
+    @Test
+    void findSettledCreatedBeforeUsesSettledIndexTest() {
+        entityManager.createNativeQuery("SET LOCAL enable_seqscan = off").executeUpdate();
+        entityManager.createNativeQuery("SET LOCAL enable_bitmapscan = off").executeUpdate();
+
+        List<?> plan = entityManager.createNativeQuery("""
+                EXPLAIN SELECT * FROM transaction
+                WHERE status IN ('SUCCESS', 'FAILED')
+                  AND created_at < now()
+                ORDER BY created_at
+                LIMIT 10
+                """)
+            .getResultList();
+
+        assertThat(plan.stream().map(String::valueOf).collect(Collectors.joining("\n"))).containsPattern(SETTLED_INDEX_SCAN).doesNotContain("Sort");
+    }
+
+    private String explain(String query, Long walletId) {
+        List<?> plan = entityManager.createNativeQuery("EXPLAIN " + query)
+            .setParameter("walletId", walletId)
+            .getResultList();
+
+        return plan.stream().map(String::valueOf).collect(Collectors.joining("\n"));
+    }
+}
@@ -0,0 +1,61 @@
+package com.github.tddiaz.wallet.repository;
+
+import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.tddiaz.wallet.BaseRepositoryIT;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.model.WalletHold;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class WalletRepositoryIT extends BaseRepositoryIT {
+
+    @Autowired
+    private WalletRepository underTest;
+
+    @Autowired
+    private WalletHoldRepository walletHoldRepository;
+
+    @Test
+    void findBalanceByIdAndCustomerIdTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        wallet.deposit(Money.create("GBP", new BigDecimal("100.00")));
+        transactionTemplate.execute(action -> underTest.save(wallet));
+
+        var withdraw = Transaction.createWithdrawalRequest(wallet.getId(), Money.create("GBP", new BigDecimal("2.50")), UUID.randomUUID().toString());
+        transactionTemplate.execute(action -> {
+            underTest.creditBucket(wallet.getId(), 0, new BigDecimal("10.25"));
+            underTest.creditBucket(wallet.getId(), 3, new BigDecimal("5.00"));
+            return walletHoldRepository.save(WalletHold.of(withdraw));
+        });
+
+        var balance = underTest.findBalanceByIdAndCustomerId(wallet.getId(), wallet.getCustomerId()).orElseThrow();
+
+        assertThat(balance.getWalletId()).isEqualTo(wallet.getId());
+        assertThat(balance.getCustomerId()).isEqualTo(wallet.getCustomerId());
+        assertThat(balance.getCurrency()).isEqualTo("GBP");
+        assertThat(balance.getBalanceAmount()).isEqualByComparingTo("100.00");
+        assertThat(balance.getBucketsAmount()).isEqualByComparingTo("15.25");
+        assertThat(balance.getHeldAmount()).isEqualByComparingTo("2.50");
+
+        assertThat(underTest.findBalanceByIdAndCustomerId(wallet.getId(), wallet.getCustomerId() + 1)).isEmpty();
+    }
+
+    @Test
+    void findBalanceByIdAndCustomerIdOfWalletWithoutBucketsOrHoldsTest() {
+        var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+        transactionTemplate.execute(action -> underTest.save(wallet));
+
+        var balance = underTest.findBalanceByIdAndCustomerId(wallet.getId(), wallet.getCustomerId()).orElseThrow();
+
+        assertThat(balance.getBalanceAmount()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(balance.getBucketsAmount()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(balance.getHeldAmount()).isEqualByComparingTo(BigDecimal.ZERO);
+    }
+}
@@ -0,0 +1,98 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.config.ArchiveConfiguration.TransactionArchiving;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.model.ArchiveSegment;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.repository.ArchiveSegmentRepository;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.Mockito.*;
+
+class ArchiveTransactionsUseCaseTest {
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+
+    private final ArchiveSegmentRepository archiveSegmentRepository = mock(ArchiveSegmentRepository.class);
+
+    private final TransactionArchive transactionArchive = mock(TransactionArchive.class);
+
+    private final ArchiveTransactionsUseCase underTest = new ArchiveTransactionsUseCase(
+        new TransactionArchiving(),
+        transactionRepository,
+        archiveSegmentRepository,
+        transactionArchive,
+        mock(PlatformTransactionManager.class)
+    );
+
+    private final Transaction transaction = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF1");
+
+    private final ArchiveSegment segment = ArchiveSegment.create(IdGenerator.DEFAULT.nextId(), Map.of(123L, 1));
+
+    @BeforeEach
+    void setup() {
+        TransactionSynchronizationManager.initSynchronization();
+
+        when(archiveSegmentRepository.tryLockArchival(anyLong())).thenReturn(true);
+        when(transactionRepository.findSettledCreatedBefore(any(), anyInt())).thenReturn(List.of(transaction));
+        when(transactionArchive.write(List.of(transaction))).thenReturn(segment);
+    }
+
+    @AfterEach
+    void tearDown() {
+        TransactionSynchronizationManager.clearSynchronization();
+    }
+
+    @Test
+    void givenSettledTransactions_whenExecute_thenWriteSegmentRegisterItAndDeleteRows() {
+        // when
+        var archived = underTest.execute();
+
+        // then
+        assertThat(archived).isEqualTo(1);
+        verify(archiveSegmentRepository).save(segment);
+        verify(transactionRepository).deleteAllByIdIn(List.of(transaction.getId()), transaction.getCreatedAt(), transaction.getCreatedAt());
+
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_COMMITTED));
+        verify(transactionArchive, never()).discard(any());
+    }
+
+    @Test
+    void givenBatchIsRolledBack_whenExecute_thenDiscardSegmentFile() {
+        // when
+        underTest.execute();
+        TransactionSynchronizationManager.getSynchronizations().forEach(synchronization -> synchronization.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK));
+
+        // then
+        verify(transactionArchive).discard(segment);
+    }
+
+    @Test
+    void givenAnotherInstanceIsArchiving_whenExecute_thenArchiveNothing() {
+        // given
+        when(archiveSegmentRepository.tryLockArchival(anyLong())).thenReturn(false);
+
+        // when
+        var archived = underTest.execute();
+
+        // then
+        assertThat(archived).isZero();
+        verifyNoInteractions(transactionRepository, transactionArchive);
+    }
+}
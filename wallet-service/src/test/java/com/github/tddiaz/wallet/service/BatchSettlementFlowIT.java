@@ -0,0 +1,182 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.tddiaz.wallet.TestDatasourceContextInitializer;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.BalanceBuckets;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.CommandEngine;
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.ItemResult;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.SettlementResult;
+import com.github.tddiaz.wallet.controller.dto.DepositRequestDto;
+import com.github.tddiaz.wallet.controller.dto.MoneyDto;
+import com.github.tddiaz.wallet.controller.dto.WithdrawRequestDto;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.TransactionStatus;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletHoldRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+    initializers = {TestDatasourceContextInitializer.class}
+)
+public class BatchSettlementFlowIT {
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletHoldRepository walletHoldRepository;
+
+    @Autowired
+    private CreateDepositOrderUseCase createDepositOrderUseCase;
+
+    @Autowired
+    private CreateWithdrawOrderUseCase createWithdrawOrderUseCase;
+
+    @Autowired
+    private SettleTransactionsBatchUseCase settleTransactionsBatchUseCase;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private SettleTransactionUseCase settleTransactionUseCase;
+
+    @Autowired
+    private BalanceBuckets balanceBuckets;
+
+    @Autowired
+    private CommandEngine commandEngine;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(10);
+
+    @AfterEach
+    void resetModes() {
+        balanceBuckets.setWalletIds(Set.of());
+        commandEngine.setEnabled(false);
+    }
+
+    /**
+     * Given:
+     *  - a wallet with balance of 100 GBP
+     *  - 2 pending deposit orders of 10 GBP and a pending withdraw order of 50 GBP
+     *
+     *  Expected Result:
+     *  - deposits are settled once even when notified twice in the batch
+     *  - the failed withdraw is credited back
+     *  - total balance should be 120 GBP and balance on hold should be 0 GBP
+     */
+    @Test
+    public void givenBatchOfBankNotifications_whenExecute_thenSettleEachTransactionOnceAndReturnResultPerItem() {
+        // given
+        var customerId = TsidCreator.getTsid().toLong();
+        var wallet = Wallet.initialize(customerId, "GBP");
+        wallet.deposit(Money.create("GBP", BigDecimal.valueOf(100L)));
+        walletRepository.save(wallet);
+
+        var firstDeposit = UUID.randomUUID().toString();
+        var secondDeposit = UUID.randomUUID().toString();
+        var withdraw = UUID.randomUUID().toString();
+
+        createDepositOrderUseCase.execute(new DepositRequestDto(firstDeposit, wallet.getId(), customerId, new MoneyDto("GBP", BigDecimal.TEN)));
+        createDepositOrderUseCase.execute(new DepositRequestDto(secondDeposit, wallet.getId(), customerId, new MoneyDto("GBP", BigDecimal.TEN)));
+        createWithdrawOrderUseCase.execute(new WithdrawRequestDto(withdraw, wallet.getId(), customerId, new MoneyDto("GBP", BigDecimal.valueOf(50L))));
+
+        // when
+        var responseDto = settleTransactionsBatchUseCase.execute(new BatchBankTransactionStatusRequestDto(List.of(
+            new BankTransactionStatusRequestDto(firstDeposit, "SUCCESS"),
+            new BankTransactionStatusRequestDto(secondDeposit, "SUCCESS"),
+            new BankTransactionStatusRequestDto(withdraw, "FAILED"),
+            new BankTransactionStatusRequestDto(firstDeposit, "SUCCESS"),
+            new BankTransactionStatusRequestDto("UNKNOWN", "SUCCESS")
+        )));
+
+        // then
+        assertThat(responseDto.results()).containsExactly(
+            new ItemResult(firstDeposit, SettlementResult.SETTLED),
+            new ItemResult(secondDeposit, SettlementResult.SETTLED),
+            new ItemResult(withdraw, SettlementResult.SETTLED),
+            new ItemResult(firstDeposit, SettlementResult.IGNORED),
+            new ItemResult("UNKNOWN", SettlementResult.NOT_FOUND)
+        );
+
+        var updatedWallet = transactionTemplate.execute(action -> walletRepository.findById(wallet.getId()).get());
+        assertThat(updatedWallet.getBalance()).isEqualTo(Money.create("GBP", new BigDecimal("120.0000")));
+        assertThat(walletHoldRepository.sumAmountByWalletId(wallet.getId())).isEqualByComparingTo(BigDecimal.ZERO);
+
+        // notifying the same batch again changes nothing
+        var replayedResponseDto = settleTransactionsBatchUseCase.execute(new BatchBankTransactionStatusRequestDto(List.of(
+            new BankTransactionStatusRequestDto(firstDeposit, "SUCCESS")
+        )));
+        assertThat(replayedResponseDto.results()).containsExactly(new ItemResult(firstDeposit, SettlementResult.IGNORED));
+    }
+
+    /**
+     * Given:
+     *  - a wallet with balance buckets, with balance of 0 GBP, and the command engine enabled
+     *  - 20 pending deposit orders of 10 GBP each
+     *  - the bank notifying the success of every deposit by a single callback and by a batch at once
+     *
+     *  Expected Result:
+     *  - every deposit is settled once, either by its callback or by the batch
+     *  - total balance, of the row and the buckets, should be 200 GBP
+     */
+    @Test
+    public void givenSingleCallbacksRacingBatchOnWalletWithBuckets_whenExecuteOnCommandEngine_thenSettleEachDepositOnce() {
+        // given
+        var customerId = TsidCreator.getTsid().toLong();
+        var wallet = walletRepository.save(Wallet.initialize(customerId, "GBP"));
+        balanceBuckets.setWalletIds(Set.of(wallet.getId()));
+        commandEngine.setEnabled(true);
+
+        var referenceIds = IntStream.range(0, 20).mapToObj(i -> {
+            var referenceId = UUID.randomUUID().toString();
+            createDepositOrderUseCase.execute(new DepositRequestDto(referenceId, wallet.getId(), customerId, new MoneyDto("GBP", BigDecimal.TEN)));
+            return referenceId;
+        }).toList();
+
+        // when
+        var batch = CompletableFuture.supplyAsync(() -> settleTransactionsBatchUseCase.execute(new BatchBankTransactionStatusRequestDto(
+            referenceIds.stream().map(referenceId -> new BankTransactionStatusRequestDto(referenceId, "SUCCESS")).toList())), executorService);
+        referenceIds.stream()
+            .map(referenceId -> CompletableFuture.runAsync(
+                () -> settleTransactionUseCase.execute(new BankTransactionStatusRequestDto(referenceId, "SUCCESS")), executorService))
+            .toList()
+            .forEach(CompletableFuture::join);
+        var responseDto = batch.join();
+
+        // then
+        assertThat(responseDto.results()).extracting(ItemResult::result).doesNotContain(SettlementResult.NOT_FOUND);
+
+        var balance = walletRepository.findBalanceByIdAndCustomerId(wallet.getId(), customerId).orElseThrow();
+        assertThat(balance.getBalanceAmount().add(balance.getBucketsAmount())).isEqualByComparingTo(new BigDecimal("200.0000"));
+
+        assertThat(referenceIds).allMatch(referenceId -> transactionRepository.findByReferenceId(referenceId).get().getStatus() == TransactionStatus.SUCCESS);
+    }
+}
@@ -1,5 +1,8 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.cache.ReferenceIdFilter;
+import com.github.tddiaz.wallet.config.CacheConfiguration.ReferenceIdFiltering;
 import com.github.tddiaz.wallet.config.SupportedCurrencyConfiguration.SupportedCurrencies;
 import com.github.tddiaz.wallet.config.TransactionLimitsConfiguration.DepositLimit;
 import com.github.tddiaz.wallet.controller.dto.DepositRequestDto;
@@ -7,18 +10,31 @@ import com.github.tddiaz.wallet.controller.dto.MoneyDto;
 import com.github.tddiaz.wallet.exception.AmountNotWithinLimitException;
 import com.github.tddiaz.wallet.exception.CurrencyMismatchException;
 import com.github.tddiaz.wallet.exception.CurrencyNotSupportedException;
+import com.github.tddiaz.wallet.exception.DuplicateReferenceIdException;
 import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
 import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.TransactionStatus;
 import com.github.tddiaz.wallet.model.Wallet;
 import com.github.tddiaz.wallet.repository.TransactionRepository;
 import com.github.tddiaz.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.hibernate.exception.ConstraintViolationException;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.util.Optional;
 import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.stream.Stream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -30,12 +46,21 @@ class CreateDepositOrderUseCaseTest {
     private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
     private final DepositLimit depositLimit = new DepositLimit(BigDecimal.valueOf(10_000L), BigDecimal.valueOf(10L));
     private final SupportedCurrencies supportedCurrencies = new SupportedCurrencies(Set.of("GBP", "AED"));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final TransactionArchive transactionArchive = mock(TransactionArchive.class);
+    private final ReferenceIdFilter referenceIdFilter = new ReferenceIdFilter(
+        new ReferenceIdFiltering(), transactionRepository, mock(PlatformTransactionManager.class), meterRegistry);
 
     private final CreateDepositOrderUseCase underTest = new CreateDepositOrderUseCase(
         walletRepository,
         transactionRepository,
         depositLimit,
-        supportedCurrencies
+        supportedCurrencies,
+        new IdGenerator(1, IdGenerator.DEFAULT_NODE_BITS),
+        mock(PlatformTransactionManager.class),
+        new WalletMetrics(meterRegistry),
+        referenceIdFilter,
+        transactionArchive
     );
 
     private final DepositRequestDto depositRequestDto = new DepositRequestDto(
@@ -56,6 +81,7 @@ class CreateDepositOrderUseCaseTest {
 
         verify(transactionRepository, never()).save(any());
         verify(walletRepository, never()).findById(any());
+        assertThat(meterRegistry.get("wallet.idempotent.replays").tag("operation", "deposit").counter().count()).isEqualTo(1);
     }
 
     @Test
@@ -78,6 +104,8 @@ class CreateDepositOrderUseCaseTest {
 
         // when then
         assertThrows(AmountNotWithinLimitException.class, () -> underTest.execute(depositRequestDto));
+        assertThat(meterRegistry.get("wallet.limit.rejections").tag("operation", "deposit").counter().count()).isEqualTo(1);
+        assertThat(meterRegistry.get("wallet.use.case").tag("outcome", "AmountNotWithinLimitException").timer().count()).isEqualTo(1);
     }
 
     @Test
@@ -130,4 +158,113 @@ class CreateDepositOrderUseCaseTest {
         assertThat(transaction.getReferenceId()).isEqualTo(depositRequestDto.referenceId());
     }
 
+    @Test
+    void givenReferenceIdFilterIsBuilt_whenExecuteWithNewReferenceId_thenCreateNewDepositTransactionWithoutLookingUpTheReferenceId() {
+        // given
+        when(transactionRepository.streamAllReferenceIds()).thenReturn(Stream.of("REF001", "REF002"));
+        referenceIdFilter.rebuild().join();
+
+        var wallet = Wallet.initialize(123L, "GBP");
+        when(walletRepository.findByIdAndCustomerId(depositRequestDto.walletId(), depositRequestDto.customerId())).thenReturn(Optional.of(wallet));
+
+        // when
+        var responseDto = underTest.execute(depositRequestDto);
+
+        // then
+        assertThat(responseDto.status()).isEqualTo(TransactionStatus.PENDING.name());
+        verify(transactionRepository, never()).findByReferenceId(any());
+        verify(transactionRepository).save(any(Transaction.class));
+    }
+
+    @Test
+    void givenDepositRequestIsRunning_whenExecuteDuplicateRequest_thenReturnTheResponseOfTheRunningRequest() throws Exception {
+        // given
+        when(transactionRepository.findByReferenceId(depositRequestDto.referenceId())).thenReturn(Optional.empty());
+
+        var release = new CountDownLatch(1);
+        var wallet = Wallet.initialize(123L, "GBP");
+        when(walletRepository.findByIdAndCustomerId(depositRequestDto.walletId(), depositRequestDto.customerId())).thenAnswer(invocation -> {
+            release.await(1, TimeUnit.SECONDS);
+            return Optional.of(wallet);
+        });
+
+        var first = CompletableFuture.supplyAsync(() -> underTest.execute(depositRequestDto));
+        verify(walletRepository, timeout(1_000)).findByIdAndCustomerId(any(), any());
+
+        // when
+        var duplicateThread = new AtomicReference<Thread>();
+        var duplicate = CompletableFuture.supplyAsync(() -> {
+            duplicateThread.set(Thread.currentThread());
+            return underTest.execute(depositRequestDto);
+        });
+        // the duplicate parks its thread once it waits for the running request
+        while (duplicateThread.get() == null || duplicateThread.get().getState() != Thread.State.WAITING) {
+            Thread.sleep(1);
+        }
+        release.countDown();
+
+        // then
+        assertThat(duplicate.get(1, TimeUnit.SECONDS)).isEqualTo(first.get(1, TimeUnit.SECONDS));
+        verify(transactionRepository, times(1)).save(any(Transaction.class));
+        assertThat(meterRegistry.get("wallet.idempotent.replays").tag("operation", "deposit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenDepositRequest_whenExecuteAndInsertFailsOnTheUniqueReferenceId_thenReturnTheTransactionInsertedMeanwhile() {
+        // given
+        var transaction = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
+        when(transactionRepository.findByReferenceId(depositRequestDto.referenceId())).thenReturn(Optional.empty(), Optional.of(transaction));
+
+        var wallet = Wallet.initialize(123L, "GBP");
+        when(walletRepository.findByIdAndCustomerId(depositRequestDto.walletId(), depositRequestDto.customerId())).thenReturn(Optional.of(wallet));
+        when(transactionRepository.save(any(Transaction.class))).thenThrow(new DataIntegrityViolationException("duplicate key",
+            new ConstraintViolationException("duplicate key", null, "uq_transaction_reference_id")));
+
+        // when
+        var responseDto = underTest.execute(depositRequestDto);
+
+        // then
+        assertThat(responseDto.transactionId()).isEqualTo(transaction.getId());
+        assertThat(meterRegistry.get("wallet.reference.filter.duplicates").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenDepositRequestWithReferenceIdOfArchivedTransaction_whenExecute_thenReturnTheArchivedTransaction() {
+        // given
+        var archivedTransaction = Transaction.createDepositRequest(77L, 123L, Money.create("GBP", BigDecimal.TEN), "REF123");
+        archivedTransaction.success();
+        when(transactionRepository.findByReferenceId(depositRequestDto.referenceId())).thenReturn(Optional.empty());
+        when(transactionArchive.findByReferenceId(depositRequestDto.walletId(), depositRequestDto.referenceId())).thenReturn(Optional.of(archivedTransaction));
+
+        var wallet = Wallet.initialize(123L, "GBP");
+        when(walletRepository.findByIdAndCustomerId(depositRequestDto.walletId(), depositRequestDto.customerId())).thenReturn(Optional.of(wallet));
+        // the reference id of an archived transaction stays taken
+        when(transactionRepository.save(any(Transaction.class))).thenThrow(new DataIntegrityViolationException("duplicate key",
+            new ConstraintViolationException("duplicate key", null, "uq_transaction_reference_id")));
+
+        // when
+        var responseDto = underTest.execute(depositRequestDto);
+
+        // then
+        assertThat(responseDto.transactionId()).isEqualTo(archivedTransaction.getId());
+        assertThat(responseDto.status()).isEqualTo(TransactionStatus.SUCCESS.name());
+        verify(transactionRepository, times(2)).save(any(Transaction.class));
+        assertThat(meterRegistry.get("wallet.idempotent.replays").tag("operation", "deposit").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenDepositRequestWithReferenceIdTakenButNotArchivedForWallet_whenExecute_thenThrowError() {
+        // given
+        when(transactionRepository.findByReferenceId(depositRequestDto.referenceId())).thenReturn(Optional.empty());
+        when(transactionArchive.findByReferenceId(depositRequestDto.walletId(), depositRequestDto.referenceId())).thenReturn(Optional.empty());
+
+        var wallet = Wallet.initialize(123L, "GBP");
+        when(walletRepository.findByIdAndCustomerId(depositRequestDto.walletId(), depositRequestDto.customerId())).thenReturn(Optional.of(wallet));
+        when(transactionRepository.save(any(Transaction.class))).thenThrow(new DataIntegrityViolationException("duplicate key",
+            new ConstraintViolationException("duplicate key", null, "uq_transaction_reference_id")));
+
+        // when then
+        assertThrows(DuplicateReferenceIdException.class, () -> underTest.execute(depositRequestDto));
+    }
+
 }
\ No newline at end of file
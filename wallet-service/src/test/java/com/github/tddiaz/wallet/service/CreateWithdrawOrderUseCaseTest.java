@@ -1,5 +1,20 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.cache.ReferenceIdFilter;
+import com.github.tddiaz.wallet.cache.WalletDetailsCache;
+import com.github.tddiaz.wallet.concurrency.WalletCommand;
+import com.github.tddiaz.wallet.concurrency.WalletCommandEngine;
+import com.github.tddiaz.wallet.concurrency.WalletLockManager;
+import com.github.tddiaz.wallet.concurrency.WalletTransactionExecutor;
+import com.github.tddiaz.wallet.config.CacheConfiguration.ReferenceIdFiltering;
+import com.github.tddiaz.wallet.config.CacheConfiguration.WalletDetailsCaching;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.BalanceBuckets;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.StripedLock;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLockMode;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WithdrawExecution;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WithdrawExecutionMode;
 import com.github.tddiaz.wallet.config.SupportedCurrencyConfiguration.SupportedCurrencies;
 import com.github.tddiaz.wallet.config.TransactionLimitsConfiguration.WithdrawalLimit;
 import com.github.tddiaz.wallet.controller.dto.MoneyDto;
@@ -7,14 +22,25 @@ import com.github.tddiaz.wallet.controller.dto.WithdrawRequestDto;
 import com.github.tddiaz.wallet.exception.AmountNotWithinLimitException;
 import com.github.tddiaz.wallet.exception.CurrencyMismatchException;
 import com.github.tddiaz.wallet.exception.CurrencyNotSupportedException;
+import com.github.tddiaz.wallet.exception.InsufficientFundsException;
 import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
 import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.TransactionStatus;
 import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.model.WalletHold;
 import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletBalanceView;
+import com.github.tddiaz.wallet.repository.WalletHoldRepository;
 import com.github.tddiaz.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
 import java.util.Optional;
@@ -31,14 +57,34 @@ class CreateWithdrawOrderUseCaseTest {
 
     private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
 
+    private final WalletHoldRepository walletHoldRepository = mock(WalletHoldRepository.class);
+
     private final WithdrawalLimit withdrawalLimit = new WithdrawalLimit(BigDecimal.valueOf(5000L), new BigDecimal("0.1"));
     private final SupportedCurrencies supportedCurrencies = new SupportedCurrencies(Set.of("GBP", "AED"));
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WithdrawExecution withdrawExecution = new WithdrawExecution(WithdrawExecutionMode.LOCKING);
+    private final WalletLocking walletLocking = new WalletLocking();
+    private final BalanceBuckets balanceBuckets = new BalanceBuckets();
+    private final StripedLock stripedLock = new StripedLock();
+    private final WalletCommandEngine walletCommandEngine = mock(WalletCommandEngine.class);
 
     private final CreateWithdrawOrderUseCase underTest = new CreateWithdrawOrderUseCase(
         walletRepository,
         transactionRepository,
+        walletHoldRepository,
         withdrawalLimit,
-        supportedCurrencies
+        supportedCurrencies,
+        withdrawExecution,
+        walletLocking,
+        balanceBuckets,
+        new WalletTransactionExecutor(mock(PlatformTransactionManager.class), walletLocking),
+        new WalletLockManager(stripedLock, new SimpleMeterRegistry()),
+        walletCommandEngine,
+        new WalletDetailsCache(new WalletDetailsCaching(), new SimpleMeterRegistry()),
+        new IdGenerator(1, IdGenerator.DEFAULT_NODE_BITS),
+        new WalletMetrics(meterRegistry),
+        new ReferenceIdFilter(new ReferenceIdFiltering(), transactionRepository, mock(PlatformTransactionManager.class), meterRegistry),
+        mock(TransactionArchive.class)
     );
 
     private final WithdrawRequestDto withdrawRequestDto = new WithdrawRequestDto("REF123", 123L, 123L, new MoneyDto("GBP", BigDecimal.TEN));
@@ -58,6 +104,7 @@ class CreateWithdrawOrderUseCaseTest {
 
         verify(transactionRepository, never()).save(any());
         verify(walletRepository, never()).findById(any());
+        assertThat(meterRegistry.get("wallet.idempotent.replays").tag("operation", "withdraw").counter().count()).isEqualTo(1);
     }
 
     @Test
@@ -135,5 +182,314 @@ class CreateWithdrawOrderUseCaseTest {
         assertThat(transaction.getWalletId()).isEqualTo(1L);
         assertThat(transaction.getAmount()).isEqualTo(Money.create(withdrawRequestDto.amount().currency(), withdrawRequestDto.amount().value()));
         assertThat(transaction.getReferenceId()).isEqualTo(withdrawRequestDto.referenceId());
+
+        var walletHoldArgumentCaptor = ArgumentCaptor.forClass(WalletHold.class);
+        verify(walletHoldRepository).save(walletHoldArgumentCaptor.capture());
+        assertThat(walletHoldArgumentCaptor.getValue().getTransactionId()).isEqualTo(transaction.getId());
+        assertThat(walletHoldArgumentCaptor.getValue().getAmount()).isEqualTo(transaction.getAmount());
+    }
+
+    @Test
+    void givenWithdrawRequestInOptimisticLockMode_whenExecute_thenWithdrawFromWalletReadWithoutLock() {
+        // given
+        walletLocking.setMode(WalletLockMode.OPTIMISTIC);
+        when(transactionRepository.findByReferenceId(withdrawRequestDto.referenceId())).thenReturn(Optional.empty());
+
+        var wallet = mock(Wallet.class);
+        when(wallet.getId()).thenReturn(1L);
+        when(wallet.isCurrencyMatched(any())).thenReturn(true);
+        when(walletRepository.findByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId())).thenReturn(Optional.of(wallet));
+
+        // when
+        underTest.execute(withdrawRequestDto);
+
+        // then
+        verify(walletRepository, never()).findByIdAndCustomerIdWithExclusiveLock(any(), any());
+        verify(wallet).withdraw(eq(Money.create(withdrawRequestDto.amount().currency(), withdrawRequestDto.amount().value())));
+        verify(walletRepository).save(eq(wallet));
+        verify(transactionRepository).save(any(Transaction.class));
+    }
+
+    @Test
+    void givenWithdrawRequestWithCommandEngineEnabled_whenExecute_thenWithdrawFromWalletOnCommandEngine() {
+        // given
+        when(walletCommandEngine.isEnabled()).thenReturn(true);
+        when(transactionRepository.findByReferenceId(withdrawRequestDto.referenceId())).thenReturn(Optional.empty());
+
+        var wallet = mock(Wallet.class);
+        when(wallet.getId()).thenReturn(withdrawRequestDto.walletId());
+        when(wallet.getCustomerId()).thenReturn(withdrawRequestDto.customerId());
+        when(wallet.isCurrencyMatched(any())).thenReturn(true);
+        when(walletCommandEngine.execute(eq(withdrawRequestDto.walletId()), any()))
+            .thenAnswer(invocation -> invocation.<WalletCommand<?>>getArgument(1).apply(wallet));
+
+        // when
+        var responseDto = underTest.execute(withdrawRequestDto);
+
+        // then
+        verify(walletRepository, never()).findByIdAndCustomerIdWithExclusiveLock(any(), any());
+        verify(wallet).withdraw(eq(Money.create(withdrawRequestDto.amount().currency(), withdrawRequestDto.amount().value())));
+        verify(walletRepository).save(eq(wallet));
+        verify(transactionRepository).save(any(Transaction.class));
+        assertThat(responseDto.status()).isEqualTo(TransactionStatus.PENDING.name());
+    }
+
+    @Test
+    void givenWithdrawRequestWithCommandEngineEnabled_whenExecuteAndWalletRowIsNotEnoughButBucketsAre_thenMoveBucketFundsOnEngineAndWithdraw() {
+        // given
+        when(walletCommandEngine.isEnabled()).thenReturn(true);
+        when(transactionRepository.findByReferenceId(withdrawRequestDto.referenceId())).thenReturn(Optional.empty());
+
+        var wallet = Wallet.initialize(withdrawRequestDto.walletId(), withdrawRequestDto.customerId(), "GBP");
+        when(walletCommandEngine.execute(eq(withdrawRequestDto.walletId()), any()))
+            .thenAnswer(invocation -> invocation.<WalletCommand<?>>getArgument(1).apply(wallet));
+        when(walletRepository.findBalanceByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+            .thenReturn(Optional.of(walletBalance(BigDecimal.ZERO, new BigDecimal("10.0000"))));
+        when(walletRepository.emptyBuckets(withdrawRequestDto.walletId())).thenReturn(new BigDecimal("10.0000"));
+
+        // when
+        var responseDto = underTest.execute(withdrawRequestDto);
+
+        // then
+        verify(walletCommandEngine, times(3)).execute(eq(withdrawRequestDto.walletId()), any());
+        verify(walletRepository, never()).findByIdAndCustomerIdWithExclusiveLock(any(), any());
+        verify(walletRepository, never()).moveBucketFundsToWallet(any());
+        assertThat(wallet.getBalance()).isEqualTo(Money.zero("GBP"));
+        assertThat(responseDto.status()).isEqualTo(TransactionStatus.PENDING.name());
+    }
+
+    @Test
+    void givenWithdrawRequestWithCommandEngineEnabled_whenExecuteAndWalletBelongsToOtherCustomer_thenThrowError() {
+        // given
+        when(walletCommandEngine.isEnabled()).thenReturn(true);
+        when(transactionRepository.findByReferenceId(withdrawRequestDto.referenceId())).thenReturn(Optional.empty());
+
+        var wallet = Wallet.initialize(999L, "GBP");
+        when(walletCommandEngine.execute(eq(withdrawRequestDto.walletId()), any()))
+            .thenAnswer(invocation -> invocation.<WalletCommand<?>>getArgument(1).apply(wallet));
+
+        // when then
+        assertThrows(NotFoundException.class, () -> underTest.execute(withdrawRequestDto));
+        verify(walletRepository, never()).save(any());
+    }
+
+    @Nested
+    class ConditionalUpdateModeTest {
+
+        @BeforeEach
+        void setup() {
+            withdrawExecution.setMode(WithdrawExecutionMode.CONDITIONAL_UPDATE);
+            when(transactionRepository.findByReferenceId(withdrawRequestDto.referenceId())).thenReturn(Optional.empty());
+        }
+
+        @Test
+        void givenWithdrawRequest_whenExecuteAndWalletIsDebited_thenReturnNewWithdrawTransactionWithoutLockingTheWallet() {
+            // given
+            when(walletRepository.withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(1);
+
+            // when
+            var responseDto = underTest.execute(withdrawRequestDto);
+
+            // then
+            var withdrawTransactionArgumentCaptor = ArgumentCaptor.forClass(Transaction.class);
+            verify(walletRepository).withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), withdrawTransactionArgumentCaptor.capture());
+            verify(walletRepository, never()).findByIdAndCustomerIdWithExclusiveLock(any(), any());
+            verify(walletRepository, never()).save(any());
+            verify(transactionRepository, never()).save(any());
+
+            var transaction = withdrawTransactionArgumentCaptor.getValue();
+
+            assertThat(responseDto.status()).isEqualTo(transaction.getStatus().name());
+            assertThat(responseDto.transactionId()).isEqualTo(transaction.getId());
+            assertThat(transaction.getWalletId()).isEqualTo(withdrawRequestDto.walletId());
+            assertThat(transaction.getAmount()).isEqualTo(Money.create(withdrawRequestDto.amount().currency(), withdrawRequestDto.amount().value()));
+            assertThat(transaction.getReferenceId()).isEqualTo(withdrawRequestDto.referenceId());
+        }
+
+        @Test
+        void givenWithdrawRequest_whenExecuteAndNothingIsDebitedAndWalletIsNotFound_thenThrowError() {
+            // given
+            when(walletRepository.withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(0);
+            when(walletRepository.findByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId())).thenReturn(Optional.empty());
+
+            // when then
+            assertThrows(NotFoundException.class, () -> underTest.execute(withdrawRequestDto));
+        }
+
+        @Test
+        void givenWithdrawRequest_whenExecuteAndNothingIsDebitedAndCurrencyDoesntMatch_thenThrowError() {
+            // given
+            var withdrawRequestDto = new WithdrawRequestDto("REF123", 123L, 123L, new MoneyDto("AED", BigDecimal.TEN));
+            when(walletRepository.withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(0);
+            when(walletRepository.findByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(Wallet.initialize(123L, "GBP")));
+
+            // when then
+            assertThrows(CurrencyMismatchException.class, () -> underTest.execute(withdrawRequestDto));
+        }
+
+        @Test
+        void givenWithdrawRequest_whenExecuteAndNothingIsDebitedAndCurrencyMatches_thenThrowInsufficientFundsError() {
+            // given
+            when(walletRepository.withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(0);
+            when(walletRepository.findByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(Wallet.initialize(123L, "GBP")));
+            when(walletRepository.findBalanceByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(walletBalance(BigDecimal.ZERO, BigDecimal.ZERO)));
+
+            // when then
+            assertThrows(InsufficientFundsException.class, () -> underTest.execute(withdrawRequestDto));
+            assertThat(meterRegistry.get("wallet.insufficient.funds").counter().count()).isEqualTo(1);
+            verify(walletRepository).withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class));
+            verify(walletRepository, never()).moveBucketFundsToWallet(any());
+            verify(walletRepository, never()).findByIdAndCustomerIdWithExclusiveLock(any(), any());
+            verify(transactionRepository, never()).save(any());
+        }
+
+        @Test
+        void givenWithdrawRequestOnWalletNotListedWithFundsInBuckets_whenExecuteAndNothingIsDebited_thenMoveBucketFundsToWalletAndDebitItAgain() {
+            // given
+            when(walletRepository.withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(0, 1);
+            when(walletRepository.findByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(Wallet.initialize(123L, "GBP")));
+            when(walletRepository.findBalanceByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(walletBalance(BigDecimal.ZERO, new BigDecimal("25.0000"))));
+            when(walletRepository.moveBucketFundsToWallet(withdrawRequestDto.walletId())).thenReturn(1);
+
+            // when
+            var responseDto = underTest.execute(withdrawRequestDto);
+
+            // then
+            var inOrder = inOrder(walletRepository);
+            inOrder.verify(walletRepository).withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class));
+            inOrder.verify(walletRepository).moveBucketFundsToWallet(withdrawRequestDto.walletId());
+            inOrder.verify(walletRepository).withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class));
+            verify(walletRepository, never()).findByIdAndCustomerIdWithExclusiveLock(any(), any());
+
+            assertThat(responseDto.status()).isEqualTo(TransactionStatus.PENDING.name());
+            assertThat(meterRegistry.get("wallet.insufficient.funds").counter().count()).isZero();
+        }
+
+        @Test
+        void givenWithdrawRequestOnWalletNotListedWithTooLittleInBuckets_whenExecuteAndNothingIsDebited_thenThrowInsufficientFundsErrorWithoutMovingThem() {
+            // given
+            when(walletRepository.withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(0);
+            when(walletRepository.findByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(Wallet.initialize(123L, "GBP")));
+            when(walletRepository.findBalanceByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(walletBalance(new BigDecimal("4.0000"), new BigDecimal("5.0000"))));
+
+            // when then
+            assertThrows(InsufficientFundsException.class, () -> underTest.execute(withdrawRequestDto));
+            verify(walletRepository, never()).moveBucketFundsToWallet(any());
+        }
+
+        @Test
+        void givenWithdrawRequestOnWalletWhoseBucketsWereEmptiedMeanwhile_whenExecuteAndNothingIsDebited_thenDebitWalletAgain() {
+            // given
+            when(walletRepository.withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(0, 1);
+            when(walletRepository.findByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(Wallet.initialize(123L, "GBP")));
+            when(walletRepository.findBalanceByIdAndCustomerId(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(walletBalance(new BigDecimal("25.0000"), BigDecimal.ZERO)));
+
+            // when
+            var responseDto = underTest.execute(withdrawRequestDto);
+
+            // then
+            verify(walletRepository, times(2)).withdrawAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class));
+            verify(walletRepository, never()).moveBucketFundsToWallet(any());
+            assertThat(responseDto.status()).isEqualTo(TransactionStatus.PENDING.name());
+        }
+    }
+
+    @Nested
+    class BalanceBucketsTest {
+
+        @BeforeEach
+        void setup() {
+            balanceBuckets.setWalletIds(Set.of(withdrawRequestDto.walletId()));
+            when(transactionRepository.findByReferenceId(withdrawRequestDto.referenceId())).thenReturn(Optional.empty());
+        }
+
+        @Test
+        void givenWithdrawRequestOnWalletWithBuckets_whenExecuteAndABucketIsDebited_thenReturnNewWithdrawTransactionWithoutLockingTheWallet() {
+            // given
+            when(walletRepository.withdrawFromBucketAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(1);
+
+            // when
+            var responseDto = underTest.execute(withdrawRequestDto);
+
+            // then
+            var withdrawTransactionArgumentCaptor = ArgumentCaptor.forClass(Transaction.class);
+            verify(walletRepository).withdrawFromBucketAndInsertTransaction(eq(withdrawRequestDto.customerId()), withdrawTransactionArgumentCaptor.capture());
+            verify(walletRepository, never()).findByIdAndCustomerIdWithExclusiveLock(any(), any());
+            verify(walletRepository, never()).emptyBuckets(any());
+            assertThat(responseDto.transactionId()).isEqualTo(withdrawTransactionArgumentCaptor.getValue().getId());
+        }
+
+        @Test
+        void givenWithdrawRequestOnWalletWithBuckets_whenExecuteAndNoBucketHoldsEnough_thenEmptyBucketsIntoWalletAndWithdrawFromIt() {
+            // given
+            when(walletRepository.withdrawFromBucketAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(0);
+            when(walletRepository.emptyBuckets(withdrawRequestDto.walletId())).thenReturn(new BigDecimal("25.0000"));
+
+            var wallet = Wallet.initialize(withdrawRequestDto.walletId(), withdrawRequestDto.customerId(), "GBP");
+            when(walletRepository.findByIdAndCustomerIdWithExclusiveLock(withdrawRequestDto.walletId(), withdrawRequestDto.customerId())).thenReturn(Optional.of(wallet));
+
+            // when
+            var responseDto = underTest.execute(withdrawRequestDto);
+
+            // then
+            var inOrder = inOrder(walletRepository);
+            inOrder.verify(walletRepository).emptyBuckets(withdrawRequestDto.walletId());
+            inOrder.verify(walletRepository).findByIdAndCustomerIdWithExclusiveLock(withdrawRequestDto.walletId(), withdrawRequestDto.customerId());
+            inOrder.verify(walletRepository).save(wallet);
+            verify(transactionRepository).save(any(Transaction.class));
+
+            assertThat(wallet.getBalance()).isEqualTo(Money.create("GBP", new BigDecimal("15")));
+            assertThat(responseDto.status()).isEqualTo(TransactionStatus.PENDING.name());
+        }
+
+        @Test
+        void givenWithdrawRequestOnWalletWithBuckets_whenExecuteAndAllFundsAreNotEnough_thenThrowInsufficientFundsError() {
+            // given
+            when(walletRepository.withdrawFromBucketAndInsertTransaction(eq(withdrawRequestDto.customerId()), any(Transaction.class))).thenReturn(0);
+            when(walletRepository.emptyBuckets(withdrawRequestDto.walletId())).thenReturn(new BigDecimal("5.0000"));
+            when(walletRepository.findByIdAndCustomerIdWithExclusiveLock(withdrawRequestDto.walletId(), withdrawRequestDto.customerId()))
+                .thenReturn(Optional.of(Wallet.initialize(withdrawRequestDto.walletId(), withdrawRequestDto.customerId(), "GBP")));
+
+            // when then
+            assertThrows(InsufficientFundsException.class, () -> underTest.execute(withdrawRequestDto));
+            verify(transactionRepository, never()).save(any());
+        }
+    }
+
+    private WalletBalanceView walletBalance(BigDecimal balanceAmount, BigDecimal bucketsAmount) {
+        return new WalletBalanceView() {
+            public Long getWalletId() {
+                return withdrawRequestDto.walletId();
+            }
+
+            public Long getCustomerId() {
+                return withdrawRequestDto.customerId();
+            }
+
+            public String getCurrency() {
+                return "GBP";
+            }
+
+            public BigDecimal getBalanceAmount() {
+                return balanceAmount;
+            }
+
+            public BigDecimal getBucketsAmount() {
+                return bucketsAmount;
+            }
+
+            public BigDecimal getHeldAmount() {
+                return BigDecimal.ZERO;
+            }
+        };
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,106 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.tddiaz.wallet.TestDatasourceContextInitializer;
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.DepositRequestDto;
+import com.github.tddiaz.wallet.controller.dto.MoneyDto;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.TransactionStatus;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@Slf4j
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+    initializers = {TestDatasourceContextInitializer.class}
+)
+public class DuplicateCallbackConcurrencyIT {
+
+    private static final int DEPOSITS = 20;
+    private static final int CALLBACKS_PER_DEPOSIT = 5;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private CreateDepositOrderUseCase createDepositOrderUseCase;
+
+    @Autowired
+    private SettleTransactionUseCase settleTransactionUseCase;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(DEPOSITS);
+
+    /**
+     * Given:
+     *  - a wallet with balance of 0 GBP
+     *  - 20 pending deposit orders of 10 GBP each
+     *  - the bank notifying the success of every deposit 5 times at once
+     *
+     *  Expected Result:
+     *  - every callback succeeds, none fails on a deadlock
+     *  - total balance should be 200 GBP
+     */
+    @Test
+    public void givenDuplicateConcurrentCallbacks_whenSettle_thenSettleEachDepositOnceAndReportThroughput() {
+        // given
+        var customerId = TsidCreator.getTsid().toLong();
+        var wallet = walletRepository.save(Wallet.initialize(customerId, "GBP"));
+
+        var referenceIds = IntStream.range(0, DEPOSITS).mapToObj(i -> {
+            var referenceId = UUID.randomUUID().toString();
+            createDepositOrderUseCase.execute(new DepositRequestDto(referenceId, wallet.getId(), customerId, new MoneyDto("GBP", BigDecimal.TEN)));
+            return referenceId;
+        }).toList();
+
+        // when
+        var start = System.nanoTime();
+        var failedCallbacks = IntStream.range(0, CALLBACKS_PER_DEPOSIT)
+            .boxed()
+            .flatMap(i -> referenceIds.stream())
+            .map(referenceId -> CompletableFuture.runAsync(
+                () -> settleTransactionUseCase.execute(new BankTransactionStatusRequestDto(referenceId, "SUCCESS")), executorService
+            ).handle((result, error) -> error != null))
+            .toList()
+            .stream()
+            .filter(CompletableFuture::join)
+            .count();
+        var elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000d;
+
+        log.info("settled {} duplicate callbacks in {} s - {} callbacks/s, {} failed",
+            DEPOSITS * CALLBACKS_PER_DEPOSIT, String.format("%.3f", elapsedSeconds), String.format("%.1f", DEPOSITS * CALLBACKS_PER_DEPOSIT / elapsedSeconds), failedCallbacks);
+
+        // then
+        assertThat(failedCallbacks).isZero();
+
+        var updatedWallet = transactionTemplate.execute(action -> walletRepository.findById(wallet.getId()).get());
+        assertThat(updatedWallet.getBalance()).isEqualTo(Money.create("GBP", new BigDecimal("200.0000")));
+
+        assertThat(referenceIds).allMatch(referenceId -> transactionRepository.findByReferenceId(referenceId).get().getStatus() == TransactionStatus.SUCCESS);
+    }
+}
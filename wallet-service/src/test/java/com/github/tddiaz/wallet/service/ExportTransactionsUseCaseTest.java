@@ -0,0 +1,98 @@
+package com.github.tddiaz.wallet.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SerializationFeature;
+import com.fasterxml.jackson.datatype.jsr310.JavaTimeModule;
+import com.github.tddiaz.wallet.controller.dto.ExportTransactionsRequestDto;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import jakarta.persistence.EntityManager;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.io.ByteArrayOutputStream;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.util.Optional;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.*;
+
+class ExportTransactionsUseCaseTest {
+
+    private final WalletRepository walletRepository = mock(WalletRepository.class);
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+
+    private final EntityManager entityManager = mock(EntityManager.class);
+
+    private final ExportTransactionsUseCase underTest = new ExportTransactionsUseCase(
+        walletRepository,
+        transactionRepository,
+        mock(PlatformTransactionManager.class),
+        entityManager,
+        new ObjectMapper().registerModule(new JavaTimeModule()).disable(SerializationFeature.WRITE_DATES_AS_TIMESTAMPS)
+    );
+
+    private final Transaction deposit = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF1");
+    private final Transaction withdraw = Transaction.createWithdrawalRequest(123L, Money.create("GBP", BigDecimal.ONE), "REF,\"2\"");
+
+    @BeforeEach
+    void setup() {
+        var wallet = mock(Wallet.class);
+        when(wallet.getId()).thenReturn(123L);
+        when(walletRepository.findByIdAndCustomerId(123L, 123L)).thenReturn(Optional.of(wallet));
+        when(transactionRepository.streamAllByWalletId(123L)).thenReturn(Stream.of(withdraw, deposit));
+    }
+
+    @Test
+    void givenExportRequest_whenExecuteAndWalletIsNotFound_thenThrowErrorBeforeStreaming() {
+        // given
+        when(walletRepository.findByIdAndCustomerId(123L, 123L)).thenReturn(Optional.empty());
+
+        // when then
+        assertThrows(NotFoundException.class, () -> underTest.execute(new ExportTransactionsRequestDto(123L, 123L, "CSV")));
+        verifyNoInteractions(transactionRepository);
+    }
+
+    @Test
+    void givenNdjsonExportRequest_whenExecute_thenWriteOneJsonObjectPerLineAndDetachWrittenRows() throws Exception {
+        // given
+        var outputStream = new ByteArrayOutputStream();
+
+        // when
+        underTest.execute(new ExportTransactionsRequestDto(123L, 123L, null)).writeTo(outputStream);
+
+        // then
+        var lines = outputStream.toString(StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(2);
+        assertThat(lines[0]).startsWith("{\"id\":" + withdraw.getId() + ",\"referenceId\":\"REF,\\\"2\\\"\"");
+        assertThat(lines[1]).contains("\"referenceId\":\"REF1\"", "\"entry\":\"DEPOSIT\"", "\"amount\":{\"currency\":\"GBP\",\"value\":10.0000}");
+
+        verify(entityManager).detach(withdraw);
+        verify(entityManager).detach(deposit);
+    }
+
+    @Test
+    void givenCsvExportRequest_whenExecute_thenWriteHeaderAndEscapedRows() throws Exception {
+        // given
+        var outputStream = new ByteArrayOutputStream();
+
+        // when
+        underTest.execute(new ExportTransactionsRequestDto(123L, 123L, "CSV")).writeTo(outputStream);
+
+        // then
+        assertThat(outputStream.toString(StandardCharsets.UTF_8)).isEqualTo(
+            ExportTransactionsUseCase.CSV_HEADER + "\n"
+                + withdraw.getId() + ",\"REF,\"\"2\"\"\",BANK_TRANSFER,WITHDRAW,PENDING," + withdraw.getCreatedAt() + ",GBP,1.0000\n"
+                + deposit.getId() + ",REF1,BANK_TRANSFER,DEPOSIT,PENDING," + deposit.getCreatedAt() + ",GBP,10.0000\n"
+        );
+    }
+}
@@ -0,0 +1,116 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.controller.dto.GetTransactionsByCursorRequestDto;
+import com.github.tddiaz.wallet.exception.InvalidCursorException;
+import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.SliceImpl;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.*;
+
+class GetTransactionsByCursorUseCaseTest {
+
+    private final WalletRepository walletRepository = mock(WalletRepository.class);
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+
+    private final TransactionArchive transactionArchive = mock(TransactionArchive.class);
+
+    private final GetTransactionsByCursorUseCase underTest = new GetTransactionsByCursorUseCase(walletRepository, transactionRepository, transactionArchive);
+
+    private final Transaction transaction1 = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF1");
+    private final Transaction transaction2 = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF2");
+
+    @BeforeEach
+    void setup() {
+        var wallet = mock(Wallet.class);
+        when(wallet.getId()).thenReturn(123L);
+        when(walletRepository.findByIdAndCustomerId(123L, 123L)).thenReturn(Optional.of(wallet));
+    }
+
+    @Test
+    void givenRequest_whenExecuteAndWalletIsNotFound_thenThrowError() {
+        // given
+        when(walletRepository.findByIdAndCustomerId(123L, 123L)).thenReturn(Optional.empty());
+
+        // when then
+        assertThrows(NotFoundException.class, () -> underTest.execute(new GetTransactionsByCursorRequestDto(123L, 123L, null, 2)));
+    }
+
+    @Test
+    void givenRequestWithoutCursor_whenExecuteAndMoreRowsExist_thenReturnFirstPageWithCursorOfItsLastRow() {
+        // given
+        when(transactionRepository.findAllByWalletIdOrderByCreatedAtDescIdDesc(123L, PageRequest.ofSize(2)))
+            .thenReturn(new SliceImpl<>(List.of(transaction2, transaction1), PageRequest.ofSize(2), true));
+
+        // when
+        var response = underTest.execute(new GetTransactionsByCursorRequestDto(123L, 123L, null, 2));
+
+        // then
+        assertThat(response.numberOfElements()).isEqualTo(2);
+        assertThat(response.data()).extracting("referenceId").containsExactly("REF2", "REF1");
+        assertThat(TransactionCursor.decode(response.nextCursor())).isEqualTo(new TransactionCursor(transaction1.getCreatedAt(), transaction1.getId()));
+    }
+
+    @Test
+    void givenRequestWithCursor_whenExecuteAndNoMoreRowsExist_thenSeekPastCursorAndReturnNoCursor() {
+        // given
+        var cursor = TransactionCursor.after(transaction2);
+        when(transactionRepository.findAllByWalletIdAfter(123L, cursor.createdAt(), cursor.id(), PageRequest.ofSize(2)))
+            .thenReturn(new SliceImpl<>(List.of(transaction1), PageRequest.ofSize(2), false));
+
+        // when
+        var response = underTest.execute(new GetTransactionsByCursorRequestDto(123L, 123L, cursor.encode(), 2));
+
+        // then
+        assertThat(response.numberOfElements()).isEqualTo(1);
+        assertThat(response.data()).extracting("referenceId").containsExactly("REF1");
+        assertThat(response.nextCursor()).isNull();
+        verify(transactionRepository, never()).findAllByWalletIdOrderByCreatedAtDescIdDesc(any(), any());
+    }
+
+    @Test
+    void givenRequestWithCursorOnWalletWithArchivedTransactions_whenExecute_thenMergeArchivedRowsPastCursor() {
+        // given
+        var now = LocalDateTime.now();
+        var newest = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF1").setCreatedAt(now);
+        var hot = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF2").setCreatedAt(now.minusDays(1));
+        var archived = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF3").setCreatedAt(now.minusDays(100));
+        var olderArchived = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF4").setCreatedAt(now.minusDays(200));
+
+        var cursor = TransactionCursor.after(newest);
+        when(transactionRepository.findAllByWalletIdAfter(123L, cursor.createdAt(), cursor.id(), PageRequest.ofSize(2)))
+            .thenReturn(new SliceImpl<>(List.of(hot), PageRequest.ofSize(2), false));
+        when(transactionArchive.containsWallet(123L)).thenReturn(true);
+        // the hot row is also in the archive, archived between the two reads
+        when(transactionArchive.findAllByWalletIdAfter(123L, cursor.createdAt(), cursor.id(), 3)).thenReturn(List.of(hot, archived, olderArchived));
+
+        // when
+        var response = underTest.execute(new GetTransactionsByCursorRequestDto(123L, 123L, cursor.encode(), 2));
+
+        // then
+        assertThat(response.data()).extracting("referenceId").containsExactly("REF2", "REF3");
+        assertThat(TransactionCursor.decode(response.nextCursor())).isEqualTo(TransactionCursor.after(archived));
+    }
+
+    @Test
+    void givenRequestWithMalformedCursor_whenExecute_thenThrowError() {
+        assertThrows(InvalidCursorException.class, () -> underTest.execute(new GetTransactionsByCursorRequestDto(123L, 123L, "not-a-cursor", 2)));
+    }
+}
@@ -1,22 +1,29 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.archive.TransactionArchive;
+import com.github.tddiaz.wallet.config.ArchiveConfiguration.TransactionArchiving;
 import com.github.tddiaz.wallet.controller.dto.GetTransactionsRequestDto;
 import com.github.tddiaz.wallet.controller.dto.MoneyDto;
 import com.github.tddiaz.wallet.controller.dto.TransactionDto;
 import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
 import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.model.Transaction;
 import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.ArchiveSegmentRepository;
 import com.github.tddiaz.wallet.repository.TransactionRepository;
 import com.github.tddiaz.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 import org.mockito.ArgumentCaptor;
 import org.springframework.data.domain.PageImpl;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.SliceImpl;
 import org.springframework.data.domain.Sort;
 
 import java.math.BigDecimal;
+import java.time.LocalDateTime;
 import java.util.List;
 import java.util.Optional;
 
@@ -31,7 +38,14 @@ class GetTransactionsUseCaseTest {
 
     private TransactionRepository transactionRepository = mock(TransactionRepository.class);
 
-    private GetTransactionsUseCase underTest = new GetTransactionsUseCase(walletRepository, transactionRepository);
+    private TransactionArchive transactionArchive = mock(TransactionArchive.class);
+
+    private ArchiveSegmentRepository archiveSegmentRepository = mock(ArchiveSegmentRepository.class);
+
+    private TransactionArchiving transactionArchiving = new TransactionArchiving();
+
+    private GetTransactionsUseCase underTest = new GetTransactionsUseCase(walletRepository, transactionRepository, transactionArchive,
+        archiveSegmentRepository, transactionArchiving, new WalletMetrics(new SimpleMeterRegistry()));
 
     private GetTransactionsRequestDto getTransactionsRequest = new GetTransactionsRequestDto(
         123L, 123L, 0, 10
@@ -91,4 +105,74 @@ class GetTransactionsUseCaseTest {
         assertThat(response.totalPages()).isEqualTo(1);
     }
 
-}
\ No newline at end of file
+    @Test
+    void givenGetTransactionsRequest_whenExecuteAndWalletHasArchivedTransactions_thenMergeArchiveWithDbRows() {
+        // given
+        var wallet = mock(Wallet.class);
+        when(wallet.getId()).thenReturn(123L);
+
+        when(walletRepository.findByIdAndCustomerId(getTransactionsRequest.walletId(), getTransactionsRequest.customerId()))
+            .thenReturn(Optional.of(wallet));
+
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        var now = LocalDateTime.now();
+        var archived = Transaction.createDepositRequest(123L, amount, "REF1").setCreatedAt(now.minusDays(100));
+        var hot = Transaction.createDepositRequest(123L, amount, "REF2").setCreatedAt(now.minusDays(1));
+        var pendingSinceLongAgo = Transaction.createDepositRequest(123L, amount, "REF3").setCreatedAt(now.minusDays(200));
+
+        when(transactionRepository.findAllByWalletIdOrderByCreatedAtDescIdDesc(123L, PageRequest.ofSize(10)))
+            .thenReturn(new SliceImpl<>(List.of(hot, pendingSinceLongAgo)));
+        when(transactionArchive.containsWallet(123L)).thenReturn(true);
+        when(transactionArchive.findAllByWalletId(123L, 10)).thenReturn(List.of(archived));
+        when(archiveSegmentRepository.countTransactionsByWalletId(123L)).thenReturn(3L);
+
+        // when
+        var response = underTest.execute(getTransactionsRequest);
+
+        // then
+        verify(transactionRepository, never()).findAllByWalletId(eq(123L), any(Pageable.class));
+        assertThat(response.data()).extracting(TransactionDto::referenceId).containsExactly("REF2", "REF1", "REF3");
+        assertThat(response.totalCount()).isEqualTo(3);
+        assertThat(response.totalPages()).isEqualTo(1);
+        assertThat(response.numberOfElements()).isEqualTo(3);
+    }
+
+    @Test
+    void givenGetTransactionsRequestDeeperThanPageReadSize_whenExecuteAndWalletHasArchivedTransactions_thenMergeChunkByChunk() {
+        // given
+        transactionArchiving.setPageReadSize(2);
+        var wallet = mock(Wallet.class);
+        when(wallet.getId()).thenReturn(123L);
+
+        when(walletRepository.findByIdAndCustomerId(123L, 123L)).thenReturn(Optional.of(wallet));
+
+        var amount = Money.create("GBP", BigDecimal.TEN);
+        var now = LocalDateTime.now();
+        var hot1 = Transaction.createDepositRequest(123L, amount, "HOT1").setCreatedAt(now.minusDays(1));
+        var archived1 = Transaction.createDepositRequest(123L, amount, "ARCHIVED1").setCreatedAt(now.minusDays(2));
+        var hot2 = Transaction.createDepositRequest(123L, amount, "HOT2").setCreatedAt(now.minusDays(3));
+        var archived2 = Transaction.createDepositRequest(123L, amount, "ARCHIVED2").setCreatedAt(now.minusDays(4));
+        var archivedMeanwhile = Transaction.createDepositRequest(123L, amount, "ARCHIVED_MEANWHILE").setCreatedAt(now.minusDays(5));
+        var archived3 = Transaction.createDepositRequest(123L, amount, "ARCHIVED3").setCreatedAt(now.minusDays(6));
+
+        when(transactionRepository.findAllByWalletIdOrderByCreatedAtDescIdDesc(123L, PageRequest.ofSize(2)))
+            .thenReturn(new SliceImpl<>(List.of(hot1, hot2)));
+        when(transactionRepository.findAllByWalletIdAfter(123L, hot2.getCreatedAt(), hot2.getId(), PageRequest.ofSize(2)))
+            .thenReturn(new SliceImpl<>(List.of(archivedMeanwhile)));
+        when(transactionArchive.containsWallet(123L)).thenReturn(true);
+        when(transactionArchive.findAllByWalletId(123L, 2)).thenReturn(List.of(archived1, archived2));
+        when(transactionArchive.findAllByWalletIdAfter(123L, archived2.getCreatedAt(), archived2.getId(), 2)).thenReturn(List.of(archivedMeanwhile, archived3));
+        when(transactionArchive.findAllByWalletIdAfter(123L, archived3.getCreatedAt(), archived3.getId(), 2)).thenReturn(List.of());
+        when(archiveSegmentRepository.countTransactionsByWalletId(123L)).thenReturn(6L);
+
+        // when
+        var response = underTest.execute(new GetTransactionsRequestDto(123L, 123L, 2, 2));
+
+        // then
+        assertThat(response.data()).extracting(TransactionDto::referenceId).containsExactly("ARCHIVED_MEANWHILE", "ARCHIVED3");
+        assertThat(response.totalCount()).isEqualTo(6);
+        assertThat(response.totalPages()).isEqualTo(3);
+        assertThat(response.pageNumber()).isEqualTo(2);
+    }
+
+}
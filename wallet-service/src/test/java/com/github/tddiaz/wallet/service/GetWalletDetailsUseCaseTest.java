@@ -1,10 +1,13 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.cache.WalletDetailsCache;
+import com.github.tddiaz.wallet.config.CacheConfiguration.WalletDetailsCaching;
 import com.github.tddiaz.wallet.controller.dto.MoneyDto;
 import com.github.tddiaz.wallet.exception.NotFoundException;
-import com.github.tddiaz.wallet.model.Money;
-import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.repository.WalletBalanceView;
 import com.github.tddiaz.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
 import org.junit.jupiter.api.Test;
 
 import java.math.BigDecimal;
@@ -20,12 +23,13 @@ class GetWalletDetailsUseCaseTest {
 
     private WalletRepository walletRepository = mock(WalletRepository.class);
 
-    private GetWalletDetailsUseCase underTest = new GetWalletDetailsUseCase(walletRepository);
+    private GetWalletDetailsUseCase underTest = new GetWalletDetailsUseCase(walletRepository, new WalletDetailsCache(new WalletDetailsCaching(), new SimpleMeterRegistry()),
+        new WalletMetrics(new SimpleMeterRegistry()));
 
     @Test
     void givenWalletIdAndCustomerId_whenExecuteAndWalletNotFound_thenThrowError() {
         // given
-        when(walletRepository.findByIdAndCustomerId(anyLong(), anyLong())).thenReturn(Optional.empty());
+        when(walletRepository.findBalanceByIdAndCustomerId(anyLong(), anyLong())).thenReturn(Optional.empty());
 
         // when then
         assertThrows(NotFoundException.class, () -> underTest.execute(123L, 123L));
@@ -34,20 +38,41 @@ class GetWalletDetailsUseCaseTest {
     @Test
     void givenWalletIdAndCustomerId_whenExecuteAndWalletIsFound_thenReturnWalletDetails() {
         // given
-        var wallet = Wallet.initialize(123L, "GBP");
-        wallet.deposit(Money.create("GBP", BigDecimal.TEN));
-        wallet.withdraw(Money.create("GBP", BigDecimal.ONE));
-
-        when(walletRepository.findByIdAndCustomerId(anyLong(), anyLong())).thenReturn(Optional.of(wallet));
+        var wallet = walletBalance(new BigDecimal("9.0000"), BigDecimal.ZERO, BigDecimal.ONE);
+        when(walletRepository.findBalanceByIdAndCustomerId(456L, 123L)).thenReturn(Optional.of(wallet));
 
         // when
-        var walletDetailsResponse = underTest.execute(123L, 123L);
+        var walletDetailsResponse = underTest.execute(456L, 123L);
 
         // then
-        assertThat(walletDetailsResponse.walletId()).isEqualTo(wallet.getId());
+        assertThat(walletDetailsResponse.walletId()).isEqualTo(456L);
         assertThat(walletDetailsResponse.customerId()).isEqualTo(123L);
-        assertThat(walletDetailsResponse.totalBalance()).isEqualTo(new MoneyDto("GBP", BigDecimal.valueOf(9L)));
-        assertThat(walletDetailsResponse.amountOnHold()).isEqualTo(new MoneyDto("GBP", BigDecimal.ONE));
+        assertThat(walletDetailsResponse.totalBalance()).isEqualTo(new MoneyDto("GBP", new BigDecimal("9.0000")));
+        assertThat(walletDetailsResponse.amountOnHold()).isEqualTo(new MoneyDto("GBP", new BigDecimal("1.0000")));
+    }
+
+    @Test
+    void givenWalletWithBuckets_whenExecute_thenReturnTotalBalanceOfWalletAndBuckets() {
+        // given
+        var wallet = walletBalance(BigDecimal.TEN, new BigDecimal("32.5000"), BigDecimal.ZERO);
+        when(walletRepository.findBalanceByIdAndCustomerId(456L, 123L)).thenReturn(Optional.of(wallet));
+
+        // when
+        var walletDetailsResponse = underTest.execute(456L, 123L);
+
+        // then
+        assertThat(walletDetailsResponse.totalBalance()).isEqualTo(new MoneyDto("GBP", new BigDecimal("42.5000")));
+    }
+
+    private WalletBalanceView walletBalance(BigDecimal balanceAmount, BigDecimal bucketsAmount, BigDecimal heldAmount) {
+        var walletBalance = mock(WalletBalanceView.class);
+        when(walletBalance.getWalletId()).thenReturn(456L);
+        when(walletBalance.getCustomerId()).thenReturn(123L);
+        when(walletBalance.getCurrency()).thenReturn("GBP");
+        when(walletBalance.getBalanceAmount()).thenReturn(balanceAmount);
+        when(walletBalance.getBucketsAmount()).thenReturn(bucketsAmount);
+        when(walletBalance.getHeldAmount()).thenReturn(heldAmount);
+        return walletBalance;
     }
 
-}
\ No newline at end of file
+}
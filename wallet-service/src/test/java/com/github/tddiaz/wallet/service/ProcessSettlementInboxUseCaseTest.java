@@ -0,0 +1,149 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.config.SettlementConfiguration.SettlementInbox;
+import com.github.tddiaz.wallet.config.SettlementConfiguration.SettlementMode;
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.ItemResult;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.SettlementResult;
+import com.github.tddiaz.wallet.id.IdGenerator;
+import com.github.tddiaz.wallet.model.SettlementInboxEntry;
+import com.github.tddiaz.wallet.model.SettlementState;
+import com.github.tddiaz.wallet.repository.SettlementInboxRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Optional;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class ProcessSettlementInboxUseCaseTest {
+
+    private final SettlementInboxRepository settlementInboxRepository = mock(SettlementInboxRepository.class);
+
+    private final SettleTransactionsBatchUseCase settleTransactionsBatchUseCase = mock(SettleTransactionsBatchUseCase.class);
+
+    private final SettlementInbox settlementInbox = new SettlementInbox(SettlementMode.ASYNC, 4, 100, Duration.ofMillis(200), 2,
+        Duration.ofDays(7), "0 45 3 * * *", Duration.ofSeconds(10));
+
+    private final ProcessSettlementInboxUseCase underTest = new ProcessSettlementInboxUseCase(
+        settlementInboxRepository,
+        settleTransactionsBatchUseCase,
+        settlementInbox,
+        mock(PlatformTransactionManager.class),
+        new SimpleMeterRegistry()
+    );
+
+    @Test
+    void givenPartitionDrainedByOtherInstance_whenExecute_thenSkipPartition() {
+        // given
+        when(settlementInboxRepository.tryLockPartition(anyInt(), eq(1))).thenReturn(false);
+
+        // when
+        var processed = underTest.execute(1);
+
+        // then
+        assertThat(processed).isZero();
+        verify(settlementInboxRepository, never()).claimReceived(anyInt(), anyInt(), anyInt());
+        verifyNoInteractions(settleTransactionsBatchUseCase);
+    }
+
+    @Test
+    void givenReceivedEntries_whenExecute_thenSettleThemAsBatchAndMarkThemProcessed() {
+        // given
+        var settled = SettlementInboxEntry.receive(IdGenerator.DEFAULT.nextId(), "REF1", "SUCCESS");
+        var notFound = SettlementInboxEntry.receive(IdGenerator.DEFAULT.nextId(), "REF2", "FAILED");
+
+        when(settlementInboxRepository.tryLockPartition(anyInt(), eq(1))).thenReturn(true);
+        when(settlementInboxRepository.claimReceived(4, 1, 100)).thenReturn(List.of(settled, notFound));
+        when(settleTransactionsBatchUseCase.execute(new BatchBankTransactionStatusRequestDto(List.of(
+            new BankTransactionStatusRequestDto("REF1", "SUCCESS"),
+            new BankTransactionStatusRequestDto("REF2", "FAILED")
+        )))).thenReturn(new BatchBankTransactionStatusResponseDto(List.of(
+            new ItemResult("REF1", SettlementResult.SETTLED),
+            new ItemResult("REF2", SettlementResult.NOT_FOUND)
+        )));
+
+        // when
+        var processed = underTest.execute(1);
+
+        // then
+        assertThat(processed).isEqualTo(2);
+
+        @SuppressWarnings("unchecked")
+        ArgumentCaptor<List<SettlementInboxEntry>> entriesArgumentCaptor = ArgumentCaptor.forClass(List.class);
+        verify(settlementInboxRepository).saveAll(entriesArgumentCaptor.capture());
+
+        assertThat(entriesArgumentCaptor.getValue()).extracting(SettlementInboxEntry::getState)
+            .containsExactly(SettlementState.SETTLED, SettlementState.NOT_FOUND);
+        assertThat(entriesArgumentCaptor.getValue()).allMatch(entry -> entry.getProcessedAt() != null);
+    }
+
+    @Test
+    void givenBatchFailing_whenExecute_thenSettleEntriesOneByOneAndCountFailedAttempt() {
+        // given
+        var poison = SettlementInboxEntry.receive(IdGenerator.DEFAULT.nextId(), "REF1", "BOGUS");
+        var settled = SettlementInboxEntry.receive(IdGenerator.DEFAULT.nextId(), "REF2", "SUCCESS");
+
+        when(settlementInboxRepository.tryLockPartition(anyInt(), eq(1))).thenReturn(true);
+        when(settlementInboxRepository.claimReceived(4, 1, 100)).thenReturn(List.of(poison, settled));
+        when(settlementInboxRepository.claimReceivedById(poison.getId())).thenReturn(Optional.of(poison));
+        when(settlementInboxRepository.claimReceivedById(settled.getId())).thenReturn(Optional.of(settled));
+        when(settlementInboxRepository.findById(poison.getId())).thenReturn(Optional.of(poison));
+
+        var poisonRequest = new BankTransactionStatusRequestDto("REF1", "BOGUS");
+        var settledRequest = new BankTransactionStatusRequestDto("REF2", "SUCCESS");
+        doThrow(new IllegalArgumentException("unknown banking status")).when(settleTransactionsBatchUseCase)
+            .execute(new BatchBankTransactionStatusRequestDto(List.of(poisonRequest, settledRequest)));
+        doThrow(new IllegalArgumentException("unknown banking status")).when(settleTransactionsBatchUseCase)
+            .execute(new BatchBankTransactionStatusRequestDto(List.of(poisonRequest)));
+        when(settleTransactionsBatchUseCase.execute(new BatchBankTransactionStatusRequestDto(List.of(settledRequest))))
+            .thenReturn(new BatchBankTransactionStatusResponseDto(List.of(new ItemResult("REF2", SettlementResult.SETTLED))));
+
+        // when
+        var processed = underTest.execute(1);
+
+        // then
+        assertThat(processed).isEqualTo(1);
+        assertThat(settled.getState()).isEqualTo(SettlementState.SETTLED);
+        assertThat(poison.getState()).isEqualTo(SettlementState.RECEIVED);
+        assertThat(poison.getAttempts()).isEqualTo(1);
+        verify(settlementInboxRepository).save(poison);
+    }
+
+    @Test
+    void givenEntryFailingMaxAttempts_whenExecute_thenSetItAsideAsFailed() {
+        // given
+        var poison = SettlementInboxEntry.receive(IdGenerator.DEFAULT.nextId(), "REF1", "BOGUS").setAttempts(1);
+
+        when(settlementInboxRepository.tryLockPartition(anyInt(), eq(1))).thenReturn(true);
+        when(settlementInboxRepository.claimReceived(4, 1, 100)).thenReturn(List.of(poison));
+        when(settlementInboxRepository.claimReceivedById(poison.getId())).thenReturn(Optional.of(poison));
+        when(settlementInboxRepository.findById(poison.getId())).thenReturn(Optional.of(poison));
+        when(settleTransactionsBatchUseCase.execute(any())).thenThrow(new IllegalArgumentException("unknown banking status"));
+
+        // when
+        var processed = underTest.execute(1);
+
+        // then
+        assertThat(processed).isZero();
+        assertThat(poison.getState()).isEqualTo(SettlementState.FAILED);
+        assertThat(poison.getAttempts()).isEqualTo(2);
+        assertThat(poison.getProcessedAt()).isNotNull();
+        verify(settlementInboxRepository).save(poison);
+    }
+}
@@ -1,19 +1,46 @@
 package com.github.tddiaz.wallet.service;
 
+import com.github.tddiaz.wallet.cache.WalletDetailsCache;
+import com.github.tddiaz.wallet.concurrency.DepositSettlementCoalescer;
+import com.github.tddiaz.wallet.concurrency.WalletCommand;
+import com.github.tddiaz.wallet.concurrency.WalletCommandEngine;
+import com.github.tddiaz.wallet.concurrency.WalletLockManager;
+import com.github.tddiaz.wallet.concurrency.WalletTransactionExecutor;
+import com.github.tddiaz.wallet.config.CacheConfiguration.WalletDetailsCaching;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.BalanceBuckets;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.DepositCoalescing;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.StripedLock;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLockMode;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
 import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
 import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto.BankingStatus;
 import com.github.tddiaz.wallet.exception.NotFoundException;
+import com.github.tddiaz.wallet.metrics.SettlementAppliedEvent;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
 import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.model.Transaction;
 import com.github.tddiaz.wallet.model.TransactionStatus;
 import com.github.tddiaz.wallet.model.Wallet;
 import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletHoldRepository;
 import com.github.tddiaz.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordingFile;
 import org.junit.jupiter.api.Nested;
 import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
 
 import java.math.BigDecimal;
+import java.nio.file.Files;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.IntStream;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.junit.jupiter.api.Assertions.assertThrows;
@@ -25,17 +52,36 @@ class SettleTransactionUseCaseTest {
 
     private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
 
+    private final WalletHoldRepository walletHoldRepository = mock(WalletHoldRepository.class);
+
+    private final WalletLocking walletLocking = new WalletLocking();
+    private final BalanceBuckets balanceBuckets = new BalanceBuckets();
+    private final StripedLock stripedLock = new StripedLock();
+    private final SimpleMeterRegistry meterRegistry = new SimpleMeterRegistry();
+    private final WalletCommandEngine walletCommandEngine = mock(WalletCommandEngine.class);
+    private final DepositCoalescing depositCoalescing = new DepositCoalescing();
+
     private final SettleTransactionUseCase underTest = new SettleTransactionUseCase(
         walletRepository,
-        transactionRepository
+        transactionRepository,
+        walletHoldRepository,
+        walletLocking,
+        balanceBuckets,
+        new WalletTransactionExecutor(mock(PlatformTransactionManager.class), walletLocking),
+        new WalletLockManager(stripedLock, new SimpleMeterRegistry()),
+        walletCommandEngine,
+        new DepositSettlementCoalescer(depositCoalescing, new SimpleMeterRegistry()),
+        new WalletDetailsCache(new WalletDetailsCaching(), new SimpleMeterRegistry()),
+        new WalletMetrics(meterRegistry)
     );
 
     @Test
     void givenBankTransactionStatusRequestWithUnknownReferenceId_whenExecute_thenThrowError() {
         // given
         var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
-        when(transactionRepository.findByReferenceIdWithExclusiveLock(bankTransactionStatusRequestDto.referenceId()))
+        when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), TransactionStatus.SUCCESS.name()))
             .thenReturn(Optional.empty());
+        when(transactionRepository.existsByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(false);
 
         // when then
         assertThrows(NotFoundException.class, () -> underTest.execute(bankTransactionStatusRequestDto));
@@ -46,17 +92,301 @@ class SettleTransactionUseCaseTest {
         // given
         var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
 
+        when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), TransactionStatus.SUCCESS.name()))
+            .thenReturn(Optional.empty());
+        when(transactionRepository.existsByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(true);
+
+        // when
+        underTest.execute(bankTransactionStatusRequestDto);
+
+        // then
+        verifyNoInteractions(walletRepository);
+        verify(transactionRepository, never()).save(any());
+        assertThat(meterRegistry.get("wallet.idempotent.replays").tag("operation", "settlement").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenBankTransactionStatusRequestInOptimisticLockMode_whenExecute_thenSettleWithWalletReadWithoutLock() {
+        // given
+        walletLocking.setMode(WalletLockMode.OPTIMISTIC);
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
+
+        var depositTransaction = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
+        when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), bankTransactionStatusRequestDto.status()))
+            .thenReturn(Optional.of(depositTransaction));
+
+        var wallet = mock(Wallet.class);
+        when(walletRepository.findById(123L)).thenReturn(Optional.of(wallet));
+
+        // when
+        underTest.execute(bankTransactionStatusRequestDto);
+
+        // then
+        verify(walletRepository, never()).findByIdWithExclusiveLock(any());
+        verify(wallet).deposit(eq(depositTransaction.getAmount()));
+        verify(walletRepository).save(eq(wallet));
+        assertThat(depositTransaction.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+    }
+
+    @Test
+    void givenBankTransactionStatusRequestWithCommandEngineEnabled_whenExecute_thenSettleOnCommandEngine() {
+        // given
+        when(walletCommandEngine.isEnabled()).thenReturn(true);
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.FAILED.name());
+
+        var withdrawTransaction = Transaction.createWithdrawalRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
+        when(transactionRepository.findByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(Optional.of(withdrawTransaction));
+        when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), TransactionStatus.FAILED.name()))
+            .thenReturn(Optional.of(withdrawTransaction));
+
+        var wallet = mock(Wallet.class);
+        when(walletCommandEngine.execute(eq(123L), any()))
+            .thenAnswer(invocation -> invocation.<WalletCommand<?>>getArgument(1).apply(wallet));
+
+        // when
+        underTest.execute(bankTransactionStatusRequestDto);
+
+        // then
+        verify(walletRepository, never()).findByIdWithExclusiveLock(any());
+        verify(wallet).deposit(eq(withdrawTransaction.getAmount()));
+        verify(walletHoldRepository).release(withdrawTransaction.getId());
+        verify(walletRepository).save(eq(wallet));
+        assertThat(withdrawTransaction.getStatus()).isEqualTo(TransactionStatus.FAILED);
+    }
+
+    @Test
+    void givenSuccessfulWithdrawalWithCommandEngineEnabled_whenExecute_thenReleaseHoldWithoutQueuingOnCommandEngine() {
+        // given
+        when(walletCommandEngine.isEnabled()).thenReturn(true);
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
+
+        var withdrawTransaction = Transaction.createWithdrawalRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
+        when(transactionRepository.findByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(Optional.of(withdrawTransaction));
+        when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), TransactionStatus.SUCCESS.name()))
+            .thenReturn(Optional.of(withdrawTransaction));
+        when(walletHoldRepository.release(withdrawTransaction.getId())).thenReturn(1);
+
+        // when
+        underTest.execute(bankTransactionStatusRequestDto);
+
+        // then
+        verify(walletCommandEngine, never()).execute(any(), any());
+        verify(walletHoldRepository).release(withdrawTransaction.getId());
+        verifyNoInteractions(walletRepository);
+        assertThat(withdrawTransaction.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+    }
+
+    @Test
+    void givenBankTransactionStatusRequestWithStripedLockEnabled_whenExecuteAndTransactionIsNotPending_thenIgnoreNotificationRequestBeforeLocking() {
+        // given
+        stripedLock.setEnabled(true);
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
+
         var transaction = mock(Transaction.class);
         when(transaction.isPending()).thenReturn(false);
-        when(transactionRepository.findByReferenceIdWithExclusiveLock(bankTransactionStatusRequestDto.referenceId()))
-            .thenReturn(Optional.of(transaction));
+        when(transactionRepository.findByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(Optional.of(transaction));
+
+        // when
+        underTest.execute(bankTransactionStatusRequestDto);
+
+        // then
+        verify(transactionRepository, never()).updateStatusIfPending(any(), any());
+        verifyNoInteractions(walletRepository);
+    }
+
+    @Test
+    void givenBankTransactionStatusRequestWithStripedLockEnabled_whenExecuteAndTransactionIsPending_thenSettleTransaction() {
+        // given
+        stripedLock.setEnabled(true);
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
+
+        var depositTransaction = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
+        when(transactionRepository.findByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(Optional.of(depositTransaction));
+        when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), bankTransactionStatusRequestDto.status())).thenReturn(Optional.of(depositTransaction));
+
+        var wallet = mock(Wallet.class);
+        when(walletRepository.findByIdWithExclusiveLock(123L)).thenReturn(Optional.of(wallet));
+
+        // when
+        underTest.execute(bankTransactionStatusRequestDto);
+
+        // then
+        verify(wallet).deposit(eq(depositTransaction.getAmount()));
+        assertThat(depositTransaction.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+    }
+
+    @Test
+    void givenSuccessfulDepositOnWalletWithBucketsAndStripedLockEnabled_whenExecute_thenCreditABucketWithoutLockingTheWallet() {
+        // given
+        stripedLock.setEnabled(true);
+        balanceBuckets.setWalletIds(Set.of(123L));
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
+
+        var depositTransaction = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
+        when(transactionRepository.findByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(Optional.of(depositTransaction));
+        when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), bankTransactionStatusRequestDto.status()))
+            .thenReturn(Optional.of(depositTransaction));
 
         // when
         underTest.execute(bankTransactionStatusRequestDto);
 
         // then
+        verify(walletRepository).creditBucket(eq(123L), anyInt(), eq(depositTransaction.getAmount().getAmount()));
+        verify(walletRepository, never()).findByIdWithExclusiveLock(any());
+        verify(walletRepository, never()).save(any());
+        assertThat(depositTransaction.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+    }
+
+    @Test
+    void givenFailedWithdrawalOnWalletWithBuckets_whenExecute_thenCreditTheAmountBackOnABucket() {
+        // given
+        balanceBuckets.setWalletIds(Set.of(123L));
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.FAILED.name());
+
+        var withdrawTransaction = Transaction.createWithdrawalRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
+        when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), bankTransactionStatusRequestDto.status()))
+            .thenReturn(Optional.of(withdrawTransaction));
+
+        // when
+        underTest.execute(bankTransactionStatusRequestDto);
+
+        // then
+        verify(walletRepository).creditBucket(eq(123L), anyInt(), eq(withdrawTransaction.getAmount().getAmount()));
+        verify(walletHoldRepository).release(withdrawTransaction.getId());
+        verify(walletRepository, never()).findByIdWithExclusiveLock(any());
+        assertThat(withdrawTransaction.getStatus()).isEqualTo(TransactionStatus.FAILED);
+    }
+
+    @Test
+    void givenSuccessfulDepositsOnSameWalletWithCoalescingEnabled_whenExecuteConcurrently_thenDepositTheirSumOnceWithOneStatusUpdate() throws Exception {
+        // given
+        depositCoalescing.setEnabled(true);
+        depositCoalescing.setMaxBatchSize(3);
+        depositCoalescing.setMaxDelay(Duration.ofSeconds(5));
+
+        var depositTransactions = IntStream.range(0, 3)
+            .mapToObj(i -> Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF" + i))
+            .toList();
+        depositTransactions.forEach(depositTransaction -> when(transactionRepository.findByReferenceId(depositTransaction.getReferenceId()))
+            .thenReturn(Optional.of(depositTransaction)));
+        when(transactionRepository.updateStatusesIfPending(any(), eq(TransactionStatus.SUCCESS.name()))).thenAnswer(invocation -> {
+            Collection<String> referenceIds = invocation.getArgument(0);
+            return depositTransactions.stream().filter(depositTransaction -> referenceIds.contains(depositTransaction.getReferenceId())).toList();
+        });
+
+        var wallet = mock(Wallet.class);
+        when(walletRepository.findByIdWithExclusiveLock(123L)).thenReturn(Optional.of(wallet));
+
+        var dump = Files.createTempFile("settlement-", ".jfr");
+
+        // when
+        try (var recording = new Recording()) {
+            recording.enable(SettlementAppliedEvent.class);
+            recording.start();
+
+            var settlements = depositTransactions.stream()
+                .map(depositTransaction -> CompletableFuture.runAsync(() ->
+                    underTest.execute(new BankTransactionStatusRequestDto(depositTransaction.getReferenceId(), BankingStatus.SUCCESS.name()))))
+                .toList();
+            CompletableFuture.allOf(settlements.toArray(CompletableFuture[]::new)).get(5, TimeUnit.SECONDS);
+
+            recording.stop();
+            recording.dump(dump);
+        }
+
+        // then
+        verify(transactionRepository).updateStatusesIfPending(argThat(referenceIds -> referenceIds.size() == 3), eq(TransactionStatus.SUCCESS.name()));
+        verify(wallet).deposit(eq(Money.create("GBP", BigDecimal.valueOf(30))));
+        verify(walletRepository, times(1)).save(eq(wallet));
+        verify(transactionRepository, never()).updateStatusIfPending(any(), any());
+
+        var events = RecordingFile.readAllEvents(dump);
+        assertThat(events).extracting(event -> event.getString("referenceId")).containsExactlyInAnyOrder("REF0", "REF1", "REF2");
+        assertThat(events).allMatch(event -> "SUCCESS".equals(event.getString("status")));
+        Files.delete(dump);
+    }
+
+    @Test
+    void givenSuccessfulDepositSettledMeanwhileWithCoalescingEnabled_whenExecute_thenIgnoreItWithoutWritingWallet() {
+        // given
+        depositCoalescing.setEnabled(true);
+        depositCoalescing.setMaxBatchSize(1);
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
+
+        var depositTransaction = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
+        when(transactionRepository.findByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(Optional.of(depositTransaction));
+        when(transactionRepository.updateStatusesIfPending(List.of("REF123"), TransactionStatus.SUCCESS.name())).thenReturn(List.of());
+
+        // when
+        underTest.execute(bankTransactionStatusRequestDto);
+
+        // then
+        verify(walletRepository, never()).findByIdWithExclusiveLock(any());
+        verify(walletRepository, never()).save(any());
+        assertThat(meterRegistry.get("wallet.idempotent.replays").tag("operation", "settlement").counter().count()).isEqualTo(1);
+    }
+
+    @Test
+    void givenNotificationOfArchivedTransactionWithCommandEngineEnabled_whenExecute_thenIgnoreItAsReplay() {
+        // given
+        when(walletCommandEngine.isEnabled()).thenReturn(true);
+
+        // when
+        executeNotificationOfArchivedTransaction();
+
+        // then
+        verify(walletCommandEngine, never()).execute(any(), any());
+    }
+
+    @Test
+    void givenNotificationOfArchivedTransactionWithStripedLockEnabled_whenExecute_thenIgnoreItAsReplay() {
+        // given
+        stripedLock.setEnabled(true);
+
+        // when
+        executeNotificationOfArchivedTransaction();
+
+        // then
+        verify(transactionRepository, never()).updateStatusIfPending(any(), any());
+    }
+
+    @Test
+    void givenNotificationOfArchivedTransactionWithCoalescingEnabled_whenExecute_thenIgnoreItAsReplay() {
+        // given
+        depositCoalescing.setEnabled(true);
+
+        // when
+        executeNotificationOfArchivedTransaction();
+
+        // then
+        verify(transactionRepository, never()).updateStatusesIfPending(any(), any());
+    }
+
+    @Test
+    void givenBankTransactionStatusRequestWithUnknownReferenceIdAndStripedLockEnabled_whenExecute_thenThrowError() {
+        // given
+        stripedLock.setEnabled(true);
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
+        when(transactionRepository.findByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(Optional.empty());
+        when(transactionRepository.existsByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(false);
+
+        // when then
+        assertThrows(NotFoundException.class, () -> underTest.execute(bankTransactionStatusRequestDto));
+    }
+
+    /**
+     * An archived transaction is no longer in the transaction table, but its reference is still registered.
+     */
+    private void executeNotificationOfArchivedTransaction() {
+        var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
+        when(transactionRepository.findByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(Optional.empty());
+        when(transactionRepository.existsByReferenceId(bankTransactionStatusRequestDto.referenceId())).thenReturn(true);
+
+        underTest.execute(bankTransactionStatusRequestDto);
+
         verifyNoInteractions(walletRepository);
         verify(transactionRepository, never()).save(any());
+        assertThat(meterRegistry.get("wallet.idempotent.replays").tag("operation", "settlement").counter().count()).isEqualTo(1);
     }
 
     @Nested
@@ -69,7 +399,7 @@ class SettleTransactionUseCaseTest {
 
             // pending deposit transaction
             var depositTransaction = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
-            when(transactionRepository.findByReferenceIdWithExclusiveLock(bankTransactionStatusRequestDto.referenceId()))
+            when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), bankTransactionStatusRequestDto.status()))
                 .thenReturn(Optional.of(depositTransaction));
 
             var wallet = mock(Wallet.class);
@@ -93,7 +423,7 @@ class SettleTransactionUseCaseTest {
 
             // pending deposit transaction
             var depositTransaction = Transaction.createDepositRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
-            when(transactionRepository.findByReferenceIdWithExclusiveLock(bankTransactionStatusRequestDto.referenceId()))
+            when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), bankTransactionStatusRequestDto.status()))
                 .thenReturn(Optional.of(depositTransaction));
 
             var wallet = mock(Wallet.class);
@@ -115,25 +445,23 @@ class SettleTransactionUseCaseTest {
     class SettleWithdrawTransactionTest {
 
         @Test
-        void givenBankTransactionStatusRequestForASuccessfulWithdrawal_whenExecuteAndTransactionIsPending_thenUpdateTransactionStatusToSuccessAndResetHeldFundsOfWallet() {
+        void givenBankTransactionStatusRequestForASuccessfulWithdrawal_whenExecuteAndTransactionIsPending_thenUpdateTransactionStatusToSuccessAndReleaseHeldFundsWithoutWritingWallet() {
             // given
             var bankTransactionStatusRequestDto = new BankTransactionStatusRequestDto("REF123", BankingStatus.SUCCESS.name());
 
             // pending deposit transaction
             var withdrawTransaction = Transaction.createWithdrawalRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
-            when(transactionRepository.findByReferenceIdWithExclusiveLock(bankTransactionStatusRequestDto.referenceId()))
+            when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), bankTransactionStatusRequestDto.status()))
                 .thenReturn(Optional.of(withdrawTransaction));
 
-            var wallet = mock(Wallet.class);
-            when(walletRepository.findByIdWithExclusiveLock(123L)).thenReturn(Optional.of(wallet));
+            when(walletHoldRepository.release(withdrawTransaction.getId())).thenReturn(1);
 
             // when
             underTest.execute(bankTransactionStatusRequestDto);
 
             // then
-            verify(wallet).resetBalanceOnHold();
-            verify(wallet, never()).deposit(any());
-            verify(walletRepository).save(eq(wallet));
+            verify(walletHoldRepository).release(withdrawTransaction.getId());
+            verifyNoInteractions(walletRepository);
 
             verify(transactionRepository).save(eq(withdrawTransaction));
             assertThat(withdrawTransaction.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
@@ -146,7 +474,7 @@ class SettleTransactionUseCaseTest {
 
             // pending deposit transaction
             var withdrawTransaction = Transaction.createWithdrawalRequest(123L, Money.create("GBP", BigDecimal.TEN), "REF123");
-            when(transactionRepository.findByReferenceIdWithExclusiveLock(bankTransactionStatusRequestDto.referenceId()))
+            when(transactionRepository.updateStatusIfPending(bankTransactionStatusRequestDto.referenceId(), bankTransactionStatusRequestDto.status()))
                 .thenReturn(Optional.of(withdrawTransaction));
 
             var wallet = mock(Wallet.class);
@@ -157,7 +485,7 @@ class SettleTransactionUseCaseTest {
 
             // then
             verify(wallet).deposit(eq(withdrawTransaction.getAmount()));
-            verify(wallet).resetBalanceOnHold();
+            verify(walletHoldRepository).release(withdrawTransaction.getId());
             verify(walletRepository).save(eq(wallet));
 
             verify(transactionRepository).save(eq(withdrawTransaction));
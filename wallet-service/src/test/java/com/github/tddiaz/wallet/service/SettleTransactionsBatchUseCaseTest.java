@@ -0,0 +1,247 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.cache.WalletDetailsCache;
+import com.github.tddiaz.wallet.concurrency.WalletCommand;
+import com.github.tddiaz.wallet.concurrency.DepositSettlementCoalescer;
+import com.github.tddiaz.wallet.concurrency.WalletCommandEngine;
+import com.github.tddiaz.wallet.concurrency.WalletLockManager;
+import com.github.tddiaz.wallet.concurrency.WalletTransactionExecutor;
+import com.github.tddiaz.wallet.config.CacheConfiguration.WalletDetailsCaching;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.BalanceBuckets;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.DepositCoalescing;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.StripedLock;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.ItemResult;
+import com.github.tddiaz.wallet.controller.dto.BatchBankTransactionStatusResponseDto.SettlementResult;
+import com.github.tddiaz.wallet.metrics.WalletMetrics;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Transaction;
+import com.github.tddiaz.wallet.model.TransactionStatus;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletHoldRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+class SettleTransactionsBatchUseCaseTest {
+
+    private final WalletRepository walletRepository = mock(WalletRepository.class);
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+
+    private final WalletHoldRepository walletHoldRepository = mock(WalletHoldRepository.class);
+
+    private final WalletLocking walletLocking = new WalletLocking();
+    private final WalletTransactionExecutor walletTransactionExecutor = new WalletTransactionExecutor(mock(PlatformTransactionManager.class), walletLocking);
+    private final WalletCommandEngine walletCommandEngine = mock(WalletCommandEngine.class);
+
+    private final SettleTransactionsBatchUseCase underTest = new SettleTransactionsBatchUseCase(
+        walletRepository,
+        transactionRepository,
+        walletLocking,
+        walletTransactionExecutor,
+        walletCommandEngine,
+        new SettleTransactionUseCase(
+            walletRepository,
+            transactionRepository,
+            walletHoldRepository,
+            walletLocking,
+            new BalanceBuckets(),
+            walletTransactionExecutor,
+            new WalletLockManager(new StripedLock(), new SimpleMeterRegistry()),
+            walletCommandEngine,
+            new DepositSettlementCoalescer(new DepositCoalescing(), new SimpleMeterRegistry()),
+            new WalletDetailsCache(new WalletDetailsCaching(), new SimpleMeterRegistry()),
+            new WalletMetrics(new SimpleMeterRegistry())
+        ),
+        new WalletMetrics(new SimpleMeterRegistry())
+    );
+
+    private final Wallet wallet = Wallet.initialize(123L, "GBP");
+
+    @Test
+    void givenBatchRequest_whenExecute_thenReturnResultPerItemWithSingleCallSemantics() {
+        // given
+        var pendingDeposit = Transaction.createDepositRequest(wallet.getId(), Money.create("GBP", BigDecimal.TEN), "REF1");
+        var settledDeposit = Transaction.createDepositRequest(wallet.getId(), Money.create("GBP", BigDecimal.TEN), "REF2");
+        settledDeposit.success();
+
+        when(transactionRepository.findAllByReferenceIdInWithExclusiveLock(Set.of("REF1", "REF2", "REF3")))
+            .thenReturn(List.of(pendingDeposit, settledDeposit));
+        when(walletRepository.findAllByIdInWithExclusiveLock(Set.of(wallet.getId()))).thenReturn(List.of(wallet));
+
+        var request = new BatchBankTransactionStatusRequestDto(List.of(
+            new BankTransactionStatusRequestDto("REF1", "SUCCESS"),
+            new BankTransactionStatusRequestDto("REF2", "FAILED"),
+            new BankTransactionStatusRequestDto("REF3", "SUCCESS"),
+            new BankTransactionStatusRequestDto("REF1", "FAILED")
+        ));
+
+        // when
+        var responseDto = underTest.execute(request);
+
+        // then
+        assertThat(responseDto.results()).containsExactly(
+            new ItemResult("REF1", SettlementResult.SETTLED),
+            new ItemResult("REF2", SettlementResult.IGNORED),
+            new ItemResult("REF3", SettlementResult.NOT_FOUND),
+            new ItemResult("REF1", SettlementResult.IGNORED)
+        );
+        assertThat(pendingDeposit.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+        assertThat(settledDeposit.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+        assertThat(wallet.getBalance()).isEqualTo(Money.create("GBP", BigDecimal.TEN));
+    }
+
+    @Test
+    void givenBatchRequestWithArchivedTransaction_whenExecute_thenIgnoreItInsteadOfNotFound() {
+        // given
+        when(transactionRepository.findAllByReferenceIdInWithExclusiveLock(Set.of("REF1", "REF2"))).thenReturn(List.of());
+        // the archived transaction is no longer in the transaction table, but its reference is still registered
+        when(transactionRepository.findRegisteredReferenceIds(List.of("REF1", "REF2"))).thenReturn(List.of("REF1"));
+
+        var request = new BatchBankTransactionStatusRequestDto(List.of(
+            new BankTransactionStatusRequestDto("REF1", "SUCCESS"),
+            new BankTransactionStatusRequestDto("REF2", "SUCCESS")
+        ));
+
+        // when
+        var responseDto = underTest.execute(request);
+
+        // then
+        assertThat(responseDto.results()).containsExactly(
+            new ItemResult("REF1", SettlementResult.IGNORED),
+            new ItemResult("REF2", SettlementResult.NOT_FOUND)
+        );
+        verifyNoInteractions(walletRepository);
+    }
+
+    @Test
+    void givenBatchRequestWithArchivedTransactionAndCommandEngineEnabled_whenExecute_thenIgnoreItInsteadOfNotFound() {
+        // given
+        when(walletCommandEngine.isEnabled()).thenReturn(true);
+        when(transactionRepository.findAllByReferenceIdIn(anyCollection())).thenReturn(List.of());
+        when(transactionRepository.findRegisteredReferenceIds(List.of("REF1"))).thenReturn(List.of("REF1"));
+
+        var request = new BatchBankTransactionStatusRequestDto(List.of(new BankTransactionStatusRequestDto("REF1", "FAILED")));
+
+        // when
+        var responseDto = underTest.execute(request);
+
+        // then
+        assertThat(responseDto.results()).containsExactly(new ItemResult("REF1", SettlementResult.IGNORED));
+        verify(walletCommandEngine, never()).submit(any(), any());
+    }
+
+    @Test
+    void givenBatchRequestWithManyTransactionsOfOneWallet_whenExecute_thenLockWalletOnceAndApplyAllDeltas() {
+        // given
+        wallet.deposit(Money.create("GBP", BigDecimal.valueOf(100)));
+        wallet.withdraw(Money.create("GBP", BigDecimal.valueOf(30)));
+
+        var deposit = Transaction.createDepositRequest(wallet.getId(), Money.create("GBP", BigDecimal.TEN), "REF1");
+        var withdraw = Transaction.createWithdrawalRequest(wallet.getId(), Money.create("GBP", BigDecimal.valueOf(30)), "REF2");
+
+        when(transactionRepository.findAllByReferenceIdInWithExclusiveLock(anyCollection())).thenReturn(List.of(deposit, withdraw));
+        when(walletRepository.findAllByIdInWithExclusiveLock(Set.of(wallet.getId()))).thenReturn(List.of(wallet));
+
+        var request = new BatchBankTransactionStatusRequestDto(List.of(
+            new BankTransactionStatusRequestDto("REF1", "SUCCESS"),
+            new BankTransactionStatusRequestDto("REF2", "FAILED")
+        ));
+
+        // when
+        underTest.execute(request);
+
+        // then
+        verify(walletRepository, times(1)).findAllByIdInWithExclusiveLock(any());
+        verify(walletRepository, never()).findByIdWithExclusiveLock(any());
+        assertThat(wallet.getBalance()).isEqualTo(Money.create("GBP", BigDecimal.valueOf(110)));
+        verify(walletHoldRepository).release(withdraw.getId());
+        assertThat(withdraw.getStatus()).isEqualTo(TransactionStatus.FAILED);
+    }
+
+    @Test
+    void givenBatchRequestWithOnlySuccessfulWithdrawals_whenExecute_thenReleaseHoldsWithoutLockingWallets() {
+        // given
+        var withdraw = Transaction.createWithdrawalRequest(wallet.getId(), Money.create("GBP", BigDecimal.TEN), "REF1");
+        when(transactionRepository.findAllByReferenceIdInWithExclusiveLock(anyCollection())).thenReturn(List.of(withdraw));
+
+        var request = new BatchBankTransactionStatusRequestDto(List.of(new BankTransactionStatusRequestDto("REF1", "SUCCESS")));
+
+        // when
+        var responseDto = underTest.execute(request);
+
+        // then
+        assertThat(responseDto.results()).containsExactly(new ItemResult("REF1", SettlementResult.SETTLED));
+        verify(walletRepository, never()).findAllByIdInWithExclusiveLock(any());
+        verify(walletHoldRepository).release(withdraw.getId());
+        assertThat(withdraw.getStatus()).isEqualTo(TransactionStatus.SUCCESS);
+    }
+
+    @Test
+    void givenBatchRequestWithCommandEngineEnabled_whenExecute_thenSettleEachWalletOnCommandEngine() {
+        // given
+        when(walletCommandEngine.isEnabled()).thenReturn(true);
+
+        var deposit = Transaction.createDepositRequest(wallet.getId(), Money.create("GBP", BigDecimal.TEN), "REF1");
+        when(transactionRepository.findAllByReferenceIdIn(anyCollection())).thenReturn(List.of(deposit));
+        when(transactionRepository.findAllByReferenceIdInWithExclusiveLock(List.of("REF1"))).thenReturn(List.of(deposit));
+        when(walletCommandEngine.submit(eq(wallet.getId()), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.<WalletCommand<?>>getArgument(1).apply(wallet)));
+
+        var request = new BatchBankTransactionStatusRequestDto(List.of(new BankTransactionStatusRequestDto("REF1", "SUCCESS")));
+
+        // when
+        var responseDto = underTest.execute(request);
+
+        // then
+        assertThat(responseDto.results()).containsExactly(new ItemResult("REF1", SettlementResult.SETTLED));
+        verify(walletRepository, never()).findAllByIdInWithExclusiveLock(any());
+        assertThat(wallet.getBalance()).isEqualTo(Money.create("GBP", BigDecimal.TEN));
+    }
+
+    @Test
+    void givenBatchRequestWithCommandEngineEnabled_whenExecuteAndTransactionIsSettledBeforeTheCommandLocksIt_thenIgnoreIt() {
+        // given
+        when(walletCommandEngine.isEnabled()).thenReturn(true);
+
+        var deposit = Transaction.createDepositRequest(wallet.getId(), Money.create("GBP", BigDecimal.TEN), "REF1");
+        var settledDeposit = Transaction.createDepositRequest(wallet.getId(), Money.create("GBP", BigDecimal.TEN), "REF1");
+        settledDeposit.success();
+        when(transactionRepository.findAllByReferenceIdIn(anyCollection())).thenReturn(List.of(deposit));
+        // a single callback settled it between the read and the command
+        when(transactionRepository.findAllByReferenceIdInWithExclusiveLock(List.of("REF1"))).thenReturn(List.of(settledDeposit));
+        when(walletCommandEngine.submit(eq(wallet.getId()), any()))
+            .thenAnswer(invocation -> CompletableFuture.completedFuture(invocation.<WalletCommand<?>>getArgument(1).apply(wallet)));
+
+        var request = new BatchBankTransactionStatusRequestDto(List.of(new BankTransactionStatusRequestDto("REF1", "SUCCESS")));
+
+        // when
+        var responseDto = underTest.execute(request);
+
+        // then
+        assertThat(responseDto.results()).containsExactly(new ItemResult("REF1", SettlementResult.IGNORED));
+        verify(transactionRepository, never()).save(any());
+        assertThat(wallet.getBalance()).isEqualTo(Money.zero("GBP"));
+    }
+}
@@ -0,0 +1,168 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.tddiaz.wallet.TestDatasourceContextInitializer;
+import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
+import com.github.tddiaz.wallet.controller.dto.DepositRequestDto;
+import com.github.tddiaz.wallet.controller.dto.MoneyDto;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.SettlementState;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@SpringBootTest(properties = {"settlement.inbox.mode=ASYNC", "settlement.inbox.max-attempts=2"})
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+    initializers = {TestDatasourceContextInitializer.class}
+)
+public class SettlementInboxFlowIT {
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private CreateDepositOrderUseCase createDepositOrderUseCase;
+
+    @Autowired
+    private EnqueueSettlementUseCase enqueueSettlementUseCase;
+
+    @Autowired
+    private SettleTransactionUseCase settleTransactionUseCase;
+
+    @Autowired
+    private TransactionRepository transactionRepository;
+
+    @Autowired
+    private GetSettlementStatusUseCase getSettlementStatusUseCase;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    /**
+     * Given:
+     *  - a wallet with balance of 0 GBP
+     *  - 10 pending deposit orders of 10 GBP each, each one notified twice by the bank
+     *  - a notification for an unknown reference
+     *
+     *  Expected Result:
+     *  - total balance should be 100 GBP once the inbox is drained
+     *  - the first notification of each deposit is SETTLED, the second one IGNORED and the unknown one NOT_FOUND
+     */
+    @Test
+    public void givenQueuedBankNotifications_whenWorkersDrainInbox_thenSettleEachTransactionOnce() throws InterruptedException {
+        // given
+        var customerId = TsidCreator.getTsid().toLong();
+        var wallet = walletRepository.save(Wallet.initialize(customerId, "GBP"));
+
+        List<String> referenceIds = IntStream.range(0, 10).mapToObj(i -> {
+            var referenceId = UUID.randomUUID().toString();
+            createDepositOrderUseCase.execute(new DepositRequestDto(referenceId, wallet.getId(), customerId, new MoneyDto("GBP", BigDecimal.TEN)));
+            return referenceId;
+        }).toList();
+
+        // when
+        referenceIds.forEach(referenceId -> enqueueSettlementUseCase.execute(new BankTransactionStatusRequestDto(referenceId, "SUCCESS")));
+        referenceIds.forEach(referenceId -> enqueueSettlementUseCase.execute(new BankTransactionStatusRequestDto(referenceId, "SUCCESS")));
+        var unknownReferenceId = UUID.randomUUID().toString();
+        enqueueSettlementUseCase.execute(new BankTransactionStatusRequestDto(unknownReferenceId, "SUCCESS"));
+
+        // then
+        for (int attempt = 0; attempt < 50 && isReceived(unknownReferenceId, referenceIds); attempt++) {
+            Thread.sleep(100);
+        }
+
+        var updatedWallet = transactionTemplate.execute(action -> walletRepository.findById(wallet.getId()).get());
+        assertThat(updatedWallet.getBalance()).isEqualTo(Money.create("GBP", new BigDecimal("100.0000")));
+
+        assertThat(referenceIds).allMatch(referenceId -> getSettlementStatusUseCase.execute(referenceId).state().equals(SettlementState.IGNORED.name()));
+        assertThat(getSettlementStatusUseCase.execute(unknownReferenceId).state()).isEqualTo(SettlementState.NOT_FOUND.name());
+    }
+
+    /**
+     * Given:
+     *  - a settled deposit whose transaction was archived, i.e. deleted from the transaction table with its reference kept
+     *  - a late duplicate notification of the deposit
+     *
+     *  Expected Result:
+     *  - the notification is IGNORED instead of NOT_FOUND and the balance is unchanged
+     */
+    @Test
+    public void givenNotificationOfArchivedTransaction_whenWorkersDrainInbox_thenIgnoreIt() throws InterruptedException {
+        // given
+        var customerId = TsidCreator.getTsid().toLong();
+        var wallet = walletRepository.save(Wallet.initialize(customerId, "GBP"));
+
+        var referenceId = UUID.randomUUID().toString();
+        createDepositOrderUseCase.execute(new DepositRequestDto(referenceId, wallet.getId(), customerId, new MoneyDto("GBP", BigDecimal.TEN)));
+        settleTransactionUseCase.execute(new BankTransactionStatusRequestDto(referenceId, "SUCCESS"));
+
+        var transaction = transactionRepository.findByReferenceId(referenceId).orElseThrow();
+        transactionTemplate.execute(action -> transactionRepository.deleteAllByIdIn(List.of(transaction.getId()), transaction.getCreatedAt(), transaction.getCreatedAt()));
+
+        // when
+        enqueueSettlementUseCase.execute(new BankTransactionStatusRequestDto(referenceId, "SUCCESS"));
+
+        // then
+        for (int attempt = 0; attempt < 50 && getSettlementStatusUseCase.execute(referenceId).state().equals(SettlementState.RECEIVED.name()); attempt++) {
+            Thread.sleep(100);
+        }
+
+        assertThat(getSettlementStatusUseCase.execute(referenceId).state()).isEqualTo(SettlementState.IGNORED.name());
+        var updatedWallet = transactionTemplate.execute(action -> walletRepository.findById(wallet.getId()).get());
+        assertThat(updatedWallet.getBalance()).isEqualTo(Money.create("GBP", new BigDecimal("10.0000")));
+    }
+
+    /**
+     * Given:
+     *  - a pending deposit order of 10 GBP
+     *  - a notification with a banking status the settlement fails on, queued before the notification of the deposit
+     *
+     *  Expected Result:
+     *  - the deposit is SETTLED and the balance is 10 GBP
+     *  - the failing notification is set aside as FAILED after max-attempts, instead of failing its partition forever
+     */
+    @Test
+    public void givenFailingNotification_whenWorkersDrainInbox_thenSetItAsideAndSettleTheOthers() throws InterruptedException {
+        // given
+        var customerId = TsidCreator.getTsid().toLong();
+        var wallet = walletRepository.save(Wallet.initialize(customerId, "GBP"));
+
+        var referenceId = UUID.randomUUID().toString();
+        createDepositOrderUseCase.execute(new DepositRequestDto(referenceId, wallet.getId(), customerId, new MoneyDto("GBP", BigDecimal.TEN)));
+        var failingReferenceId = UUID.randomUUID().toString();
+
+        // when
+        enqueueSettlementUseCase.execute(new BankTransactionStatusRequestDto(failingReferenceId, "BOGUS"));
+        enqueueSettlementUseCase.execute(new BankTransactionStatusRequestDto(referenceId, "SUCCESS"));
+
+        // then
+        for (int attempt = 0; attempt < 50 && isReceived(failingReferenceId, List.of(referenceId)); attempt++) {
+            Thread.sleep(100);
+        }
+
+        assertThat(getSettlementStatusUseCase.execute(referenceId).state()).isEqualTo(SettlementState.SETTLED.name());
+        assertThat(getSettlementStatusUseCase.execute(failingReferenceId).state()).isEqualTo(SettlementState.FAILED.name());
+        var updatedWallet = transactionTemplate.execute(action -> walletRepository.findById(wallet.getId()).get());
+        assertThat(updatedWallet.getBalance()).isEqualTo(Money.create("GBP", new BigDecimal("10.0000")));
+    }
+
+    private boolean isReceived(String unknownReferenceId, List<String> referenceIds) {
+        return getSettlementStatusUseCase.execute(unknownReferenceId).state().equals(SettlementState.RECEIVED.name())
+            || referenceIds.stream().anyMatch(referenceId -> getSettlementStatusUseCase.execute(referenceId).state().equals(SettlementState.RECEIVED.name()));
+    }
+}
@@ -0,0 +1,50 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.tddiaz.wallet.config.PartitioningConfiguration.TransactionPartitioning;
+import com.github.tddiaz.wallet.repository.TransactionRepository;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.transaction.PlatformTransactionManager;
+
+import java.time.LocalDate;
+
+import static org.mockito.Mockito.*;
+
+class TransactionPartitionMaintainerTest {
+
+    private final TransactionRepository transactionRepository = mock(TransactionRepository.class);
+
+    private final TransactionPartitionMaintainer underTest = new TransactionPartitionMaintainer(
+        new TransactionPartitioning(2, "0 0 3 * * *"),
+        transactionRepository,
+        mock(PlatformTransactionManager.class)
+    );
+
+    @Test
+    void givenMonthsAhead_whenCreateUpcomingPartitions_thenCreatePartitionOfCurrentAndUpcomingMonths() {
+        // given
+        var currentMonth = LocalDate.now().withDayOfMonth(1);
+
+        // when
+        underTest.createUpcomingPartitions();
+
+        // then
+        verify(transactionRepository).createPartition(currentMonth);
+        verify(transactionRepository).createPartition(currentMonth.plusMonths(1));
+        verify(transactionRepository).createPartition(currentMonth.plusMonths(2));
+        verifyNoMoreInteractions(transactionRepository);
+    }
+
+    @Test
+    void givenPartitionCreationFails_whenCreateUpcomingPartitions_thenCarryOnWithNextMonths() {
+        // given
+        var currentMonth = LocalDate.now().withDayOfMonth(1);
+        when(transactionRepository.createPartition(currentMonth.plusMonths(1))).thenThrow(new QueryTimeoutException("lock timeout"));
+
+        // when
+        underTest.createUpcomingPartitions();
+
+        // then
+        verify(transactionRepository).createPartition(currentMonth.plusMonths(2));
+    }
+}
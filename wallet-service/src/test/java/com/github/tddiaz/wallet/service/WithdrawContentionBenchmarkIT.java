@@ -0,0 +1,164 @@
+package com.github.tddiaz.wallet.service;
+
+import com.github.f4b6a3.tsid.TsidCreator;
+import com.github.tddiaz.wallet.TestDatasourceContextInitializer;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.CommandEngine;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLockMode;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WalletLocking;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WithdrawExecution;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WithdrawExecutionMode;
+import com.github.tddiaz.wallet.controller.dto.MoneyDto;
+import com.github.tddiaz.wallet.controller.dto.WithdrawRequestDto;
+import com.github.tddiaz.wallet.model.Money;
+import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.WalletHoldRepository;
+import com.github.tddiaz.wallet.repository.WalletRepository;
+import lombok.extern.slf4j.Slf4j;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ContextConfiguration;
+import org.springframework.test.context.junit.jupiter.SpringExtension;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.stream.IntStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+/**
+ * Compares the withdraw order throughput of the execution and lock modes under contention.
+ * Numbers are logged, the assertions only check that no funds were lost along the way.
+ */
+@Slf4j
+@SpringBootTest
+@ExtendWith(SpringExtension.class)
+@ContextConfiguration(
+    initializers = {TestDatasourceContextInitializer.class}
+)
+public class WithdrawContentionBenchmarkIT {
+
+    private static final int WARMUP_REQUESTS = 50;
+    private static final int REQUESTS = 500;
+    private static final int THREADS = 20;
+
+    @Autowired
+    private WalletRepository walletRepository;
+
+    @Autowired
+    private WalletHoldRepository walletHoldRepository;
+
+    @Autowired
+    private CreateWithdrawOrderUseCase createWithdrawOrderUseCase;
+
+    @Autowired
+    private WithdrawExecution withdrawExecution;
+
+    @Autowired
+    private WalletLocking walletLocking;
+
+    @Autowired
+    private CommandEngine commandEngine;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private final ExecutorService executorService = Executors.newFixedThreadPool(THREADS);
+
+    @AfterEach
+    void resetModes() {
+        withdrawExecution.setMode(WithdrawExecutionMode.LOCKING);
+        walletLocking.setMode(WalletLockMode.PESSIMISTIC);
+        commandEngine.setEnabled(false);
+    }
+
+    @Test
+    public void givenConcurrentWithdrawOrdersOnOneWallet_whenExecuteInEachExecutionMode_thenReportThroughput() {
+        var locking = measureWithdrawThroughput(WithdrawExecutionMode.LOCKING, WalletLockMode.PESSIMISTIC, 1);
+        var conditionalUpdate = measureWithdrawThroughput(WithdrawExecutionMode.CONDITIONAL_UPDATE, WalletLockMode.PESSIMISTIC, 1);
+
+        log.info("withdraw throughput on a single wallet with {} threads - LOCKING: {}, CONDITIONAL_UPDATE: {}", THREADS, locking, conditionalUpdate);
+    }
+
+    @Test
+    public void givenConcurrentWithdrawOrdersOnOneWallet_whenExecuteInEachLockMode_thenReportThroughput() {
+        var pessimistic = measureWithdrawThroughput(WithdrawExecutionMode.LOCKING, WalletLockMode.PESSIMISTIC, 1);
+        var optimistic = measureWithdrawThroughput(WithdrawExecutionMode.LOCKING, WalletLockMode.OPTIMISTIC, 1);
+
+        log.info("withdraw throughput on a single wallet with {} threads - PESSIMISTIC: {}, OPTIMISTIC: {}", THREADS, pessimistic, optimistic);
+    }
+
+    @Test
+    public void givenConcurrentWithdrawOrdersSpreadOverManyWallets_whenExecuteInEachLockMode_thenReportThroughput() {
+        var pessimistic = measureWithdrawThroughput(WithdrawExecutionMode.LOCKING, WalletLockMode.PESSIMISTIC, REQUESTS);
+        var optimistic = measureWithdrawThroughput(WithdrawExecutionMode.LOCKING, WalletLockMode.OPTIMISTIC, REQUESTS);
+
+        log.info("withdraw throughput over {} wallets with {} threads - PESSIMISTIC: {}, OPTIMISTIC: {}", REQUESTS, THREADS, pessimistic, optimistic);
+    }
+
+    @Test
+    public void givenConcurrentWithdrawOrdersOnOneWallet_whenExecuteOnCommandEngine_thenReportThroughput() {
+        var locking = measureWithdrawThroughput(WithdrawExecutionMode.LOCKING, WalletLockMode.PESSIMISTIC, 1);
+
+        commandEngine.setEnabled(true);
+        var commandEngineThroughput = measureWithdrawThroughput(WithdrawExecutionMode.LOCKING, WalletLockMode.PESSIMISTIC, 1);
+
+        log.info("withdraw throughput on a single wallet with {} threads - LOCKING: {}, COMMAND_ENGINE: {}", THREADS, locking, commandEngineThroughput);
+    }
+
+    private String measureWithdrawThroughput(WithdrawExecutionMode executionMode, WalletLockMode lockMode, int numberOfWallets) {
+        withdrawExecution.setMode(executionMode);
+        walletLocking.setMode(lockMode);
+
+        // every withdraw is 1 GBP, so each wallet can fund all the requests routed to it
+        var fundsPerWallet = BigDecimal.valueOf(WARMUP_REQUESTS + REQUESTS);
+        var wallets = IntStream.range(0, numberOfWallets).mapToObj(i -> {
+            var wallet = Wallet.initialize(TsidCreator.getTsid().toLong(), "GBP");
+            wallet.deposit(Money.create("GBP", fundsPerWallet));
+            return walletRepository.save(wallet);
+        }).toList();
+
+        withdrawConcurrently(wallets, WARMUP_REQUESTS);
+
+        var start = System.nanoTime();
+        var accepted = withdrawConcurrently(wallets, REQUESTS);
+        var elapsedSeconds = (System.nanoTime() - start) / 1_000_000_000d;
+
+        var totalFunds = BigDecimal.ZERO;
+        var totalOnHold = BigDecimal.ZERO;
+        for (var wallet : wallets) {
+            var updatedWallet = transactionTemplate.execute(action -> walletRepository.findById(wallet.getId()).get());
+            var onHold = walletHoldRepository.sumAmountByWalletId(wallet.getId());
+            totalFunds = totalFunds.add(updatedWallet.getBalance().getAmount()).add(onHold);
+            totalOnHold = totalOnHold.add(onHold);
+        }
+
+        assertThat(totalFunds).isEqualByComparingTo(fundsPerWallet.multiply(BigDecimal.valueOf(numberOfWallets)));
+        assertThat(totalOnHold).isGreaterThanOrEqualTo(BigDecimal.valueOf(accepted));
+
+        return String.format("%.1f req/s (%d of %d accepted)", accepted / elapsedSeconds, accepted, REQUESTS);
+    }
+
+    private int withdrawConcurrently(List<Wallet> wallets, int requests) {
+        var withdrawAmount = new MoneyDto("GBP", BigDecimal.ONE);
+
+        return (int) IntStream.range(0, requests)
+            .mapToObj(i -> {
+                var wallet = wallets.get(i % wallets.size());
+                return CompletableFuture.supplyAsync(() -> createWithdrawOrderUseCase.execute(
+                    new WithdrawRequestDto(UUID.randomUUID().toString(), wallet.getId(), wallet.getCustomerId(), withdrawAmount)
+                ), executorService).handle((response, error) -> error == null);
+            })
+            .toList()
+            .stream()
+            .filter(CompletableFuture::join)
+            .count();
+    }
+}
@@ -2,13 +2,18 @@ package com.github.tddiaz.wallet.service;
 
 import com.github.f4b6a3.tsid.TsidCreator;
 import com.github.tddiaz.wallet.TestDatasourceContextInitializer;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.CommandEngine;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WithdrawExecution;
+import com.github.tddiaz.wallet.config.ConcurrencyConfiguration.WithdrawExecutionMode;
 import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto;
 import com.github.tddiaz.wallet.controller.dto.BankTransactionStatusRequestDto.BankingStatus;
 import com.github.tddiaz.wallet.controller.dto.MoneyDto;
 import com.github.tddiaz.wallet.controller.dto.WithdrawRequestDto;
 import com.github.tddiaz.wallet.model.Money;
 import com.github.tddiaz.wallet.model.Wallet;
+import com.github.tddiaz.wallet.repository.WalletHoldRepository;
 import com.github.tddiaz.wallet.repository.WalletRepository;
+import org.junit.jupiter.api.AfterEach;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,6 +42,9 @@ public class WithdrawFlowConcurrencyIT {
     @Autowired
     private WalletRepository walletRepository;
 
+    @Autowired
+    private WalletHoldRepository walletHoldRepository;
+
     @Autowired
     private CreateWithdrawOrderUseCase createWithdrawOrderUseCase;
 
@@ -46,8 +54,20 @@ public class WithdrawFlowConcurrencyIT {
     @Autowired
     private TransactionTemplate transactionTemplate;
 
+    @Autowired
+    private WithdrawExecution withdrawExecution;
+
+    @Autowired
+    private CommandEngine commandEngine;
+
     private ExecutorService executorService = Executors.newFixedThreadPool(10);
 
+    @AfterEach
+    void resetModes() {
+        withdrawExecution.setMode(WithdrawExecutionMode.LOCKING);
+        commandEngine.setEnabled(false);
+    }
+
     /**
      * Given:
      *  - a wallet with balance of 100 GBP
@@ -94,7 +114,7 @@ public class WithdrawFlowConcurrencyIT {
         var updatedWallet = transactionTemplate.execute(action -> walletRepository.findById(wallet.getId()).get());
 
         assertThat(updatedWallet.getBalance()).isEqualTo(expectedTotalBalance);
-        assertThat(updatedWallet.getBalanceOnHold()).isEqualTo(expectedBalanceOnHold);
+        assertThat(walletHoldRepository.sumAmountByWalletId(wallet.getId())).isEqualByComparingTo(expectedBalanceOnHold.getAmount());
     }
 
     /**
@@ -143,7 +163,7 @@ public class WithdrawFlowConcurrencyIT {
         var updatedWallet = transactionTemplate.execute(action -> walletRepository.findById(wallet.getId()).get());
 
         assertThat(updatedWallet.getBalance()).isEqualTo(expectedTotalBalance);
-        assertThat(updatedWallet.getBalanceOnHold()).isEqualTo(expectedBalanceOnHold);
+        assertThat(walletHoldRepository.sumAmountByWalletId(wallet.getId())).isEqualByComparingTo(expectedBalanceOnHold.getAmount());
     }
 
     /**
@@ -192,10 +212,67 @@ public class WithdrawFlowConcurrencyIT {
         var updatedWallet = transactionTemplate.execute(action -> walletRepository.findById(wallet.getId()).get());
 
         assertThat(updatedWallet.getBalance()).isEqualTo(expectedTotalBalance);
-        assertThat(updatedWallet.getBalanceOnHold()).isEqualTo(expectedBalanceOnHold);
+        assertThat(walletHoldRepository.sumAmountByWalletId(wallet.getId())).isEqualByComparingTo(expectedBalanceOnHold.getAmount());
+    }
+
+    /**
+     * Given:
+     *  - a wallet not listed in concurrency.balance-buckets, with balance of 0 GBP on its row and 100 GBP in its buckets,
+     *    e.g. credited by an instance listing it
+     *  - 10 pending withdraw order with requests having withdraw amount of 10 GBP each.
+     *
+     *  Expected Result:
+     *  - total balance, of the row and the buckets, should be 0 GBP
+     *  - balance on hold should be 100 GBP
+     */
+    @Test
+    public void givenConcurrentWithdrawOrderRequestOnWalletNotListedWithFundsInBuckets_whenGetWalletBalance_shouldReturnCorrectTotalBalanceAndBalanceOnHold() {
+        withdrawConcurrentlyFromWalletNotListedWithFundsInBuckets();
+    }
+
+    @Test
+    public void givenConcurrentConditionalWithdrawOrderRequestOnWalletNotListedWithFundsInBuckets_whenGetWalletBalance_shouldReturnCorrectTotalBalanceAndBalanceOnHold() {
+        withdrawExecution.setMode(WithdrawExecutionMode.CONDITIONAL_UPDATE);
+
+        withdrawConcurrentlyFromWalletNotListedWithFundsInBuckets();
+    }
+
+    @Test
+    public void givenConcurrentWithdrawOrderRequestOnCommandEngineOnWalletNotListedWithFundsInBuckets_whenGetWalletBalance_shouldReturnCorrectTotalBalanceAndBalanceOnHold() {
+        commandEngine.setEnabled(true);
+
+        withdrawConcurrentlyFromWalletNotListedWithFundsInBuckets();
     }
 
+    private void withdrawConcurrentlyFromWalletNotListedWithFundsInBuckets() {
+        // given
+        var customerId = TsidCreator.getTsid().toLong();
+        var wallet = Wallet.initialize(customerId, "GBP");
+        walletRepository.save(wallet);
+
+        transactionTemplate.execute(action -> {
+            for (int bucket = 0; bucket < 4; bucket++) {
+                walletRepository.creditBucket(wallet.getId(), bucket, new BigDecimal("25.0000"));
+            }
+            return null;
+        });
+
+        var withdrawAmount = new MoneyDto("GBP", BigDecimal.TEN);
 
+        // when
+        Stream.generate(() -> CompletableFuture.supplyAsync(() -> createWithdrawOrderUseCase.execute(
+                new WithdrawRequestDto(UUID.randomUUID().toString(), wallet.getId(), customerId, withdrawAmount)), executorService))
+            .limit(10)
+            .toList()
+            .forEach(CompletableFuture::join);
+
+        // then
+        var balance = walletRepository.findBalanceByIdAndCustomerId(wallet.getId(), customerId).orElseThrow();
+
+        assertThat(balance.getBalanceAmount()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(balance.getBucketsAmount()).isEqualByComparingTo(BigDecimal.ZERO);
+        assertThat(balance.getHeldAmount()).isEqualByComparingTo(new BigDecimal("100.0000"));
+    }
 
     private int executeWithdrawOrderRequest(Long walletId, Long customerId, Money withdrawAmount) {
         transactionTemplate.execute(action ->